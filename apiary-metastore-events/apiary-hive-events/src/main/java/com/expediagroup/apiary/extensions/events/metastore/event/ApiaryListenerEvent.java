@@ -44,6 +44,8 @@ public abstract class ApiaryListenerEvent implements Serializable {
    */
   private EnvironmentContext environmentContext;
 
+  private transient String qualifiedTableName;
+
   protected ApiaryListenerEvent() {}
 
   protected ApiaryListenerEvent(ListenerEvent event) {
@@ -61,7 +63,13 @@ public abstract class ApiaryListenerEvent implements Serializable {
   public abstract String getTableName();
 
   public String getQualifiedTableName() {
-    return String.join(".", getDatabaseName(), getTableName());
+    // racy but idempotent, all threads compute the same name
+    String name = qualifiedTableName;
+    if (name == null) {
+      name = getDatabaseName() + "." + getTableName();
+      qualifiedTableName = name;
+    }
+    return name;
   }
 
   public boolean getStatus() {
@@ -0,0 +1,79 @@
+/**
+ * Copyright (C) 2018-2021 Expedia, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.expediagroup.apiary.extensions.events.metastore.event;
+
+import java.io.Serializable;
+import java.util.Objects;
+
+import org.apache.commons.lang3.builder.ReflectionToStringBuilder;
+import org.apache.hadoop.hive.metastore.api.Partition;
+import org.apache.hadoop.hive.metastore.api.Table;
+
+/**
+ * The latest state of a table, or of one of its partitions, as published to a log-compacted topic.
+ */
+public class TableSnapshot implements Serializable {
+  private static final long serialVersionUID = 1L;
+
+  private Table table;
+
+  /**
+   * The partition the snapshot is about, {@code null} for the snapshot of the table itself
+   */
+  private Partition partition;
+
+  TableSnapshot() {}
+
+  public TableSnapshot(Table table) {
+    this(table, null);
+  }
+
+  public TableSnapshot(Table table, Partition partition) {
+    this.table = table;
+    this.partition = partition;
+  }
+
+  public Table getTable() {
+    return table;
+  }
+
+  public Partition getPartition() {
+    return partition;
+  }
+
+  @Override
+  public int hashCode() {
+    return Objects.hash(table, partition);
+  }
+
+  @Override
+  public boolean equals(Object obj) {
+    if (this == obj) {
+      return true;
+    }
+    if (!(obj instanceof TableSnapshot)) {
+      return false;
+    }
+    TableSnapshot other = (TableSnapshot) obj;
+    return Objects.equals(table, other.table) && Objects.equals(partition, other.partition);
+  }
+
+  @Override
+  public String toString() {
+    return ReflectionToStringBuilder.toString(this);
+  }
+
+}
@@ -0,0 +1,171 @@
+/**
+ * Copyright (C) 2018-2021 Expedia, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.expediagroup.apiary.extensions.events.metastore.io;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+
+import com.expediagroup.apiary.extensions.events.metastore.event.ApiaryAddPartitionEvent;
+import com.expediagroup.apiary.extensions.events.metastore.event.ApiaryAlterPartitionEvent;
+import com.expediagroup.apiary.extensions.events.metastore.event.ApiaryAlterTableEvent;
+import com.expediagroup.apiary.extensions.events.metastore.event.ApiaryCreateTableEvent;
+import com.expediagroup.apiary.extensions.events.metastore.event.ApiaryDropPartitionEvent;
+import com.expediagroup.apiary.extensions.events.metastore.event.ApiaryDropTableEvent;
+import com.expediagroup.apiary.extensions.events.metastore.event.ApiaryInsertEvent;
+import com.expediagroup.apiary.extensions.events.metastore.event.ApiaryListenerEvent;
+import com.expediagroup.apiary.extensions.events.metastore.event.EventType;
+
+/**
+ * The fields of each type of event, for the binary {@link MetaStoreEventSerDe} implementations which write them one by
+ * one instead of mapping the event classes.
+ * <p>
+ * Each field has an id, unique within its event type, which binary formats may use to identify it: ids must never be
+ * reused for another field, new fields take new ids. Id 1 is left to formats writing the type of the event.
+ * </p>
+ */
+public final class EventFields {
+
+  public enum Kind {
+    BOOL,
+    STRING,
+    STRING_LIST,
+    STRING_MAP,
+    TABLE,
+    PARTITION,
+    PARTITION_LIST,
+    ENVIRONMENT_CONTEXT
+  }
+
+  private static final List<EventField> COMMON_FIELDS = Arrays.asList(
+      new EventField(2, ApiaryListenerEvent.class, "status", Kind.BOOL),
+      new EventField(3, ApiaryListenerEvent.class, "parameters", Kind.STRING_MAP),
+      new EventField(4, ApiaryListenerEvent.class, "environmentContext", Kind.ENVIRONMENT_CONTEXT));
+
+  private static final Map<EventType, List<EventField>> FIELDS = new EnumMap<>(EventType.class);
+
+  static {
+    fields(EventType.ON_CREATE_TABLE,
+        new EventField(10, ApiaryCreateTableEvent.class, "table", Kind.TABLE));
+    fields(EventType.ON_ALTER_TABLE,
+        new EventField(10, ApiaryAlterTableEvent.class, "oldTable", Kind.TABLE),
+        new EventField(11, ApiaryAlterTableEvent.class, "newTable", Kind.TABLE));
+    fields(EventType.ON_DROP_TABLE,
+        new EventField(10, ApiaryDropTableEvent.class, "table", Kind.TABLE),
+        new EventField(11, ApiaryDropTableEvent.class, "deleteData", Kind.BOOL));
+    fields(EventType.ON_ADD_PARTITION,
+        new EventField(10, ApiaryAddPartitionEvent.class, "table", Kind.TABLE),
+        new EventField(11, ApiaryAddPartitionEvent.class, "partitions", Kind.PARTITION_LIST));
+    fields(EventType.ON_ALTER_PARTITION,
+        new EventField(10, ApiaryAlterPartitionEvent.class, "table", Kind.TABLE),
+        new EventField(11, ApiaryAlterPartitionEvent.class, "oldPartition", Kind.PARTITION),
+        new EventField(12, ApiaryAlterPartitionEvent.class, "newPartition", Kind.PARTITION));
+    fields(EventType.ON_DROP_PARTITION,
+        new EventField(10, ApiaryDropPartitionEvent.class, "table", Kind.TABLE),
+        new EventField(11, ApiaryDropPartitionEvent.class, "partitions", Kind.PARTITION_LIST),
+        new EventField(12, ApiaryDropPartitionEvent.class, "deleteData", Kind.BOOL));
+    fields(EventType.ON_INSERT,
+        new EventField(10, ApiaryInsertEvent.class, "databaseName", Kind.STRING),
+        new EventField(11, ApiaryInsertEvent.class, "tableName", Kind.STRING),
+        new EventField(12, ApiaryInsertEvent.class, "partitionKeyValues", Kind.STRING_MAP),
+        new EventField(13, ApiaryInsertEvent.class, "files", Kind.STRING_LIST),
+        new EventField(14, ApiaryInsertEvent.class, "fileChecksums", Kind.STRING_LIST));
+  }
+
+  private static void fields(EventType eventType, EventField... eventFields) {
+    List<EventField> fields = new ArrayList<>(COMMON_FIELDS);
+    fields.addAll(Arrays.asList(eventFields));
+    FIELDS.put(eventType, Collections.unmodifiableList(fields));
+  }
+
+  private EventFields() {}
+
+  /**
+   * @return The fields of the events of the given type, in the order of their ids.
+   */
+  public static List<EventField> fields(EventType eventType) {
+    return FIELDS.get(eventType);
+  }
+
+  /**
+   * @return An event of the given type with none of its fields set, to be set with {@link EventField#set}.
+   */
+  @SuppressWarnings("unchecked")
+  public static <T extends ApiaryListenerEvent> T newEvent(EventType eventType) {
+    try {
+      Constructor<? extends ApiaryListenerEvent> constructor = eventType.eventClass().getDeclaredConstructor();
+      constructor.setAccessible(true);
+      return (T) constructor.newInstance();
+    } catch (ReflectiveOperationException e) {
+      throw new IllegalStateException("Unable to instantiate event of type " + eventType, e);
+    }
+  }
+
+  public static final class EventField {
+
+    private final short id;
+    private final String name;
+    private final Kind kind;
+    private final Field field;
+
+    private EventField(int id, Class<? extends ApiaryListenerEvent> declaringClass, String name, Kind kind) {
+      this.id = (short) id;
+      this.name = name;
+      this.kind = kind;
+      try {
+        field = declaringClass.getDeclaredField(name);
+      } catch (NoSuchFieldException e) {
+        throw new IllegalStateException("Event " + declaringClass.getName() + " has no field " + name, e);
+      }
+      field.setAccessible(true);
+    }
+
+    public short getId() {
+      return id;
+    }
+
+    public String getName() {
+      return name;
+    }
+
+    public Kind getKind() {
+      return kind;
+    }
+
+    public Object get(ApiaryListenerEvent event) {
+      try {
+        return field.get(event);
+      } catch (IllegalAccessException e) {
+        throw new IllegalStateException("Unable to read field " + name, e);
+      }
+    }
+
+    public void set(ApiaryListenerEvent event, Object value) {
+      try {
+        field.set(event, value);
+      } catch (IllegalAccessException e) {
+        throw new IllegalStateException("Unable to write field " + name, e);
+      }
+    }
+
+  }
+
+}
@@ -0,0 +1,334 @@
+/**
+ * Copyright (C) 2018-2021 Expedia, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.expediagroup.apiary.extensions.events.metastore.io.avro;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.apache.avro.Schema;
+import org.apache.avro.SchemaBuilder;
+import org.apache.avro.SchemaBuilder.FieldAssembler;
+import org.apache.avro.SchemaNormalization;
+import org.apache.avro.generic.GenericData;
+import org.apache.avro.generic.GenericDatumReader;
+import org.apache.avro.generic.GenericDatumWriter;
+import org.apache.avro.generic.GenericRecord;
+import org.apache.avro.io.BinaryEncoder;
+import org.apache.avro.io.DatumReader;
+import org.apache.avro.io.DecoderFactory;
+import org.apache.avro.io.EncoderFactory;
+import org.apache.hadoop.hive.metastore.api.EnvironmentContext;
+import org.apache.hadoop.hive.metastore.api.Partition;
+import org.apache.hadoop.hive.metastore.api.Table;
+import org.apache.thrift.TBase;
+import org.apache.thrift.TException;
+import org.apache.thrift.protocol.TCompactProtocol;
+import org.apache.thrift.transport.TIOStreamTransport;
+import org.apache.thrift.transport.TMemoryInputTransport;
+
+import com.expediagroup.apiary.extensions.events.metastore.event.ApiaryListenerEvent;
+import com.expediagroup.apiary.extensions.events.metastore.event.EventType;
+import com.expediagroup.apiary.extensions.events.metastore.io.EventFields;
+import com.expediagroup.apiary.extensions.events.metastore.io.EventFields.EventField;
+import com.expediagroup.apiary.extensions.events.metastore.io.MetaStoreEventSerDe;
+import com.expediagroup.apiary.extensions.events.metastore.io.SerDeException;
+
+/**
+ * Encodes events as Avro records, one record schema per type of event, with the Avro single object encoding: two
+ * marker bytes, the CRC-64-AVRO fingerprint of the schema on 8 little-endian bytes, then the binary encoded record.
+ * <p>
+ * Metastore objects are {@code bytes} fields holding the object encoded with the Thrift compact protocol, which any
+ * Thrift implementation decodes with the metastore IDL. Events written with another version of a schema are decoded
+ * with Avro schema resolution, the writer schema being found in the {@link SchemaRegistry} by its fingerprint.
+ * </p>
+ */
+public class AvroMetaStoreEventSerDe implements MetaStoreEventSerDe {
+
+  static final byte[] MARKER = { (byte) 0xC3, 0x01 };
+  static final int HEADER_LENGTH = MARKER.length + Long.BYTES;
+
+  private static final String NAMESPACE = ApiaryListenerEvent.class.getPackage().getName();
+  private static final Map<EventType, LocalSchema> SCHEMAS = new EnumMap<>(EventType.class);
+
+  static {
+    for (EventType eventType : EventType.values()) {
+      SCHEMAS.put(eventType, new LocalSchema(eventType));
+    }
+  }
+
+  private final SchemaRegistry registry;
+  private final Map<Long, Decoding> decodings = new ConcurrentHashMap<>();
+  private final Map<String, EventType> eventTypes = new HashMap<>();
+
+  /**
+   * Reads only the events written with the schemas of this version.
+   */
+  public AvroMetaStoreEventSerDe() {
+    this(null);
+  }
+
+  /**
+   * Registers the schemas of this version in {@code registry} and looks up the schemas of the events written with
+   * other versions in it.
+   */
+  public AvroMetaStoreEventSerDe(SchemaRegistry registry) {
+    this.registry = registry;
+    for (LocalSchema schema : SCHEMAS.values()) {
+      if (registry != null) {
+        registry.register(schema.schema);
+      }
+      eventTypes.put(schema.schema.getFullName(), schema.eventType);
+      decodings.put(schema.fingerprint, new Decoding(schema.eventType, schema.schema, schema.schema));
+    }
+  }
+
+  /**
+   * @return The schema of the events of the given type.
+   */
+  public static Schema schema(EventType eventType) {
+    return SCHEMAS.get(eventType).schema;
+  }
+
+  @Override
+  public byte[] marshal(ApiaryListenerEvent listenerEvent) throws SerDeException {
+    LocalSchema schema = SCHEMAS.get(listenerEvent.getEventType());
+    try {
+      GenericRecord record = new GenericData.Record(schema.schema);
+      for (EventField field : schema.fields) {
+        record.put(field.getName(), toAvro(field, field.get(listenerEvent)));
+      }
+      ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+      buffer.write(MARKER);
+      long fingerprint = schema.fingerprint;
+      for (int i = 0; i < Long.BYTES; i++) {
+        buffer.write((int) (fingerprint >>> (8 * i)));
+      }
+      BinaryEncoder encoder = EncoderFactory.get().binaryEncoder(buffer, null);
+      schema.writer.write(record, encoder);
+      encoder.flush();
+      return buffer.toByteArray();
+    } catch (IOException | TException | RuntimeException e) {
+      throw new SerDeException("Unable to marshal event " + listenerEvent, e);
+    }
+  }
+
+  @Override
+  public <T extends ApiaryListenerEvent> T unmarshal(byte[] payload) throws SerDeException {
+    if (payload.length < HEADER_LENGTH || payload[0] != MARKER[0] || payload[1] != MARKER[1]) {
+      throw new SerDeException("Payload is not an Avro single object encoded event");
+    }
+    long fingerprint = 0;
+    for (int i = Long.BYTES - 1; i >= 0; i--) {
+      fingerprint = (fingerprint << 8) | (payload[MARKER.length + i] & 0xFF);
+    }
+    Decoding decoding = decoding(fingerprint);
+    try {
+      GenericRecord record = decoding.reader
+          .read(null, DecoderFactory.get().binaryDecoder(payload, HEADER_LENGTH, payload.length - HEADER_LENGTH, null));
+      T event = EventFields.newEvent(decoding.eventType);
+      for (EventField field : SCHEMAS.get(decoding.eventType).fields) {
+        Object value = record.get(field.getName());
+        if (value != null) {
+          field.set(event, fromAvro(field, value));
+        }
+      }
+      return event;
+    } catch (IOException | TException | RuntimeException e) {
+      throw new SerDeException("Unable to unmarshal event from payload", e);
+    }
+  }
+
+  private Decoding decoding(long fingerprint) {
+    Decoding decoding = decodings.get(fingerprint);
+    if (decoding != null) {
+      return decoding;
+    }
+    Schema writerSchema = registry == null ? null : registry.lookup(fingerprint);
+    if (writerSchema == null) {
+      throw new SerDeException(String.format("Unknown schema fingerprint %016x", fingerprint));
+    }
+    EventType eventType = eventTypes.get(writerSchema.getFullName());
+    if (eventType == null) {
+      throw new SerDeException("Unknown event schema " + writerSchema.getFullName());
+    }
+    decoding = new Decoding(eventType, writerSchema, SCHEMAS.get(eventType).schema);
+    decodings.put(fingerprint, decoding);
+    return decoding;
+  }
+
+  private static Object toAvro(EventField field, Object value) throws TException {
+    if (value == null) {
+      return null;
+    }
+    switch (field.getKind()) {
+    case TABLE:
+    case PARTITION:
+    case ENVIRONMENT_CONTEXT:
+      return toBytes((TBase<?, ?>) value);
+    case PARTITION_LIST:
+      List<ByteBuffer> partitions = new ArrayList<>();
+      for (Object partition : (Collection<?>) value) {
+        partitions.add(toBytes((TBase<?, ?>) partition));
+      }
+      return partitions;
+    default:
+      return value;
+    }
+  }
+
+  private static Object fromAvro(EventField field, Object value) throws TException {
+    switch (field.getKind()) {
+    case STRING:
+      return value.toString();
+    case STRING_LIST:
+      List<String> strings = new ArrayList<>();
+      for (Object element : (Collection<?>) value) {
+        strings.add(element == null ? null : element.toString());
+      }
+      return strings;
+    case STRING_MAP:
+      // keeps the order of partition key values
+      Map<String, String> map = new LinkedHashMap<>();
+      for (Map.Entry<?, ?> entry : ((Map<?, ?>) value).entrySet()) {
+        map.put(entry.getKey().toString(), entry.getValue() == null ? null : entry.getValue().toString());
+      }
+      return map;
+    case TABLE:
+      return fromBytes((ByteBuffer) value, new Table());
+    case PARTITION:
+      return fromBytes((ByteBuffer) value, new Partition());
+    case ENVIRONMENT_CONTEXT:
+      return fromBytes((ByteBuffer) value, new EnvironmentContext());
+    case PARTITION_LIST:
+      List<Partition> partitions = new ArrayList<>();
+      for (Object partition : (Collection<?>) value) {
+        partitions.add(fromBytes((ByteBuffer) partition, new Partition()));
+      }
+      return partitions;
+    default:
+      return value;
+    }
+  }
+
+  private static ByteBuffer toBytes(TBase<?, ?> object) throws TException {
+    ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+    object.write(new TCompactProtocol(new TIOStreamTransport(buffer)));
+    return ByteBuffer.wrap(buffer.toByteArray());
+  }
+
+  private static <T extends TBase<?, ?>> T fromBytes(ByteBuffer bytes, T object) throws TException {
+    object.read(new TCompactProtocol(
+        new TMemoryInputTransport(bytes.array(), bytes.arrayOffset() + bytes.position(), bytes.remaining())));
+    return object;
+  }
+
+  private static Schema buildSchema(EventType eventType) {
+    FieldAssembler<Schema> fields = SchemaBuilder
+        .record(eventType.eventClass().getSimpleName())
+        .namespace(NAMESPACE)
+        .fields();
+    for (EventField field : EventFields.fields(eventType)) {
+      switch (field.getKind()) {
+      case BOOL:
+        fields = fields.name(field.getName()).type().booleanType().booleanDefault(false);
+        break;
+      case STRING:
+        fields = fields.name(field.getName()).type().optional().stringType();
+        break;
+      case STRING_LIST:
+        fields = fields.name(field.getName()).type().optional().array().items().stringType();
+        break;
+      case STRING_MAP:
+        fields = fields.name(field.getName()).type().optional().map().values().stringType();
+        break;
+      case TABLE:
+      case PARTITION:
+      case ENVIRONMENT_CONTEXT:
+        fields = fields
+            .name(field.getName())
+            .doc("Thrift compact protocol encoded " + thriftClass(field).getName())
+            .type()
+            .optional()
+            .bytesType();
+        break;
+      case PARTITION_LIST:
+        fields = fields
+            .name(field.getName())
+            .doc("Thrift compact protocol encoded " + Partition.class.getName() + " objects")
+            .type()
+            .optional()
+            .array()
+            .items()
+            .bytesType();
+        break;
+      default:
+        throw new IllegalStateException("Unsupported field kind " + field.getKind());
+      }
+    }
+    return fields.endRecord();
+  }
+
+  private static Class<?> thriftClass(EventField field) {
+    switch (field.getKind()) {
+    case TABLE:
+      return Table.class;
+    case PARTITION:
+      return Partition.class;
+    default:
+      return EnvironmentContext.class;
+    }
+  }
+
+  private static final class LocalSchema {
+
+    private final EventType eventType;
+    private final Schema schema;
+    private final long fingerprint;
+    private final List<EventField> fields;
+    private final GenericDatumWriter<GenericRecord> writer;
+
+    private LocalSchema(EventType eventType) {
+      this.eventType = eventType;
+      schema = buildSchema(eventType);
+      fingerprint = SchemaNormalization.parsingFingerprint64(schema);
+      fields = EventFields.fields(eventType);
+      writer = new GenericDatumWriter<>(schema);
+    }
+
+  }
+
+  private static final class Decoding {
+
+    private final EventType eventType;
+    private final DatumReader<GenericRecord> reader;
+
+    private Decoding(EventType eventType, Schema writerSchema, Schema readerSchema) {
+      this.eventType = eventType;
+      reader = new GenericDatumReader<>(writerSchema, readerSchema);
+    }
+
+  }
+
+}
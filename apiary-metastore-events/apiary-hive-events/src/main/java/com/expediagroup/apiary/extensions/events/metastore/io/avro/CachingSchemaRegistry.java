@@ -0,0 +1,51 @@
+/**
+ * Copyright (C) 2018-2021 Expedia, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.expediagroup.apiary.extensions.events.metastore.io.avro;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.apache.avro.Schema;
+import org.apache.avro.SchemaNormalization;
+
+/**
+ * Keeps the schemas registered or found in another registry in memory, schemas being immutable once registered.
+ * Fingerprints unknown to the other registry are looked up again on the next call.
+ */
+public class CachingSchemaRegistry implements SchemaRegistry {
+
+  private final SchemaRegistry registry;
+  private final Map<Long, Schema> schemas = new ConcurrentHashMap<>();
+
+  public CachingSchemaRegistry(SchemaRegistry registry) {
+    this.registry = registry;
+  }
+
+  @Override
+  public void register(Schema schema) {
+    long fingerprint = SchemaNormalization.parsingFingerprint64(schema);
+    if (!schemas.containsKey(fingerprint)) {
+      registry.register(schema);
+      schemas.put(fingerprint, schema);
+    }
+  }
+
+  @Override
+  public Schema lookup(long fingerprint) {
+    return schemas.computeIfAbsent(fingerprint, registry::lookup);
+  }
+
+}
@@ -0,0 +1,82 @@
+/**
+ * Copyright (C) 2018-2021 Expedia, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.expediagroup.apiary.extensions.events.metastore.io.avro;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.io.IOException;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+
+import org.apache.avro.Schema;
+import org.apache.avro.SchemaNormalization;
+
+import com.expediagroup.apiary.extensions.events.metastore.common.MetaStoreEventsException;
+
+/**
+ * Stores each schema in a {@code <fingerprint>.avsc} file of a directory, the fingerprint being written as 16
+ * hexadecimal digits. It stands in for a schema registry service in tests and small deployments, where the directory
+ * can be shared between the listeners and the consumers.
+ */
+public class FileSchemaRegistry implements SchemaRegistry {
+
+  private final Path directory;
+
+  public FileSchemaRegistry(Path directory) {
+    this.directory = directory;
+  }
+
+  @Override
+  public void register(Schema schema) {
+    Path file = file(SchemaNormalization.parsingFingerprint64(schema));
+    if (Files.exists(file)) {
+      return;
+    }
+    try {
+      Files.createDirectories(directory);
+      Path temporaryFile = Files.createTempFile(directory, file.getFileName().toString(), ".tmp");
+      Files.write(temporaryFile, schema.toString(true).getBytes(UTF_8));
+      try {
+        // readers never see a partially written schema
+        Files.move(temporaryFile, file, StandardCopyOption.ATOMIC_MOVE);
+      } catch (FileAlreadyExistsException e) {
+        Files.delete(temporaryFile);
+      }
+    } catch (IOException e) {
+      throw new MetaStoreEventsException("Unable to register schema " + schema.getFullName() + " in " + directory, e);
+    }
+  }
+
+  @Override
+  public Schema lookup(long fingerprint) {
+    Path file = file(fingerprint);
+    if (!Files.exists(file)) {
+      return null;
+    }
+    try {
+      return new Schema.Parser().parse(new String(Files.readAllBytes(file), UTF_8));
+    } catch (IOException e) {
+      throw new MetaStoreEventsException("Unable to read schema " + file, e);
+    }
+  }
+
+  private Path file(long fingerprint) {
+    return directory.resolve(String.format("%016x.avsc", fingerprint));
+  }
+
+}
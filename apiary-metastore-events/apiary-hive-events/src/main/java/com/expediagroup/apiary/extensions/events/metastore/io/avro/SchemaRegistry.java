@@ -0,0 +1,36 @@
+/**
+ * Copyright (C) 2018-2021 Expedia, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.expediagroup.apiary.extensions.events.metastore.io.avro;
+
+import org.apache.avro.Schema;
+
+/**
+ * Stores the schemas of events by their CRC-64-AVRO fingerprint, so readers can decode events written with another
+ * version of a schema.
+ */
+public interface SchemaRegistry {
+
+  /**
+   * Stores a schema, registering the same schema again has no effect.
+   */
+  void register(Schema schema);
+
+  /**
+   * @return The schema with the given fingerprint, or {@code null} if none is registered.
+   */
+  Schema lookup(long fingerprint);
+
+}
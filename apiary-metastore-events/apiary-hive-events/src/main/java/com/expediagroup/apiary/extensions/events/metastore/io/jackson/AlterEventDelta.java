@@ -0,0 +1,246 @@
+/**
+ * Copyright (C) 2018-2021 Expedia, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.expediagroup.apiary.extensions.events.metastore.io.jackson;
+
+import java.io.IOException;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+import org.apache.hadoop.hive.metastore.api.Partition;
+import org.apache.hadoop.hive.metastore.api.Table;
+import org.apache.thrift.TBase;
+import org.apache.thrift.TFieldIdEnum;
+import org.apache.thrift.TFieldRequirementType;
+import org.apache.thrift.meta_data.FieldMetaData;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.BeanDescription;
+import com.fasterxml.jackson.databind.DeserializationContext;
+import com.fasterxml.jackson.databind.JsonDeserializer;
+import com.fasterxml.jackson.databind.JsonMappingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.SerializationConfig;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.deser.DeserializationProblemHandler;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.fasterxml.jackson.databind.node.NullNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.fasterxml.jackson.databind.ser.BeanPropertyWriter;
+import com.fasterxml.jackson.databind.ser.BeanSerializerModifier;
+
+import com.expediagroup.apiary.extensions.events.metastore.event.ApiaryListenerEvent;
+import com.expediagroup.apiary.extensions.events.metastore.event.EventType;
+import com.expediagroup.apiary.extensions.events.metastore.io.EventFields;
+import com.expediagroup.apiary.extensions.events.metastore.io.EventFields.EventField;
+
+/**
+ * Writes the old table or partition of ALTER events as the {@link JsonMergePatch} which turns the new one back into
+ * it, in a property named after the old one with a {@code Delta} suffix.
+ */
+final class AlterEventDelta {
+
+  private static final Map<EventType, AlterEventDelta> DELTAS = new EnumMap<>(EventType.class);
+
+  static {
+    DELTAS.put(EventType.ON_ALTER_TABLE,
+        new AlterEventDelta(EventType.ON_ALTER_TABLE, "oldTable", "newTable", Table.class));
+    DELTAS.put(EventType.ON_ALTER_PARTITION,
+        new AlterEventDelta(EventType.ON_ALTER_PARTITION, "oldPartition", "newPartition", Partition.class));
+  }
+
+  private final Class<? extends ApiaryListenerEvent> eventClass;
+  private final EventField oldState;
+  private final EventField newState;
+  private final String deltaProperty;
+  private final Class<?> stateClass;
+
+  private AlterEventDelta(EventType eventType, String oldState, String newState, Class<?> stateClass) {
+    eventClass = eventType.eventClass();
+    this.oldState = field(eventType, oldState);
+    this.newState = field(eventType, newState);
+    deltaProperty = oldState + "Delta";
+    this.stateClass = stateClass;
+  }
+
+  private static EventField field(EventType eventType, String name) {
+    for (EventField field : EventFields.fields(eventType)) {
+      if (field.getName().equals(name)) {
+        return field;
+      }
+    }
+    throw new IllegalStateException("Event type " + eventType + " has no field " + name);
+  }
+
+  /**
+   * @return The delta of the events of the given type, or {@code null} if they have no old and new state.
+   */
+  static AlterEventDelta forEventType(EventType eventType) {
+    return DELTAS.get(eventType);
+  }
+
+  /**
+   * Writes the delta in place of the old state, events missing either state are written unchanged. The rest of the
+   * event is streamed.
+   */
+  private void encode(ApiaryListenerEvent event, BeanPropertyWriter oldStateWriter, JsonGenerator generator,
+      SerializerProvider provider) throws Exception {
+    Object oldValue = oldStateWriter.get(event);
+    Object newValue = newState.get(event);
+    if (oldValue == null || newValue == null) {
+      oldStateWriter.serializeAsField(event, generator, provider);
+      return;
+    }
+    // events are written by the mapper the delta writer is registered with
+    ObjectMapper mapper = (ObjectMapper) generator.getCodec();
+    generator.writeFieldName(deltaProperty);
+    generator.writeTree(diff(mapper, provider, newValue, oldValue));
+  }
+
+  /**
+   * @return The {@link JsonMergePatch} which turns the JSON of {@code source} into the JSON of {@code target}. The
+   *         fields of Thrift objects holding equal values are skipped before any tree is built, so a change of the
+   *         parameters of a wide table does not turn all its columns into trees.
+   */
+  @SuppressWarnings({ "rawtypes", "unchecked" })
+  private static JsonNode diff(ObjectMapper mapper, SerializerProvider provider, Object source, Object target)
+    throws JsonMappingException {
+    if (target == null) {
+      return NullNode.getInstance();
+    }
+    TFieldIdEnum[] fields = null;
+    if (source instanceof TBase
+        && source.getClass() == target.getClass()
+        && provider.findValueSerializer(source.getClass()) instanceof JacksonThriftSerializer) {
+      fields = ThriftSerDeUtils.fields((Class) source.getClass());
+    }
+    if (fields == null) {
+      JsonNode targetTree = mapper.valueToTree(target);
+      return source == null ? targetTree : JsonMergePatch.diff(mapper.valueToTree(source), targetTree);
+    }
+    TBase sourceObject = (TBase) source;
+    TBase targetObject = (TBase) target;
+    Map<? extends TFieldIdEnum, FieldMetaData> metaData = FieldMetaData.getStructMetaDataMap(sourceObject.getClass());
+    ObjectNode patch = JsonNodeFactory.instance.objectNode();
+    for (TFieldIdEnum field : fields) {
+      // matches JacksonThriftSerializer, which skips the optional fields which are not set
+      boolean optional = metaData != null
+          && metaData.get(field).requirementType == TFieldRequirementType.OPTIONAL;
+      boolean inSource = !optional || sourceObject.isSet(field);
+      boolean inTarget = !optional || targetObject.isSet(field);
+      if (!inTarget) {
+        if (inSource) {
+          patch.putNull(field.getFieldName());
+        }
+        continue;
+      }
+      Object sourceValue = inSource ? sourceObject.getFieldValue(field) : null;
+      Object targetValue = targetObject.getFieldValue(field);
+      if (!Objects.equals(sourceValue, targetValue)) {
+        patch.set(field.getFieldName(), diff(mapper, provider, sourceValue, targetValue));
+      }
+    }
+    return patch;
+  }
+
+  private void decode(ObjectMapper mapper, ApiaryListenerEvent event, JsonNode delta) throws JsonProcessingException {
+    JsonNode newValue = mapper.valueToTree(newState.get(event));
+    oldState.set(event, mapper.treeToValue(JsonMergePatch.apply(newValue, delta), stateClass));
+  }
+
+  /**
+   * Makes a mapper write the old state of events as their delta.
+   */
+  static final class Encoder extends BeanSerializerModifier {
+
+    @Override
+    public List<BeanPropertyWriter> changeProperties(SerializationConfig config, BeanDescription beanDescription,
+        List<BeanPropertyWriter> properties) {
+      for (AlterEventDelta delta : DELTAS.values()) {
+        if (delta.eventClass.isAssignableFrom(beanDescription.getBeanClass())) {
+          for (int i = 0; i < properties.size(); i++) {
+            if (properties.get(i).getName().equals(delta.oldState.getName())) {
+              properties.set(i, new DeltaWriter(delta, properties.get(i)));
+            }
+          }
+        }
+      }
+      return properties;
+    }
+
+  }
+
+  private static final class DeltaWriter extends BeanPropertyWriter {
+
+    private static final long serialVersionUID = 1L;
+
+    private final transient AlterEventDelta delta;
+    private final BeanPropertyWriter oldStateWriter;
+
+    private DeltaWriter(AlterEventDelta delta, BeanPropertyWriter oldStateWriter) {
+      super(oldStateWriter);
+      this.delta = delta;
+      this.oldStateWriter = oldStateWriter;
+    }
+
+    @Override
+    public void serializeAsField(Object bean, JsonGenerator generator, SerializerProvider provider) throws Exception {
+      delta.encode((ApiaryListenerEvent) bean, oldStateWriter, generator, provider);
+    }
+
+  }
+
+  /**
+   * Collects the delta of an event while it is read and restores its old state once it is read. Payloads without a
+   * delta are read unchanged.
+   */
+  static final class Decoder extends DeserializationProblemHandler {
+
+    private AlterEventDelta alterEventDelta;
+    private JsonNode delta;
+
+    /**
+     * @return A reader for events of the given type which hands the delta properties to this decoder.
+     */
+    ObjectReader reader(EventType eventType, ObjectReader reader) {
+      alterEventDelta = forEventType(eventType);
+      return alterEventDelta == null ? reader : reader.withHandler(this);
+    }
+
+    @Override
+    public boolean handleUnknownProperty(DeserializationContext context, JsonParser parser,
+        JsonDeserializer<?> deserializer, Object beanOrClass, String propertyName) throws IOException {
+      if (!alterEventDelta.deltaProperty.equals(propertyName)) {
+        return false;
+      }
+      delta = parser.readValueAsTree();
+      return true;
+    }
+
+    void decode(ObjectMapper mapper, ApiaryListenerEvent event) throws JsonProcessingException {
+      if (delta != null) {
+        alterEventDelta.decode(mapper, event, delta);
+      }
+    }
+
+  }
+
+}
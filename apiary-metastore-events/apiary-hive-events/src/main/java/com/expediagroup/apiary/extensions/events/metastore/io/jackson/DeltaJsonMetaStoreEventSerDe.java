@@ -0,0 +1,28 @@
+/**
+ * Copyright (C) 2018-2021 Expedia, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.expediagroup.apiary.extensions.events.metastore.io.jackson;
+
+/**
+ * A {@link JsonMetaStoreEventSerDe} which writes the old table or partition of ALTER events as a delta of the new one,
+ * to be set as the {@code serde.class} of listeners once their consumers read such deltas.
+ */
+public class DeltaJsonMetaStoreEventSerDe extends JsonMetaStoreEventSerDe {
+
+  public DeltaJsonMetaStoreEventSerDe() {
+    super(true);
+  }
+
+}
@@ -16,42 +16,213 @@
 package com.expediagroup.apiary.extensions.events.metastore.io.jackson;
 
 import java.io.IOException;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.apache.thrift.TBase;
 import org.apache.thrift.TFieldIdEnum;
+import org.apache.thrift.TFieldRequirementType;
+import org.apache.thrift.meta_data.FieldMetaData;
+import org.apache.thrift.protocol.TType;
 
 import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.SerializableString;
+import com.fasterxml.jackson.core.io.SerializedString;
+import com.fasterxml.jackson.databind.JsonMappingException;
+import com.fasterxml.jackson.databind.JsonSerializer;
 import com.fasterxml.jackson.databind.SerializerProvider;
 import com.fasterxml.jackson.databind.ser.std.StdSerializer;
 
 import com.expediagroup.apiary.extensions.events.metastore.io.SerDeException;
 
+/**
+ * Writes the fields of Thrift objects in the order of their field ids.
+ * <p>
+ * The fields of each Thrift class are looked up once and kept with their encoded names, primitive fields are read
+ * through their generated getters and the serializers of the other fields are resolved on their first value, so that
+ * writing an object does not go through the {@code ObjectMapper} for each of its fields. Optional fields which are not
+ * set are skipped.
+ * </p>
+ */
 @SuppressWarnings("rawtypes")
 public class JacksonThriftSerializer<T extends TBase> extends StdSerializer<T> {
   private static final long serialVersionUID = 1L;
 
+  private final transient Map<Class<?>, FieldWriter[]> fieldWriters = new ConcurrentHashMap<>();
+
   protected JacksonThriftSerializer(Class<T> clazz) {
     super(clazz);
   }
 
   @Override
   public void serialize(T t, JsonGenerator generator, SerializerProvider serializers) throws IOException {
+    FieldWriter[] writers = fieldWriters.get(t.getClass());
+    if (writers == null) {
+      writers = fieldWriters(t);
+      fieldWriters.put(t.getClass(), writers);
+    }
+    generator.writeStartObject();
+    for (FieldWriter writer : writers) {
+      writer.write(t, generator, serializers);
+    }
+    generator.writeEndObject();
+  }
+
+  private FieldWriter[] fieldWriters(T t) {
     TFieldIdEnum[] fields = ThriftSerDeUtils.fields(t.getClass());
     if (fields == null) {
       throw new SerDeException("Unable to read TBase fields from class " + handledType().getName());
     }
-    serialize(t, fields, generator, serializers);
+    Map<? extends TFieldIdEnum, FieldMetaData> metaData = FieldMetaData.getStructMetaDataMap(t.getClass());
+    FieldWriter[] writers = new FieldWriter[fields.length];
+    for (int i = 0; i < fields.length; i++) {
+      writers[i] = new FieldWriter(t.getClass(), fields[i], metaData == null ? null : metaData.get(fields[i]));
+    }
+    return writers;
   }
 
-  private void serialize(T t, TFieldIdEnum[] fields, JsonGenerator generator, SerializerProvider serializers)
-    throws IOException {
-    generator.writeStartObject();
-    for (TFieldIdEnum fieldId : fields) {
-      Object value = t.getFieldValue(fieldId);
-      String name = fieldId.getFieldName();
-      generator.writeObjectField(name, value);
+  private static final class FieldWriter {
+    /** Type of the fields written by the serializer of their value. */
+    private static final byte ANY = TType.STOP;
+
+    private final TFieldIdEnum field;
+    private final SerializableString name;
+    private final boolean optional;
+    private final byte type;
+    private final MethodHandle getter;
+    private volatile ValueSerializer valueSerializer;
+
+    private FieldWriter(Class<?> clazz, TFieldIdEnum field, FieldMetaData metaData) {
+      this.field = field;
+      name = new SerializedString(field.getFieldName());
+      optional = metaData != null && metaData.requirementType == TFieldRequirementType.OPTIONAL;
+      byte fieldType = metaData == null ? ANY : metaData.valueMetaData.type;
+      Class<?> primitiveType = primitiveType(fieldType);
+      if (primitiveType != null) {
+        getter = getter(clazz, field, primitiveType);
+        type = getter == null ? ANY : fieldType;
+      } else {
+        getter = null;
+        type = fieldType == TType.STRING && !metaData.valueMetaData.isBinary() ? TType.STRING : ANY;
+      }
+    }
+
+    private static Class<?> primitiveType(byte type) {
+      switch (type) {
+      case TType.BOOL:
+        return boolean.class;
+      case TType.BYTE:
+        return byte.class;
+      case TType.I16:
+        return short.class;
+      case TType.I32:
+        return int.class;
+      case TType.I64:
+        return long.class;
+      case TType.DOUBLE:
+        return double.class;
+      default:
+        return null;
+      }
+    }
+
+    /**
+     * @return The generated getter of the field adapted to take any {@link TBase}, or {@code null} if the class does
+     *         not follow the naming of the Thrift compiler.
+     */
+    private static MethodHandle getter(Class<?> clazz, TFieldIdEnum field, Class<?> primitiveType) {
+      String fieldName = field.getFieldName();
+      String getterName = (primitiveType == boolean.class ? "is" : "get")
+          + Character.toUpperCase(fieldName.charAt(0))
+          + fieldName.substring(1);
+      try {
+        return MethodHandles
+            .publicLookup()
+            .findVirtual(clazz, getterName, MethodType.methodType(primitiveType))
+            .asType(MethodType.methodType(primitiveType, TBase.class));
+      } catch (NoSuchMethodException | IllegalAccessException e) {
+        return null;
+      }
+    }
+
+    void write(TBase t, JsonGenerator generator, SerializerProvider serializers) throws IOException {
+      if (optional && !t.isSet(field)) {
+        return;
+      }
+      generator.writeFieldName(name);
+      try {
+        writeValue(t, generator, serializers);
+      } catch (IOException | RuntimeException | Error e) {
+        throw e;
+      } catch (Throwable e) {
+        throw new SerDeException("Unable to read field " + field.getFieldName() + " of " + t.getClass().getName(), e);
+      }
+    }
+
+    private void writeValue(TBase t, JsonGenerator generator, SerializerProvider serializers) throws Throwable {
+      switch (type) {
+      case TType.BOOL:
+        generator.writeBoolean((boolean) getter.invokeExact(t));
+        break;
+      case TType.BYTE:
+        generator.writeNumber((byte) getter.invokeExact(t));
+        break;
+      case TType.I16:
+        generator.writeNumber((short) getter.invokeExact(t));
+        break;
+      case TType.I32:
+        generator.writeNumber((int) getter.invokeExact(t));
+        break;
+      case TType.I64:
+        generator.writeNumber((long) getter.invokeExact(t));
+        break;
+      case TType.DOUBLE:
+        generator.writeNumber((double) getter.invokeExact(t));
+        break;
+      case TType.STRING:
+        String string = (String) t.getFieldValue(field);
+        if (string == null) {
+          generator.writeNull();
+        } else {
+          generator.writeString(string);
+        }
+        break;
+      default:
+        Object value = t.getFieldValue(field);
+        if (value == null) {
+          serializers.defaultSerializeNull(generator);
+        } else {
+          valueSerializer(value.getClass(), serializers).serialize(value, generator, serializers);
+        }
+        break;
+      }
+    }
+
+    /**
+     * The values of a field are almost always of the same class, the serializer of the last one is kept.
+     */
+    private JsonSerializer<Object> valueSerializer(Class<?> valueClass, SerializerProvider serializers)
+      throws JsonMappingException {
+      ValueSerializer serializer = valueSerializer;
+      if (serializer == null || serializer.valueClass != valueClass) {
+        serializer = new ValueSerializer(valueClass, serializers.findValueSerializer(valueClass, null));
+        valueSerializer = serializer;
+      }
+      return serializer.serializer;
+    }
+  }
+
+  private static final class ValueSerializer {
+    private final Class<?> valueClass;
+    private final JsonSerializer<Object> serializer;
+
+    private ValueSerializer(Class<?> valueClass, JsonSerializer<Object> serializer) {
+      this.valueClass = valueClass;
+      this.serializer = serializer;
     }
-    generator.writeEndObject();
   }
 
 }
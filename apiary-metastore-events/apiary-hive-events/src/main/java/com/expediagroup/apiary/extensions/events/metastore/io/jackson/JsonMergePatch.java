@@ -0,0 +1,84 @@
+/**
+ * Copyright (C) 2018-2021 Expedia, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.expediagroup.apiary.extensions.events.metastore.io.jackson;
+
+import java.util.Iterator;
+import java.util.Map;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+/**
+ * JSON merge patches as defined by <a href="https://tools.ietf.org/html/rfc7396">RFC 7396</a>: a patch holds the
+ * properties whose value changed and sets the removed ones to {@code null}, arrays are replaced as a whole.
+ */
+final class JsonMergePatch {
+
+  private JsonMergePatch() {}
+
+  /**
+   * @return The patch which turns {@code source} into {@code target}. Properties of {@code target} set to
+   *         {@code null} are removed by the patch.
+   */
+  static JsonNode diff(JsonNode source, JsonNode target) {
+    if (!source.isObject() || !target.isObject()) {
+      return target;
+    }
+    ObjectNode patch = JsonNodeFactory.instance.objectNode();
+    Iterator<String> sourceNames = source.fieldNames();
+    while (sourceNames.hasNext()) {
+      String name = sourceNames.next();
+      if (!target.has(name)) {
+        patch.putNull(name);
+      }
+    }
+    Iterator<Map.Entry<String, JsonNode>> targetFields = target.fields();
+    while (targetFields.hasNext()) {
+      Map.Entry<String, JsonNode> field = targetFields.next();
+      JsonNode sourceValue = source.get(field.getKey());
+      if (sourceValue == null) {
+        patch.set(field.getKey(), field.getValue());
+      } else if (!sourceValue.equals(field.getValue())) {
+        patch.set(field.getKey(), diff(sourceValue, field.getValue()));
+      }
+    }
+    return patch;
+  }
+
+  /**
+   * @return {@code target} with the patch applied, objects of {@code target} are modified in place.
+   */
+  static JsonNode apply(JsonNode target, JsonNode patch) {
+    if (!patch.isObject()) {
+      return patch;
+    }
+    ObjectNode result = target != null && target.isObject()
+        ? (ObjectNode) target
+        : JsonNodeFactory.instance.objectNode();
+    Iterator<Map.Entry<String, JsonNode>> patchFields = patch.fields();
+    while (patchFields.hasNext()) {
+      Map.Entry<String, JsonNode> field = patchFields.next();
+      if (field.getValue().isNull()) {
+        result.remove(field.getKey());
+      } else {
+        result.set(field.getKey(), apply(result.get(field.getKey()), field.getValue()));
+      }
+    }
+    return result;
+  }
+
+}
@@ -17,18 +17,19 @@ package com.expediagroup.apiary.extensions.events.metastore.io.jackson;
 
 import static com.fasterxml.jackson.databind.DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES;
 
-import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.util.EnumMap;
+import java.util.Map;
 
 import org.apache.hadoop.hive.metastore.api.SkewedInfo;
-import org.apache.hadoop.hive.metastore.events.CreateTableEvent;
-import org.apache.hadoop.hive.metastore.events.ListenerEvent;
 import org.apache.thrift.TBase;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.fasterxml.jackson.annotation.JsonPropertyOrder;
+import com.fasterxml.jackson.core.JsonParser;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
 import com.fasterxml.jackson.databind.module.SimpleModule;
 
 import com.expediagroup.apiary.extensions.events.metastore.event.ApiaryListenerEvent;
@@ -40,37 +41,68 @@ public class JsonMetaStoreEventSerDe implements MetaStoreEventSerDe {
   private static final Logger log = LoggerFactory.getLogger(JsonMetaStoreEventSerDe.class);
 
   private final ObjectMapper mapper;
+  private final Map<EventType, ObjectReader> readers = new EnumMap<>(EventType.class);
 
   public JsonMetaStoreEventSerDe() {
+    this(false);
+  }
+
+  /**
+   * @param alterEventDeltas Whether to write the old table or partition of ALTER events as a delta of the new one.
+   *          Events with deltas are read by any {@code JsonMetaStoreEventSerDe}.
+   */
+  public JsonMetaStoreEventSerDe(boolean alterEventDeltas) {
+    mapper = newObjectMapper();
+    if (alterEventDeltas) {
+      SimpleModule deltaModule = new SimpleModule("AlterEventDeltaModule");
+      deltaModule.setSerializerModifier(new AlterEventDelta.Encoder());
+      mapper.registerModule(deltaModule);
+    }
+    for (EventType eventType : EventType.values()) {
+      readers.put(eventType, mapper.readerFor(eventType.eventClass()));
+    }
+  }
+
+  /**
+   * @return A mapper that reads and writes the Thrift objects of the metastore.
+   */
+  static ObjectMapper newObjectMapper() {
     SimpleModule thriftModule = new SimpleModule("ThriftModule");
     registerSerializers(thriftModule);
     registerDeserializers(thriftModule);
-    mapper = new ObjectMapper();
+    ObjectMapper mapper = new ObjectMapper();
     mapper.configure(FAIL_ON_UNKNOWN_PROPERTIES, false);
     mapper.registerModule(thriftModule);
+    mapper.addMixIn(ApiaryListenerEvent.class, EventTypeFirst.class);
+    return mapper;
   }
 
-  private void registerSerializers(SimpleModule module) {
+  private static void registerSerializers(SimpleModule module) {
     module.addSerializer(new SkewedInfoSerializer());
     module.addSerializer(new JacksonThriftSerializer<>(TBase.class));
   }
 
-  private void registerDeserializers(SimpleModule module) {
+  private static void registerDeserializers(SimpleModule module) {
     module.addDeserializer(SkewedInfo.class, new SkewedInfoDeserializer());
   }
 
+  /**
+   * Writes the type of events first so they are read without buffering any of their properties.
+   */
+  @JsonPropertyOrder(PolymorphicEventReader.EVENT_TYPE)
+  private abstract static class EventTypeFirst {}
+
   @Override
   public byte[] marshal(ApiaryListenerEvent listenerEvent) throws SerDeException {
     try {
       log.debug("Marshalling event: {}", listenerEvent);
-      ByteArrayOutputStream buffer = new ByteArrayOutputStream();
-      mapper.writer().writeValue(buffer, listenerEvent);
-      byte[] bytes = buffer.toByteArray();
+      // writes into recycled buffers and copies the result once
+      byte[] bytes = mapper.writeValueAsBytes(listenerEvent);
       if (log.isDebugEnabled()) {
         log.debug("Marshalled event is: {}", new String(bytes));
       }
       return bytes;
-    } catch (IOException e) {
+    } catch (IOException | IllegalArgumentException e) {
       throw new SerDeException("Unable to marshal event " + listenerEvent);
     }
   }
@@ -81,14 +113,15 @@ public class JsonMetaStoreEventSerDe implements MetaStoreEventSerDe {
       if (log.isDebugEnabled()) {
         log.debug("Marshalled event is: {}", new String(payload));
       }
-      ByteArrayInputStream buffer = new ByteArrayInputStream(payload);
-      // As we don't know the type in advance we can only deserialize the event twice:
-      // 1. Create a dummy object just to find out the type
-      T genericEvent = mapper.readerFor(HeplerApiaryListenerEvent.class).readValue(buffer);
-      log.debug("Umarshal event of type: {}", genericEvent.getEventType());
-      // 2. Deserialize the actual object
-      buffer.reset();
-      T event = mapper.readerFor(genericEvent.getEventType().eventClass()).readValue(buffer);
+      T event;
+      AlterEventDelta.Decoder deltaDecoder = new AlterEventDelta.Decoder();
+      try (JsonParser parser = mapper.getFactory().createParser(payload)) {
+        event = PolymorphicEventReader.read(parser, eventType -> {
+          EventType type = EventType.valueOf(eventType);
+          return deltaDecoder.reader(type, readers.get(type));
+        });
+      }
+      deltaDecoder.decode(mapper, event);
       log.debug("Unmarshalled event is: {}", event);
       return event;
     } catch (Exception e) {
@@ -96,34 +129,4 @@ public class JsonMetaStoreEventSerDe implements MetaStoreEventSerDe {
     }
   }
 
-  static class HeplerApiaryListenerEvent extends ApiaryListenerEvent {
-    private static final long serialVersionUID = 1L;
-    private static final ListenerEvent DUMMY_EVENT = new CreateTableEvent(null, false, null);
-
-    private EventType eventType;
-
-    HeplerApiaryListenerEvent() {
-      super(DUMMY_EVENT);
-    }
-
-    @Override
-    public EventType getEventType() {
-      return eventType;
-    }
-
-    public void setEventType(EventType eventType) {
-      this.eventType = eventType;
-    }
-
-    @Override
-    public String getDatabaseName() {
-      return null;
-    }
-
-    @Override
-    public String getTableName() {
-      return null;
-    }
-  }
-
 }
@@ -0,0 +1,53 @@
+/**
+ * Copyright (C) 2018-2021 Expedia, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.expediagroup.apiary.extensions.events.metastore.io.jackson;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import com.expediagroup.apiary.extensions.events.metastore.event.TableSnapshot;
+import com.expediagroup.apiary.extensions.events.metastore.io.SerDeException;
+
+/**
+ * Reads and writes {@link TableSnapshot TableSnapshots} as JSON, with the same Thrift mappings as
+ * {@link JsonMetaStoreEventSerDe}.
+ */
+public class JsonTableSnapshotSerDe {
+  private static final Logger log = LoggerFactory.getLogger(JsonTableSnapshotSerDe.class);
+
+  private final ObjectMapper mapper = JsonMetaStoreEventSerDe.newObjectMapper();
+
+  public byte[] marshal(TableSnapshot snapshot) throws SerDeException {
+    try {
+      return mapper.writeValueAsBytes(snapshot);
+    } catch (Exception e) {
+      throw new SerDeException("Unable to marshal snapshot " + snapshot, e);
+    }
+  }
+
+  public TableSnapshot unmarshal(byte[] payload) throws SerDeException {
+    try {
+      TableSnapshot snapshot = mapper.readValue(payload, TableSnapshot.class);
+      log.debug("Unmarshalled snapshot is: {}", snapshot);
+      return snapshot;
+    } catch (Exception e) {
+      throw new SerDeException("Unable to unmarshal snapshot from payload", e);
+    }
+  }
+
+}
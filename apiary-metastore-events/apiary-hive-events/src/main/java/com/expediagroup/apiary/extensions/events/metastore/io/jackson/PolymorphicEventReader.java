@@ -0,0 +1,64 @@
+/**
+ * Copyright (C) 2018-2021 Expedia, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.expediagroup.apiary.extensions.events.metastore.io.jackson;
+
+import java.io.IOException;
+import java.util.function.Function;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.util.JsonParserSequence;
+import com.fasterxml.jackson.databind.JsonMappingException;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.util.TokenBuffer;
+
+/**
+ * Reads an event whose class is given by its {@code eventType} property in a single pass over its payload: the
+ * properties preceding the type are buffered as tokens, then replayed ahead of the rest of the payload to the reader of
+ * the event class.
+ */
+final class PolymorphicEventReader {
+
+  static final String EVENT_TYPE = "eventType";
+
+  private PolymorphicEventReader() {}
+
+  /**
+   * @param readerForType Returns the reader of the events of the given type.
+   */
+  static <T> T read(JsonParser parser, Function<String, ObjectReader> readerForType) throws IOException {
+    if (parser.nextToken() != JsonToken.START_OBJECT) {
+      throw JsonMappingException.from(parser, "Event payload is not an object");
+    }
+    TokenBuffer prefix = new TokenBuffer(parser.getCodec(), false);
+    prefix.writeStartObject();
+    while (parser.nextToken() == JsonToken.FIELD_NAME) {
+      String name = parser.getCurrentName();
+      prefix.writeFieldName(name);
+      parser.nextToken();
+      if (EVENT_TYPE.equals(name)) {
+        ObjectReader reader = readerForType.apply(parser.getText());
+        prefix.copyCurrentEvent(parser);
+        // the sequence moves on to the property following the type once the prefix is consumed
+        JsonParser event = JsonParserSequence.createFlattened(prefix.asParser(parser.getCodec()), parser);
+        return reader.readValue(event);
+      }
+      prefix.copyCurrentStructure(parser);
+    }
+    throw JsonMappingException.from(parser, "Event payload has no " + EVENT_TYPE);
+  }
+
+}
@@ -0,0 +1,368 @@
+/**
+ * Copyright (C) 2018-2021 Expedia, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.expediagroup.apiary.extensions.events.metastore.io.thrift;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.apache.hadoop.hive.metastore.api.EnvironmentContext;
+import org.apache.hadoop.hive.metastore.api.Partition;
+import org.apache.hadoop.hive.metastore.api.Table;
+import org.apache.thrift.TBase;
+import org.apache.thrift.TByteArrayOutputStream;
+import org.apache.thrift.TException;
+import org.apache.thrift.protocol.TCompactProtocol;
+import org.apache.thrift.protocol.TField;
+import org.apache.thrift.protocol.TList;
+import org.apache.thrift.protocol.TMap;
+import org.apache.thrift.protocol.TProtocol;
+import org.apache.thrift.protocol.TProtocolUtil;
+import org.apache.thrift.protocol.TStruct;
+import org.apache.thrift.protocol.TType;
+import org.apache.thrift.transport.TIOStreamTransport;
+import org.apache.thrift.transport.TMemoryInputTransport;
+
+import com.expediagroup.apiary.extensions.events.metastore.event.ApiaryListenerEvent;
+import com.expediagroup.apiary.extensions.events.metastore.event.EventType;
+import com.expediagroup.apiary.extensions.events.metastore.io.EventFields;
+import com.expediagroup.apiary.extensions.events.metastore.io.EventFields.EventField;
+import com.expediagroup.apiary.extensions.events.metastore.io.MetaStoreEventSerDe;
+import com.expediagroup.apiary.extensions.events.metastore.io.SerDeException;
+
+/**
+ * Encodes events with the Thrift compact protocol: a format version byte followed by a struct holding the event type,
+ * the properties of the event and its metastore objects, which are written by their own generated Thrift code.
+ * <p>
+ * Fields are identified by their {@link EventFields} id as in any Thrift struct: unknown fields are skipped and missing
+ * ones left unset, so fields can be added to events without breaking readers.
+ * </p>
+ */
+public class ThriftCompactMetaStoreEventSerDe implements MetaStoreEventSerDe {
+
+  static final byte FORMAT_VERSION = 1;
+
+  private static final TStruct EVENT_STRUCT = new TStruct("ApiaryListenerEvent");
+  private static final short EVENT_TYPE_ID = 1;
+  private static final int INITIAL_BUFFER_SIZE = 1024;
+  /** Buffers grown above this size by a large event are not kept for the next one. */
+  private static final int MAX_RETAINED_CAPACITY = 1024 * 1024;
+  private static final ThreadLocal<Output> OUTPUTS = ThreadLocal.withInitial(Output::new);
+
+  private static final Map<EventType, Map<Short, ThriftField>> FIELDS = new EnumMap<>(EventType.class);
+
+  static {
+    for (EventType eventType : EventType.values()) {
+      // iterated in id order when writing
+      Map<Short, ThriftField> fields = new TreeMap<>();
+      for (EventField field : EventFields.fields(eventType)) {
+        fields.put(field.getId(), new ThriftField(field));
+      }
+      FIELDS.put(eventType, Collections.unmodifiableMap(fields));
+    }
+  }
+
+  @Override
+  public byte[] marshal(ApiaryListenerEvent listenerEvent) throws SerDeException {
+    Output output = Output.start();
+    TProtocol protocol = output.protocol;
+    try {
+      EventType eventType = listenerEvent.getEventType();
+      protocol.writeStructBegin(EVENT_STRUCT);
+      protocol.writeFieldBegin(new TField("eventType", TType.STRING, EVENT_TYPE_ID));
+      protocol.writeString(eventType.name());
+      protocol.writeFieldEnd();
+      for (ThriftField field : FIELDS.get(eventType).values()) {
+        Object value = field.field.get(listenerEvent);
+        if (value != null) {
+          protocol.writeFieldBegin(field.header);
+          field.codec.write(protocol, value);
+          protocol.writeFieldEnd();
+        }
+      }
+      protocol.writeFieldStop();
+      protocol.writeStructEnd();
+    } catch (TException e) {
+      throw new SerDeException("Unable to marshal event " + listenerEvent, e);
+    }
+    return output.toByteArray();
+  }
+
+  @Override
+  public <T extends ApiaryListenerEvent> T unmarshal(byte[] payload) throws SerDeException {
+    if (payload.length == 0 || payload[0] != FORMAT_VERSION) {
+      throw new SerDeException("Unsupported payload format " + (payload.length == 0 ? "(empty)" : payload[0]));
+    }
+    TProtocol protocol = new TCompactProtocol(new TMemoryInputTransport(payload, 1, payload.length - 1));
+    try {
+      protocol.readStructBegin();
+      TField header = protocol.readFieldBegin();
+      if (header.id != EVENT_TYPE_ID || header.type != TType.STRING) {
+        throw new SerDeException("Payload does not start with the event type");
+      }
+      EventType eventType = EventType.valueOf(protocol.readString());
+      protocol.readFieldEnd();
+      Map<Short, ThriftField> fields = FIELDS.get(eventType);
+      T event = EventFields.newEvent(eventType);
+      for (header = protocol.readFieldBegin(); header.type != TType.STOP; header = protocol.readFieldBegin()) {
+        ThriftField field = fields.get(header.id);
+        if (field != null && field.header.type == header.type) {
+          field.field.set(event, field.codec.read(protocol));
+        } else {
+          TProtocolUtil.skip(protocol, header.type);
+        }
+        protocol.readFieldEnd();
+      }
+      protocol.readStructEnd();
+      return event;
+    } catch (SerDeException e) {
+      throw e;
+    } catch (Exception e) {
+      throw new SerDeException("Unable to unmarshal event from payload", e);
+    }
+  }
+
+  private enum Codec {
+    BOOL(TType.BOOL) {
+      @Override
+      void write(TProtocol protocol, Object value) throws TException {
+        protocol.writeBool((Boolean) value);
+      }
+
+      @Override
+      Object read(TProtocol protocol) throws TException {
+        return protocol.readBool();
+      }
+    },
+    STRING(TType.STRING) {
+      @Override
+      void write(TProtocol protocol, Object value) throws TException {
+        protocol.writeString((String) value);
+      }
+
+      @Override
+      Object read(TProtocol protocol) throws TException {
+        return protocol.readString();
+      }
+    },
+    STRING_LIST(TType.LIST) {
+      @Override
+      @SuppressWarnings("unchecked")
+      void write(TProtocol protocol, Object value) throws TException {
+        List<String> list = (List<String>) value;
+        protocol.writeListBegin(new TList(TType.STRING, list.size()));
+        for (String element : list) {
+          protocol.writeString(element);
+        }
+        protocol.writeListEnd();
+      }
+
+      @Override
+      Object read(TProtocol protocol) throws TException {
+        TList header = protocol.readListBegin();
+        List<String> list = new ArrayList<>(header.size);
+        for (int i = 0; i < header.size; i++) {
+          list.add(protocol.readString());
+        }
+        protocol.readListEnd();
+        return list;
+      }
+    },
+    STRING_MAP(TType.MAP) {
+      @Override
+      @SuppressWarnings("unchecked")
+      void write(TProtocol protocol, Object value) throws TException {
+        Map<String, String> map = (Map<String, String>) value;
+        protocol.writeMapBegin(new TMap(TType.STRING, TType.STRING, map.size()));
+        for (Map.Entry<String, String> entry : map.entrySet()) {
+          protocol.writeString(entry.getKey());
+          protocol.writeString(entry.getValue());
+        }
+        protocol.writeMapEnd();
+      }
+
+      @Override
+      Object read(TProtocol protocol) throws TException {
+        TMap header = protocol.readMapBegin();
+        // keeps the order of partition key values
+        Map<String, String> map = new LinkedHashMap<>((int) (header.size / 0.75f) + 1);
+        for (int i = 0; i < header.size; i++) {
+          map.put(protocol.readString(), protocol.readString());
+        }
+        protocol.readMapEnd();
+        return map;
+      }
+    },
+    TABLE(TType.STRUCT) {
+      @Override
+      void write(TProtocol protocol, Object value) throws TException {
+        ((Table) value).write(protocol);
+      }
+
+      @Override
+      Object read(TProtocol protocol) throws TException {
+        Table table = new Table();
+        table.read(protocol);
+        return table;
+      }
+    },
+    PARTITION(TType.STRUCT) {
+      @Override
+      void write(TProtocol protocol, Object value) throws TException {
+        ((Partition) value).write(protocol);
+      }
+
+      @Override
+      Object read(TProtocol protocol) throws TException {
+        Partition partition = new Partition();
+        partition.read(protocol);
+        return partition;
+      }
+    },
+    PARTITION_LIST(TType.LIST) {
+      @Override
+      @SuppressWarnings("unchecked")
+      void write(TProtocol protocol, Object value) throws TException {
+        List<Partition> partitions = (List<Partition>) value;
+        protocol.writeListBegin(new TList(TType.STRUCT, partitions.size()));
+        for (TBase<?, ?> partition : partitions) {
+          partition.write(protocol);
+        }
+        protocol.writeListEnd();
+      }
+
+      @Override
+      Object read(TProtocol protocol) throws TException {
+        TList header = protocol.readListBegin();
+        List<Partition> partitions = new ArrayList<>(header.size);
+        for (int i = 0; i < header.size; i++) {
+          Partition partition = new Partition();
+          partition.read(protocol);
+          partitions.add(partition);
+        }
+        protocol.readListEnd();
+        return partitions;
+      }
+    },
+    ENVIRONMENT_CONTEXT(TType.STRUCT) {
+      @Override
+      void write(TProtocol protocol, Object value) throws TException {
+        ((EnvironmentContext) value).write(protocol);
+      }
+
+      @Override
+      Object read(TProtocol protocol) throws TException {
+        EnvironmentContext environmentContext = new EnvironmentContext();
+        environmentContext.read(protocol);
+        return environmentContext;
+      }
+    };
+
+    private final byte type;
+
+    Codec(byte type) {
+      this.type = type;
+    }
+
+    abstract void write(TProtocol protocol, Object value) throws TException;
+
+    abstract Object read(TProtocol protocol) throws TException;
+  }
+
+  /**
+   * Buffer and protocol of the current thread, reused from one event to the next so a large event is not copied each
+   * time the buffer grows.
+   */
+  private static final class Output {
+
+    private TByteArrayOutputStream buffer;
+    private ScratchCompactProtocol protocol;
+
+    static Output start() {
+      Output output = OUTPUTS.get();
+      if (output.buffer == null || output.buffer.get().length > MAX_RETAINED_CAPACITY) {
+        output.buffer = new TByteArrayOutputStream(INITIAL_BUFFER_SIZE);
+        output.protocol = new ScratchCompactProtocol(new TIOStreamTransport(output.buffer));
+      } else {
+        output.buffer.reset();
+        // forgets the field ids of a write which failed half way
+        output.protocol.reset();
+      }
+      output.buffer.write(FORMAT_VERSION);
+      return output;
+    }
+
+    byte[] toByteArray() {
+      return Arrays.copyOf(buffer.get(), buffer.len());
+    }
+
+  }
+
+  /**
+   * Writes ASCII strings, which are most of the names, types and comments of the metastore objects, through a scratch
+   * array instead of the array the compact protocol allocates for each of them.
+   */
+  private static final class ScratchCompactProtocol extends TCompactProtocol {
+
+    private ByteBuffer scratch = ByteBuffer.allocate(256);
+
+    ScratchCompactProtocol(TIOStreamTransport transport) {
+      super(transport);
+    }
+
+    @Override
+    public void writeString(String str) throws TException {
+      int length = str.length();
+      if (scratch.capacity() < length) {
+        scratch = ByteBuffer.allocate(Math.max(length, scratch.capacity() * 2));
+      }
+      byte[] bytes = scratch.array();
+      for (int i = 0; i < length; i++) {
+        char c = str.charAt(i);
+        if (c >= 0x80) {
+          super.writeString(str);
+          return;
+        }
+        bytes[i] = (byte) c;
+      }
+      scratch.clear();
+      scratch.limit(length);
+      writeBinary(scratch);
+    }
+
+  }
+
+  private static final class ThriftField {
+
+    private final TField header;
+    private final EventField field;
+    private final Codec codec;
+
+    private ThriftField(EventField field) {
+      this.field = field;
+      codec = Codec.valueOf(field.getKind().name());
+      header = new TField(field.getName(), codec.type, field.getId());
+    }
+
+  }
+
+}
@@ -0,0 +1,157 @@
+/**
+ * Copyright (C) 2018-2021 Expedia, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.expediagroup.apiary.extensions.events.metastore.io;
+
+import static org.mockito.Mockito.mock;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.hadoop.hive.metastore.HiveMetaStore.HMSHandler;
+import org.apache.hadoop.hive.metastore.api.FieldSchema;
+import org.apache.hadoop.hive.metastore.api.Table;
+import org.apache.hadoop.hive.metastore.events.AlterTableEvent;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.BenchmarkParams;
+import org.openjdk.jmh.infra.IterationParams;
+import org.openjdk.jmh.profile.InternalProfiler;
+import org.openjdk.jmh.results.AggregationPolicy;
+import org.openjdk.jmh.results.IterationResult;
+import org.openjdk.jmh.results.Result;
+import org.openjdk.jmh.results.ScalarResult;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import com.expediagroup.apiary.extensions.events.metastore.event.ApiaryAlterTableEvent;
+import com.expediagroup.apiary.extensions.events.metastore.event.ApiaryListenerEvent;
+import com.expediagroup.apiary.extensions.events.metastore.io.avro.AvroMetaStoreEventSerDe;
+import com.expediagroup.apiary.extensions.events.metastore.io.jackson.DeltaJsonMetaStoreEventSerDe;
+import com.expediagroup.apiary.extensions.events.metastore.io.jackson.JsonMetaStoreEventSerDe;
+import com.expediagroup.apiary.extensions.events.metastore.io.thrift.ThriftCompactMetaStoreEventSerDe;
+
+/**
+ * Compares the {@link MetaStoreEventSerDe} implementations on an ALTER_TABLE event of a table with many columns. The
+ * payload size of each implementation is reported as the {@code payloadBytes} secondary result by
+ * {@link PayloadSizeProfiler}.
+ * <p>
+ * Run from the IDE or with {@code mvn test-compile exec:java -Dexec.classpathScope=test
+ * -Dexec.mainClass=com.expediagroup.apiary.extensions.events.metastore.io.MetaStoreEventSerDeBenchmark}; add
+ * {@code -prof gc} to the JMH options to compare allocation rates. When running JMH directly, add {@code -prof} with the
+ * binary name of {@link PayloadSizeProfiler} for the payload sizes.
+ * </p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MetaStoreEventSerDeBenchmark {
+
+  @Param({ "10", "500" })
+  private int columns;
+
+  @Param({ "json", "json-delta", "thrift-compact", "avro" })
+  private String format;
+
+  private MetaStoreEventSerDe serDe;
+  private ApiaryListenerEvent event;
+  private byte[] payload;
+  private static volatile int payloadBytes;
+
+  @Setup
+  public void setup() {
+    FieldSchema[] moreColumns = new FieldSchema[columns];
+    for (int i = 0; i < columns; i++) {
+      moreColumns[i] = new FieldSchema("column_" + i, "string", "comment of column " + i);
+    }
+    Table oldTable = SerDeTestUtils.createTable(moreColumns);
+    Table newTable = SerDeTestUtils.createTable(moreColumns);
+    newTable.setLastAccessTime(newTable.getLastAccessTime() + 1);
+    event = new ApiaryAlterTableEvent(new AlterTableEvent(oldTable, newTable, true, mock(HMSHandler.class)));
+    serDe = serDe(format);
+    payload = serDe.marshal(event);
+    payloadBytes = payload.length;
+  }
+
+  private static MetaStoreEventSerDe serDe(String format) {
+    switch (format) {
+    case "json":
+      return new JsonMetaStoreEventSerDe();
+    case "json-delta":
+      return new DeltaJsonMetaStoreEventSerDe();
+    case "thrift-compact":
+      return new ThriftCompactMetaStoreEventSerDe();
+    case "avro":
+      return new AvroMetaStoreEventSerDe();
+    default:
+      throw new IllegalArgumentException("Unknown format " + format);
+    }
+  }
+
+  @Benchmark
+  public byte[] marshal() {
+    return serDe.marshal(event);
+  }
+
+  @Benchmark
+  public ApiaryListenerEvent unmarshal() {
+    return serDe.unmarshal(payload);
+  }
+
+  /**
+   * Reports the size of the payload of the trial.
+   */
+  public static class PayloadSizeProfiler implements InternalProfiler {
+
+    @Override
+    public String getDescription() {
+      return "Size of the marshalled event";
+    }
+
+    @Override
+    public void beforeIteration(BenchmarkParams benchmarkParams, IterationParams iterationParams) {}
+
+    @Override
+    public Collection<? extends Result> afterIteration(
+        BenchmarkParams benchmarkParams,
+        IterationParams iterationParams,
+        IterationResult result) {
+      return Collections.singletonList(new ScalarResult("payloadBytes", payloadBytes, "B", AggregationPolicy.AVG));
+    }
+
+  }
+
+  public static void main(String[] args) throws RunnerException {
+    new Runner(new OptionsBuilder()
+        .include(MetaStoreEventSerDeBenchmark.class.getSimpleName())
+        .addProfiler(PayloadSizeProfiler.class)
+        .build()).run();
+  }
+
+}
@@ -22,7 +22,10 @@ import static com.expediagroup.apiary.extensions.events.metastore.io.MetaStoreEv
 import org.junit.Test;
 
 import com.expediagroup.apiary.extensions.events.metastore.common.MetaStoreEventsException;
+import com.expediagroup.apiary.extensions.events.metastore.io.avro.AvroMetaStoreEventSerDe;
+import com.expediagroup.apiary.extensions.events.metastore.io.jackson.DeltaJsonMetaStoreEventSerDe;
 import com.expediagroup.apiary.extensions.events.metastore.io.jackson.JsonMetaStoreEventSerDe;
+import com.expediagroup.apiary.extensions.events.metastore.io.thrift.ThriftCompactMetaStoreEventSerDe;
 
 public class MetaStoreEventSerDeTest {
 
@@ -32,6 +35,24 @@ public class MetaStoreEventSerDeTest {
     assertThat(serDe).isExactlyInstanceOf(JsonMetaStoreEventSerDe.class);
   }
 
+  @Test
+  public void instantiateDeltaJsonSerDe() {
+    MetaStoreEventSerDe serDe = serDeForClassName(DeltaJsonMetaStoreEventSerDe.class.getName());
+    assertThat(serDe).isExactlyInstanceOf(DeltaJsonMetaStoreEventSerDe.class);
+  }
+
+  @Test
+  public void instantiateThriftCompactSerDe() {
+    MetaStoreEventSerDe serDe = serDeForClassName(ThriftCompactMetaStoreEventSerDe.class.getName());
+    assertThat(serDe).isExactlyInstanceOf(ThriftCompactMetaStoreEventSerDe.class);
+  }
+
+  @Test
+  public void instantiateAvroSerDe() {
+    MetaStoreEventSerDe serDe = serDeForClassName(AvroMetaStoreEventSerDe.class.getName());
+    assertThat(serDe).isExactlyInstanceOf(AvroMetaStoreEventSerDe.class);
+  }
+
   @Test(expected = MetaStoreEventsException.class)
   public void invalidSerDeClassName() {
     serDeForClassName("com.expediagroup.apiary.extensions.events.metastore.common.io.unknown.MetaStoreEventSerDe");
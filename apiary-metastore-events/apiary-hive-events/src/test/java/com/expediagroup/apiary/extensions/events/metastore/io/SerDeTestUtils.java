@@ -121,7 +121,7 @@ public class SerDeTestUtils {
     table.setCreateTime(CREATE_TIME);
     table.setLastAccessTime(LAST_ACCESS_TIME);
     table.setRetention(RETENTION);
-    table.setSd(storageDescriptor());
+    table.setSd(storageDescriptor(moreCols));
     table.setPartitionKeys(PARTITION_COLS);
     table.setParameters(ImmutableMap.of("table_foo", "table_bar"));
     table.setViewOriginalText(VIEW_ORIGINAL_TEXT);
@@ -0,0 +1,123 @@
+/**
+ * Copyright (C) 2018-2021 Expedia, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.expediagroup.apiary.extensions.events.metastore.io.avro;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+import org.apache.avro.Schema;
+import org.apache.avro.SchemaNormalization;
+import org.apache.avro.generic.GenericData;
+import org.apache.avro.generic.GenericDatumReader;
+import org.apache.avro.generic.GenericDatumWriter;
+import org.apache.avro.generic.GenericRecord;
+import org.apache.avro.io.BinaryEncoder;
+import org.apache.avro.io.DecoderFactory;
+import org.apache.avro.io.EncoderFactory;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.expediagroup.apiary.extensions.events.metastore.event.ApiaryListenerEvent;
+import com.expediagroup.apiary.extensions.events.metastore.io.AbstractMetaStoreEventSerDeTest;
+import com.expediagroup.apiary.extensions.events.metastore.io.MetaStoreEventSerDe;
+import com.expediagroup.apiary.extensions.events.metastore.io.SerDeException;
+
+public class AvroMetaStoreEventSerDeTest extends AbstractMetaStoreEventSerDeTest {
+
+  public @Rule TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+  private final AvroMetaStoreEventSerDe serDe = new AvroMetaStoreEventSerDe();
+
+  @Override
+  protected MetaStoreEventSerDe serDe() {
+    return serDe;
+  }
+
+  @Test
+  public void singleObjectEncoding() {
+    byte[] payload = serDe.marshal(event);
+
+    assertThat(payload[0]).isEqualTo((byte) 0xC3);
+    assertThat(payload[1]).isEqualTo((byte) 0x01);
+    assertThat(ByteBuffer.wrap(payload, 2, 8).order(ByteOrder.LITTLE_ENDIAN).getLong())
+        .isEqualTo(SchemaNormalization.parsingFingerprint64(AvroMetaStoreEventSerDe.schema(event.getEventType())));
+  }
+
+  @Test
+  public void registersSchemas() {
+    FileSchemaRegistry registry = new FileSchemaRegistry(temporaryFolder.getRoot().toPath());
+    new AvroMetaStoreEventSerDe(registry);
+
+    Schema schema = AvroMetaStoreEventSerDe.schema(event.getEventType());
+    assertThat(registry.lookup(SchemaNormalization.parsingFingerprint64(schema))).isEqualTo(schema);
+  }
+
+  @Test
+  public void readsEventsWrittenWithAnotherSchemaVersion() throws IOException {
+    Schema schema = AvroMetaStoreEventSerDe.schema(event.getEventType());
+    String json = schema.toString();
+    Schema newerSchema = new Schema.Parser()
+        .parse(json.substring(0, json.length() - 2)
+            + ",{\"name\":\"addedField\",\"type\":[\"null\",\"string\"],\"default\":null}]}");
+    FileSchemaRegistry registry = new FileSchemaRegistry(temporaryFolder.getRoot().toPath());
+    registry.register(newerSchema);
+
+    byte[] payload = serDe.marshal(event);
+    GenericRecord record = new GenericDatumReader<GenericRecord>(schema)
+        .read(null, DecoderFactory.get().binaryDecoder(payload, AvroMetaStoreEventSerDe.HEADER_LENGTH,
+            payload.length - AvroMetaStoreEventSerDe.HEADER_LENGTH, null));
+    GenericRecord newerRecord = new GenericData.Record(newerSchema);
+    for (Schema.Field field : schema.getFields()) {
+      newerRecord.put(field.name(), record.get(field.name()));
+    }
+    newerRecord.put("addedField", "value");
+
+    assertThat(new AvroMetaStoreEventSerDe(registry).<ApiaryListenerEvent> unmarshal(encode(newerSchema, newerRecord)))
+        .isEqualTo(event);
+  }
+
+  @Test(expected = SerDeException.class)
+  public void unknownSchema() {
+    byte[] payload = serDe.marshal(event);
+    payload[2]++;
+    serDe.unmarshal(payload);
+  }
+
+  @Test(expected = SerDeException.class)
+  public void notSingleObjectEncoded() {
+    serDe.unmarshal(new byte[] { '{', '}' });
+  }
+
+  private static byte[] encode(Schema schema, GenericRecord record) throws IOException {
+    ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+    buffer.write(AvroMetaStoreEventSerDe.MARKER);
+    buffer.write(ByteBuffer
+        .allocate(8)
+        .order(ByteOrder.LITTLE_ENDIAN)
+        .putLong(SchemaNormalization.parsingFingerprint64(schema))
+        .array());
+    BinaryEncoder encoder = EncoderFactory.get().binaryEncoder(buffer, null);
+    new GenericDatumWriter<GenericRecord>(schema).write(record, encoder);
+    encoder.flush();
+    return buffer.toByteArray();
+  }
+
+}
@@ -0,0 +1,80 @@
+/**
+ * Copyright (C) 2018-2021 Expedia, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.expediagroup.apiary.extensions.events.metastore.io.avro;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import org.apache.avro.Schema;
+import org.apache.avro.SchemaBuilder;
+import org.apache.avro.SchemaNormalization;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+
+@RunWith(MockitoJUnitRunner.class)
+public class CachingSchemaRegistryTest {
+
+  private static final Schema SCHEMA = SchemaBuilder
+      .record("Event")
+      .namespace("test")
+      .fields()
+      .requiredString("name")
+      .endRecord();
+  private static final long FINGERPRINT = SchemaNormalization.parsingFingerprint64(SCHEMA);
+
+  private @Mock SchemaRegistry delegate;
+
+  private CachingSchemaRegistry registry;
+
+  @Before
+  public void init() {
+    registry = new CachingSchemaRegistry(delegate);
+  }
+
+  @Test
+  public void registerOnce() {
+    registry.register(SCHEMA);
+    registry.register(SCHEMA);
+
+    verify(delegate, times(1)).register(SCHEMA);
+    assertThat(registry.lookup(FINGERPRINT)).isSameAs(SCHEMA);
+    verify(delegate, times(0)).lookup(FINGERPRINT);
+  }
+
+  @Test
+  public void lookupIsCached() {
+    when(delegate.lookup(FINGERPRINT)).thenReturn(SCHEMA);
+
+    assertThat(registry.lookup(FINGERPRINT)).isSameAs(SCHEMA);
+    assertThat(registry.lookup(FINGERPRINT)).isSameAs(SCHEMA);
+
+    verify(delegate, times(1)).lookup(FINGERPRINT);
+  }
+
+  @Test
+  public void unknownFingerprintIsNotCached() {
+    assertThat(registry.lookup(FINGERPRINT)).isNull();
+    assertThat(registry.lookup(FINGERPRINT)).isNull();
+
+    verify(delegate, times(2)).lookup(FINGERPRINT);
+  }
+
+}
@@ -0,0 +1,74 @@
+/**
+ * Copyright (C) 2018-2021 Expedia, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.expediagroup.apiary.extensions.events.metastore.io.avro;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.File;
+import java.io.IOException;
+
+import org.apache.avro.Schema;
+import org.apache.avro.SchemaBuilder;
+import org.apache.avro.SchemaNormalization;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class FileSchemaRegistryTest {
+
+  private static final Schema SCHEMA = SchemaBuilder
+      .record("Event")
+      .namespace("test")
+      .fields()
+      .requiredString("name")
+      .endRecord();
+  private static final long FINGERPRINT = SchemaNormalization.parsingFingerprint64(SCHEMA);
+
+  public @Rule TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+  private File directory;
+  private FileSchemaRegistry registry;
+
+  @Before
+  public void init() throws IOException {
+    directory = new File(temporaryFolder.getRoot(), "schemas");
+    registry = new FileSchemaRegistry(directory.toPath());
+  }
+
+  @Test
+  public void registerAndLookup() {
+    registry.register(SCHEMA);
+
+    assertThat(new File(directory, String.format("%016x.avsc", FINGERPRINT))).exists();
+    assertThat(registry.lookup(FINGERPRINT)).isEqualTo(SCHEMA);
+    assertThat(new FileSchemaRegistry(directory.toPath()).lookup(FINGERPRINT)).isEqualTo(SCHEMA);
+  }
+
+  @Test
+  public void registerTwice() {
+    registry.register(SCHEMA);
+    registry.register(SCHEMA);
+
+    assertThat(directory.list()).hasSize(1);
+  }
+
+  @Test
+  public void unknownFingerprint() {
+    assertThat(registry.lookup(FINGERPRINT)).isNull();
+  }
+
+}
@@ -0,0 +1,130 @@
+/**
+ * Copyright (C) 2018-2021 Expedia, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.expediagroup.apiary.extensions.events.metastore.io.jackson;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+
+import org.apache.hadoop.hive.metastore.HiveMetaStore.HMSHandler;
+import org.apache.hadoop.hive.metastore.api.FieldSchema;
+import org.apache.hadoop.hive.metastore.api.Partition;
+import org.apache.hadoop.hive.metastore.api.Table;
+import org.apache.hadoop.hive.metastore.events.AlterPartitionEvent;
+import org.apache.hadoop.hive.metastore.events.AlterTableEvent;
+import org.junit.Test;
+
+import com.google.common.collect.ImmutableMap;
+
+import com.expediagroup.apiary.extensions.events.metastore.event.ApiaryAlterPartitionEvent;
+import com.expediagroup.apiary.extensions.events.metastore.event.ApiaryAlterTableEvent;
+import com.expediagroup.apiary.extensions.events.metastore.event.EventType;
+import com.expediagroup.apiary.extensions.events.metastore.io.SerDeTestUtils;
+
+public class AlterEventDeltaTest {
+
+  private final DeltaJsonMetaStoreEventSerDe serDe = new DeltaJsonMetaStoreEventSerDe();
+
+  @Test
+  public void parameterChangeOfWideTable() {
+    FieldSchema[] columns = new FieldSchema[1000];
+    for (int i = 0; i < columns.length; i++) {
+      columns[i] = new FieldSchema("column_" + i, "string", "comment of column " + i);
+    }
+    Table oldTable = SerDeTestUtils.createTable(columns);
+    Table newTable = SerDeTestUtils.createTable(columns);
+    newTable.setParameters(ImmutableMap.of("table_foo", "table_baz"));
+    ApiaryAlterTableEvent event = new ApiaryAlterTableEvent(
+        new AlterTableEvent(oldTable, newTable, true, mock(HMSHandler.class)));
+
+    byte[] payload = serDe.marshal(event);
+
+    assertThat(new String(payload, UTF_8))
+        .contains("\"oldTableDelta\":{\"parameters\":{\"table_foo\":\"table_bar\"}}")
+        .doesNotContain("\"oldTable\":");
+    assertThat(payload.length).isLessThan(new JsonMetaStoreEventSerDe().marshal(event).length * 2 / 3);
+    assertThat(serDe.<ApiaryAlterTableEvent> unmarshal(payload)).isEqualTo(event);
+  }
+
+  @Test
+  public void partitionValuesChange() {
+    Partition oldPartition = SerDeTestUtils.createPartition("a");
+    Partition newPartition = SerDeTestUtils.createPartition("b");
+    ApiaryAlterPartitionEvent event = new ApiaryAlterPartitionEvent(new AlterPartitionEvent(oldPartition, newPartition,
+        SerDeTestUtils.createTable(), true, mock(HMSHandler.class)));
+
+    byte[] payload = serDe.marshal(event);
+
+    assertThat(new String(payload, UTF_8)).contains("\"oldPartitionDelta\":{\"values\":[\"a\"]}");
+    assertThat(serDe.<ApiaryAlterPartitionEvent> unmarshal(payload)).isEqualTo(event);
+  }
+
+  @Test
+  public void removedField() {
+    Table oldTable = SerDeTestUtils.createTable();
+    Table newTable = SerDeTestUtils.createTable();
+    newTable.unsetPrivileges();
+    ApiaryAlterTableEvent event = new ApiaryAlterTableEvent(
+        new AlterTableEvent(oldTable, newTable, true, mock(HMSHandler.class)));
+
+    assertThat(serDe.<ApiaryAlterTableEvent> unmarshal(serDe.marshal(event))).isEqualTo(event);
+  }
+
+  @Test
+  public void columnChange() {
+    Table oldTable = SerDeTestUtils.createTable(new FieldSchema("column", "string", "comment"));
+    Table newTable = SerDeTestUtils.createTable(new FieldSchema("column", "bigint", "comment"));
+    ApiaryAlterTableEvent event = new ApiaryAlterTableEvent(
+        new AlterTableEvent(oldTable, newTable, true, mock(HMSHandler.class)));
+
+    byte[] payload = serDe.marshal(event);
+
+    assertThat(new String(payload, UTF_8)).contains("\"oldTableDelta\":{\"sd\":{\"cols\":[");
+    assertThat(serDe.<ApiaryAlterTableEvent> unmarshal(payload)).isEqualTo(event);
+  }
+
+  @Test
+  public void addedField() {
+    Table oldTable = SerDeTestUtils.createTable();
+    oldTable.unsetPrivileges();
+    Table newTable = SerDeTestUtils.createTable();
+    ApiaryAlterTableEvent event = new ApiaryAlterTableEvent(
+        new AlterTableEvent(oldTable, newTable, true, mock(HMSHandler.class)));
+
+    byte[] payload = serDe.marshal(event);
+
+    assertThat(new String(payload, UTF_8)).contains("\"oldTableDelta\":{\"privileges\":null}");
+    assertThat(serDe.<ApiaryAlterTableEvent> unmarshal(payload)).isEqualTo(event);
+  }
+
+  @Test
+  public void eventWithoutOldState() {
+    ApiaryAlterTableEvent event = new ApiaryAlterTableEvent(
+        new AlterTableEvent(null, SerDeTestUtils.createTable(), true, mock(HMSHandler.class)));
+
+    byte[] payload = serDe.marshal(event);
+
+    assertThat(new String(payload, UTF_8)).doesNotContain("oldTable");
+    assertThat(serDe.<ApiaryAlterTableEvent> unmarshal(payload)).isEqualTo(event);
+  }
+
+  @Test
+  public void noDeltaForOtherEvents() {
+    assertThat(AlterEventDelta.forEventType(EventType.ON_CREATE_TABLE)).isNull();
+  }
+
+}
@@ -0,0 +1,54 @@
+/**
+ * Copyright (C) 2018-2021 Expedia, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.expediagroup.apiary.extensions.events.metastore.io.jackson;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import org.junit.Test;
+
+import com.expediagroup.apiary.extensions.events.metastore.event.ApiaryListenerEvent;
+import com.expediagroup.apiary.extensions.events.metastore.io.AbstractMetaStoreEventSerDeTest;
+import com.expediagroup.apiary.extensions.events.metastore.io.MetaStoreEventSerDe;
+
+public class DeltaJsonMetaStoreEventSerDeTest extends AbstractMetaStoreEventSerDeTest {
+
+  private final DeltaJsonMetaStoreEventSerDe serDe = new DeltaJsonMetaStoreEventSerDe();
+
+  @Override
+  protected MetaStoreEventSerDe serDe() {
+    return serDe;
+  }
+
+  @Test
+  public void eventTypeIsWrittenFirst() throws Exception {
+    String json = new String(serDe.marshal(event), UTF_8);
+    assertThat(json).startsWith("{\"eventType\":\"" + event.getEventType() + "\",");
+  }
+
+  @Test
+  public void readByJsonMetaStoreEventSerDe() throws Exception {
+    assertThat(new JsonMetaStoreEventSerDe().<ApiaryListenerEvent> unmarshal(serDe.marshal(event))).isEqualTo(event);
+  }
+
+  @Test
+  public void notLargerThanJson() throws Exception {
+    byte[] json = new JsonMetaStoreEventSerDe().marshal(event);
+    assertThat(serDe.marshal(event).length).isLessThanOrEqualTo(json.length);
+  }
+
+}
@@ -0,0 +1,123 @@
+/**
+ * Copyright (C) 2018-2021 Expedia, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.expediagroup.apiary.extensions.events.metastore.io.jackson;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.hadoop.hive.metastore.api.FieldSchema;
+import org.apache.hadoop.hive.metastore.api.Table;
+import org.apache.thrift.TBase;
+import org.apache.thrift.TFieldIdEnum;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.module.SimpleModule;
+import com.fasterxml.jackson.databind.ser.std.StdSerializer;
+
+import com.expediagroup.apiary.extensions.events.metastore.io.SerDeTestUtils;
+
+/**
+ * Compares writing a table with many columns with {@link JacksonThriftSerializer} and with the serializer it replaced,
+ * which looked up the fields of every Thrift object and wrote each of their values through the {@link ObjectMapper}.
+ * <p>
+ * Run from the IDE or with {@code mvn test-compile exec:java -Dexec.classpathScope=test
+ * -Dexec.mainClass=com.expediagroup.apiary.extensions.events.metastore.io.jackson.JacksonThriftSerializerBenchmark}.
+ * </p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class JacksonThriftSerializerBenchmark {
+
+  @Param({ "10", "500" })
+  private int columns;
+
+  private final ObjectMapper cachedFieldWritersMapper = JsonMetaStoreEventSerDe.newObjectMapper();
+  private final ObjectMapper fieldByFieldMapper = newFieldByFieldMapper();
+  private Table table;
+
+  private static ObjectMapper newFieldByFieldMapper() {
+    SimpleModule module = new SimpleModule("FieldByFieldThriftModule");
+    module.addSerializer(new SkewedInfoSerializer());
+    module.addSerializer(new FieldByFieldThriftSerializer());
+    return new ObjectMapper().registerModule(module);
+  }
+
+  @Setup
+  public void setup() {
+    FieldSchema[] moreColumns = new FieldSchema[columns];
+    for (int i = 0; i < columns; i++) {
+      moreColumns[i] = new FieldSchema("column_" + i, "string", "comment of column " + i);
+    }
+    table = SerDeTestUtils.createTable(moreColumns);
+  }
+
+  @Benchmark
+  public byte[] cachedFieldWriters() throws IOException {
+    return cachedFieldWritersMapper.writeValueAsBytes(table);
+  }
+
+  @Benchmark
+  public byte[] fieldByField() throws IOException {
+    return fieldByFieldMapper.writeValueAsBytes(table);
+  }
+
+  /**
+   * The previous implementation of {@link JacksonThriftSerializer}.
+   */
+  @SuppressWarnings("rawtypes")
+  static class FieldByFieldThriftSerializer extends StdSerializer<TBase> {
+    private static final long serialVersionUID = 1L;
+
+    FieldByFieldThriftSerializer() {
+      super(TBase.class);
+    }
+
+    @Override
+    public void serialize(TBase t, JsonGenerator generator, SerializerProvider serializers) throws IOException {
+      TFieldIdEnum[] fields = ThriftSerDeUtils.fields(t.getClass());
+      generator.writeStartObject();
+      for (TFieldIdEnum fieldId : fields) {
+        generator.writeObjectField(fieldId.getFieldName(), t.getFieldValue(fieldId));
+      }
+      generator.writeEndObject();
+    }
+  }
+
+  public static void main(String[] args) throws RunnerException {
+    new Runner(new OptionsBuilder().include(JacksonThriftSerializerBenchmark.class.getSimpleName()).build()).run();
+  }
+
+}
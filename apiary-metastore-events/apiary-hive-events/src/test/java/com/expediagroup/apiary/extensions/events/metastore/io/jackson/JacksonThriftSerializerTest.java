@@ -237,6 +237,24 @@ public class JacksonThriftSerializerTest {
         .build());
   }
 
+  @Test
+  public void skipUnsetOptionalFields() throws Exception {
+    String json = mapper.writeValueAsString(new Partition());
+    assertThat(json).isEqualTo(("{'values':null,'dbName':null,'tableName':null,'createTime':0,'lastAccessTime':0,"
+        + "'sd':null,'parameters':null}").replaceAll("'", "\""));
+  }
+
+  @Test
+  public void serializeClassesAlternately() throws Exception {
+    Table table = SerDeTestUtils.createTable();
+    Partition partition = SerDeTestUtils.createPartition("a");
+    String tableJson = mapper.writeValueAsString(table);
+    String partitionJson = mapper.writeValueAsString(partition);
+
+    assertThat(mapper.writeValueAsString(partition)).isEqualTo(partitionJson);
+    assertThat(mapper.writeValueAsString(table)).isEqualTo(tableJson);
+  }
+
   @Test
   public void serializeEnvironmentContext() throws Exception {
     EnvironmentContext context = SerDeTestUtils.createEnvironmentContext();
@@ -0,0 +1,141 @@
+/**
+ * Copyright (C) 2018-2021 Expedia, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.expediagroup.apiary.extensions.events.metastore.io.jackson;
+
+import static org.mockito.Mockito.mock;
+
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.hadoop.hive.metastore.HiveMetaStore.HMSHandler;
+import org.apache.hadoop.hive.metastore.api.FieldSchema;
+import org.apache.hadoop.hive.metastore.api.Table;
+import org.apache.hadoop.hive.metastore.events.AlterTableEvent;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import com.expediagroup.apiary.extensions.events.metastore.event.ApiaryAlterTableEvent;
+import com.expediagroup.apiary.extensions.events.metastore.event.ApiaryListenerEvent;
+import com.expediagroup.apiary.extensions.events.metastore.event.EventType;
+import com.expediagroup.apiary.extensions.events.metastore.io.SerDeTestUtils;
+
+/**
+ * Compares decoding an ALTER_TABLE event of a table with many columns the way {@link JsonMetaStoreEventSerDe} used to,
+ * reading the payload once to find the event type and again into the event class, with the single pass of
+ * {@link PolymorphicEventReader}. {@code typeFirst} is {@code false} for payloads written before the type was moved to
+ * the front, the properties preceding the type are then buffered and replayed.
+ * <p>
+ * Run from the IDE or with {@code mvn test-compile exec:java -Dexec.classpathScope=test
+ * -Dexec.mainClass=com.expediagroup.apiary.extensions.events.metastore.io.jackson.JsonEventDecodingBenchmark}.
+ * </p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class JsonEventDecodingBenchmark {
+
+  @Param({ "10", "500" })
+  private int columns;
+
+  @Param({ "true", "false" })
+  private boolean typeFirst;
+
+  private final JsonMetaStoreEventSerDe serDe = new JsonMetaStoreEventSerDe();
+  private final ObjectMapper mapper = JsonMetaStoreEventSerDe.newObjectMapper();
+  private byte[] payload;
+
+  @Setup
+  public void setup() throws IOException {
+    FieldSchema[] moreColumns = new FieldSchema[columns];
+    for (int i = 0; i < columns; i++) {
+      moreColumns[i] = new FieldSchema("column_" + i, "string", "comment of column " + i);
+    }
+    Table oldTable = SerDeTestUtils.createTable(moreColumns);
+    Table newTable = SerDeTestUtils.createTable(moreColumns);
+    newTable.setLastAccessTime(newTable.getLastAccessTime() + 1);
+    AlterTableEvent event = new AlterTableEvent(oldTable, newTable, true, mock(HMSHandler.class));
+    payload = serDe.marshal(new ApiaryAlterTableEvent(event));
+    if (!typeFirst) {
+      Map<String, Object> json = mapper.readValue(payload, new TypeReference<LinkedHashMap<String, Object>>() {});
+      json.put(PolymorphicEventReader.EVENT_TYPE, json.remove(PolymorphicEventReader.EVENT_TYPE));
+      payload = mapper.writeValueAsBytes(json);
+    }
+  }
+
+  @Benchmark
+  public ApiaryListenerEvent twoPasses() throws IOException {
+    EventType eventType = mapper.readerFor(EventTypeOnly.class).<EventTypeOnly> readValue(payload).getEventType();
+    return mapper.readerFor(eventType.eventClass()).readValue(payload);
+  }
+
+  @Benchmark
+  public ApiaryListenerEvent singlePass() {
+    return serDe.unmarshal(payload);
+  }
+
+  /**
+   * The event read by the first pass of {@link #twoPasses()}, all its other properties are skipped.
+   */
+  static class EventTypeOnly extends ApiaryListenerEvent {
+    private static final long serialVersionUID = 1L;
+
+    private EventType eventType;
+
+    @Override
+    public EventType getEventType() {
+      return eventType;
+    }
+
+    public void setEventType(EventType eventType) {
+      this.eventType = eventType;
+    }
+
+    @Override
+    public String getDatabaseName() {
+      return null;
+    }
+
+    @Override
+    public String getTableName() {
+      return null;
+    }
+  }
+
+  public static void main(String[] args) throws RunnerException {
+    new Runner(new OptionsBuilder().include(JsonEventDecodingBenchmark.class.getSimpleName()).build()).run();
+  }
+
+}
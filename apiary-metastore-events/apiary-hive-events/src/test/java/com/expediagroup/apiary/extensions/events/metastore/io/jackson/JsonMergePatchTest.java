@@ -0,0 +1,86 @@
+/**
+ * Copyright (C) 2018-2021 Expedia, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.expediagroup.apiary.extensions.events.metastore.io.jackson;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.IOException;
+
+import org.junit.Test;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+public class JsonMergePatchTest {
+
+  private final ObjectMapper mapper = new ObjectMapper();
+
+  @Test
+  public void changedProperty() throws IOException {
+    assertDiff("{'a':'b','c':{'d':'e','f':'g'}}", "{'a':'z','c':{'d':'e','f':'g'}}", "{'a':'z'}");
+  }
+
+  @Test
+  public void nestedChange() throws IOException {
+    assertDiff("{'a':'b','c':{'d':'e','f':'g'}}", "{'a':'b','c':{'d':'e','f':'h'}}", "{'c':{'f':'h'}}");
+  }
+
+  @Test
+  public void removedProperty() throws IOException {
+    assertDiff("{'a':'b','c':{'d':'e','f':'g'}}", "{'a':'b','c':{'d':'e'}}", "{'c':{'f':null}}");
+  }
+
+  @Test
+  public void addedProperty() throws IOException {
+    assertDiff("{'a':'b'}", "{'a':'b','c':{'d':'e'}}", "{'c':{'d':'e'}}");
+  }
+
+  @Test
+  public void arraysAreReplaced() throws IOException {
+    assertDiff("{'a':[1,2,3]}", "{'a':[1,2]}", "{'a':[1,2]}");
+  }
+
+  @Test
+  public void sameObjects() throws IOException {
+    assertDiff("{'a':[1,2,3],'b':{'c':null}}", "{'a':[1,2,3],'b':{'c':null}}", "{}");
+  }
+
+  @Test
+  public void nullValuesAreRemoved() throws IOException {
+    JsonNode source = json("{'a':'b'}");
+    JsonNode patch = JsonMergePatch.diff(source, json("{'a':null,'c':{'d':null}}"));
+
+    assertThat(JsonMergePatch.apply(source, patch)).isEqualTo(json("{'c':{}}"));
+  }
+
+  @Test
+  public void applyToNonObject() throws IOException {
+    assertThat(JsonMergePatch.apply(json("['a','b']"), json("{'a':'c'}"))).isEqualTo(json("{'a':'c'}"));
+    assertThat(JsonMergePatch.apply(json("{'a':'b'}"), json("['c']"))).isEqualTo(json("['c']"));
+  }
+
+  private void assertDiff(String source, String target, String expectedPatch) throws IOException {
+    JsonNode patch = JsonMergePatch.diff(json(source), json(target));
+
+    assertThat(patch).isEqualTo(json(expectedPatch));
+    assertThat(JsonMergePatch.apply(json(source), patch)).isEqualTo(json(target));
+  }
+
+  private JsonNode json(String json) throws IOException {
+    return mapper.readTree(json.replaceAll("'", "\""));
+  }
+
+}
@@ -15,6 +15,12 @@
  */
 package com.expediagroup.apiary.extensions.events.metastore.io.jackson;
 
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import org.junit.Test;
+
 import com.expediagroup.apiary.extensions.events.metastore.io.AbstractMetaStoreEventSerDeTest;
 import com.expediagroup.apiary.extensions.events.metastore.io.MetaStoreEventSerDe;
 
@@ -27,4 +33,10 @@ public class JsonMetaStoreEventSerDeTest extends AbstractMetaStoreEventSerDeTest
     return serDe;
   }
 
+  @Test
+  public void eventTypeIsWrittenFirst() throws Exception {
+    String json = new String(serDe.marshal(event), UTF_8);
+    assertThat(json).startsWith("{\"eventType\":\"" + event.getEventType() + "\",");
+  }
+
 }
@@ -0,0 +1,55 @@
+/**
+ * Copyright (C) 2018-2021 Expedia, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.expediagroup.apiary.extensions.events.metastore.io.jackson;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import static com.expediagroup.apiary.extensions.events.metastore.io.SerDeTestUtils.createPartition;
+import static com.expediagroup.apiary.extensions.events.metastore.io.SerDeTestUtils.createTable;
+
+import java.nio.charset.StandardCharsets;
+
+import org.junit.Test;
+
+import com.expediagroup.apiary.extensions.events.metastore.event.TableSnapshot;
+import com.expediagroup.apiary.extensions.events.metastore.io.SerDeException;
+
+public class JsonTableSnapshotSerDeTest {
+
+  private final JsonTableSnapshotSerDe serDe = new JsonTableSnapshotSerDe();
+
+  @Test
+  public void tableSnapshot() {
+    TableSnapshot snapshot = new TableSnapshot(createTable());
+    TableSnapshot result = serDe.unmarshal(serDe.marshal(snapshot));
+    assertThat(result).isEqualTo(snapshot);
+    assertThat(result.getPartition()).isNull();
+  }
+
+  @Test
+  public void partitionSnapshot() {
+    TableSnapshot snapshot = new TableSnapshot(createTable(), createPartition("a"));
+    TableSnapshot result = serDe.unmarshal(serDe.marshal(snapshot));
+    assertThat(result).isEqualTo(snapshot);
+    assertThat(result.getPartition().getValues()).containsExactly("a");
+  }
+
+  @Test(expected = SerDeException.class)
+  public void invalidPayload() {
+    serDe.unmarshal("not json".getBytes(StandardCharsets.UTF_8));
+  }
+
+}
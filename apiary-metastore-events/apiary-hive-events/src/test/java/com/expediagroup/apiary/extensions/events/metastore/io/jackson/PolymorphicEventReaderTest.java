@@ -0,0 +1,83 @@
+/**
+ * Copyright (C) 2018-2021 Expedia, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.expediagroup.apiary.extensions.events.metastore.io.jackson;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.entry;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.databind.JsonMappingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+
+public class PolymorphicEventReaderTest {
+
+  private final ObjectMapper mapper = new ObjectMapper();
+  private final List<String> types = new ArrayList<>();
+
+  @Test
+  public void typeFirst() throws IOException {
+    Map<String, Object> event = read("{\"eventType\":\"A\",\"name\":\"a\",\"values\":[1,2]}");
+
+    assertThat(types).containsExactly("A");
+    assertThat(event)
+        .containsExactly(entry("eventType", "A"), entry("name", "a"), entry("values", Arrays.asList(1, 2)));
+  }
+
+  @Test
+  public void typeAfterOtherProperties() throws IOException {
+    Map<String, Object> event = read(
+        "{\"name\":\"b\",\"nested\":{\"list\":[{\"x\":1.5}],\"flag\":true},\"eventType\":\"B\",\"last\":null}");
+
+    Map<String, Object> nested = new LinkedHashMap<>();
+    nested.put("list", Collections.singletonList(Collections.singletonMap("x", 1.5)));
+    nested.put("flag", true);
+    assertThat(types).containsExactly("B");
+    assertThat(event)
+        .containsExactly(entry("name", "b"), entry("nested", nested), entry("eventType", "B"), entry("last", null));
+  }
+
+  @Test(expected = JsonMappingException.class)
+  public void missingType() throws IOException {
+    read("{\"name\":\"c\"}");
+  }
+
+  @Test(expected = JsonMappingException.class)
+  public void notAnObject() throws IOException {
+    read("[\"eventType\"]");
+  }
+
+  private Map<String, Object> read(String json) throws IOException {
+    ObjectReader reader = mapper.readerFor(Map.class);
+    try (JsonParser parser = mapper.getFactory().createParser(json)) {
+      return PolymorphicEventReader.read(parser, type -> {
+        types.add(type);
+        return reader;
+      });
+    }
+  }
+
+}
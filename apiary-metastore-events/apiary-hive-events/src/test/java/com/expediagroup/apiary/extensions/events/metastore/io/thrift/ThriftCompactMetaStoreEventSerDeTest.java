@@ -0,0 +1,90 @@
+/**
+ * Copyright (C) 2018-2021 Expedia, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.expediagroup.apiary.extensions.events.metastore.io.thrift;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+
+import org.apache.hadoop.hive.metastore.HiveMetaStore.HMSHandler;
+import org.apache.hadoop.hive.metastore.api.Table;
+import org.apache.hadoop.hive.metastore.events.CreateTableEvent;
+import org.junit.Test;
+
+import com.google.common.base.Strings;
+import com.google.common.collect.ImmutableMap;
+
+import com.expediagroup.apiary.extensions.events.metastore.event.ApiaryCreateTableEvent;
+
+import com.expediagroup.apiary.extensions.events.metastore.io.AbstractMetaStoreEventSerDeTest;
+import com.expediagroup.apiary.extensions.events.metastore.io.MetaStoreEventSerDe;
+import com.expediagroup.apiary.extensions.events.metastore.io.SerDeException;
+import com.expediagroup.apiary.extensions.events.metastore.io.SerDeTestUtils;
+import com.expediagroup.apiary.extensions.events.metastore.io.jackson.JsonMetaStoreEventSerDe;
+
+public class ThriftCompactMetaStoreEventSerDeTest extends AbstractMetaStoreEventSerDeTest {
+
+  private final ThriftCompactMetaStoreEventSerDe serDe = new ThriftCompactMetaStoreEventSerDe();
+
+  @Override
+  protected MetaStoreEventSerDe serDe() {
+    return serDe;
+  }
+
+  @Test
+  public void smallerThanJson() {
+    byte[] json = new JsonMetaStoreEventSerDe().marshal(event);
+    assertThat(serDe.marshal(event).length).isLessThan(json.length);
+  }
+
+  @Test
+  public void nonAsciiAndLongStrings() {
+    Table table = SerDeTestUtils.createTable();
+    table.setParameters(ImmutableMap.of("comment", "Größe in €, 大小", "long", Strings.repeat("x", 1000)));
+    ApiaryCreateTableEvent tableEvent = new ApiaryCreateTableEvent(
+        new CreateTableEvent(table, true, mock(HMSHandler.class)));
+    assertThat(serDe.<ApiaryCreateTableEvent> unmarshal(serDe.marshal(tableEvent))).isEqualTo(tableEvent);
+  }
+
+  @Test
+  public void successiveEvents() {
+    byte[] payload = serDe.marshal(event);
+    ApiaryCreateTableEvent otherEvent = new ApiaryCreateTableEvent(
+        new CreateTableEvent(SerDeTestUtils.createTable(), true, mock(HMSHandler.class)));
+    serDe.marshal(otherEvent);
+    assertThat(serDe.marshal(event)).isEqualTo(payload);
+  }
+
+  @Test(expected = SerDeException.class)
+  public void unsupportedFormatVersion() {
+    byte[] payload = serDe.marshal(event);
+    payload[0] = ThriftCompactMetaStoreEventSerDe.FORMAT_VERSION + 1;
+    serDe.unmarshal(payload);
+  }
+
+  @Test(expected = SerDeException.class)
+  public void truncatedPayload() {
+    byte[] payload = serDe.marshal(event);
+    byte[] truncated = new byte[payload.length / 2];
+    System.arraycopy(payload, 0, truncated, 0, truncated.length);
+    serDe.unmarshal(truncated);
+  }
+
+  @Test(expected = SerDeException.class)
+  public void jsonPayload() {
+    serDe.unmarshal(new JsonMetaStoreEventSerDe().marshal(event));
+  }
+
+}
@@ -15,13 +15,24 @@
  */
 package com.expediagroup.apiary.extensions.events.metastore.kafka.listener;
 
+import static com.expediagroup.apiary.extensions.events.metastore.common.PropertyUtils.booleanProperty;
 import static com.expediagroup.apiary.extensions.events.metastore.common.PropertyUtils.stringProperty;
 import static com.expediagroup.apiary.extensions.events.metastore.io.MetaStoreEventSerDe.serDeForClassName;
 import static com.expediagroup.apiary.extensions.events.metastore.kafka.listener.ListenerUtils.error;
+import static com.expediagroup.apiary.extensions.events.metastore.kafka.messaging.KafkaProducerProperty.AVRO_SCHEMA_REGISTRY_DIRECTORY;
 import static com.expediagroup.apiary.extensions.events.metastore.kafka.messaging.KafkaProducerProperty.SERDE_CLASS;
+import static com.expediagroup.apiary.extensions.events.metastore.kafka.messaging.KafkaProducerProperty.SNAPSHOT_PARTITIONS;
+import static com.expediagroup.apiary.extensions.events.metastore.kafka.messaging.KafkaProducerProperty.SNAPSHOT_TOPIC_NAME;
+
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
 
 import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.hive.metastore.HiveMetaStore.HMSHandler;
 import org.apache.hadoop.hive.metastore.MetaStoreEventListener;
+import org.apache.hadoop.hive.metastore.api.Partition;
 import org.apache.hadoop.hive.metastore.events.AddIndexEvent;
 import org.apache.hadoop.hive.metastore.events.AddPartitionEvent;
 import org.apache.hadoop.hive.metastore.events.AlterIndexEvent;
@@ -43,11 +54,20 @@ import org.slf4j.LoggerFactory;
 
 import com.google.common.annotations.VisibleForTesting;
 
+import com.expediagroup.apiary.extensions.events.metastore.event.ApiaryAddPartitionEvent;
+import com.expediagroup.apiary.extensions.events.metastore.event.ApiaryAlterPartitionEvent;
+import com.expediagroup.apiary.extensions.events.metastore.event.ApiaryDropPartitionEvent;
+import com.expediagroup.apiary.extensions.events.metastore.event.ApiaryInsertEvent;
 import com.expediagroup.apiary.extensions.events.metastore.event.ApiaryListenerEvent;
 import com.expediagroup.apiary.extensions.events.metastore.event.ApiaryListenerEventFactory;
 import com.expediagroup.apiary.extensions.events.metastore.io.MetaStoreEventSerDe;
+import com.expediagroup.apiary.extensions.events.metastore.io.avro.AvroMetaStoreEventSerDe;
+import com.expediagroup.apiary.extensions.events.metastore.io.avro.CachingSchemaRegistry;
+import com.expediagroup.apiary.extensions.events.metastore.io.avro.FileSchemaRegistry;
+import com.expediagroup.apiary.extensions.events.metastore.io.jackson.JsonTableSnapshotSerDe;
 import com.expediagroup.apiary.extensions.events.metastore.kafka.messaging.KafkaMessage;
 import com.expediagroup.apiary.extensions.events.metastore.kafka.messaging.KafkaMessageSender;
+import com.expediagroup.apiary.extensions.events.metastore.kafka.messaging.KafkaSnapshotSender;
 
 public class KafkaMetaStoreEventListener extends MetaStoreEventListener {
   private static final Logger log = LoggerFactory.getLogger(KafkaMetaStoreEventListener.class);
@@ -55,10 +75,15 @@ public class KafkaMetaStoreEventListener extends MetaStoreEventListener {
   private final MetaStoreEventSerDe eventSerDe;
   private final KafkaMessageSender kafkaMessageSender;
   private final ApiaryListenerEventFactory apiaryListenerEventFactory;
+  private final TableSnapshotPublisher tableSnapshotPublisher;
 
   public KafkaMetaStoreEventListener(Configuration config) {
-    this(config, new ApiaryListenerEventFactory(), serDeForClassName(stringProperty(config, SERDE_CLASS)),
-      new KafkaMessageSender(config));
+    this(config, new KafkaMessageSender(config));
+  }
+
+  private KafkaMetaStoreEventListener(Configuration config, KafkaMessageSender kafkaMessageSender) {
+    this(config, new ApiaryListenerEventFactory(), eventSerDe(config), kafkaMessageSender,
+      tableSnapshotPublisher(config, kafkaMessageSender));
   }
 
   @VisibleForTesting
@@ -67,10 +92,70 @@ public class KafkaMetaStoreEventListener extends MetaStoreEventListener {
       ApiaryListenerEventFactory apiaryListenerEventFactory,
       MetaStoreEventSerDe eventSerDe,
       KafkaMessageSender kafkaMessageSender) {
+    this(config, apiaryListenerEventFactory, eventSerDe, kafkaMessageSender, null);
+  }
+
+  @VisibleForTesting
+  KafkaMetaStoreEventListener(
+      Configuration config,
+      ApiaryListenerEventFactory apiaryListenerEventFactory,
+      MetaStoreEventSerDe eventSerDe,
+      KafkaMessageSender kafkaMessageSender,
+      TableSnapshotPublisher tableSnapshotPublisher) {
     super(config);
     this.eventSerDe = eventSerDe;
     this.apiaryListenerEventFactory = apiaryListenerEventFactory;
     this.kafkaMessageSender = kafkaMessageSender;
+    this.tableSnapshotPublisher = tableSnapshotPublisher;
+  }
+
+  /**
+   * @return The SerDe of {@code serde.class}. An Avro SerDe registers its schemas in the schema registry directory, if
+   *         one is configured, so consumers running another version can resolve them.
+   */
+  @VisibleForTesting
+  static MetaStoreEventSerDe eventSerDe(Configuration config) {
+    MetaStoreEventSerDe eventSerDe = serDeForClassName(stringProperty(config, SERDE_CLASS));
+    String schemaRegistryDirectory = stringProperty(config, AVRO_SCHEMA_REGISTRY_DIRECTORY);
+    if (schemaRegistryDirectory != null && eventSerDe instanceof AvroMetaStoreEventSerDe) {
+      return new AvroMetaStoreEventSerDe(
+          new CachingSchemaRegistry(new FileSchemaRegistry(Paths.get(schemaRegistryDirectory))));
+    }
+    return eventSerDe;
+  }
+
+  /**
+   * @return The publisher of table snapshots, or {@code null} if no snapshot topic is configured.
+   */
+  private static TableSnapshotPublisher tableSnapshotPublisher(
+      Configuration config,
+      KafkaMessageSender kafkaMessageSender) {
+    if (stringProperty(config, SNAPSHOT_TOPIC_NAME) == null) {
+      return null;
+    }
+    return new TableSnapshotPublisher(new KafkaSnapshotSender(config, kafkaMessageSender), new JsonTableSnapshotSerDe(),
+        booleanProperty(config, SNAPSHOT_PARTITIONS));
+  }
+
+  private void send(ApiaryListenerEvent event) {
+    send(event, null);
+  }
+
+  /**
+   * @param handler To list the partitions of a renamed table for its snapshots, or {@code null}.
+   */
+  private void send(ApiaryListenerEvent event, HMSHandler handler) {
+    KafkaMessage message = withPayload(event);
+    if (tableSnapshotPublisher == null) {
+      kafkaMessageSender.send(message);
+      return;
+    }
+    // the event and its snapshots are only committed together when a transactional.id is set, otherwise they are
+    // sent independently and a consumer can see one without the other
+    kafkaMessageSender.inTransaction(() -> {
+      kafkaMessageSender.send(message);
+      tableSnapshotPublisher.publish(event, handler);
+    });
   }
 
   private KafkaMessage withPayload(ApiaryListenerEvent event) {
@@ -79,14 +164,43 @@ public class KafkaMetaStoreEventListener extends MetaStoreEventListener {
       .database(event.getDatabaseName())
       .table(event.getTableName())
       .payload(eventSerDe.marshal(event))
+      .eventType(event.getEventType())
+      .partitionValues(partitionValues(event))
       .build();
   }
 
+  /**
+   * @return The values of the partition the event is about, or {@code null} if it is not about a single partition.
+   */
+  private static List<String> partitionValues(ApiaryListenerEvent event) {
+    if (event instanceof ApiaryAddPartitionEvent) {
+      return singlePartitionValues(((ApiaryAddPartitionEvent) event).getPartitions());
+    }
+    if (event instanceof ApiaryDropPartitionEvent) {
+      return singlePartitionValues(((ApiaryDropPartitionEvent) event).getPartitions());
+    }
+    if (event instanceof ApiaryAlterPartitionEvent) {
+      Partition partition = ((ApiaryAlterPartitionEvent) event).getNewPartition();
+      return partition == null ? null : partition.getValues();
+    }
+    if (event instanceof ApiaryInsertEvent) {
+      // Hive keeps the values in the order of the partition keys
+      Map<String, String> partitionKeyValues = ((ApiaryInsertEvent) event).getPartitionKeyValues();
+      return partitionKeyValues == null || partitionKeyValues.isEmpty() ? null
+          : new ArrayList<>(partitionKeyValues.values());
+    }
+    return null;
+  }
+
+  private static List<String> singlePartitionValues(List<Partition> partitions) {
+    return partitions != null && partitions.size() == 1 ? partitions.get(0).getValues() : null;
+  }
+
   @Override
   public void onCreateTable(CreateTableEvent tableEvent) {
     log.debug("Create table event received");
     try {
-      kafkaMessageSender.send(withPayload(apiaryListenerEventFactory.create(tableEvent)));
+      send(apiaryListenerEventFactory.create(tableEvent));
     } catch (Exception e) {
       error(e);
     }
@@ -96,7 +210,7 @@ public class KafkaMetaStoreEventListener extends MetaStoreEventListener {
   public void onDropTable(DropTableEvent tableEvent) {
     log.debug("Drop table event received");
     try {
-      kafkaMessageSender.send(withPayload(apiaryListenerEventFactory.create(tableEvent)));
+      send(apiaryListenerEventFactory.create(tableEvent));
     } catch (Exception e) {
       error(e);
     }
@@ -106,7 +220,7 @@ public class KafkaMetaStoreEventListener extends MetaStoreEventListener {
   public void onAlterTable(AlterTableEvent tableEvent) {
     log.debug("Alter table event received");
     try {
-      kafkaMessageSender.send(withPayload(apiaryListenerEventFactory.create(tableEvent)));
+      send(apiaryListenerEventFactory.create(tableEvent), tableEvent.getHandler());
     } catch (Exception e) {
       error(e);
     }
@@ -116,7 +230,7 @@ public class KafkaMetaStoreEventListener extends MetaStoreEventListener {
   public void onAddPartition(AddPartitionEvent partitionEvent) {
     log.debug("Add partition event received");
     try {
-      kafkaMessageSender.send(withPayload(apiaryListenerEventFactory.create(partitionEvent)));
+      send(apiaryListenerEventFactory.create(partitionEvent));
     } catch (Exception e) {
       error(e);
     }
@@ -126,7 +240,7 @@ public class KafkaMetaStoreEventListener extends MetaStoreEventListener {
   public void onDropPartition(DropPartitionEvent partitionEvent) {
     log.debug("Drop partition event received");
     try {
-      kafkaMessageSender.send(withPayload(apiaryListenerEventFactory.create(partitionEvent)));
+      send(apiaryListenerEventFactory.create(partitionEvent));
     } catch (Exception e) {
       error(e);
     }
@@ -136,7 +250,7 @@ public class KafkaMetaStoreEventListener extends MetaStoreEventListener {
   public void onAlterPartition(AlterPartitionEvent partitionEvent) {
     log.debug("Alter partition event received");
     try {
-      kafkaMessageSender.send(withPayload(apiaryListenerEventFactory.create(partitionEvent)));
+      send(apiaryListenerEventFactory.create(partitionEvent));
     } catch (Exception e) {
       error(e);
     }
@@ -146,7 +260,7 @@ public class KafkaMetaStoreEventListener extends MetaStoreEventListener {
   public void onInsert(InsertEvent insertEvent) {
     log.debug("Insert event received");
     try {
-      kafkaMessageSender.send(withPayload(apiaryListenerEventFactory.create(insertEvent)));
+      send(apiaryListenerEventFactory.create(insertEvent));
     } catch (Exception e) {
       error(e);
     }
@@ -0,0 +1,172 @@
+/**
+ * Copyright (C) 2018-2021 Expedia, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.expediagroup.apiary.extensions.events.metastore.kafka.listener;
+
+import java.util.List;
+
+import org.apache.hadoop.hive.metastore.HiveMetaStore.HMSHandler;
+import org.apache.hadoop.hive.metastore.Warehouse;
+import org.apache.hadoop.hive.metastore.api.MetaException;
+import org.apache.hadoop.hive.metastore.api.Partition;
+import org.apache.hadoop.hive.metastore.api.Table;
+import org.apache.thrift.TException;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.collect.Lists;
+
+import com.expediagroup.apiary.extensions.events.metastore.common.MetaStoreEventsException;
+import com.expediagroup.apiary.extensions.events.metastore.event.ApiaryAddPartitionEvent;
+import com.expediagroup.apiary.extensions.events.metastore.event.ApiaryAlterPartitionEvent;
+import com.expediagroup.apiary.extensions.events.metastore.event.ApiaryAlterTableEvent;
+import com.expediagroup.apiary.extensions.events.metastore.event.ApiaryCreateTableEvent;
+import com.expediagroup.apiary.extensions.events.metastore.event.ApiaryDropPartitionEvent;
+import com.expediagroup.apiary.extensions.events.metastore.event.ApiaryDropTableEvent;
+import com.expediagroup.apiary.extensions.events.metastore.event.ApiaryListenerEvent;
+import com.expediagroup.apiary.extensions.events.metastore.event.TableSnapshot;
+import com.expediagroup.apiary.extensions.events.metastore.io.jackson.JsonTableSnapshotSerDe;
+import com.expediagroup.apiary.extensions.events.metastore.kafka.messaging.KafkaSnapshotSender;
+
+/**
+ * Publishes the state of the tables, and optionally of their partitions, after each successful change. Tables are
+ * keyed by {@code <database>.<table>} and partitions by {@code <database>.<table>/<partition name>}, drops and renames
+ * publish a tombstone for the previous key.
+ * <p>
+ * Renaming a table lists its partitions with the metastore handler of the event, {@value #PARTITION_BATCH_SIZE} at a
+ * time, publishes them under the new name and tombstones their previous keys. Dropping a table does not publish tombstones for its partitions as they are gone
+ * from the metastore by then: readers should ignore the partitions of tables they have no snapshot for, or whose table
+ * was created at another time than the table of their snapshot.
+ * </p>
+ */
+class TableSnapshotPublisher {
+
+  @VisibleForTesting
+  static final int PARTITION_BATCH_SIZE = 1000;
+
+  private final KafkaSnapshotSender sender;
+  private final JsonTableSnapshotSerDe serDe;
+  private final boolean publishPartitions;
+
+  TableSnapshotPublisher(KafkaSnapshotSender sender, JsonTableSnapshotSerDe serDe, boolean publishPartitions) {
+    this.sender = sender;
+    this.serDe = serDe;
+    this.publishPartitions = publishPartitions;
+  }
+
+  void publish(ApiaryListenerEvent event) {
+    publish(event, null);
+  }
+
+  /**
+   * @param handler To list the partitions of a renamed table, partitions are not moved if {@code null}.
+   */
+  void publish(ApiaryListenerEvent event, HMSHandler handler) {
+    if (!event.getStatus()) {
+      // the change has not been committed
+      return;
+    }
+    switch (event.getEventType()) {
+    case ON_CREATE_TABLE:
+      publish(((ApiaryCreateTableEvent) event).getTable());
+      break;
+    case ON_ALTER_TABLE:
+      ApiaryAlterTableEvent alterTableEvent = (ApiaryAlterTableEvent) event;
+      String oldKey = tableKey(alterTableEvent.getOldTable());
+      if (!oldKey.equals(tableKey(alterTableEvent.getNewTable()))) {
+        sender.send(oldKey, null);
+        if (publishPartitions && handler != null) {
+          movePartitions(alterTableEvent.getOldTable(), alterTableEvent.getNewTable(), handler);
+        }
+      }
+      publish(alterTableEvent.getNewTable());
+      break;
+    case ON_DROP_TABLE:
+      sender.send(tableKey(((ApiaryDropTableEvent) event).getTable()), null);
+      break;
+    case ON_ADD_PARTITION:
+      if (publishPartitions) {
+        ApiaryAddPartitionEvent addPartitionEvent = (ApiaryAddPartitionEvent) event;
+        publish(addPartitionEvent.getTable(), addPartitionEvent.getPartitions());
+      }
+      break;
+    case ON_ALTER_PARTITION:
+      if (publishPartitions) {
+        ApiaryAlterPartitionEvent alterPartitionEvent = (ApiaryAlterPartitionEvent) event;
+        Table table = alterPartitionEvent.getTable();
+        String oldPartitionKey = partitionKey(table, alterPartitionEvent.getOldPartition());
+        if (!oldPartitionKey.equals(partitionKey(table, alterPartitionEvent.getNewPartition()))) {
+          sender.send(oldPartitionKey, null);
+        }
+        publish(table, alterPartitionEvent.getNewPartition());
+      }
+      break;
+    case ON_DROP_PARTITION:
+      if (publishPartitions) {
+        ApiaryDropPartitionEvent dropPartitionEvent = (ApiaryDropPartitionEvent) event;
+        for (Partition partition : dropPartitionEvent.getPartitions()) {
+          sender.send(partitionKey(dropPartitionEvent.getTable(), partition), null);
+        }
+      }
+      break;
+    default:
+      // inserts do not change the metadata
+      break;
+    }
+  }
+
+  private void movePartitions(Table oldTable, Table newTable, HMSHandler handler) {
+    String database = newTable.getDbName();
+    String tableName = newTable.getTableName();
+    try {
+      // only the names of all the partitions are held at once, their objects are fetched a batch at a time
+      List<String> names = handler.get_partition_names(database, tableName, (short) -1);
+      for (List<String> batch : Lists.partition(names, PARTITION_BATCH_SIZE)) {
+        for (Partition partition : handler.get_partitions_by_names(database, tableName, batch)) {
+          sender.send(partitionKey(oldTable, partition), null);
+          publish(newTable, partition);
+        }
+      }
+    } catch (TException e) {
+      throw new MetaStoreEventsException("Unable to list the partitions of renamed table " + tableKey(newTable), e);
+    }
+  }
+
+  private void publish(Table table) {
+    sender.send(tableKey(table), serDe.marshal(new TableSnapshot(table)));
+  }
+
+  private void publish(Table table, List<Partition> partitions) {
+    for (Partition partition : partitions) {
+      publish(table, partition);
+    }
+  }
+
+  private void publish(Table table, Partition partition) {
+    sender.send(partitionKey(table, partition), serDe.marshal(new TableSnapshot(table, partition)));
+  }
+
+  static String tableKey(Table table) {
+    return table.getDbName() + "." + table.getTableName();
+  }
+
+  static String partitionKey(Table table, Partition partition) {
+    try {
+      return tableKey(table) + "/" + Warehouse.makePartName(table.getPartitionKeys(), partition.getValues());
+    } catch (MetaException e) {
+      throw new MetaStoreEventsException("Unable to build the name of a partition of table " + tableKey(table), e);
+    }
+  }
+
+}
@@ -0,0 +1,33 @@
+/**
+ * Copyright (C) 2018-2021 Expedia, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.expediagroup.apiary.extensions.events.metastore.kafka.messaging;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import org.apache.kafka.common.utils.Utils;
+
+/**
+ * Sends all the events of a database to the same partition so consumers see the events of all the tables of a
+ * database in order, at the cost of larger partitions for the busiest databases.
+ */
+public class DatabasePartitioner implements KafkaPartitioner {
+
+  @Override
+  public int partition(KafkaMessage message, int numberOfPartitions) {
+    return Utils.toPositive(Utils.murmur2(message.getDatabase().getBytes(UTF_8))) % numberOfPartitions;
+  }
+
+}
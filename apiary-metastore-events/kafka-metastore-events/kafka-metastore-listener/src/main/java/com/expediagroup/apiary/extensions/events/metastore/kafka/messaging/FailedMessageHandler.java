@@ -0,0 +1,26 @@
+/**
+ * Copyright (C) 2018-2021 Expedia, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.expediagroup.apiary.extensions.events.metastore.kafka.messaging;
+
+/**
+ * Decides what happens to a message the Kafka producer failed to deliver, once the producer's own retries are
+ * exhausted. Handlers are called from the producer I/O thread and must not block.
+ */
+public interface FailedMessageHandler {
+
+  void handle(KafkaMessage message, Exception exception, KafkaMessageSender sender);
+
+}
@@ -0,0 +1,91 @@
+/**
+ * Copyright (C) 2018-2021 Expedia, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.expediagroup.apiary.extensions.events.metastore.kafka.messaging;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.util.Collection;
+import java.util.EnumSet;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+import org.apache.kafka.common.utils.Utils;
+
+import com.expediagroup.apiary.extensions.events.metastore.event.EventType;
+
+/**
+ * Spreads the INSERT and ADD_PARTITION events of designated hot tables over several partitions according to their
+ * partition values, other events are partitioned by the delegate.
+ * <p>
+ * The events of a hot table go to one of {@code hotTablePartitions} consecutive partitions starting at the partition
+ * the delegate chooses for the table, so consumers of a single table read a bounded number of partitions. Only events
+ * about a single partition are split. This trades ordering for throughput:
+ * </p>
+ * <ul>
+ * <li>INSERT and ADD_PARTITION events of the same partition stay in order.</li>
+ * <li>Events of different partitions of a hot table can be consumed in any order.</li>
+ * <li>Other events of a hot table, such as ALTER_TABLE, DROP_PARTITION or DROP_TABLE, are not ordered with the split
+ * events: a consumer can see a DROP_PARTITION before the INSERT events which preceded it.</li>
+ * </ul>
+ */
+public class HotKeyPartitioner implements KafkaPartitioner {
+
+  private static final Set<EventType> SPLIT_EVENT_TYPES = EnumSet.of(EventType.ON_INSERT, EventType.ON_ADD_PARTITION);
+
+  private final KafkaPartitioner delegate;
+  private final Set<String> hotTables;
+  private final int hotTablePartitions;
+
+  /**
+   * @param hotTables Qualified names of the hot tables, compared ignoring case.
+   * @param hotTablePartitions Number of partitions the events of a hot table are spread over, capped to the number of
+   *          partitions of the topic. Zero or less uses all the partitions.
+   */
+  public HotKeyPartitioner(KafkaPartitioner delegate, Collection<String> hotTables, int hotTablePartitions) {
+    this.delegate = delegate;
+    this.hotTables = new HashSet<>();
+    for (String hotTable : hotTables) {
+      if (!hotTable.trim().isEmpty()) {
+        this.hotTables.add(hotTable.trim().toLowerCase(Locale.ROOT));
+      }
+    }
+    this.hotTablePartitions = hotTablePartitions;
+  }
+
+  @Override
+  public int partition(KafkaMessage message, int numberOfPartitions) {
+    int partition = delegate.partition(message, numberOfPartitions);
+    List<String> partitionValues = message.getPartitionValues();
+    if (partitionValues == null
+        || !SPLIT_EVENT_TYPES.contains(message.getEventType())
+        || !hotTables.contains(message.getQualifiedTableName().toLowerCase(Locale.ROOT))) {
+      return partition;
+    }
+    int spread = hotTablePartitions <= 0 ? numberOfPartitions : Math.min(hotTablePartitions, numberOfPartitions);
+    return (partition + Utils.toPositive(hash(partitionValues)) % spread) % numberOfPartitions;
+  }
+
+  private static int hash(List<String> partitionValues) {
+    StringBuilder key = new StringBuilder();
+    for (String value : partitionValues) {
+      key.append(value).append('\u0000');
+    }
+    return Utils.murmur2(key.toString().getBytes(UTF_8));
+  }
+
+}
@@ -18,6 +18,10 @@ package com.expediagroup.apiary.extensions.events.metastore.kafka.messaging;
 import static com.expediagroup.apiary.extensions.events.metastore.common.Preconditions.checkNotEmpty;
 import static com.expediagroup.apiary.extensions.events.metastore.common.Preconditions.checkNotNull;
 
+import java.util.List;
+
+import com.expediagroup.apiary.extensions.events.metastore.event.EventType;
+
 public class KafkaMessage {
 
   public static class Builder {
@@ -25,6 +29,8 @@ public class KafkaMessage {
     private String table;
     private long timestamp = System.currentTimeMillis();
     private byte[] payload;
+    private EventType eventType;
+    private List<String> partitionValues;
 
     private Builder() {}
 
@@ -48,10 +54,23 @@ public class KafkaMessage {
       return this;
     }
 
+    public Builder eventType(EventType eventType) {
+      this.eventType = eventType;
+      return this;
+    }
+
+    /**
+     * @param partitionValues Values of the partition the event is about, if the event is about a single partition.
+     */
+    public Builder partitionValues(List<String> partitionValues) {
+      this.partitionValues = partitionValues;
+      return this;
+    }
+
     public KafkaMessage build() {
       return new KafkaMessage(checkNotEmpty(database, "Parameter 'database' is required").trim(),
           checkNotEmpty(table, "Parameter 'table' is required").trim(), timestamp,
-          checkNotNull(payload, "Parameter 'payload' is required"));
+          checkNotNull(payload, "Parameter 'payload' is required"), eventType, partitionValues);
     }
   }
 
@@ -61,18 +80,37 @@ public class KafkaMessage {
 
   private final String database;
   private final String table;
+  private final QualifiedTableName qualifiedTableName;
   private final long timestamp;
   private final byte[] payload;
-
-  private KafkaMessage(String database, String table, long timestamp, byte[] payload) {
+  private final EventType eventType;
+  private final List<String> partitionValues;
+
+  private KafkaMessage(
+      String database,
+      String table,
+      long timestamp,
+      byte[] payload,
+      EventType eventType,
+      List<String> partitionValues) {
     this.database = database;
     this.table = table;
+    qualifiedTableName = QualifiedTableName.of(database, table);
     this.timestamp = timestamp;
     this.payload = payload;
+    this.eventType = eventType;
+    this.partitionValues = partitionValues;
   }
 
   public String getQualifiedTableName() {
-    return String.format("%s.%s", database, table);
+    return qualifiedTableName.name();
+  }
+
+  /**
+   * @return The UTF-8 encoding of the qualified table name, shared by all the messages of the table.
+   */
+  byte[] getKey() {
+    return qualifiedTableName.bytes();
   }
 
   public String getDatabase() {
@@ -91,4 +129,19 @@ public class KafkaMessage {
     return payload;
   }
 
+  /**
+   * @return The type of the event, or {@code null} if unknown.
+   */
+  public EventType getEventType() {
+    return eventType;
+  }
+
+  /**
+   * @return The values of the partition the event is about, or {@code null} if the event is not about a single
+   *         partition.
+   */
+  public List<String> getPartitionValues() {
+    return partitionValues;
+  }
+
 }
@@ -16,6 +16,7 @@
 package com.expediagroup.apiary.extensions.events.metastore.kafka.messaging;
 
 import static com.expediagroup.apiary.extensions.events.metastore.common.Preconditions.checkNotNull;
+import static com.expediagroup.apiary.extensions.events.metastore.common.PropertyUtils.booleanProperty;
 import static com.expediagroup.apiary.extensions.events.metastore.common.PropertyUtils.intProperty;
 import static com.expediagroup.apiary.extensions.events.metastore.common.PropertyUtils.longProperty;
 import static com.expediagroup.apiary.extensions.events.metastore.common.PropertyUtils.stringProperty;
@@ -24,43 +25,470 @@ import static com.expediagroup.apiary.extensions.events.metastore.kafka.messagin
 import static com.expediagroup.apiary.extensions.events.metastore.kafka.messaging.KafkaProducerProperty.BOOTSTRAP_SERVERS;
 import static com.expediagroup.apiary.extensions.events.metastore.kafka.messaging.KafkaProducerProperty.BUFFER_MEMORY;
 import static com.expediagroup.apiary.extensions.events.metastore.kafka.messaging.KafkaProducerProperty.CLIENT_ID;
+import static com.expediagroup.apiary.extensions.events.metastore.kafka.messaging.KafkaProducerProperty.COMPRESSION_TYPE;
+import static com.expediagroup.apiary.extensions.events.metastore.kafka.messaging.KafkaProducerProperty.ENABLE_IDEMPOTENCE;
+import static com.expediagroup.apiary.extensions.events.metastore.kafka.messaging.KafkaProducerProperty.FAILED_MESSAGE_HANDLER;
+import static com.expediagroup.apiary.extensions.events.metastore.kafka.messaging.KafkaProducerProperty.FAILED_MESSAGE_QUEUE_CAPACITY;
+import static com.expediagroup.apiary.extensions.events.metastore.kafka.messaging.KafkaProducerProperty.FAILED_MESSAGE_RETRIES;
+import static com.expediagroup.apiary.extensions.events.metastore.kafka.messaging.KafkaProducerProperty.FAILED_MESSAGE_RETRY_BACKOFF_MS;
 import static com.expediagroup.apiary.extensions.events.metastore.kafka.messaging.KafkaProducerProperty.LINGER_MS;
 import static com.expediagroup.apiary.extensions.events.metastore.kafka.messaging.KafkaProducerProperty.MAX_IN_FLIGHT_REQUESTS_PER_CONNECTION;
+import static com.expediagroup.apiary.extensions.events.metastore.kafka.messaging.KafkaProducerProperty.PARTITIONER;
+import static com.expediagroup.apiary.extensions.events.metastore.kafka.messaging.KafkaProducerProperty.PARTITIONER_HOT_TABLES;
+import static com.expediagroup.apiary.extensions.events.metastore.kafka.messaging.KafkaProducerProperty.PARTITIONER_HOT_TABLE_PARTITIONS;
+import static com.expediagroup.apiary.extensions.events.metastore.kafka.messaging.KafkaProducerProperty.PARTITIONER_VIRTUAL_NODES;
+import static com.expediagroup.apiary.extensions.events.metastore.kafka.messaging.KafkaProducerProperty.PARTITIONS_REFRESH_INTERVAL_MS;
 import static com.expediagroup.apiary.extensions.events.metastore.kafka.messaging.KafkaProducerProperty.RETRIES;
+import static com.expediagroup.apiary.extensions.events.metastore.kafka.messaging.KafkaProducerProperty.SPILL_JOURNAL_DIRECTORY;
+import static com.expediagroup.apiary.extensions.events.metastore.kafka.messaging.KafkaProducerProperty.SPILL_JOURNAL_SEGMENT_BYTES;
+import static com.expediagroup.apiary.extensions.events.metastore.kafka.messaging.KafkaProducerProperty.SPILL_REPLAY_INTERVAL_MS;
+import static com.expediagroup.apiary.extensions.events.metastore.kafka.messaging.KafkaProducerProperty.SPILL_THRESHOLD_BYTES;
 import static com.expediagroup.apiary.extensions.events.metastore.kafka.messaging.KafkaProducerProperty.TOPIC_NAME;
+import static com.expediagroup.apiary.extensions.events.metastore.kafka.messaging.KafkaProducerProperty.TRANSACTIONAL_ID;
+import static com.expediagroup.apiary.extensions.events.metastore.kafka.metrics.MetricsConstant.LISTENER_PARTITIONS;
+import static com.expediagroup.apiary.extensions.events.metastore.kafka.metrics.MetricsConstant.LISTENER_REPLAYED_MESSAGES;
+import static com.expediagroup.apiary.extensions.events.metastore.kafka.metrics.MetricsConstant.LISTENER_SEND_FAILURES;
+import static com.expediagroup.apiary.extensions.events.metastore.kafka.metrics.MetricsConstant.LISTENER_SEND_LATENCY_MS;
+import static com.expediagroup.apiary.extensions.events.metastore.kafka.metrics.MetricsConstant.LISTENER_SPILLED_MESSAGES;
+import static com.expediagroup.apiary.extensions.events.metastore.kafka.metrics.MetricsConstant.LISTENER_SUCCESSES;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
 import java.util.Properties;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
 
 import org.apache.hadoop.conf.Configuration;
 import org.apache.kafka.clients.producer.KafkaProducer;
 import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.common.KafkaException;
+import org.apache.kafka.common.errors.ProducerFencedException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import com.google.common.annotations.VisibleForTesting;
 
+import com.expediagroup.apiary.extensions.events.metastore.common.MetaStoreEventsException;
+import com.expediagroup.apiary.extensions.events.metastore.kafka.metrics.HiveMetricsHelper;
+
 /**
- * Sends messages to a Kafka topic. Note that in order to preserve the
- * order of the events the topic must have only single partition.
+ * Sends messages to a Kafka topic. The partition of each message is chosen by a {@link KafkaPartitioner}, consumers
+ * only see the events sent to the same partition in order.
+ * <p>
+ * When a refresh interval is set, the number of partitions of the topic is refreshed in the background so partitions
+ * added to the topic are used without restarting the metastore. Which events move to the new partitions depends on the
+ * partitioner, the events of a table which moves can be consumed out of order with the events sent before the move.
+ * </p>
+ * <p>
+ * Sends are asynchronous: acknowledged messages are counted as successes along with their send latency, messages the
+ * producer fails to deliver are counted as failures and passed to the {@link FailedMessageHandler}.
+ * </p>
+ * <p>
+ * When a spill journal is configured, messages are written to it instead of the producer while the bytes waiting to be
+ * acknowledged exceed the spill threshold, so the metastore threads do not block on a full producer buffer during
+ * broker incidents. Once spilling started every message goes to the journal until a background replayer has sent all
+ * of it, which keeps the messages in order. A segment is only deleted once all its messages have been acknowledged and
+ * is replayed again otherwise, so replayed messages may be delivered more than once.
+ * </p>
+ * <p>
+ * When the producer is transactional each call to {@link #send(KafkaMessage)}, or all the sends made by
+ * {@link #inTransaction(Runnable)}, are committed in a transaction of their own. Consumers reading committed records
+ * only see the messages of transactions that have been committed. The transactional id is suffixed with the host name
+ * so metastores sharing a configuration do not fence each other off, while a metastore restarted on the same host
+ * fences off the producer of its previous instance. A fenced producer cannot be used anymore and is replaced by a new
+ * one. Transactions are committed one at a time and their commit waits for the acknowledgement of their messages, which
+ * adds latency to every metastore call.
+ * </p>
  */
 public class KafkaMessageSender {
+  private static final Logger log = LoggerFactory.getLogger(KafkaMessageSender.class);
 
-  private final KafkaProducer<Long, byte[]> producer;
+  private volatile KafkaProducer<byte[], byte[]> producer;
+  private final Supplier<KafkaProducer<byte[], byte[]>> producerFactory;
   private final String topic;
-  private final int numberOfPartitions;
+  private volatile int numberOfPartitions;
+  private final FailedMessageHandler failedMessageHandler;
+  private final KafkaPartitioner partitioner;
+  private final AtomicLong inFlightBytes = new AtomicLong();
+  private final SpillJournal spillJournal;
+  private final long spillThresholdBytes;
+  private volatile boolean spilling;
+  private final ReentrantLock transactionLock;
+  private final List<KafkaMessage> transaction = new ArrayList<>();
 
   public KafkaMessageSender(Configuration conf) {
-    this(topic(conf), new KafkaProducer<>(kafkaProperties(conf)));
+    this(topic(conf), new KafkaProducer<>(kafkaProperties(conf)), failedMessageHandler(conf), partitioner(conf),
+        spillJournal(conf), longProperty(conf, SPILL_THRESHOLD_BYTES), longProperty(conf, SPILL_REPLAY_INTERVAL_MS),
+        longProperty(conf, PARTITIONS_REFRESH_INTERVAL_MS), transactional(conf),
+        () -> new KafkaProducer<>(kafkaProperties(conf)));
+  }
+
+  @VisibleForTesting
+  KafkaMessageSender(String topic, KafkaProducer<byte[], byte[]> producer) {
+    this(topic, producer, new LoggingFailedMessageHandler());
   }
 
   @VisibleForTesting
-  KafkaMessageSender(String topic, KafkaProducer<Long, byte[]> producer) {
+  KafkaMessageSender(String topic, KafkaProducer<byte[], byte[]> producer, FailedMessageHandler failedMessageHandler) {
+    this(topic, producer, failedMessageHandler, new TableHashPartitioner(), null, 0L, 0L, 0L);
+  }
+
+  @VisibleForTesting
+  KafkaMessageSender(
+      String topic,
+      KafkaProducer<byte[], byte[]> producer,
+      FailedMessageHandler failedMessageHandler,
+      KafkaPartitioner partitioner,
+      SpillJournal spillJournal,
+      long spillThresholdBytes,
+      long replayIntervalMillis,
+      long partitionsRefreshIntervalMillis) {
+    this(topic, producer, failedMessageHandler, partitioner, spillJournal, spillThresholdBytes, replayIntervalMillis,
+        partitionsRefreshIntervalMillis, false);
+  }
+
+  @VisibleForTesting
+  KafkaMessageSender(
+      String topic,
+      KafkaProducer<byte[], byte[]> producer,
+      FailedMessageHandler failedMessageHandler,
+      KafkaPartitioner partitioner,
+      SpillJournal spillJournal,
+      long spillThresholdBytes,
+      long replayIntervalMillis,
+      long partitionsRefreshIntervalMillis,
+      boolean transactional) {
+    this(topic, producer, failedMessageHandler, partitioner, spillJournal, spillThresholdBytes, replayIntervalMillis,
+        partitionsRefreshIntervalMillis, transactional, null);
+  }
+
+  /**
+   * @param producerFactory Creates the producer replacing a fenced transactional producer, fenced producers are kept if
+   *          {@code null}.
+   */
+  @VisibleForTesting
+  KafkaMessageSender(
+      String topic,
+      KafkaProducer<byte[], byte[]> producer,
+      FailedMessageHandler failedMessageHandler,
+      KafkaPartitioner partitioner,
+      SpillJournal spillJournal,
+      long spillThresholdBytes,
+      long replayIntervalMillis,
+      long partitionsRefreshIntervalMillis,
+      boolean transactional,
+      Supplier<KafkaProducer<byte[], byte[]>> producerFactory) {
     this.producer = producer;
+    this.producerFactory = producerFactory;
     this.topic = topic;
     this.numberOfPartitions = producer.partitionsFor(topic).size();
+    this.failedMessageHandler = failedMessageHandler;
+    this.partitioner = partitioner;
+    this.spillJournal = spillJournal;
+    this.spillThresholdBytes = spillThresholdBytes;
+    if (transactional) {
+      producer.initTransactions();
+      transactionLock = new ReentrantLock();
+    } else {
+      transactionLock = null;
+    }
+    if (spillJournal != null) {
+      spilling = !spillJournal.isEmpty();
+      ScheduledExecutorService replayer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "kafka-listener-spill-replayer");
+        thread.setDaemon(true);
+        return thread;
+      });
+      replayer.scheduleWithFixedDelay(this::replay, replayIntervalMillis, replayIntervalMillis, TimeUnit.MILLISECONDS);
+    }
+    HiveMetricsHelper.addGauge(LISTENER_PARTITIONS, () -> this.numberOfPartitions);
+    if (partitionsRefreshIntervalMillis > 0) {
+      if (!(partitioner instanceof ConsistentHashPartitioner)) {
+        log.warn("Partitions of topic {} are refreshed with partitioner {}: most tables move to another partition when "
+            + "partitions are added, use the consistent-hash partitioner", topic, partitioner.getClass().getName());
+      }
+      ScheduledExecutorService refresher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "kafka-listener-partitions-refresh");
+        thread.setDaemon(true);
+        return thread;
+      });
+      refresher
+          .scheduleWithFixedDelay(this::refreshPartitions, partitionsRefreshIntervalMillis,
+              partitionsRefreshIntervalMillis, TimeUnit.MILLISECONDS);
+    }
+  }
+
+  @VisibleForTesting
+  void refreshPartitions() {
+    try {
+      int current = producer.partitionsFor(topic).size();
+      if (current != numberOfPartitions) {
+        log.info("Topic {} now has {} partitions, was {}", topic, current, numberOfPartitions);
+        numberOfPartitions = current;
+      }
+    } catch (Exception e) {
+      log.warn("Unable to refresh the partitions of topic {}", topic, e);
+    }
+  }
+
+  @VisibleForTesting
+  int getNumberOfPartitions() {
+    return numberOfPartitions;
   }
 
   public void send(KafkaMessage kafkaMessage) {
-    int partition = Math.abs(kafkaMessage.getQualifiedTableName().hashCode() % numberOfPartitions);
-    producer.send(new ProducerRecord<>(topic, partition, kafkaMessage.getTimestamp(), kafkaMessage.getPayload()));
+    if (transactionLock != null) {
+      inTransaction(() -> sendInTransaction(kafkaMessage));
+      return;
+    }
+    if (spillJournal != null && (spilling || inFlightBytes.get() >= spillThresholdBytes) && spill(kafkaMessage)) {
+      return;
+    }
+    long start = System.nanoTime();
+    int size = kafkaMessage.getPayload().length;
+    inFlightBytes.addAndGet(size);
+    try {
+      producer.send(record(kafkaMessage), (metadata, exception) -> {
+        inFlightBytes.addAndGet(-size);
+        if (exception == null) {
+          acknowledged(start);
+        } else {
+          HiveMetricsHelper.incrementCounter(LISTENER_SEND_FAILURES);
+          failedMessageHandler.handle(kafkaMessage, exception, this);
+        }
+      });
+    } catch (KafkaException e) {
+      inFlightBytes.addAndGet(-size);
+      // the producer could not buffer the message in time
+      if (!spill(kafkaMessage)) {
+        throw e;
+      }
+    }
+  }
+
+  /**
+   * Runs {@code sends} in a single transaction if the producer is transactional, so consumers reading committed records
+   * see all of their records or none. The messages of a transaction that cannot be committed are passed to the
+   * {@link FailedMessageHandler}. Sends run as they are if the producer is not transactional or a transaction is
+   * already open on the calling thread.
+   */
+  public void inTransaction(Runnable sends) {
+    if (transactionLock == null || transactionLock.isHeldByCurrentThread()) {
+      sends.run();
+      return;
+    }
+    transactionLock.lock();
+    try {
+      commit(sends);
+    } catch (RuntimeException e) {
+      for (KafkaMessage kafkaMessage : transaction) {
+        HiveMetricsHelper.incrementCounter(LISTENER_SEND_FAILURES);
+        failedMessageHandler.handle(kafkaMessage, e, this);
+      }
+      if (!(e instanceof KafkaException)) {
+        throw e;
+      }
+    } finally {
+      transaction.clear();
+      transactionLock.unlock();
+    }
+  }
+
+  /**
+   * @return The producer the records of a transaction must be sent with, {@code null} if the producer is not
+   *         transactional.
+   */
+  KafkaProducer<byte[], byte[]> transactionalProducer() {
+    return transactionLock == null ? null : producer;
+  }
+
+  private void sendInTransaction(KafkaMessage kafkaMessage) {
+    transaction.add(kafkaMessage);
+    // failures surface when the transaction is committed
+    producer.send(record(kafkaMessage));
+  }
+
+  private void commit(Runnable sends) {
+    long start = System.nanoTime();
+    try {
+      producer.beginTransaction();
+    } catch (ProducerFencedException e) {
+      replaceFencedProducer(e);
+      throw e;
+    }
+    try {
+      sends.run();
+      producer.commitTransaction();
+    } catch (ProducerFencedException e) {
+      replaceFencedProducer(e);
+      throw e;
+    } catch (RuntimeException e) {
+      abort(e);
+      throw e;
+    }
+    for (int i = 0; i < transaction.size(); i++) {
+      acknowledged(start);
+    }
+  }
+
+  private void abort(RuntimeException cause) {
+    try {
+      producer.abortTransaction();
+    } catch (ProducerFencedException e) {
+      replaceFencedProducer(e);
+    } catch (KafkaException e) {
+      log.error("Unable to abort Kafka transaction", e);
+    }
+    log.warn("Kafka transaction of {} events aborted", transaction.size(), cause);
+  }
+
+  /**
+   * Called with the transaction lock held. The transaction of a fenced producer is aborted by the producer which fenced
+   * it, or by the coordinator when it timed out.
+   */
+  private void replaceFencedProducer(ProducerFencedException cause) {
+    if (producerFactory == null) {
+      log.error("Kafka producer has been fenced off", cause);
+      return;
+    }
+    log.error("Kafka producer has been fenced off by another producer with the same transactional id or by the "
+        + "transaction coordinator, replacing it", cause);
+    KafkaProducer<byte[], byte[]> fenced = producer;
+    KafkaProducer<byte[], byte[]> replacement = producerFactory.get();
+    replacement.initTransactions();
+    producer = replacement;
+    fenced.close(Duration.ZERO);
+  }
+
+  /**
+   * @return {@code true} if the message has been written to the spill journal, {@code false} if there is no journal
+   *         or the message could not be written to it.
+   */
+  boolean spill(KafkaMessage kafkaMessage) {
+    if (spillJournal == null) {
+      return false;
+    }
+    synchronized (spillJournal) {
+      try {
+        spillJournal.append(kafkaMessage);
+      } catch (IOException e) {
+        log.error("Unable to write event of table {} to the spill journal", kafkaMessage.getQualifiedTableName(), e);
+        return false;
+      }
+      spilling = true;
+    }
+    HiveMetricsHelper.incrementCounter(LISTENER_SPILLED_MESSAGES);
+    return true;
+  }
+
+  private void replay() {
+    try {
+      while (inFlightBytes.get() < spillThresholdBytes) {
+        SpillJournal.Chunk chunk;
+        synchronized (spillJournal) {
+          chunk = spillJournal.oldestChunk();
+          if (chunk == null) {
+            spilling = false;
+            return;
+          }
+        }
+        if (!replay(chunk)) {
+          return;
+        }
+        synchronized (spillJournal) {
+          spillJournal.replayed(chunk);
+        }
+        if (chunk.isActive()) {
+          // events spilled meanwhile wait for the next run rather than being replayed a few at a time in a busy loop
+          return;
+        }
+      }
+    } catch (Exception e) {
+      log.warn("Unable to replay the spill journal, will try again", e);
+    }
+  }
+
+  /**
+   * @return {@code true} if all the messages of the chunk have been acknowledged.
+   */
+  private boolean replay(SpillJournal.Chunk chunk) throws IOException {
+    AtomicInteger failures = new AtomicInteger();
+    SpillJournal.read(chunk, kafkaMessage -> {
+      long start = System.nanoTime();
+      int size = kafkaMessage.getPayload().length;
+      inFlightBytes.addAndGet(size);
+      producer.send(record(kafkaMessage), (metadata, exception) -> {
+        inFlightBytes.addAndGet(-size);
+        if (exception == null) {
+          acknowledged(start);
+          HiveMetricsHelper.incrementCounter(LISTENER_REPLAYED_MESSAGES);
+        } else {
+          HiveMetricsHelper.incrementCounter(LISTENER_SEND_FAILURES);
+          failures.incrementAndGet();
+        }
+      });
+    });
+    producer.flush();
+    if (failures.get() > 0) {
+      log.warn("{} events of spill journal segment {} were not delivered, they will be replayed", failures.get(),
+          chunk.getSegment());
+      return false;
+    }
+    return true;
+  }
+
+  /**
+   * Sends the message and waits for it to be acknowledged, for use outside of the metastore and producer threads.
+   */
+  void sendAndWait(KafkaMessage kafkaMessage) throws InterruptedException, ExecutionException {
+    if (transactionLock != null) {
+      transactionLock.lock();
+      try {
+        commit(() -> sendInTransaction(kafkaMessage));
+      } catch (KafkaException e) {
+        HiveMetricsHelper.incrementCounter(LISTENER_SEND_FAILURES);
+        throw new ExecutionException(e);
+      } finally {
+        transaction.clear();
+        transactionLock.unlock();
+      }
+      return;
+    }
+    long start = System.nanoTime();
+    try {
+      producer.send(record(kafkaMessage)).get();
+    } catch (ExecutionException e) {
+      HiveMetricsHelper.incrementCounter(LISTENER_SEND_FAILURES);
+      throw e;
+    }
+    acknowledged(start);
+  }
+
+  private ProducerRecord<byte[], byte[]> record(KafkaMessage kafkaMessage) {
+    int partition = partitioner.partition(kafkaMessage, numberOfPartitions);
+    // the key is the already encoded qualified table name and the payload is handed over as is
+    return new ProducerRecord<>(topic, partition, kafkaMessage.getTimestamp(), kafkaMessage.getKey(),
+        kafkaMessage.getPayload());
+  }
+
+  private static void acknowledged(long start) {
+    HiveMetricsHelper.incrementCounter(LISTENER_SUCCESSES);
+    long latencyMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+    HiveMetricsHelper.updateHistogram(LISTENER_SEND_LATENCY_MS, latencyMillis);
   }
 
   @VisibleForTesting
@@ -77,11 +505,107 @@ public class KafkaMessageSender {
     props.put(BATCH_SIZE.unprefixedKey(), intProperty(conf, BATCH_SIZE));
     props.put(LINGER_MS.unprefixedKey(), longProperty(conf, LINGER_MS));
     props.put(BUFFER_MEMORY.unprefixedKey(), longProperty(conf, BUFFER_MEMORY));
-    props.put("key.serializer", "org.apache.kafka.common.serialization.LongSerializer");
+    props.put(COMPRESSION_TYPE.unprefixedKey(), stringProperty(conf, COMPRESSION_TYPE));
+    String transactionalId = stringProperty(conf, TRANSACTIONAL_ID);
+    if (transactionalId != null) {
+      // transactions require the idempotent producer
+      props.put(TRANSACTIONAL_ID.unprefixedKey(), transactionalId(transactionalId, hostName()));
+      props.put(ENABLE_IDEMPOTENCE.unprefixedKey(), true);
+    } else {
+      props.put(ENABLE_IDEMPOTENCE.unprefixedKey(), booleanProperty(conf, ENABLE_IDEMPOTENCE));
+    }
+    props.put("key.serializer", "org.apache.kafka.common.serialization.ByteArraySerializer");
     props.put("value.serializer", "org.apache.kafka.common.serialization.ByteArraySerializer");
     return props;
   }
 
+  /**
+   * @return The configured id suffixed with the host name, unique to each metastore host and stable across restarts.
+   */
+  @VisibleForTesting
+  static String transactionalId(String configuredId, String hostName) {
+    return configuredId + "-" + hostName;
+  }
+
+  private static String hostName() {
+    try {
+      return InetAddress.getLocalHost().getHostName();
+    } catch (UnknownHostException e) {
+      throw new MetaStoreEventsException("Unable to resolve the host name to suffix " + TRANSACTIONAL_ID + " with", e);
+    }
+  }
+
+  @VisibleForTesting
+  static FailedMessageHandler failedMessageHandler(Configuration conf) {
+    String handler = stringProperty(conf, FAILED_MESSAGE_HANDLER);
+    switch (handler.trim().toLowerCase(Locale.ROOT)) {
+    case "log":
+      return new LoggingFailedMessageHandler();
+    case "retry":
+      return new RetryingFailedMessageHandler(intProperty(conf, FAILED_MESSAGE_RETRIES),
+          longProperty(conf, FAILED_MESSAGE_RETRY_BACKOFF_MS), intProperty(conf, FAILED_MESSAGE_QUEUE_CAPACITY));
+    case "spill":
+      if (stringProperty(conf, SPILL_JOURNAL_DIRECTORY) == null) {
+        throw new IllegalArgumentException(
+            "Property " + SPILL_JOURNAL_DIRECTORY + " is required by " + FAILED_MESSAGE_HANDLER + " spill");
+      }
+      return new SpillingFailedMessageHandler();
+    default:
+      throw new IllegalArgumentException("Unsupported " + FAILED_MESSAGE_HANDLER + ": " + handler);
+    }
+  }
+
+  @VisibleForTesting
+  static KafkaPartitioner partitioner(Configuration conf) {
+    String partitioner = stringProperty(conf, PARTITIONER).trim();
+    switch (partitioner.toLowerCase(Locale.ROOT)) {
+    case "table-hash":
+      return new TableHashPartitioner();
+    case "consistent-hash":
+      return new ConsistentHashPartitioner(intProperty(conf, PARTITIONER_VIRTUAL_NODES));
+    case "database":
+      return new DatabasePartitioner();
+    case "hot-key":
+      return new HotKeyPartitioner(new TableHashPartitioner(),
+          Arrays.asList(stringProperty(conf, PARTITIONER_HOT_TABLES).split(",")),
+          intProperty(conf, PARTITIONER_HOT_TABLE_PARTITIONS));
+    default:
+      KafkaPartitioner custom;
+      try {
+        custom = (KafkaPartitioner) Class.forName(partitioner).newInstance();
+      } catch (Exception e) {
+        throw new MetaStoreEventsException("Unable to instantiate KafkaPartitioner of class " + partitioner, e);
+      }
+      custom.configure(conf);
+      return custom;
+    }
+  }
+
+  @VisibleForTesting
+  static SpillJournal spillJournal(Configuration conf) {
+    String directory = stringProperty(conf, SPILL_JOURNAL_DIRECTORY);
+    if (directory == null) {
+      return null;
+    }
+    try {
+      return new SpillJournal(Paths.get(directory), intProperty(conf, SPILL_JOURNAL_SEGMENT_BYTES));
+    } catch (IOException e) {
+      throw new UncheckedIOException("Unable to open spill journal in " + directory, e);
+    }
+  }
+
+  @VisibleForTesting
+  static boolean transactional(Configuration conf) {
+    if (stringProperty(conf, TRANSACTIONAL_ID) == null) {
+      return false;
+    }
+    if (stringProperty(conf, SPILL_JOURNAL_DIRECTORY) != null) {
+      throw new IllegalArgumentException(
+          "Property " + SPILL_JOURNAL_DIRECTORY + " cannot be used with " + TRANSACTIONAL_ID);
+    }
+    return true;
+  }
+
   @VisibleForTesting
   static String topic(Configuration conf) {
     return checkNotNull(stringProperty(conf, TOPIC_NAME), "Property " + TOPIC_NAME + " is not set");
@@ -0,0 +1,41 @@
+/**
+ * Copyright (C) 2018-2021 Expedia, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.expediagroup.apiary.extensions.events.metastore.kafka.messaging;
+
+import org.apache.hadoop.conf.Configuration;
+
+/**
+ * Chooses the partition of the topic a message is sent to.
+ * <p>
+ * Kafka only keeps messages in order within a partition, so a partitioner decides which events consumers see in the
+ * order they happened. Implementations must be thread safe and return the same partition for messages which must stay
+ * in order. Custom implementations are set with the {@code partitioner} property and must have a public no-argument
+ * constructor.
+ * </p>
+ */
+public interface KafkaPartitioner {
+
+  /**
+   * Called once after a custom partitioner has been instantiated.
+   */
+  default void configure(Configuration conf) {}
+
+  /**
+   * @return A partition between {@code 0} inclusive and {@code numberOfPartitions} exclusive.
+   */
+  int partition(KafkaMessage message, int numberOfPartitions);
+
+}
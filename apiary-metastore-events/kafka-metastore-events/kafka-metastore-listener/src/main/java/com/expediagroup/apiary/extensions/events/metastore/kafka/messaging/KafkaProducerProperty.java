@@ -28,7 +28,26 @@ public enum KafkaProducerProperty implements Property {
   BATCH_SIZE("batch.size", 16384),
   LINGER_MS("linger.ms", 1L),
   BUFFER_MEMORY("buffer.memory", 33554432L),
-  SERDE_CLASS("serde.class", JsonMetaStoreEventSerDe.class.getName());
+  COMPRESSION_TYPE("compression.type", "none"),
+  ENABLE_IDEMPOTENCE("enable.idempotence", false),
+  TRANSACTIONAL_ID("transactional.id", null),
+  SERDE_CLASS("serde.class", JsonMetaStoreEventSerDe.class.getName()),
+  AVRO_SCHEMA_REGISTRY_DIRECTORY("avro.schema.registry.directory", null),
+  FAILED_MESSAGE_HANDLER("failed.message.handler", "log"),
+  FAILED_MESSAGE_RETRIES("failed.message.retries", 3),
+  FAILED_MESSAGE_RETRY_BACKOFF_MS("failed.message.retry.backoff.ms", 1000L),
+  FAILED_MESSAGE_QUEUE_CAPACITY("failed.message.queue.capacity", 1000),
+  SPILL_JOURNAL_DIRECTORY("spill.journal.directory", null),
+  SPILL_JOURNAL_SEGMENT_BYTES("spill.journal.segment.bytes", 67108864),
+  SPILL_THRESHOLD_BYTES("spill.threshold.bytes", 25165824L),
+  SPILL_REPLAY_INTERVAL_MS("spill.replay.interval.ms", 1000L),
+  PARTITIONER("partitioner", "table-hash"),
+  PARTITIONER_VIRTUAL_NODES("partitioner.virtual.nodes", 128),
+  PARTITIONER_HOT_TABLES("partitioner.hot.tables", ""),
+  PARTITIONER_HOT_TABLE_PARTITIONS("partitioner.hot.table.partitions", 8),
+  PARTITIONS_REFRESH_INTERVAL_MS("partitions.refresh.interval.ms", 0L),
+  SNAPSHOT_TOPIC_NAME("snapshot.topic.name", null),
+  SNAPSHOT_PARTITIONS("snapshot.partitions", false);
 
   private static final String HADOOP_CONF_PREFIX = "com.expediagroup.apiary.extensions.events.metastore.kafka.messaging.";
 
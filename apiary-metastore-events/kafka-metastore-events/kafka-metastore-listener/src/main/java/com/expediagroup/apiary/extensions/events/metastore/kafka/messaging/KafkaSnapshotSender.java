@@ -0,0 +1,119 @@
+/**
+ * Copyright (C) 2018-2021 Expedia, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.expediagroup.apiary.extensions.events.metastore.kafka.messaging;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import static com.expediagroup.apiary.extensions.events.metastore.common.Preconditions.checkNotNull;
+import static com.expediagroup.apiary.extensions.events.metastore.common.PropertyUtils.stringProperty;
+import static com.expediagroup.apiary.extensions.events.metastore.kafka.messaging.KafkaProducerProperty.CLIENT_ID;
+import static com.expediagroup.apiary.extensions.events.metastore.kafka.messaging.KafkaProducerProperty.ENABLE_IDEMPOTENCE;
+import static com.expediagroup.apiary.extensions.events.metastore.kafka.messaging.KafkaProducerProperty.SNAPSHOT_TOPIC_NAME;
+import static com.expediagroup.apiary.extensions.events.metastore.kafka.messaging.KafkaProducerProperty.TRANSACTIONAL_ID;
+import static com.expediagroup.apiary.extensions.events.metastore.kafka.metrics.MetricsConstant.LISTENER_SNAPSHOT_FAILURES;
+
+import java.util.Properties;
+import java.util.function.Supplier;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.kafka.clients.producer.KafkaProducer;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.common.KafkaException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.annotations.VisibleForTesting;
+
+import com.expediagroup.apiary.extensions.events.metastore.kafka.metrics.HiveMetricsHelper;
+
+/**
+ * Sends the latest state of tables and partitions to a log-compacted topic, keyed by their qualified name. Records
+ * are partitioned by the Kafka default partitioner so all the states of a key land in the same partition and
+ * compaction keeps the last one.
+ * <p>
+ * Snapshots use their own producer so a slow compacted topic does not hold back the events, unless the events are sent
+ * in transactions. A snapshot that cannot be sent is logged and counted but not retried, the next change of the same
+ * table or partition replaces it.
+ * </p>
+ */
+public class KafkaSnapshotSender {
+  private static final Logger log = LoggerFactory.getLogger(KafkaSnapshotSender.class);
+
+  private final String topic;
+  private final Supplier<KafkaProducer<byte[], byte[]>> producer;
+
+  /**
+   * Creates a sender which shares the producer of {@code messageSender} if it is transactional, so the snapshots of a
+   * metastore call are committed along with its event when sent within
+   * {@link KafkaMessageSender#inTransaction(Runnable)}. The shared producer is looked up on every send as it is
+   * replaced when fenced off.
+   */
+  public KafkaSnapshotSender(Configuration conf, KafkaMessageSender messageSender) {
+    this(topic(conf), messageSender.transactionalProducer() != null ? messageSender::transactionalProducer
+        : fixed(new KafkaProducer<>(kafkaProperties(conf))));
+  }
+
+  @VisibleForTesting
+  KafkaSnapshotSender(String topic, KafkaProducer<byte[], byte[]> producer) {
+    this(topic, fixed(producer));
+  }
+
+  private KafkaSnapshotSender(String topic, Supplier<KafkaProducer<byte[], byte[]>> producer) {
+    this.topic = topic;
+    this.producer = producer;
+  }
+
+  private static Supplier<KafkaProducer<byte[], byte[]>> fixed(KafkaProducer<byte[], byte[]> producer) {
+    return () -> producer;
+  }
+
+  /**
+   * @param key Qualified name of the table or partition.
+   * @param value The serialized snapshot, or {@code null} to delete the key from the topic.
+   */
+  public void send(String key, byte[] value) {
+    try {
+      producer.get().send(new ProducerRecord<>(topic, key.getBytes(UTF_8), value), (metadata, exception) -> {
+        if (exception != null) {
+          failed(key, exception);
+        }
+      });
+    } catch (KafkaException e) {
+      failed(key, e);
+    }
+  }
+
+  private static void failed(String key, Exception exception) {
+    HiveMetricsHelper.incrementCounter(LISTENER_SNAPSHOT_FAILURES);
+    log.warn("Unable to send snapshot of {} to Kafka", key, exception);
+  }
+
+  private static String topic(Configuration conf) {
+    return checkNotNull(stringProperty(conf, SNAPSHOT_TOPIC_NAME), "Property " + SNAPSHOT_TOPIC_NAME + " is not set");
+  }
+
+  @VisibleForTesting
+  static Properties kafkaProperties(Configuration conf) {
+    Properties props = KafkaMessageSender.kafkaProperties(conf);
+    // a second producer with the same client id would clash with the events producer in JMX
+    props.put(CLIENT_ID.unprefixedKey(), props.get(CLIENT_ID.unprefixedKey()) + "-snapshot");
+    // nor can it share the transactional id of the events producer without fencing it off
+    props.remove(TRANSACTIONAL_ID.unprefixedKey());
+    props.remove(ENABLE_IDEMPOTENCE.unprefixedKey());
+    return props;
+  }
+
+}
@@ -0,0 +1,82 @@
+/**
+ * Copyright (C) 2018-2021 Expedia, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.expediagroup.apiary.extensions.events.metastore.kafka.messaging;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Qualified name of a table along with its UTF-8 encoding, used as the key of the Kafka records.
+ * <p>
+ * Instances are shared by all the messages of a table so the name is neither formatted nor encoded again for every
+ * event. Up to {@code MAX_CACHED_NAMES} names are kept, the cache starts over once it is full.
+ * </p>
+ */
+final class QualifiedTableName {
+
+  static final int MAX_CACHED_NAMES = 10_000;
+
+  private static final Map<String, Map<String, QualifiedTableName>> NAMES = new ConcurrentHashMap<>();
+  private static final AtomicInteger SIZE = new AtomicInteger();
+
+  private final String name;
+  private final byte[] bytes;
+
+  private QualifiedTableName(String database, String table) {
+    name = database + "." + table;
+    bytes = name.getBytes(UTF_8);
+  }
+
+  static QualifiedTableName of(String database, String table) {
+    Map<String, QualifiedTableName> tables = NAMES.get(database);
+    if (tables != null) {
+      QualifiedTableName qualifiedTableName = tables.get(table);
+      if (qualifiedTableName != null) {
+        return qualifiedTableName;
+      }
+    }
+    if (SIZE.get() >= MAX_CACHED_NAMES) {
+      // names are cheap to create, start over rather than tracking usage
+      NAMES.clear();
+      SIZE.set(0);
+    }
+    QualifiedTableName qualifiedTableName = new QualifiedTableName(database, table);
+    // concurrent misses on the same table create equal names, whichever is put last is kept
+    NAMES.computeIfAbsent(database, key -> new ConcurrentHashMap<>()).put(table, qualifiedTableName);
+    SIZE.incrementAndGet();
+    return qualifiedTableName;
+  }
+
+  String name() {
+    return name;
+  }
+
+  /**
+   * @return The UTF-8 encoding of the name, callers must not modify it.
+   */
+  byte[] bytes() {
+    return bytes;
+  }
+
+  @Override
+  public String toString() {
+    return name;
+  }
+
+}
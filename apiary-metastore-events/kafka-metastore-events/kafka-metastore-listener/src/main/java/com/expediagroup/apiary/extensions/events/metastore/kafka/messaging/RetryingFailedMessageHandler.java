@@ -0,0 +1,93 @@
+/**
+ * Copyright (C) 2018-2021 Expedia, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.expediagroup.apiary.extensions.events.metastore.kafka.messaging;
+
+import static com.expediagroup.apiary.extensions.events.metastore.kafka.metrics.MetricsConstant.LISTENER_DROPPED_MESSAGES;
+import static com.expediagroup.apiary.extensions.events.metastore.kafka.metrics.MetricsConstant.LISTENER_SEND_RETRIES;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.expediagroup.apiary.extensions.events.metastore.kafka.metrics.HiveMetricsHelper;
+
+/**
+ * Puts failed messages on a bounded queue from which a background thread sends them again, waiting for each attempt
+ * to be acknowledged and doubling the back-off between attempts. Messages that still fail after {@code maxRetries}
+ * attempts, or that do not fit in the queue, are logged and dropped.
+ * <p>
+ * A retried message is delivered after the messages sent in the meantime, so the order of the events of its table is
+ * not preserved.
+ * </p>
+ */
+public class RetryingFailedMessageHandler implements FailedMessageHandler {
+  private static final Logger log = LoggerFactory.getLogger(RetryingFailedMessageHandler.class);
+
+  private final int maxRetries;
+  private final long backoffMillis;
+  private final ThreadPoolExecutor executor;
+
+  public RetryingFailedMessageHandler(int maxRetries, long backoffMillis, int queueCapacity) {
+    if (maxRetries < 1) {
+      throw new IllegalArgumentException("Number of retries must be greater than zero: " + maxRetries);
+    }
+    this.maxRetries = maxRetries;
+    this.backoffMillis = backoffMillis;
+    executor = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(queueCapacity),
+        runnable -> {
+          Thread thread = new Thread(runnable, "kafka-listener-retry");
+          thread.setDaemon(true);
+          return thread;
+        }, (runnable, pool) -> {
+          log.error("Kafka listener retry queue is full, a failed event is dropped");
+          HiveMetricsHelper.incrementCounter(LISTENER_DROPPED_MESSAGES);
+        });
+  }
+
+  @Override
+  public void handle(KafkaMessage message, Exception exception, KafkaMessageSender sender) {
+    log.warn("Unable to send event of table {} to Kafka, retrying", message.getQualifiedTableName(), exception);
+    executor.execute(() -> retry(message, sender));
+  }
+
+  private void retry(KafkaMessage message, KafkaMessageSender sender) {
+    long backoff = backoffMillis;
+    Exception lastException = null;
+    for (int attempt = 1; attempt <= maxRetries; attempt++) {
+      try {
+        Thread.sleep(backoff);
+        HiveMetricsHelper.incrementCounter(LISTENER_SEND_RETRIES);
+        sender.sendAndWait(message);
+        return;
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        lastException = e;
+        break;
+      } catch (ExecutionException e) {
+        lastException = e;
+      }
+      backoff *= 2;
+    }
+    log.error("Unable to send event of table {} to Kafka after {} retries, the event is dropped",
+        message.getQualifiedTableName(), maxRetries, lastException);
+    HiveMetricsHelper.incrementCounter(LISTENER_DROPPED_MESSAGES);
+  }
+
+}
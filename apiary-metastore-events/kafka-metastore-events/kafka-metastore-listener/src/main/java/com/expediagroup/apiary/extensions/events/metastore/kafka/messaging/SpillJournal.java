@@ -0,0 +1,293 @@
+/**
+ * Copyright (C) 2018-2021 Expedia, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.expediagroup.apiary.extensions.events.metastore.kafka.messaging;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.List;
+import java.util.Objects;
+import java.util.function.Consumer;
+import java.util.zip.CRC32;
+
+import org.apache.kafka.common.utils.MappedByteBuffers;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.expediagroup.apiary.extensions.events.metastore.event.EventType;
+
+/**
+ * Append-only journal of messages on local disk, made of memory-mapped segment files of {@code segmentBytes} bytes
+ * which are read and deleted oldest first. Once the sealed segments are replayed, the segment being written is replayed
+ * in place up to its last record, so a steady trickle of spilled messages does not open a segment file each time.
+ * <p>
+ * Each record is made of its length, a CRC32 checksum, the message timestamp, database, table, payload, event type and
+ * partition values, the last two being used to partition replayed messages like the original ones. The length
+ * is written last so a record is only visible once complete, and reading a segment stops at the first record that is
+ * missing or fails its checksum. Segments left over by a previous process are read first. Appends and segment
+ * management are not thread safe, callers synchronize on the journal. Mappings are released as soon as a segment is
+ * sealed or read rather than when the buffers are garbage collected, so deleted segments free their disk space.
+ * </p>
+ */
+class SpillJournal {
+  private static final Logger log = LoggerFactory.getLogger(SpillJournal.class);
+
+  private static final String SEGMENT_SUFFIX = ".segment";
+  private static final int LENGTH_BYTES = Integer.BYTES;
+
+  private final Path directory;
+  private final int segmentBytes;
+  private final Deque<Path> sealedSegments = new ArrayDeque<>();
+  private long nextSequence;
+  /** Position of the first record of the oldest sealed segment not replayed yet. */
+  private int oldestSealedStart;
+  private Path activeSegment;
+  private MappedByteBuffer activeBuffer;
+  /** Position up to which the records of the active segment have been replayed. */
+  private int activeReplayed;
+
+  SpillJournal(Path directory, int segmentBytes) throws IOException {
+    this.directory = directory;
+    this.segmentBytes = segmentBytes;
+    Files.createDirectories(directory);
+    List<Path> segments = new ArrayList<>();
+    try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, "*" + SEGMENT_SUFFIX)) {
+      stream.forEach(segments::add);
+    }
+    // names are zero padded sequence numbers
+    Collections.sort(segments);
+    sealedSegments.addAll(segments);
+    if (!segments.isEmpty()) {
+      String lastName = segments.get(segments.size() - 1).getFileName().toString();
+      nextSequence = Long.parseLong(lastName.substring(0, lastName.length() - SEGMENT_SUFFIX.length())) + 1;
+      log.info("Found {} spill journal segments in {}", segments.size(), directory);
+    }
+  }
+
+  void append(KafkaMessage message) throws IOException {
+    byte[] database = message.getDatabase().getBytes(UTF_8);
+    byte[] table = message.getTable().getBytes(UTF_8);
+    byte[] payload = message.getPayload();
+    byte[] eventType = message.getEventType() == null ? new byte[0] : message.getEventType().name().getBytes(UTF_8);
+    List<String> partitionValues = message.getPartitionValues();
+    int partitionValueCount = partitionValues == null ? 0 : partitionValues.size();
+    byte[][] values = new byte[partitionValueCount][];
+    int valuesLength = 0;
+    for (int i = 0; i < partitionValueCount; i++) {
+      values[i] = Objects.toString(partitionValues.get(i), "").getBytes(UTF_8);
+      valuesLength += Short.BYTES + values[i].length;
+    }
+    int bodyLength = Integer.BYTES + Long.BYTES + Short.BYTES + database.length + Short.BYTES + table.length
+        + Integer.BYTES + payload.length + Short.BYTES + eventType.length + Short.BYTES + valuesLength;
+    ByteBuffer body = ByteBuffer.allocate(bodyLength);
+    body.position(Integer.BYTES);
+    body.putLong(message.getTimestamp());
+    body.putShort((short) database.length).put(database);
+    body.putShort((short) table.length).put(table);
+    body.putInt(payload.length).put(payload);
+    body.putShort((short) eventType.length).put(eventType);
+    body.putShort((short) partitionValueCount);
+    for (byte[] value : values) {
+      body.putShort((short) value.length).put(value);
+    }
+    CRC32 crc = new CRC32();
+    crc.update(body.array(), Integer.BYTES, bodyLength - Integer.BYTES);
+    body.putInt(0, (int) crc.getValue());
+
+    // keeps room for the zero length marking the end of the segment
+    int recordLength = LENGTH_BYTES + bodyLength;
+    if (activeBuffer == null || activeBuffer.remaining() < recordLength + LENGTH_BYTES) {
+      seal();
+      openSegment(Math.max(segmentBytes, recordLength + LENGTH_BYTES));
+    }
+    int position = activeBuffer.position();
+    activeBuffer.position(position + LENGTH_BYTES);
+    activeBuffer.put(body.array());
+    activeBuffer.putInt(position, bodyLength);
+  }
+
+  private void openSegment(int size) throws IOException {
+    activeSegment = directory.resolve(String.format("%020d%s", nextSequence++, SEGMENT_SUFFIX));
+    try (FileChannel channel = FileChannel.open(activeSegment, StandardOpenOption.CREATE_NEW,
+        StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+      activeBuffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+    }
+    activeReplayed = 0;
+  }
+
+  private void seal() throws IOException {
+    if (activeBuffer == null) {
+      return;
+    }
+    int written = activeBuffer.position();
+    activeBuffer.force();
+    MappedByteBuffers.unmap(activeSegment.toString(), activeBuffer);
+    if (activeReplayed == written) {
+      // every record has been replayed in place
+      Files.deleteIfExists(activeSegment);
+    } else {
+      if (sealedSegments.isEmpty()) {
+        oldestSealedStart = activeReplayed;
+      }
+      sealedSegments.addLast(activeSegment);
+    }
+    activeBuffer = null;
+    activeSegment = null;
+    activeReplayed = 0;
+  }
+
+  boolean isEmpty() {
+    return sealedSegments.isEmpty() && (activeBuffer == null || activeBuffer.position() == activeReplayed);
+  }
+
+  /**
+   * @return The records to replay next: what is left of the oldest sealed segment or, if there is none, the records of
+   *         the active segment not replayed yet. {@code null} if the journal is empty.
+   */
+  Chunk oldestChunk() {
+    Path oldest = sealedSegments.peekFirst();
+    if (oldest != null) {
+      return new Chunk(oldest, oldestSealedStart, -1, false);
+    }
+    if (activeBuffer != null && activeBuffer.position() > activeReplayed) {
+      return new Chunk(activeSegment, activeReplayed, activeBuffer.position(), true);
+    }
+    return null;
+  }
+
+  /**
+   * Forgets the records of a chunk once they have been delivered, deleting its segment if it is sealed.
+   */
+  void replayed(Chunk chunk) throws IOException {
+    if (chunk.segment.equals(activeSegment)) {
+      activeReplayed = chunk.end;
+    } else if (chunk.active && chunk.segment.equals(sealedSegments.peekFirst())) {
+      // sealed since the chunk was taken, the records appended after it are still to be replayed
+      oldestSealedStart = chunk.end;
+    } else {
+      sealedSegments.remove(chunk.segment);
+      oldestSealedStart = 0;
+      Files.deleteIfExists(chunk.segment);
+    }
+  }
+
+  /**
+   * Passes the complete records of a chunk to the consumer in the order they were appended.
+   */
+  static void read(Chunk chunk, Consumer<KafkaMessage> consumer) throws IOException {
+    MappedByteBuffer buffer;
+    try (FileChannel channel = FileChannel.open(chunk.segment, StandardOpenOption.READ)) {
+      long end = chunk.end < 0 ? channel.size() : chunk.end;
+      buffer = channel.map(FileChannel.MapMode.READ_ONLY, chunk.start, end - chunk.start);
+    }
+    try {
+      read(chunk.segment, buffer, consumer);
+    } finally {
+      MappedByteBuffers.unmap(chunk.segment.toString(), buffer);
+    }
+  }
+
+  private static void read(Path segment, ByteBuffer buffer, Consumer<KafkaMessage> consumer) {
+    while (buffer.remaining() >= LENGTH_BYTES) {
+      int bodyLength = buffer.getInt();
+      if (bodyLength <= 0 || bodyLength > buffer.remaining()) {
+        return;
+      }
+      ByteBuffer body = buffer.slice();
+      body.limit(bodyLength);
+      buffer.position(buffer.position() + bodyLength);
+      int checksum = body.getInt();
+      CRC32 crc = new CRC32();
+      crc.update(body.duplicate());
+      if ((int) crc.getValue() != checksum) {
+        log.warn("Spill journal segment {} has a corrupted record, ignoring the rest of the segment", segment);
+        return;
+      }
+      long timestamp = body.getLong();
+      String database = readString(body);
+      String table = readString(body);
+      byte[] payload = new byte[body.getInt()];
+      body.get(payload);
+      String eventType = readString(body);
+      int partitionValueCount = body.getShort() & 0xFFFF;
+      List<String> partitionValues = null;
+      if (partitionValueCount > 0) {
+        partitionValues = new ArrayList<>(partitionValueCount);
+        for (int i = 0; i < partitionValueCount; i++) {
+          partitionValues.add(readString(body));
+        }
+      }
+      consumer
+          .accept(KafkaMessage
+              .builder()
+              .database(database)
+              .table(table)
+              .timestamp(timestamp)
+              .payload(payload)
+              .eventType(eventType.isEmpty() ? null : EventType.valueOf(eventType))
+              .partitionValues(partitionValues)
+              .build());
+    }
+  }
+
+  private static String readString(ByteBuffer body) {
+    byte[] bytes = new byte[body.getShort() & 0xFFFF];
+    body.get(bytes);
+    return new String(bytes, UTF_8);
+  }
+
+  /**
+   * Records of a segment between two positions, up to the end of the file if the segment is sealed.
+   */
+  static final class Chunk {
+
+    private final Path segment;
+    private final int start;
+    private final int end;
+    private final boolean active;
+
+    private Chunk(Path segment, int start, int end, boolean active) {
+      this.segment = segment;
+      this.start = start;
+      this.end = end;
+      this.active = active;
+    }
+
+    Path getSegment() {
+      return segment;
+    }
+
+    /**
+     * @return {@code true} if the chunk was taken from the segment being written.
+     */
+    boolean isActive() {
+      return active;
+    }
+
+  }
+
+}
@@ -0,0 +1,43 @@
+/**
+ * Copyright (C) 2018-2021 Expedia, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.expediagroup.apiary.extensions.events.metastore.kafka.messaging;
+
+import static com.expediagroup.apiary.extensions.events.metastore.kafka.metrics.MetricsConstant.LISTENER_DROPPED_MESSAGES;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.expediagroup.apiary.extensions.events.metastore.kafka.metrics.HiveMetricsHelper;
+
+/**
+ * Writes failed messages to the spill journal of the sender, from which they are replayed once the broker recovers.
+ */
+public class SpillingFailedMessageHandler implements FailedMessageHandler {
+  private static final Logger log = LoggerFactory.getLogger(SpillingFailedMessageHandler.class);
+
+  @Override
+  public void handle(KafkaMessage message, Exception exception, KafkaMessageSender sender) {
+    if (sender.spill(message)) {
+      log.warn("Unable to send event of table {} to Kafka, the event is spilled", message.getQualifiedTableName(),
+          exception);
+    } else {
+      log.error("Unable to send event of table {} to Kafka, the event is dropped", message.getQualifiedTableName(),
+          exception);
+      HiveMetricsHelper.incrementCounter(LISTENER_DROPPED_MESSAGES);
+    }
+  }
+
+}
@@ -0,0 +1,32 @@
+/**
+ * Copyright (C) 2018-2021 Expedia, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.expediagroup.apiary.extensions.events.metastore.kafka.messaging;
+
+/**
+ * Sends all the events of a table to the same partition, chosen from the hash code of its qualified name.
+ * <p>
+ * This is the partitioning the listener has always used, events of a table are in order but a few busy tables can
+ * make their partitions much larger than the others.
+ * </p>
+ */
+public class TableHashPartitioner implements KafkaPartitioner {
+
+  @Override
+  public int partition(KafkaMessage message, int numberOfPartitions) {
+    return Math.abs(message.getQualifiedTableName().hashCode() % numberOfPartitions);
+  }
+
+}
@@ -19,9 +19,13 @@ import java.util.Optional;
 
 import org.apache.hadoop.hive.common.metrics.common.Metrics;
 import org.apache.hadoop.hive.common.metrics.common.MetricsFactory;
+import org.apache.hadoop.hive.common.metrics.common.MetricsVariable;
+import org.apache.hadoop.hive.common.metrics.metrics2.CodahaleMetrics;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.codahale.metrics.Histogram;
+
 public class HiveMetricsHelper {
   private static final Logger log = LoggerFactory.getLogger(HiveMetricsHelper.class);
 
@@ -37,4 +41,39 @@ public class HiveMetricsHelper {
     return Optional.empty();
   }
 
+  /**
+   * @return {@code true} if the gauge has been registered.
+   */
+  public static boolean addGauge(String name, MetricsVariable<?> variable) {
+    try {
+      Metrics metrics = MetricsFactory.getInstance();
+      if (metrics != null) {
+        metrics.addGauge(name, variable);
+        return true;
+      }
+    } catch (Exception e) {
+      log.warn("Unable to add gauge {}", name, e);
+    }
+    return false;
+  }
+
+  /**
+   * Histograms are only supported by the {@link CodahaleMetrics} implementation, the value is ignored otherwise.
+   *
+   * @return The number of values recorded by the histogram, if any.
+   */
+  public static Optional<Long> updateHistogram(String name, long value) {
+    try {
+      Metrics metrics = MetricsFactory.getInstance();
+      if (metrics instanceof CodahaleMetrics) {
+        Histogram histogram = ((CodahaleMetrics) metrics).getMetricRegistry().histogram(name);
+        histogram.update(value);
+        return Optional.of(histogram.getCount());
+      }
+    } catch (Exception e) {
+      log.warn("Unable to update histogram {}", name, e);
+    }
+    return Optional.empty();
+  }
+
 }
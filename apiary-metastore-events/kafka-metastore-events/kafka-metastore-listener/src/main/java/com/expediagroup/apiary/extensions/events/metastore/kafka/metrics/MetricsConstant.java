@@ -19,6 +19,14 @@ public final class MetricsConstant {
 
   public static final String LISTENER_FAILURES = "kafka_listener_failures";
   public static final String LISTENER_SUCCESSES = "kafka_listener_successes";
+  public static final String LISTENER_SEND_FAILURES = "kafka_listener_send_failures";
+  public static final String LISTENER_SEND_RETRIES = "kafka_listener_send_retries";
+  public static final String LISTENER_DROPPED_MESSAGES = "kafka_listener_dropped_messages";
+  public static final String LISTENER_SPILLED_MESSAGES = "kafka_listener_spilled_messages";
+  public static final String LISTENER_REPLAYED_MESSAGES = "kafka_listener_replayed_messages";
+  public static final String LISTENER_SEND_LATENCY_MS = "kafka_listener_send_latency_ms";
+  public static final String LISTENER_PARTITIONS = "kafka_listener_partitions";
+  public static final String LISTENER_SNAPSHOT_FAILURES = "kafka_listener_snapshot_failures";
 
   private MetricsConstant() {}
 
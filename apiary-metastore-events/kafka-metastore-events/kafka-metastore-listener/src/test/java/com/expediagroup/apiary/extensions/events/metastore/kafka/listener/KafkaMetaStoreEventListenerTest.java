@@ -15,13 +15,25 @@
  */
 package com.expediagroup.apiary.extensions.events.metastore.kafka.listener;
 
+import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
+import static com.expediagroup.apiary.extensions.events.metastore.kafka.messaging.KafkaProducerProperty.AVRO_SCHEMA_REGISTRY_DIRECTORY;
+import static com.expediagroup.apiary.extensions.events.metastore.kafka.messaging.KafkaProducerProperty.SERDE_CLASS;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
 import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.hive.metastore.api.Partition;
 import org.apache.hadoop.hive.metastore.events.AddIndexEvent;
 import org.apache.hadoop.hive.metastore.events.AddPartitionEvent;
 import org.apache.hadoop.hive.metastore.events.AlterIndexEvent;
@@ -39,8 +51,12 @@ import org.apache.hadoop.hive.metastore.events.DropTableEvent;
 import org.apache.hadoop.hive.metastore.events.InsertEvent;
 import org.apache.hadoop.hive.metastore.events.LoadPartitionDoneEvent;
 import org.junit.Before;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Captor;
 import org.mockito.Mock;
 import org.mockito.junit.MockitoJUnitRunner;
 
@@ -53,7 +69,10 @@ import com.expediagroup.apiary.extensions.events.metastore.event.ApiaryDropTable
 import com.expediagroup.apiary.extensions.events.metastore.event.ApiaryInsertEvent;
 import com.expediagroup.apiary.extensions.events.metastore.event.ApiaryListenerEvent;
 import com.expediagroup.apiary.extensions.events.metastore.event.ApiaryListenerEventFactory;
+import com.expediagroup.apiary.extensions.events.metastore.event.EventType;
 import com.expediagroup.apiary.extensions.events.metastore.io.MetaStoreEventSerDe;
+import com.expediagroup.apiary.extensions.events.metastore.io.avro.AvroMetaStoreEventSerDe;
+import com.expediagroup.apiary.extensions.events.metastore.io.jackson.JsonMetaStoreEventSerDe;
 import com.expediagroup.apiary.extensions.events.metastore.kafka.messaging.KafkaMessage;
 import com.expediagroup.apiary.extensions.events.metastore.kafka.messaging.KafkaMessageSender;
 
@@ -67,6 +86,9 @@ public class KafkaMetaStoreEventListenerTest {
   private @Mock MetaStoreEventSerDe eventSerDe;
   private @Mock ApiaryListenerEventFactory apiaryListenerEventFactory;
   private @Mock KafkaMessageSender kafkaMessageSender;
+  private @Captor ArgumentCaptor<KafkaMessage> messageCaptor;
+
+  public @Rule TemporaryFolder temp = new TemporaryFolder();
 
   private final Configuration config = new Configuration();
   private KafkaMetaStoreEventListener listener;
@@ -77,6 +99,23 @@ public class KafkaMetaStoreEventListenerTest {
     listener = new KafkaMetaStoreEventListener(config, apiaryListenerEventFactory, eventSerDe, kafkaMessageSender);
   }
 
+  @Test
+  public void avroEventSerDeRegistersSchemasInConfiguredDirectory() {
+    File directory = new File(temp.getRoot(), "schemas");
+    config.set(SERDE_CLASS.key(), AvroMetaStoreEventSerDe.class.getName());
+    config.set(AVRO_SCHEMA_REGISTRY_DIRECTORY.key(), directory.getAbsolutePath());
+    assertThat(KafkaMetaStoreEventListener.eventSerDe(config)).isInstanceOf(AvroMetaStoreEventSerDe.class);
+    assertThat(directory.list()).isNotEmpty();
+  }
+
+  @Test
+  public void schemaRegistryDirectoryIgnoredByOtherEventSerDes() {
+    File directory = new File(temp.getRoot(), "schemas");
+    config.set(AVRO_SCHEMA_REGISTRY_DIRECTORY.key(), directory.getAbsolutePath());
+    assertThat(KafkaMetaStoreEventListener.eventSerDe(config)).isInstanceOf(JsonMetaStoreEventSerDe.class);
+    assertThat(directory).doesNotExist();
+  }
+
   @Test
   public void onCreateTable() {
     CreateTableEvent event = mock(CreateTableEvent.class);
@@ -88,6 +127,26 @@ public class KafkaMetaStoreEventListenerTest {
     verify(kafkaMessageSender).send(any(KafkaMessage.class));
   }
 
+  @Test
+  public void onCreateTablePublishesSnapshot() {
+    TableSnapshotPublisher tableSnapshotPublisher = mock(TableSnapshotPublisher.class);
+    doAnswer(invocation -> {
+      invocation.<Runnable> getArgument(0).run();
+      return null;
+    }).when(kafkaMessageSender).inTransaction(any(Runnable.class));
+    listener = new KafkaMetaStoreEventListener(config, apiaryListenerEventFactory, eventSerDe, kafkaMessageSender,
+        tableSnapshotPublisher);
+    CreateTableEvent event = mock(CreateTableEvent.class);
+    ApiaryCreateTableEvent apiaryEvent = mock(ApiaryCreateTableEvent.class);
+    when(apiaryEvent.getDatabaseName()).thenReturn(DATABASE);
+    when(apiaryEvent.getTableName()).thenReturn(TABLE);
+    when(apiaryListenerEventFactory.create(event)).thenReturn(apiaryEvent);
+    listener.onCreateTable(event);
+    verify(kafkaMessageSender).send(any(KafkaMessage.class));
+    verify(kafkaMessageSender).inTransaction(any(Runnable.class));
+    verify(tableSnapshotPublisher).publish(apiaryEvent, null);
+  }
+
   @Test
   public void onAlterTable() {
     AlterTableEvent event = mock(AlterTableEvent.class);
@@ -121,6 +180,36 @@ public class KafkaMetaStoreEventListenerTest {
     verify(kafkaMessageSender).send(any(KafkaMessage.class));
   }
 
+  @Test
+  public void addPartitionMessageHasPartitionValues() {
+    AddPartitionEvent event = mock(AddPartitionEvent.class);
+    ApiaryAddPartitionEvent apiaryEvent = mock(ApiaryAddPartitionEvent.class);
+    when(apiaryEvent.getDatabaseName()).thenReturn(DATABASE);
+    when(apiaryEvent.getTableName()).thenReturn(TABLE);
+    when(apiaryEvent.getEventType()).thenReturn(EventType.ON_ADD_PARTITION);
+    Partition partition = new Partition();
+    partition.setValues(Arrays.asList("2021-01-01", "1"));
+    when(apiaryEvent.getPartitions()).thenReturn(Collections.singletonList(partition));
+    when(apiaryListenerEventFactory.create(event)).thenReturn(apiaryEvent);
+    listener.onAddPartition(event);
+    verify(kafkaMessageSender).send(messageCaptor.capture());
+    assertThat(messageCaptor.getValue().getEventType()).isEqualTo(EventType.ON_ADD_PARTITION);
+    assertThat(messageCaptor.getValue().getPartitionValues()).containsExactly("2021-01-01", "1");
+  }
+
+  @Test
+  public void multiPartitionMessageHasNoPartitionValues() {
+    AddPartitionEvent event = mock(AddPartitionEvent.class);
+    ApiaryAddPartitionEvent apiaryEvent = mock(ApiaryAddPartitionEvent.class);
+    when(apiaryEvent.getDatabaseName()).thenReturn(DATABASE);
+    when(apiaryEvent.getTableName()).thenReturn(TABLE);
+    when(apiaryEvent.getPartitions()).thenReturn(Arrays.asList(new Partition(), new Partition()));
+    when(apiaryListenerEventFactory.create(event)).thenReturn(apiaryEvent);
+    listener.onAddPartition(event);
+    verify(kafkaMessageSender).send(messageCaptor.capture());
+    assertThat(messageCaptor.getValue().getPartitionValues()).isNull();
+  }
+
   @Test
   public void onAlterPartition() {
     AlterPartitionEvent event = mock(AlterPartitionEvent.class);
@@ -154,6 +243,24 @@ public class KafkaMetaStoreEventListenerTest {
     verify(kafkaMessageSender).send(any(KafkaMessage.class));
   }
 
+  @Test
+  public void insertMessageHasPartitionValues() {
+    InsertEvent event = mock(InsertEvent.class);
+    ApiaryInsertEvent apiaryEvent = mock(ApiaryInsertEvent.class);
+    when(apiaryEvent.getDatabaseName()).thenReturn(DATABASE);
+    when(apiaryEvent.getTableName()).thenReturn(TABLE);
+    when(apiaryEvent.getEventType()).thenReturn(EventType.ON_INSERT);
+    Map<String, String> partitionKeyValues = new LinkedHashMap<>();
+    partitionKeyValues.put("date", "2021-01-01");
+    partitionKeyValues.put("hour", "1");
+    when(apiaryEvent.getPartitionKeyValues()).thenReturn(partitionKeyValues);
+    when(apiaryListenerEventFactory.create(event)).thenReturn(apiaryEvent);
+    listener.onInsert(event);
+    verify(kafkaMessageSender).send(messageCaptor.capture());
+    assertThat(messageCaptor.getValue().getEventType()).isEqualTo(EventType.ON_INSERT);
+    assertThat(messageCaptor.getValue().getPartitionValues()).containsExactly("2021-01-01", "1");
+  }
+
   @Test
   public void onConfigChange() {
     listener.onConfigChange(mock(ConfigChangeEvent.class));
@@ -0,0 +1,256 @@
+/**
+ * Copyright (C) 2018-2021 Expedia, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.expediagroup.apiary.extensions.events.metastore.kafka.listener;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyZeroInteractions;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.apache.hadoop.hive.metastore.HiveMetaStore.HMSHandler;
+import org.apache.hadoop.hive.metastore.api.FieldSchema;
+import org.apache.hadoop.hive.metastore.api.Partition;
+import org.apache.hadoop.hive.metastore.api.Table;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+
+import com.expediagroup.apiary.extensions.events.metastore.event.ApiaryAddPartitionEvent;
+import com.expediagroup.apiary.extensions.events.metastore.event.ApiaryAlterPartitionEvent;
+import com.expediagroup.apiary.extensions.events.metastore.event.ApiaryAlterTableEvent;
+import com.expediagroup.apiary.extensions.events.metastore.event.ApiaryCreateTableEvent;
+import com.expediagroup.apiary.extensions.events.metastore.event.ApiaryDropPartitionEvent;
+import com.expediagroup.apiary.extensions.events.metastore.event.ApiaryDropTableEvent;
+import com.expediagroup.apiary.extensions.events.metastore.event.ApiaryInsertEvent;
+import com.expediagroup.apiary.extensions.events.metastore.event.ApiaryListenerEvent;
+import com.expediagroup.apiary.extensions.events.metastore.event.EventType;
+import com.expediagroup.apiary.extensions.events.metastore.event.TableSnapshot;
+import com.expediagroup.apiary.extensions.events.metastore.io.jackson.JsonTableSnapshotSerDe;
+import com.expediagroup.apiary.extensions.events.metastore.kafka.messaging.KafkaSnapshotSender;
+
+@RunWith(MockitoJUnitRunner.class)
+public class TableSnapshotPublisherTest {
+
+  private static final byte[] SNAPSHOT = "snapshot".getBytes();
+
+  private @Mock KafkaSnapshotSender sender;
+  private @Mock JsonTableSnapshotSerDe serDe;
+
+  private final Table table = table("tbl");
+  private TableSnapshotPublisher publisher;
+
+  @Before
+  public void init() {
+    publisher = new TableSnapshotPublisher(sender, serDe, true);
+  }
+
+  @Test
+  public void createTable() {
+    when(serDe.marshal(new TableSnapshot(table))).thenReturn(SNAPSHOT);
+    ApiaryCreateTableEvent event = event(ApiaryCreateTableEvent.class, EventType.ON_CREATE_TABLE);
+    when(event.getTable()).thenReturn(table);
+    publisher.publish(event);
+    verify(sender).send("db.tbl", SNAPSHOT);
+  }
+
+  @Test
+  public void failedEventIsNotPublished() {
+    ApiaryCreateTableEvent event = mock(ApiaryCreateTableEvent.class);
+    when(event.getStatus()).thenReturn(false);
+    publisher.publish(event);
+    verifyZeroInteractions(sender);
+  }
+
+  @Test
+  public void alterTable() {
+    when(serDe.marshal(new TableSnapshot(table))).thenReturn(SNAPSHOT);
+    ApiaryAlterTableEvent event = event(ApiaryAlterTableEvent.class, EventType.ON_ALTER_TABLE);
+    when(event.getOldTable()).thenReturn(table("tbl"));
+    when(event.getNewTable()).thenReturn(table);
+    publisher.publish(event);
+    verify(sender).send("db.tbl", SNAPSHOT);
+    verify(sender, never()).send(anyString(), isNull());
+  }
+
+  @Test
+  public void renameTableDeletesOldName() {
+    when(serDe.marshal(new TableSnapshot(table))).thenReturn(SNAPSHOT);
+    ApiaryAlterTableEvent event = event(ApiaryAlterTableEvent.class, EventType.ON_ALTER_TABLE);
+    when(event.getOldTable()).thenReturn(table("old_tbl"));
+    when(event.getNewTable()).thenReturn(table);
+    publisher.publish(event);
+    verify(sender).send("db.old_tbl", null);
+    verify(sender).send("db.tbl", SNAPSHOT);
+  }
+
+  @Test
+  public void renameTableMovesPartitions() throws Exception {
+    Partition partition = partition("2021-01-01", "1");
+    HMSHandler handler = mock(HMSHandler.class);
+    when(handler.get_partition_names("db", "tbl", (short) -1))
+        .thenReturn(Collections.singletonList("dt=2021-01-01/hour=1"));
+    when(handler.get_partitions_by_names("db", "tbl", Collections.singletonList("dt=2021-01-01/hour=1")))
+        .thenReturn(Collections.singletonList(partition));
+    when(serDe.marshal(any(TableSnapshot.class))).thenReturn(SNAPSHOT);
+    ApiaryAlterTableEvent event = event(ApiaryAlterTableEvent.class, EventType.ON_ALTER_TABLE);
+    when(event.getOldTable()).thenReturn(table("old_tbl"));
+    when(event.getNewTable()).thenReturn(table);
+    publisher.publish(event, handler);
+    verify(sender).send("db.old_tbl", null);
+    verify(sender).send("db.old_tbl/dt=2021-01-01/hour=1", null);
+    verify(serDe).marshal(new TableSnapshot(table, partition));
+    verify(sender).send("db.tbl/dt=2021-01-01/hour=1", SNAPSHOT);
+    verify(sender).send("db.tbl", SNAPSHOT);
+  }
+
+  @Test
+  public void renameTableFetchesPartitionsInBatches() throws Exception {
+    List<String> names = new ArrayList<>();
+    for (int i = 0; i <= TableSnapshotPublisher.PARTITION_BATCH_SIZE; i++) {
+      names.add("dt=2021-01-01/hour=" + i);
+    }
+    HMSHandler handler = mock(HMSHandler.class);
+    when(handler.get_partition_names("db", "tbl", (short) -1)).thenReturn(names);
+    when(handler.get_partitions_by_names("db", "tbl", names.subList(0, TableSnapshotPublisher.PARTITION_BATCH_SIZE)))
+        .thenReturn(Collections.singletonList(partition("2021-01-01", "1")));
+    when(handler.get_partitions_by_names("db", "tbl", names.subList(TableSnapshotPublisher.PARTITION_BATCH_SIZE,
+        names.size()))).thenReturn(Collections.singletonList(partition("2021-01-01", "2")));
+    when(serDe.marshal(any(TableSnapshot.class))).thenReturn(SNAPSHOT);
+    ApiaryAlterTableEvent event = event(ApiaryAlterTableEvent.class, EventType.ON_ALTER_TABLE);
+    when(event.getOldTable()).thenReturn(table("old_tbl"));
+    when(event.getNewTable()).thenReturn(table);
+    publisher.publish(event, handler);
+    verify(sender).send("db.old_tbl/dt=2021-01-01/hour=1", null);
+    verify(sender).send("db.old_tbl/dt=2021-01-01/hour=2", null);
+    verify(sender).send("db.tbl/dt=2021-01-01/hour=1", SNAPSHOT);
+    verify(sender).send("db.tbl/dt=2021-01-01/hour=2", SNAPSHOT);
+  }
+
+  @Test
+  public void renameTableDoesNotMovePartitionsWhenTheyAreNotPublished() {
+    publisher = new TableSnapshotPublisher(sender, serDe, false);
+    HMSHandler handler = mock(HMSHandler.class);
+    ApiaryAlterTableEvent event = event(ApiaryAlterTableEvent.class, EventType.ON_ALTER_TABLE);
+    when(event.getOldTable()).thenReturn(table("old_tbl"));
+    when(event.getNewTable()).thenReturn(table);
+    publisher.publish(event, handler);
+    verifyZeroInteractions(handler);
+  }
+
+  @Test
+  public void dropTable() {
+    ApiaryDropTableEvent event = event(ApiaryDropTableEvent.class, EventType.ON_DROP_TABLE);
+    when(event.getTable()).thenReturn(table);
+    publisher.publish(event);
+    verify(sender).send("db.tbl", null);
+  }
+
+  @Test
+  public void addPartitions() {
+    Partition first = partition("2021-01-01", "1");
+    Partition second = partition("2021-01-01", "2");
+    when(serDe.marshal(any(TableSnapshot.class))).thenReturn(SNAPSHOT);
+    ApiaryAddPartitionEvent event = event(ApiaryAddPartitionEvent.class, EventType.ON_ADD_PARTITION);
+    when(event.getTable()).thenReturn(table);
+    when(event.getPartitions()).thenReturn(Arrays.asList(first, second));
+    publisher.publish(event);
+    verify(serDe).marshal(new TableSnapshot(table, first));
+    verify(sender).send("db.tbl/dt=2021-01-01/hour=1", SNAPSHOT);
+    verify(sender).send("db.tbl/dt=2021-01-01/hour=2", SNAPSHOT);
+  }
+
+  @Test
+  public void partitionsAreNotPublishedByDefault() {
+    publisher = new TableSnapshotPublisher(sender, serDe, false);
+    ApiaryAddPartitionEvent event = event(ApiaryAddPartitionEvent.class, EventType.ON_ADD_PARTITION);
+    publisher.publish(event);
+    verifyZeroInteractions(sender);
+  }
+
+  @Test
+  public void alterPartitionWithNewValuesDeletesOldName() {
+    Partition newPartition = partition("2021-01-01", "2");
+    when(serDe.marshal(new TableSnapshot(table, newPartition))).thenReturn(SNAPSHOT);
+    ApiaryAlterPartitionEvent event = event(ApiaryAlterPartitionEvent.class, EventType.ON_ALTER_PARTITION);
+    when(event.getTable()).thenReturn(table);
+    when(event.getOldPartition()).thenReturn(partition("2021-01-01", "1"));
+    when(event.getNewPartition()).thenReturn(newPartition);
+    publisher.publish(event);
+    verify(sender).send("db.tbl/dt=2021-01-01/hour=1", null);
+    verify(sender).send("db.tbl/dt=2021-01-01/hour=2", SNAPSHOT);
+  }
+
+  @Test
+  public void dropPartitions() {
+    ApiaryDropPartitionEvent event = event(ApiaryDropPartitionEvent.class, EventType.ON_DROP_PARTITION);
+    when(event.getTable()).thenReturn(table);
+    when(event.getPartitions()).thenReturn(Collections.singletonList(partition("2021-01-01", "1")));
+    publisher.publish(event);
+    verify(sender).send("db.tbl/dt=2021-01-01/hour=1", null);
+  }
+
+  @Test
+  public void partitionNamesAreEscaped() {
+    ApiaryDropPartitionEvent event = event(ApiaryDropPartitionEvent.class, EventType.ON_DROP_PARTITION);
+    when(event.getTable()).thenReturn(table);
+    when(event.getPartitions()).thenReturn(Collections.singletonList(partition("a/b", "1")));
+    publisher.publish(event);
+    verify(sender).send(eq("db.tbl/dt=a%2Fb/hour=1"), isNull());
+  }
+
+  @Test
+  public void insertIsNotPublished() {
+    publisher.publish(event(ApiaryInsertEvent.class, EventType.ON_INSERT));
+    verifyZeroInteractions(sender);
+  }
+
+  private static <T extends ApiaryListenerEvent> T event(Class<T> eventClass, EventType eventType) {
+    T event = mock(eventClass);
+    when(event.getStatus()).thenReturn(true);
+    when(event.getEventType()).thenReturn(eventType);
+    return event;
+  }
+
+  private static Table table(String name) {
+    Table table = new Table();
+    table.setDbName("db");
+    table.setTableName(name);
+    table.setPartitionKeys(
+        Arrays.asList(new FieldSchema("dt", "string", null), new FieldSchema("hour", "string", null)));
+    return table;
+  }
+
+  private static Partition partition(String... values) {
+    Partition partition = new Partition();
+    partition.setDbName("db");
+    partition.setTableName("tbl");
+    partition.setValues(Arrays.asList(values));
+    return partition;
+  }
+
+}
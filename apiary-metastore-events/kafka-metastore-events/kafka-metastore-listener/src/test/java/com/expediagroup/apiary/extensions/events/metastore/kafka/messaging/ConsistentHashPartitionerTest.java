@@ -0,0 +1,79 @@
+/**
+ * Copyright (C) 2018-2021 Expedia, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.expediagroup.apiary.extensions.events.metastore.kafka.messaging;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import org.junit.Test;
+
+public class ConsistentHashPartitionerTest {
+
+  private final ConsistentHashPartitioner partitioner = new ConsistentHashPartitioner(128);
+
+  @Test
+  public void sameTableSamePartition() {
+    int partition = partitioner.partition(message("table"), 12);
+    for (int i = 0; i < 10; i++) {
+      assertThat(partitioner.partition(message("table"), 12)).isEqualTo(partition);
+    }
+    assertThat(new ConsistentHashPartitioner(128).partition(message("table"), 12)).isEqualTo(partition);
+  }
+
+  @Test
+  public void usesAllPartitions() {
+    Set<Integer> partitions = new HashSet<>();
+    for (int i = 0; i < 1000; i++) {
+      int partition = partitioner.partition(message("table_" + i), 12);
+      assertThat(partition).isBetween(0, 11);
+      partitions.add(partition);
+    }
+    assertThat(partitions).hasSize(12);
+  }
+
+  @Test
+  public void addingPartitionsMovesFewTables() {
+    Map<String, Integer> before = new HashMap<>();
+    for (int i = 0; i < 1000; i++) {
+      before.put("table_" + i, partitioner.partition(message("table_" + i), 12));
+    }
+    int moved = 0;
+    for (Map.Entry<String, Integer> entry : before.entrySet()) {
+      int after = partitioner.partition(message(entry.getKey()), 16);
+      if (after != entry.getValue()) {
+        // tables only move to the new partitions
+        assertThat(after).isGreaterThanOrEqualTo(12);
+        moved++;
+      }
+    }
+    // a quarter of the tables is expected to move
+    assertThat(moved).isBetween(150, 350);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void invalidVirtualNodes() {
+    new ConsistentHashPartitioner(0);
+  }
+
+  private static KafkaMessage message(String table) {
+    return KafkaMessage.builder().database("database").table(table).payload(new byte[0]).build();
+  }
+
+}
@@ -0,0 +1,37 @@
+/**
+ * Copyright (C) 2018-2021 Expedia, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.expediagroup.apiary.extensions.events.metastore.kafka.messaging;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import org.junit.Test;
+
+public class DatabasePartitionerTest {
+
+  private final DatabasePartitioner partitioner = new DatabasePartitioner();
+
+  @Test
+  public void tablesOfDatabaseSamePartition() {
+    int partition = partitioner.partition(message("database", "table1"), 12);
+    assertThat(partition).isBetween(0, 11);
+    assertThat(partitioner.partition(message("database", "table2"), 12)).isEqualTo(partition);
+  }
+
+  private static KafkaMessage message(String database, String table) {
+    return KafkaMessage.builder().database(database).table(table).payload(new byte[0]).build();
+  }
+
+}
@@ -0,0 +1,112 @@
+/**
+ * Copyright (C) 2018-2021 Expedia, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.expediagroup.apiary.extensions.events.metastore.kafka.messaging;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.Test;
+
+import com.expediagroup.apiary.extensions.events.metastore.event.EventType;
+
+public class HotKeyPartitionerTest {
+
+  private static final int PARTITIONS = 12;
+
+  private final TableHashPartitioner tableHashPartitioner = new TableHashPartitioner();
+  private final HotKeyPartitioner partitioner = new HotKeyPartitioner(tableHashPartitioner,
+      Arrays.asList("db.hot", " DB.Other_Hot "), 4);
+
+  @Test
+  public void hotTableInsertsAreSpread() {
+    int base = tableHashPartitioner.partition(message("hot", EventType.ON_INSERT, "0"), PARTITIONS);
+    Set<Integer> partitions = new HashSet<>();
+    for (int i = 0; i < 100; i++) {
+      int partition = partitioner.partition(message("hot", EventType.ON_INSERT, Integer.toString(i)), PARTITIONS);
+      assertThat((partition - base + PARTITIONS) % PARTITIONS).isBetween(0, 3);
+      partitions.add(partition);
+    }
+    assertThat(partitions).hasSize(4);
+  }
+
+  @Test
+  public void samePartitionValuesSamePartition() {
+    int insert = partitioner.partition(message("hot", EventType.ON_INSERT, "2021-01-01"), PARTITIONS);
+    int addPartition = partitioner.partition(message("hot", EventType.ON_ADD_PARTITION, "2021-01-01"), PARTITIONS);
+    assertThat(addPartition).isEqualTo(insert);
+  }
+
+  @Test
+  public void hotTablesAreMatchedIgnoringCase() {
+    Set<Integer> partitions = new HashSet<>();
+    for (int i = 0; i < 100; i++) {
+      partitions.add(partitioner.partition(message("other_hot", EventType.ON_INSERT, Integer.toString(i)), PARTITIONS));
+    }
+    assertThat(partitions).hasSize(4);
+  }
+
+  @Test
+  public void otherEventTypesAreNotSpread() {
+    KafkaMessage message = message("hot", EventType.ON_DROP_PARTITION, "2021-01-01");
+    assertThat(partitioner.partition(message, PARTITIONS))
+        .isEqualTo(tableHashPartitioner.partition(message, PARTITIONS));
+  }
+
+  @Test
+  public void otherTablesAreNotSpread() {
+    KafkaMessage message = message("cold", EventType.ON_INSERT, "2021-01-01");
+    assertThat(partitioner.partition(message, PARTITIONS))
+        .isEqualTo(tableHashPartitioner.partition(message, PARTITIONS));
+  }
+
+  @Test
+  public void eventsWithoutPartitionValuesAreNotSpread() {
+    KafkaMessage message = message("hot", EventType.ON_ADD_PARTITION, (List<String>) null);
+    assertThat(partitioner.partition(message, PARTITIONS))
+        .isEqualTo(tableHashPartitioner.partition(message, PARTITIONS));
+  }
+
+  @Test
+  public void spreadOverAllPartitions() {
+    HotKeyPartitioner allPartitions = new HotKeyPartitioner(tableHashPartitioner, Collections.singleton("db.hot"), 0);
+    Set<Integer> partitions = new HashSet<>();
+    for (int i = 0; i < 1000; i++) {
+      partitions.add(allPartitions.partition(message("hot", EventType.ON_INSERT, Integer.toString(i)), PARTITIONS));
+    }
+    assertThat(partitions).hasSize(PARTITIONS);
+  }
+
+  private static KafkaMessage message(String table, EventType eventType, String partitionValue) {
+    return message(table, eventType, Collections.singletonList(partitionValue));
+  }
+
+  private static KafkaMessage message(String table, EventType eventType, List<String> partitionValues) {
+    return KafkaMessage
+        .builder()
+        .database("db")
+        .table(table)
+        .payload(new byte[0])
+        .eventType(eventType)
+        .partitionValues(partitionValues)
+        .build();
+  }
+
+}
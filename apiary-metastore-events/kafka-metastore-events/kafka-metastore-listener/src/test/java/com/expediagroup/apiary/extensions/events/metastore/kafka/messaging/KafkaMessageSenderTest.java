@@ -15,45 +15,84 @@
  */
 package com.expediagroup.apiary.extensions.events.metastore.kafka.messaging;
 
+import static java.nio.charset.StandardCharsets.UTF_8;
+
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.same;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyZeroInteractions;
 import static org.mockito.Mockito.when;
 
+import static com.expediagroup.apiary.extensions.events.metastore.kafka.messaging.KafkaMessageSender.failedMessageHandler;
 import static com.expediagroup.apiary.extensions.events.metastore.kafka.messaging.KafkaMessageSender.kafkaProperties;
+import static com.expediagroup.apiary.extensions.events.metastore.kafka.messaging.KafkaMessageSender.partitioner;
 import static com.expediagroup.apiary.extensions.events.metastore.kafka.messaging.KafkaMessageSender.topic;
+import static com.expediagroup.apiary.extensions.events.metastore.kafka.messaging.KafkaMessageSender.transactional;
+import static com.expediagroup.apiary.extensions.events.metastore.kafka.messaging.KafkaMessageSender.transactionalId;
 import static com.expediagroup.apiary.extensions.events.metastore.kafka.messaging.KafkaProducerProperty.ACKS;
 import static com.expediagroup.apiary.extensions.events.metastore.kafka.messaging.KafkaProducerProperty.BATCH_SIZE;
 import static com.expediagroup.apiary.extensions.events.metastore.kafka.messaging.KafkaProducerProperty.BOOTSTRAP_SERVERS;
 import static com.expediagroup.apiary.extensions.events.metastore.kafka.messaging.KafkaProducerProperty.BUFFER_MEMORY;
 import static com.expediagroup.apiary.extensions.events.metastore.kafka.messaging.KafkaProducerProperty.CLIENT_ID;
+import static com.expediagroup.apiary.extensions.events.metastore.kafka.messaging.KafkaProducerProperty.COMPRESSION_TYPE;
+import static com.expediagroup.apiary.extensions.events.metastore.kafka.messaging.KafkaProducerProperty.ENABLE_IDEMPOTENCE;
+import static com.expediagroup.apiary.extensions.events.metastore.kafka.messaging.KafkaProducerProperty.FAILED_MESSAGE_HANDLER;
 import static com.expediagroup.apiary.extensions.events.metastore.kafka.messaging.KafkaProducerProperty.LINGER_MS;
 import static com.expediagroup.apiary.extensions.events.metastore.kafka.messaging.KafkaProducerProperty.MAX_IN_FLIGHT_REQUESTS_PER_CONNECTION;
+import static com.expediagroup.apiary.extensions.events.metastore.kafka.messaging.KafkaProducerProperty.PARTITIONER;
 import static com.expediagroup.apiary.extensions.events.metastore.kafka.messaging.KafkaProducerProperty.RETRIES;
+import static com.expediagroup.apiary.extensions.events.metastore.kafka.messaging.KafkaProducerProperty.SPILL_JOURNAL_DIRECTORY;
 import static com.expediagroup.apiary.extensions.events.metastore.kafka.messaging.KafkaProducerProperty.TOPIC_NAME;
+import static com.expediagroup.apiary.extensions.events.metastore.kafka.messaging.KafkaProducerProperty.TRANSACTIONAL_ID;
 
+import java.io.IOException;
+import java.time.Duration;
 import java.util.Properties;
+import java.util.concurrent.ExecutionException;
 
 import org.apache.hadoop.conf.Configuration;
+import org.apache.kafka.clients.producer.Callback;
 import org.apache.kafka.clients.producer.KafkaProducer;
 import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.clients.producer.RecordMetadata;
+import org.apache.kafka.common.KafkaException;
 import org.apache.kafka.common.PartitionInfo;
+import org.apache.kafka.common.errors.ProducerFencedException;
+import org.apache.kafka.common.errors.TimeoutException;
 import org.apache.kafka.common.serialization.ByteArraySerializer;
-import org.apache.kafka.common.serialization.LongSerializer;
 import org.datanucleus.store.types.wrappers.List;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 import org.junit.runner.RunWith;
 import org.mockito.ArgumentCaptor;
 import org.mockito.Captor;
+import org.mockito.InOrder;
 import org.mockito.Mock;
 import org.mockito.junit.MockitoJUnitRunner;
 
+import com.expediagroup.apiary.extensions.events.metastore.common.MetaStoreEventsException;
+
 
 @RunWith(MockitoJUnitRunner.class)
 public class KafkaMessageSenderTest {
 
+  public @Rule TemporaryFolder temporaryFolder = new TemporaryFolder();
+
   private @Captor ArgumentCaptor<ProducerRecord> producerRecordCaptor;
+  private @Captor ArgumentCaptor<Callback> callbackCaptor;
+  private @Mock FailedMessageHandler failedMessageHandler;
   private @Mock KafkaMessage kafkaMessage;
-  private @Mock KafkaProducer<Long, byte[]> producer;
+  private @Mock KafkaProducer<byte[], byte[]> producer;
   private @Mock List<PartitionInfo> partitionInfoList;
   private Configuration conf = new Configuration();
 
@@ -62,15 +101,237 @@ public class KafkaMessageSenderTest {
     byte[] payload = { 1, 2, 3 };
     when(kafkaMessage.getPayload()).thenReturn(payload);
     when(kafkaMessage.getQualifiedTableName()).thenReturn("database.table");
+    when(kafkaMessage.getKey()).thenReturn("database.table".getBytes(UTF_8));
+    when(kafkaMessage.getTimestamp()).thenReturn(123L);
     when(producer.partitionsFor("topic")).thenReturn(partitionInfoList);
     when(partitionInfoList.size()).thenReturn(5);
     KafkaMessageSender kafkaMessageSender = new KafkaMessageSender("topic", producer);
     kafkaMessageSender.send(kafkaMessage);
-    verify(producer).send(producerRecordCaptor.capture());
+    verify(producer).send(producerRecordCaptor.capture(), any(Callback.class));
     ProducerRecord record = producerRecordCaptor.getValue();
     assertThat(record.topic()).isEqualToIgnoringCase("topic");
     assertThat(record.partition()).isEqualTo(1);
-    assertThat(record.value()).isEqualTo(payload);
+    assertThat(new String((byte[]) record.key(), UTF_8)).isEqualTo("database.table");
+    assertThat(record.timestamp()).isEqualTo(123L);
+    assertThat(record.value()).isSameAs(payload);
+  }
+
+  @Test
+  public void sendUsesPartitioner() {
+    when(producer.partitionsFor("topic")).thenReturn(partitionInfoList);
+    when(partitionInfoList.size()).thenReturn(5);
+    KafkaMessage message = message("payload");
+    KafkaMessageSender kafkaMessageSender = new KafkaMessageSender("topic", producer, failedMessageHandler,
+        (kafkaMessage, numberOfPartitions) -> numberOfPartitions - 1, null, 0L, 0L, 0L);
+    kafkaMessageSender.send(message);
+    verify(producer).send(producerRecordCaptor.capture(), any(Callback.class));
+    assertThat(producerRecordCaptor.getValue().partition()).isEqualTo(4);
+  }
+
+  @Test
+  public void refreshPartitions() {
+    when(producer.partitionsFor("topic")).thenReturn(partitionInfoList);
+    when(partitionInfoList.size()).thenReturn(5, 8);
+    KafkaMessageSender kafkaMessageSender = new KafkaMessageSender("topic", producer, failedMessageHandler);
+    assertThat(kafkaMessageSender.getNumberOfPartitions()).isEqualTo(5);
+    kafkaMessageSender.refreshPartitions();
+    assertThat(kafkaMessageSender.getNumberOfPartitions()).isEqualTo(8);
+  }
+
+  @Test
+  public void refreshPartitionsKeepsCountOnFailure() {
+    when(producer.partitionsFor("topic")).thenReturn(partitionInfoList).thenThrow(new TimeoutException("metadata"));
+    when(partitionInfoList.size()).thenReturn(5);
+    KafkaMessageSender kafkaMessageSender = new KafkaMessageSender("topic", producer, failedMessageHandler);
+    kafkaMessageSender.refreshPartitions();
+    assertThat(kafkaMessageSender.getNumberOfPartitions()).isEqualTo(5);
+  }
+
+  @Test
+  public void acknowledgedMessageIsNotHandled() {
+    when(kafkaMessage.getPayload()).thenReturn(new byte[] { 1 });
+    when(kafkaMessage.getQualifiedTableName()).thenReturn("database.table");
+    when(producer.partitionsFor("topic")).thenReturn(partitionInfoList);
+    when(partitionInfoList.size()).thenReturn(5);
+    KafkaMessageSender kafkaMessageSender = new KafkaMessageSender("topic", producer, failedMessageHandler);
+    kafkaMessageSender.send(kafkaMessage);
+    verify(producer).send(any(ProducerRecord.class), callbackCaptor.capture());
+    callbackCaptor.getValue().onCompletion(new RecordMetadata(null, 0L, 0L, 0L, 0L, 0, 0), null);
+    verifyZeroInteractions(failedMessageHandler);
+  }
+
+  @Test
+  public void failedMessageIsHandled() {
+    when(kafkaMessage.getPayload()).thenReturn(new byte[] { 1 });
+    when(kafkaMessage.getQualifiedTableName()).thenReturn("database.table");
+    when(producer.partitionsFor("topic")).thenReturn(partitionInfoList);
+    when(partitionInfoList.size()).thenReturn(5);
+    KafkaMessageSender kafkaMessageSender = new KafkaMessageSender("topic", producer, failedMessageHandler);
+    kafkaMessageSender.send(kafkaMessage);
+    verify(producer).send(any(ProducerRecord.class), callbackCaptor.capture());
+    TimeoutException exception = new TimeoutException("expired");
+    callbackCaptor.getValue().onCompletion(null, exception);
+    verify(failedMessageHandler).handle(eq(kafkaMessage), same(exception), same(kafkaMessageSender));
+  }
+
+  @Test
+  public void defaultFailedMessageHandler() {
+    assertThat(failedMessageHandler(conf)).isInstanceOf(LoggingFailedMessageHandler.class);
+  }
+
+  @Test
+  public void retryingFailedMessageHandler() {
+    conf.set(FAILED_MESSAGE_HANDLER.key(), "retry");
+    assertThat(failedMessageHandler(conf)).isInstanceOf(RetryingFailedMessageHandler.class);
+  }
+
+  @Test
+  public void spillingFailedMessageHandler() {
+    conf.set(FAILED_MESSAGE_HANDLER.key(), "spill");
+    conf.set(SPILL_JOURNAL_DIRECTORY.key(), temporaryFolder.getRoot().getPath());
+    assertThat(failedMessageHandler(conf)).isInstanceOf(SpillingFailedMessageHandler.class);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void spillingFailedMessageHandlerRequiresJournal() {
+    conf.set(FAILED_MESSAGE_HANDLER.key(), "spill");
+    failedMessageHandler(conf);
+  }
+
+  @Test
+  public void defaultPartitioner() {
+    assertThat(partitioner(conf)).isInstanceOf(TableHashPartitioner.class);
+  }
+
+  @Test
+  public void builtInPartitioners() {
+    conf.set(PARTITIONER.key(), "consistent-hash");
+    assertThat(partitioner(conf)).isInstanceOf(ConsistentHashPartitioner.class);
+    conf.set(PARTITIONER.key(), "database");
+    assertThat(partitioner(conf)).isInstanceOf(DatabasePartitioner.class);
+    conf.set(PARTITIONER.key(), "hot-key");
+    assertThat(partitioner(conf)).isInstanceOf(HotKeyPartitioner.class);
+  }
+
+  @Test
+  public void customPartitioner() {
+    conf.set(PARTITIONER.key(), FirstPartitioner.class.getName());
+    KafkaPartitioner partitioner = partitioner(conf);
+    assertThat(partitioner).isInstanceOf(FirstPartitioner.class);
+    assertThat(((FirstPartitioner) partitioner).conf).isSameAs(conf);
+  }
+
+  @Test(expected = MetaStoreEventsException.class)
+  public void unknownPartitioner() {
+    conf.set(PARTITIONER.key(), "com.example.UnknownPartitioner");
+    partitioner(conf);
+  }
+
+  public static class FirstPartitioner implements KafkaPartitioner {
+    private Configuration conf;
+
+    @Override
+    public void configure(Configuration conf) {
+      this.conf = conf;
+    }
+
+    @Override
+    public int partition(KafkaMessage message, int numberOfPartitions) {
+      return 0;
+    }
+  }
+
+  @Test
+  public void noSpillJournalByDefault() {
+    assertThat(KafkaMessageSender.spillJournal(conf)).isNull();
+  }
+
+  @Test
+  public void spillsWhenInFlightBytesReachThreshold() throws IOException {
+    when(producer.partitionsFor("topic")).thenReturn(partitionInfoList);
+    when(partitionInfoList.size()).thenReturn(5);
+    SpillJournal journal = new SpillJournal(temporaryFolder.getRoot().toPath(), 1024);
+    KafkaMessageSender kafkaMessageSender = new KafkaMessageSender("topic", producer, failedMessageHandler,
+        new TableHashPartitioner(), journal,
+        3L, 3_600_000L, 0L);
+
+    kafkaMessageSender.send(message("payload1"));
+    kafkaMessageSender.send(message("payload2"));
+
+    verify(producer, times(1)).send(any(ProducerRecord.class), any(Callback.class));
+    assertThat(journal.isEmpty()).isFalse();
+  }
+
+  @Test
+  public void spillsWhenProducerRejectsMessage() throws IOException {
+    when(producer.partitionsFor("topic")).thenReturn(partitionInfoList);
+    when(partitionInfoList.size()).thenReturn(5);
+    when(producer.send(any(ProducerRecord.class), any(Callback.class)))
+        .thenThrow(new TimeoutException("buffer exhausted"));
+    SpillJournal journal = new SpillJournal(temporaryFolder.getRoot().toPath(), 1024);
+    KafkaMessageSender kafkaMessageSender = new KafkaMessageSender("topic", producer, failedMessageHandler,
+        new TableHashPartitioner(), journal,
+        1024L, 3_600_000L, 0L);
+
+    kafkaMessageSender.send(message("payload"));
+
+    assertThat(journal.isEmpty()).isFalse();
+  }
+
+  @Test
+  public void replaysSpilledMessages() throws Exception {
+    when(producer.partitionsFor("topic")).thenReturn(partitionInfoList);
+    when(partitionInfoList.size()).thenReturn(5);
+    doAnswer(invocation -> {
+      invocation.<Callback> getArgument(1).onCompletion(new RecordMetadata(null, 0L, 0L, 0L, 0L, 0, 0), null);
+      return null;
+    }).when(producer).send(any(ProducerRecord.class), any(Callback.class));
+    SpillJournal journal = new SpillJournal(temporaryFolder.getRoot().toPath(), 1024);
+    KafkaMessageSender kafkaMessageSender = new KafkaMessageSender("topic", producer, failedMessageHandler,
+        new TableHashPartitioner(), journal,
+        1024L, 10L, 0L);
+
+    assertThat(kafkaMessageSender.spill(message("payload1"))).isTrue();
+    assertThat(kafkaMessageSender.spill(message("payload2"))).isTrue();
+
+    long deadline = System.currentTimeMillis() + 5000L;
+    while (!isEmpty(journal) && System.currentTimeMillis() < deadline) {
+      Thread.sleep(10L);
+    }
+    assertThat(isEmpty(journal)).isTrue();
+    verify(producer, times(2)).send(producerRecordCaptor.capture(), any(Callback.class));
+    assertThat(new String((byte[]) producerRecordCaptor.getAllValues().get(0).value(), UTF_8)).isEqualTo("payload1");
+    assertThat(new String((byte[]) producerRecordCaptor.getAllValues().get(1).value(), UTF_8)).isEqualTo("payload2");
+  }
+
+  @Test
+  public void messageIsNotSpilledWithoutJournal() {
+    when(producer.partitionsFor("topic")).thenReturn(partitionInfoList);
+    when(partitionInfoList.size()).thenReturn(5);
+    KafkaMessageSender kafkaMessageSender = new KafkaMessageSender("topic", producer, failedMessageHandler);
+    assertThat(kafkaMessageSender.spill(message("payload"))).isFalse();
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void unsupportedFailedMessageHandler() {
+    conf.set(FAILED_MESSAGE_HANDLER.key(), "ignore");
+    failedMessageHandler(conf);
+  }
+
+  private static boolean isEmpty(SpillJournal journal) {
+    synchronized (journal) {
+      return journal.isEmpty();
+    }
+  }
+
+  private static KafkaMessage message(String payload) {
+    return KafkaMessage
+        .builder()
+        .database("database")
+        .table("table")
+        .timestamp(1L)
+        .payload(payload.getBytes(UTF_8))
+        .build();
   }
 
   @Test
@@ -83,6 +344,7 @@ public class KafkaMessageSenderTest {
     conf.set(BATCH_SIZE.key(), "3");
     conf.set(LINGER_MS.key(), "4");
     conf.set(BUFFER_MEMORY.key(), "5");
+    conf.set(COMPRESSION_TYPE.key(), "zstd");
     Properties props = kafkaProperties(conf);
     assertThat(props.get("bootstrap.servers")).isEqualTo("broker");
     assertThat(props.get("acks")).isEqualTo("acknowledgements");
@@ -91,10 +353,166 @@ public class KafkaMessageSenderTest {
     assertThat(props.get("batch.size")).isEqualTo(3);
     assertThat(props.get("linger.ms")).isEqualTo(4L);
     assertThat(props.get("buffer.memory")).isEqualTo(5L);
-    assertThat(props.get("key.serializer")).isEqualTo(LongSerializer.class.getName());
+    assertThat(props.get("compression.type")).isEqualTo("zstd");
+    assertThat(props.get("key.serializer")).isEqualTo(ByteArraySerializer.class.getName());
     assertThat(props.get("value.serializer")).isEqualTo(ByteArraySerializer.class.getName());
   }
 
+  @Test
+  public void idempotenceIsDisabledByDefault() {
+    conf.set(BOOTSTRAP_SERVERS.key(), "broker");
+    conf.set(CLIENT_ID.key(), "client");
+    Properties props = kafkaProperties(conf);
+    assertThat(props.get("enable.idempotence")).isEqualTo(false);
+    assertThat(props.containsKey("transactional.id")).isFalse();
+  }
+
+  @Test
+  public void enableIdempotence() {
+    conf.set(BOOTSTRAP_SERVERS.key(), "broker");
+    conf.set(CLIENT_ID.key(), "client");
+    conf.set(ENABLE_IDEMPOTENCE.key(), "true");
+    assertThat(kafkaProperties(conf).get("enable.idempotence")).isEqualTo(true);
+  }
+
+  @Test
+  public void transactionalIdEnablesIdempotence() {
+    conf.set(BOOTSTRAP_SERVERS.key(), "broker");
+    conf.set(CLIENT_ID.key(), "client");
+    conf.set(TRANSACTIONAL_ID.key(), "metastore-1");
+    Properties props = kafkaProperties(conf);
+    assertThat((String) props.get("transactional.id")).startsWith("metastore-1-");
+    assertThat(props.get("enable.idempotence")).isEqualTo(true);
+    assertThat(transactional(conf)).isTrue();
+  }
+
+  @Test
+  public void transactionalIdIsSuffixedWithHostName() {
+    assertThat(transactionalId("metastore", "host-1")).isEqualTo("metastore-host-1");
+  }
+
+  @Test
+  public void notTransactionalByDefault() {
+    assertThat(transactional(conf)).isFalse();
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void transactionsCannotSpill() {
+    conf.set(TRANSACTIONAL_ID.key(), "metastore-1");
+    conf.set(SPILL_JOURNAL_DIRECTORY.key(), temporaryFolder.getRoot().getAbsolutePath());
+    transactional(conf);
+  }
+
+  @Test
+  public void transactionalSend() {
+    when(producer.partitionsFor("topic")).thenReturn(partitionInfoList);
+    when(partitionInfoList.size()).thenReturn(5);
+    KafkaMessageSender kafkaMessageSender = transactionalSender();
+    kafkaMessageSender.send(message("payload"));
+    InOrder inOrder = inOrder(producer);
+    inOrder.verify(producer).initTransactions();
+    inOrder.verify(producer).beginTransaction();
+    inOrder.verify(producer).send(any(ProducerRecord.class));
+    inOrder.verify(producer).commitTransaction();
+    verifyZeroInteractions(failedMessageHandler);
+  }
+
+  @Test
+  public void sendsOfATransactionAreCommittedTogether() {
+    when(producer.partitionsFor("topic")).thenReturn(partitionInfoList);
+    when(partitionInfoList.size()).thenReturn(5);
+    KafkaMessageSender kafkaMessageSender = transactionalSender();
+    kafkaMessageSender.inTransaction(() -> {
+      kafkaMessageSender.send(message("payload1"));
+      kafkaMessageSender.send(message("payload2"));
+    });
+    verify(producer, times(1)).beginTransaction();
+    verify(producer, times(2)).send(any(ProducerRecord.class));
+    verify(producer, times(1)).commitTransaction();
+  }
+
+  @Test
+  public void failedTransactionIsAbortedAndItsMessagesHandled() {
+    when(producer.partitionsFor("topic")).thenReturn(partitionInfoList);
+    when(partitionInfoList.size()).thenReturn(5);
+    KafkaException exception = new KafkaException("commit failed");
+    doThrow(exception).when(producer).commitTransaction();
+    KafkaMessageSender kafkaMessageSender = transactionalSender();
+    KafkaMessage first = message("payload1");
+    KafkaMessage second = message("payload2");
+    kafkaMessageSender.inTransaction(() -> {
+      kafkaMessageSender.send(first);
+      kafkaMessageSender.send(second);
+    });
+    verify(producer).abortTransaction();
+    verify(failedMessageHandler).handle(same(first), same(exception), same(kafkaMessageSender));
+    verify(failedMessageHandler).handle(same(second), same(exception), same(kafkaMessageSender));
+  }
+
+  @Test
+  public void transactionIsAbortedWhenSendsFail() {
+    when(producer.partitionsFor("topic")).thenReturn(partitionInfoList);
+    when(partitionInfoList.size()).thenReturn(5);
+    KafkaMessageSender kafkaMessageSender = transactionalSender();
+    IllegalStateException exception = new IllegalStateException("snapshot failed");
+    KafkaMessage message = message("payload");
+    assertThatThrownBy(() -> kafkaMessageSender.inTransaction(() -> {
+      kafkaMessageSender.send(message);
+      throw exception;
+    })).isSameAs(exception);
+    verify(producer).abortTransaction();
+    verify(producer, never()).commitTransaction();
+    verify(failedMessageHandler).handle(same(message), same(exception), same(kafkaMessageSender));
+  }
+
+  @Test
+  public void fencedProducerIsReplaced() {
+    when(producer.partitionsFor("topic")).thenReturn(partitionInfoList);
+    when(partitionInfoList.size()).thenReturn(5);
+    ProducerFencedException exception = new ProducerFencedException("fenced");
+    doThrow(exception).when(producer).commitTransaction();
+    KafkaProducer<byte[], byte[]> replacement = mock(KafkaProducer.class);
+    KafkaMessageSender kafkaMessageSender = new KafkaMessageSender("topic", producer, failedMessageHandler,
+        new TableHashPartitioner(), null, 0L, 0L, 0L, true, () -> replacement);
+    KafkaMessage first = message("payload1");
+    kafkaMessageSender.send(first);
+
+    verify(producer, never()).abortTransaction();
+    verify(producer).close(Duration.ZERO);
+    verify(replacement).initTransactions();
+    verify(failedMessageHandler).handle(same(first), same(exception), same(kafkaMessageSender));
+    assertThat(kafkaMessageSender.transactionalProducer()).isSameAs(replacement);
+
+    kafkaMessageSender.send(message("payload2"));
+    verify(replacement).beginTransaction();
+    verify(replacement).send(any(ProducerRecord.class));
+    verify(replacement).commitTransaction();
+  }
+
+  @Test(expected = ExecutionException.class)
+  public void transactionalSendAndWaitThrowsWhenCommitFails() throws Exception {
+    when(producer.partitionsFor("topic")).thenReturn(partitionInfoList);
+    when(partitionInfoList.size()).thenReturn(5);
+    doThrow(new KafkaException("commit failed")).when(producer).commitTransaction();
+    transactionalSender().sendAndWait(message("payload"));
+  }
+
+  @Test
+  public void inTransactionRunsSendsWhenNotTransactional() {
+    when(producer.partitionsFor("topic")).thenReturn(partitionInfoList);
+    when(partitionInfoList.size()).thenReturn(5);
+    KafkaMessageSender kafkaMessageSender = new KafkaMessageSender("topic", producer, failedMessageHandler);
+    kafkaMessageSender.inTransaction(() -> kafkaMessageSender.send(message("payload")));
+    verify(producer).send(any(ProducerRecord.class), any(Callback.class));
+    verify(producer, never()).beginTransaction();
+    assertThat(kafkaMessageSender.transactionalProducer()).isNull();
+  }
+
+  private KafkaMessageSender transactionalSender() {
+    return new KafkaMessageSender("topic", producer, failedMessageHandler, new TableHashPartitioner(), null, 0L, 0L,
+        0L, true);
+  }
+
   @Test
   public void hadoopTopicIsNotNull() {
     conf.set(TOPIC_NAME.key(), "topic");
@@ -15,6 +15,8 @@
  */
 package com.expediagroup.apiary.extensions.events.metastore.kafka.messaging;
 
+import static java.nio.charset.StandardCharsets.UTF_8;
+
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.assertThatThrownBy;
 
@@ -40,6 +42,15 @@ public class KafkaMessageTest {
     assertThat(message.getPayload()).isEqualTo(payload);
     assertThat(message.getTimestamp()).isEqualTo(timestamp);
     assertThat(message.getQualifiedTableName()).isEqualTo(database.trim() + "." + table.trim());
+    assertThat(new String(message.getKey(), UTF_8)).isEqualTo(database.trim() + "." + table.trim());
+  }
+
+  @Test
+  public void messagesOfTableShareKey() {
+    KafkaMessage first = KafkaMessage.builder().database("database").table("table").payload(new byte[0]).build();
+    KafkaMessage second = KafkaMessage.builder().database("database").table("table").payload(new byte[0]).build();
+    assertThat(second.getQualifiedTableName()).isSameAs(first.getQualifiedTableName());
+    assertThat(second.getKey()).isSameAs(first.getKey());
   }
 
   @Test
@@ -0,0 +1,178 @@
+/**
+ * Copyright (C) 2018-2021 Expedia, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.expediagroup.apiary.extensions.events.metastore.kafka.messaging;
+
+import static com.expediagroup.apiary.extensions.events.metastore.kafka.messaging.KafkaProducerProperty.PARTITIONER;
+import static com.expediagroup.apiary.extensions.events.metastore.kafka.messaging.KafkaProducerProperty.PARTITIONER_HOT_TABLES;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.hadoop.conf.Configuration;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.BenchmarkParams;
+import org.openjdk.jmh.infra.IterationParams;
+import org.openjdk.jmh.profile.InternalProfiler;
+import org.openjdk.jmh.results.AggregationPolicy;
+import org.openjdk.jmh.results.IterationResult;
+import org.openjdk.jmh.results.Result;
+import org.openjdk.jmh.results.ScalarResult;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import com.expediagroup.apiary.extensions.events.metastore.event.EventType;
+
+/**
+ * Measures the throughput of the built-in {@link KafkaPartitioner}s and the skew of the partitions they produce for a
+ * synthetic workload of 2000 tables in 50 databases, where 5 hot tables send 60% of the events as INSERT and
+ * ADD_PARTITION events over 500 partitions.
+ * <p>
+ * The skew, the load of the busiest partition divided by the mean load, is reported as the {@code skew} secondary
+ * result by {@link SkewProfiler}. Run from the IDE or with {@code mvn test-compile exec:java -Dexec.classpathScope=test
+ * -Dexec.mainClass=com.expediagroup.apiary.extensions.events.metastore.kafka.messaging.KafkaPartitionerBenchmark};
+ * when running JMH directly, add {@code -prof} with the binary name of {@link SkewProfiler}.
+ * </p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class KafkaPartitionerBenchmark {
+
+  private static final int MESSAGES = 100_000;
+  private static final int DATABASES = 50;
+  private static final int TABLES_PER_DATABASE = 40;
+  private static final int HOT_TABLES = 5;
+  private static final int HOT_TABLE_PARTITIONS = 500;
+  private static final double HOT_TABLE_SHARE = 0.6;
+  private static final EventType[] EVENT_TYPES = EventType.values();
+
+  @Param({ "table-hash", "consistent-hash", "database", "hot-key" })
+  private String partitionerName;
+
+  @Param({ "12", "48" })
+  private int numberOfPartitions;
+
+  private KafkaPartitioner partitioner;
+  private List<KafkaMessage> messages;
+  private static volatile double skew;
+
+  @Setup
+  public void setup() {
+    StringBuilder hotTables = new StringBuilder();
+    for (int i = 0; i < HOT_TABLES; i++) {
+      hotTables.append(i == 0 ? "" : ",").append("db_").append(i).append(".table_0");
+    }
+    Configuration conf = new Configuration();
+    conf.set(PARTITIONER.key(), partitionerName);
+    conf.set(PARTITIONER_HOT_TABLES.key(), hotTables.toString());
+    partitioner = KafkaMessageSender.partitioner(conf);
+
+    Random random = new Random(42L);
+    messages = new ArrayList<>(MESSAGES);
+    for (int i = 0; i < MESSAGES; i++) {
+      if (random.nextDouble() < HOT_TABLE_SHARE) {
+        EventType eventType = random.nextBoolean() ? EventType.ON_INSERT : EventType.ON_ADD_PARTITION;
+        String partitionValue = "2021-01-01-" + random.nextInt(HOT_TABLE_PARTITIONS);
+        messages.add(message("db_" + random.nextInt(HOT_TABLES), "table_0", eventType, partitionValue));
+      } else {
+        messages
+            .add(message("db_" + random.nextInt(DATABASES), "table_" + random.nextInt(TABLES_PER_DATABASE),
+                EVENT_TYPES[random.nextInt(EVENT_TYPES.length)], "2021-01-01-" + random.nextInt(24)));
+      }
+    }
+
+    int[] loads = new int[numberOfPartitions];
+    for (KafkaMessage message : messages) {
+      loads[partitioner.partition(message, numberOfPartitions)]++;
+    }
+    int max = 0;
+    for (int load : loads) {
+      max = Math.max(max, load);
+    }
+    skew = max / ((double) MESSAGES / numberOfPartitions);
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(MESSAGES)
+  public int partition() {
+    int sum = 0;
+    for (KafkaMessage message : messages) {
+      sum += partitioner.partition(message, numberOfPartitions);
+    }
+    return sum;
+  }
+
+  private static KafkaMessage message(String database, String table, EventType eventType, String partitionValue) {
+    return KafkaMessage
+        .builder()
+        .database(database)
+        .table(table)
+        .payload(new byte[0])
+        .eventType(eventType)
+        .partitionValues(Collections.singletonList(partitionValue))
+        .build();
+  }
+
+  /**
+   * Reports the skew of the partitions of the trial.
+   */
+  public static class SkewProfiler implements InternalProfiler {
+
+    @Override
+    public String getDescription() {
+      return "Skew of the partitions";
+    }
+
+    @Override
+    public void beforeIteration(BenchmarkParams benchmarkParams, IterationParams iterationParams) {}
+
+    @Override
+    public Collection<? extends Result> afterIteration(
+        BenchmarkParams benchmarkParams,
+        IterationParams iterationParams,
+        IterationResult result) {
+      return Collections.singletonList(new ScalarResult("skew", skew, "max/mean", AggregationPolicy.AVG));
+    }
+
+  }
+
+  public static void main(String[] args) throws RunnerException {
+    new Runner(new OptionsBuilder()
+        .include(KafkaPartitionerBenchmark.class.getSimpleName())
+        .addProfiler(SkewProfiler.class)
+        .build()).run();
+  }
+
+}
@@ -18,15 +18,34 @@ package com.expediagroup.apiary.extensions.events.metastore.kafka.messaging;
 import static org.assertj.core.api.Assertions.assertThat;
 
 import static com.expediagroup.apiary.extensions.events.metastore.kafka.messaging.KafkaProducerProperty.ACKS;
+import static com.expediagroup.apiary.extensions.events.metastore.kafka.messaging.KafkaProducerProperty.AVRO_SCHEMA_REGISTRY_DIRECTORY;
 import static com.expediagroup.apiary.extensions.events.metastore.kafka.messaging.KafkaProducerProperty.BATCH_SIZE;
 import static com.expediagroup.apiary.extensions.events.metastore.kafka.messaging.KafkaProducerProperty.BOOTSTRAP_SERVERS;
 import static com.expediagroup.apiary.extensions.events.metastore.kafka.messaging.KafkaProducerProperty.BUFFER_MEMORY;
 import static com.expediagroup.apiary.extensions.events.metastore.kafka.messaging.KafkaProducerProperty.CLIENT_ID;
+import static com.expediagroup.apiary.extensions.events.metastore.kafka.messaging.KafkaProducerProperty.COMPRESSION_TYPE;
+import static com.expediagroup.apiary.extensions.events.metastore.kafka.messaging.KafkaProducerProperty.ENABLE_IDEMPOTENCE;
+import static com.expediagroup.apiary.extensions.events.metastore.kafka.messaging.KafkaProducerProperty.FAILED_MESSAGE_HANDLER;
+import static com.expediagroup.apiary.extensions.events.metastore.kafka.messaging.KafkaProducerProperty.FAILED_MESSAGE_QUEUE_CAPACITY;
+import static com.expediagroup.apiary.extensions.events.metastore.kafka.messaging.KafkaProducerProperty.FAILED_MESSAGE_RETRIES;
+import static com.expediagroup.apiary.extensions.events.metastore.kafka.messaging.KafkaProducerProperty.FAILED_MESSAGE_RETRY_BACKOFF_MS;
 import static com.expediagroup.apiary.extensions.events.metastore.kafka.messaging.KafkaProducerProperty.LINGER_MS;
 import static com.expediagroup.apiary.extensions.events.metastore.kafka.messaging.KafkaProducerProperty.MAX_IN_FLIGHT_REQUESTS_PER_CONNECTION;
+import static com.expediagroup.apiary.extensions.events.metastore.kafka.messaging.KafkaProducerProperty.PARTITIONER;
+import static com.expediagroup.apiary.extensions.events.metastore.kafka.messaging.KafkaProducerProperty.PARTITIONER_HOT_TABLES;
+import static com.expediagroup.apiary.extensions.events.metastore.kafka.messaging.KafkaProducerProperty.PARTITIONER_HOT_TABLE_PARTITIONS;
+import static com.expediagroup.apiary.extensions.events.metastore.kafka.messaging.KafkaProducerProperty.PARTITIONER_VIRTUAL_NODES;
+import static com.expediagroup.apiary.extensions.events.metastore.kafka.messaging.KafkaProducerProperty.PARTITIONS_REFRESH_INTERVAL_MS;
 import static com.expediagroup.apiary.extensions.events.metastore.kafka.messaging.KafkaProducerProperty.RETRIES;
 import static com.expediagroup.apiary.extensions.events.metastore.kafka.messaging.KafkaProducerProperty.SERDE_CLASS;
+import static com.expediagroup.apiary.extensions.events.metastore.kafka.messaging.KafkaProducerProperty.SNAPSHOT_PARTITIONS;
+import static com.expediagroup.apiary.extensions.events.metastore.kafka.messaging.KafkaProducerProperty.SNAPSHOT_TOPIC_NAME;
+import static com.expediagroup.apiary.extensions.events.metastore.kafka.messaging.KafkaProducerProperty.SPILL_JOURNAL_DIRECTORY;
+import static com.expediagroup.apiary.extensions.events.metastore.kafka.messaging.KafkaProducerProperty.SPILL_JOURNAL_SEGMENT_BYTES;
+import static com.expediagroup.apiary.extensions.events.metastore.kafka.messaging.KafkaProducerProperty.SPILL_REPLAY_INTERVAL_MS;
+import static com.expediagroup.apiary.extensions.events.metastore.kafka.messaging.KafkaProducerProperty.SPILL_THRESHOLD_BYTES;
 import static com.expediagroup.apiary.extensions.events.metastore.kafka.messaging.KafkaProducerProperty.TOPIC_NAME;
+import static com.expediagroup.apiary.extensions.events.metastore.kafka.messaging.KafkaProducerProperty.TRANSACTIONAL_ID;
 
 import org.junit.Test;
 
@@ -40,7 +59,7 @@ public class KafkaProducerPropertyTest {
 
   @Test
   public void numberOfProperties() {
-    assertThat(KafkaProducerProperty.values().length).isEqualTo(10);
+    assertThat(KafkaProducerProperty.values().length).isEqualTo(29);
   }
 
   @Test
@@ -108,6 +127,13 @@ public class KafkaProducerPropertyTest {
     assertThat(BUFFER_MEMORY.defaultValue()).isEqualTo(33554432L);
   }
 
+  @Test
+  public void compressionType() {
+    assertThat(COMPRESSION_TYPE.unprefixedKey()).isEqualTo("compression.type");
+    assertThat(COMPRESSION_TYPE.key()).isEqualTo(prefixedKey("compression.type"));
+    assertThat(COMPRESSION_TYPE.defaultValue()).isEqualTo("none");
+  }
+
   @Test
   public void serdeClass() {
     assertThat(SERDE_CLASS.unprefixedKey()).isEqualTo("serde.class");
@@ -115,4 +141,130 @@ public class KafkaProducerPropertyTest {
     assertThat(SERDE_CLASS.defaultValue()).isEqualTo(JsonMetaStoreEventSerDe.class.getName());
   }
 
+  @Test
+  public void avroSchemaRegistryDirectory() {
+    assertThat(AVRO_SCHEMA_REGISTRY_DIRECTORY.unprefixedKey()).isEqualTo("avro.schema.registry.directory");
+    assertThat(AVRO_SCHEMA_REGISTRY_DIRECTORY.key()).isEqualTo(prefixedKey("avro.schema.registry.directory"));
+    assertThat(AVRO_SCHEMA_REGISTRY_DIRECTORY.defaultValue()).isNull();
+  }
+
+  @Test
+  public void failedMessageHandler() {
+    assertThat(FAILED_MESSAGE_HANDLER.unprefixedKey()).isEqualTo("failed.message.handler");
+    assertThat(FAILED_MESSAGE_HANDLER.key()).isEqualTo(prefixedKey("failed.message.handler"));
+    assertThat(FAILED_MESSAGE_HANDLER.defaultValue()).isEqualTo("log");
+  }
+
+  @Test
+  public void failedMessageRetries() {
+    assertThat(FAILED_MESSAGE_RETRIES.unprefixedKey()).isEqualTo("failed.message.retries");
+    assertThat(FAILED_MESSAGE_RETRIES.key()).isEqualTo(prefixedKey("failed.message.retries"));
+    assertThat(FAILED_MESSAGE_RETRIES.defaultValue()).isEqualTo(3);
+  }
+
+  @Test
+  public void failedMessageRetryBackoffMs() {
+    assertThat(FAILED_MESSAGE_RETRY_BACKOFF_MS.unprefixedKey()).isEqualTo("failed.message.retry.backoff.ms");
+    assertThat(FAILED_MESSAGE_RETRY_BACKOFF_MS.key()).isEqualTo(prefixedKey("failed.message.retry.backoff.ms"));
+    assertThat(FAILED_MESSAGE_RETRY_BACKOFF_MS.defaultValue()).isEqualTo(1000L);
+  }
+
+  @Test
+  public void failedMessageQueueCapacity() {
+    assertThat(FAILED_MESSAGE_QUEUE_CAPACITY.unprefixedKey()).isEqualTo("failed.message.queue.capacity");
+    assertThat(FAILED_MESSAGE_QUEUE_CAPACITY.key()).isEqualTo(prefixedKey("failed.message.queue.capacity"));
+    assertThat(FAILED_MESSAGE_QUEUE_CAPACITY.defaultValue()).isEqualTo(1000);
+  }
+
+  @Test
+  public void spillJournalDirectory() {
+    assertThat(SPILL_JOURNAL_DIRECTORY.unprefixedKey()).isEqualTo("spill.journal.directory");
+    assertThat(SPILL_JOURNAL_DIRECTORY.key()).isEqualTo(prefixedKey("spill.journal.directory"));
+    assertThat(SPILL_JOURNAL_DIRECTORY.defaultValue()).isNull();
+  }
+
+  @Test
+  public void spillJournalSegmentBytes() {
+    assertThat(SPILL_JOURNAL_SEGMENT_BYTES.unprefixedKey()).isEqualTo("spill.journal.segment.bytes");
+    assertThat(SPILL_JOURNAL_SEGMENT_BYTES.key()).isEqualTo(prefixedKey("spill.journal.segment.bytes"));
+    assertThat(SPILL_JOURNAL_SEGMENT_BYTES.defaultValue()).isEqualTo(67108864);
+  }
+
+  @Test
+  public void spillThresholdBytes() {
+    assertThat(SPILL_THRESHOLD_BYTES.unprefixedKey()).isEqualTo("spill.threshold.bytes");
+    assertThat(SPILL_THRESHOLD_BYTES.key()).isEqualTo(prefixedKey("spill.threshold.bytes"));
+    assertThat(SPILL_THRESHOLD_BYTES.defaultValue()).isEqualTo(25165824L);
+  }
+
+  @Test
+  public void spillReplayIntervalMs() {
+    assertThat(SPILL_REPLAY_INTERVAL_MS.unprefixedKey()).isEqualTo("spill.replay.interval.ms");
+    assertThat(SPILL_REPLAY_INTERVAL_MS.key()).isEqualTo(prefixedKey("spill.replay.interval.ms"));
+    assertThat(SPILL_REPLAY_INTERVAL_MS.defaultValue()).isEqualTo(1000L);
+  }
+
+  @Test
+  public void partitioner() {
+    assertThat(PARTITIONER.unprefixedKey()).isEqualTo("partitioner");
+    assertThat(PARTITIONER.key()).isEqualTo(prefixedKey("partitioner"));
+    assertThat(PARTITIONER.defaultValue()).isEqualTo("table-hash");
+  }
+
+  @Test
+  public void partitionerVirtualNodes() {
+    assertThat(PARTITIONER_VIRTUAL_NODES.unprefixedKey()).isEqualTo("partitioner.virtual.nodes");
+    assertThat(PARTITIONER_VIRTUAL_NODES.key()).isEqualTo(prefixedKey("partitioner.virtual.nodes"));
+    assertThat(PARTITIONER_VIRTUAL_NODES.defaultValue()).isEqualTo(128);
+  }
+
+  @Test
+  public void partitionerHotTables() {
+    assertThat(PARTITIONER_HOT_TABLES.unprefixedKey()).isEqualTo("partitioner.hot.tables");
+    assertThat(PARTITIONER_HOT_TABLES.key()).isEqualTo(prefixedKey("partitioner.hot.tables"));
+    assertThat(PARTITIONER_HOT_TABLES.defaultValue()).isEqualTo("");
+  }
+
+  @Test
+  public void partitionerHotTablePartitions() {
+    assertThat(PARTITIONER_HOT_TABLE_PARTITIONS.unprefixedKey()).isEqualTo("partitioner.hot.table.partitions");
+    assertThat(PARTITIONER_HOT_TABLE_PARTITIONS.key()).isEqualTo(prefixedKey("partitioner.hot.table.partitions"));
+    assertThat(PARTITIONER_HOT_TABLE_PARTITIONS.defaultValue()).isEqualTo(8);
+  }
+
+  @Test
+  public void partitionsRefreshIntervalMs() {
+    assertThat(PARTITIONS_REFRESH_INTERVAL_MS.unprefixedKey()).isEqualTo("partitions.refresh.interval.ms");
+    assertThat(PARTITIONS_REFRESH_INTERVAL_MS.key()).isEqualTo(prefixedKey("partitions.refresh.interval.ms"));
+    assertThat(PARTITIONS_REFRESH_INTERVAL_MS.defaultValue()).isEqualTo(0L);
+  }
+
+  @Test
+  public void snapshotTopicName() {
+    assertThat(SNAPSHOT_TOPIC_NAME.unprefixedKey()).isEqualTo("snapshot.topic.name");
+    assertThat(SNAPSHOT_TOPIC_NAME.key()).isEqualTo(prefixedKey("snapshot.topic.name"));
+    assertThat(SNAPSHOT_TOPIC_NAME.defaultValue()).isNull();
+  }
+
+  @Test
+  public void snapshotPartitions() {
+    assertThat(SNAPSHOT_PARTITIONS.unprefixedKey()).isEqualTo("snapshot.partitions");
+    assertThat(SNAPSHOT_PARTITIONS.key()).isEqualTo(prefixedKey("snapshot.partitions"));
+    assertThat(SNAPSHOT_PARTITIONS.defaultValue()).isEqualTo(false);
+  }
+
+  @Test
+  public void enableIdempotence() {
+    assertThat(ENABLE_IDEMPOTENCE.unprefixedKey()).isEqualTo("enable.idempotence");
+    assertThat(ENABLE_IDEMPOTENCE.key()).isEqualTo(prefixedKey("enable.idempotence"));
+    assertThat(ENABLE_IDEMPOTENCE.defaultValue()).isEqualTo(false);
+  }
+
+  @Test
+  public void transactionalId() {
+    assertThat(TRANSACTIONAL_ID.unprefixedKey()).isEqualTo("transactional.id");
+    assertThat(TRANSACTIONAL_ID.key()).isEqualTo(prefixedKey("transactional.id"));
+    assertThat(TRANSACTIONAL_ID.defaultValue()).isNull();
+  }
+
 }
@@ -0,0 +1,123 @@
+/**
+ * Copyright (C) 2018-2021 Expedia, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.expediagroup.apiary.extensions.events.metastore.kafka.messaging;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.util.concurrent.TimeUnit;
+
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.common.serialization.LongSerializer;
+import org.apache.kafka.common.serialization.StringSerializer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Compares the work done for each event between building its {@link KafkaMessage} and handing the serialized record
+ * to the producer: the listener used to format the qualified table name on every call and key records with their
+ * timestamp, it now shares the name and its encoding between the messages of a table.
+ * <p>
+ * Allocations are what matters here, run with the JMH {@code -prof gc} option, from the IDE or with
+ * {@code mvn test-compile exec:java -Dexec.classpathScope=test
+ * -Dexec.mainClass=com.expediagroup.apiary.extensions.events.metastore.kafka.messaging.KafkaSendPathBenchmark}.
+ * </p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class KafkaSendPathBenchmark {
+
+  private static final String TOPIC = "topic";
+  private static final int PARTITIONS = 12;
+
+  @Param({ "1", "1000" })
+  private int tables;
+
+  private final LongSerializer longSerializer = new LongSerializer();
+  private final StringSerializer stringSerializer = new StringSerializer();
+  private final KafkaPartitioner partitioner = new TableHashPartitioner();
+  private String[] tableNames;
+  private byte[] payload;
+  private int next;
+
+  @Setup
+  public void setup() {
+    tableNames = new String[tables];
+    for (int i = 0; i < tables; i++) {
+      tableNames[i] = "some_table_" + i;
+    }
+    payload = "{\"eventType\":\"ON_INSERT\"}".getBytes(UTF_8);
+  }
+
+  private String nextTable() {
+    next = next + 1 == tables ? 0 : next + 1;
+    return tableNames[next];
+  }
+
+  /**
+   * The name formatted twice, once for the partition and once for the string key a consumer would want.
+   */
+  @Benchmark
+  public void formattedName(Blackhole blackhole) {
+    String table = nextTable();
+    long timestamp = System.currentTimeMillis();
+    int partition = Math.abs(String.format("%s.%s", "some_database", table).hashCode() % PARTITIONS);
+    ProducerRecord<Long, byte[]> record = new ProducerRecord<>(TOPIC, partition, timestamp, payload);
+    blackhole.consume(longSerializer.serialize(TOPIC, record.key()));
+    blackhole.consume(stringSerializer.serialize(TOPIC, String.format("%s.%s", "some_database", table)));
+    blackhole.consume(record);
+  }
+
+  @Benchmark
+  public void sharedName(Blackhole blackhole) {
+    KafkaMessage message = KafkaMessage
+        .builder()
+        .database("some_database")
+        .table(nextTable())
+        .payload(payload)
+        .build();
+    int partition = partitioner.partition(message, PARTITIONS);
+    ProducerRecord<byte[], byte[]> record = new ProducerRecord<>(TOPIC, partition, message.getTimestamp(),
+        message.getKey(), message.getPayload());
+    // ByteArraySerializer returns the key as is
+    blackhole.consume(record.key());
+    blackhole.consume(record);
+  }
+
+  public static void main(String[] args) throws RunnerException {
+    new Runner(new OptionsBuilder()
+        .include(KafkaSendPathBenchmark.class.getSimpleName())
+        .addProfiler("gc")
+        .build()).run();
+  }
+
+}
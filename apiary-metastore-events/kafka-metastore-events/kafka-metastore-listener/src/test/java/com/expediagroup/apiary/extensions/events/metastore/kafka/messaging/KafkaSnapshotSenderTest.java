@@ -0,0 +1,102 @@
+/**
+ * Copyright (C) 2018-2021 Expedia, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.expediagroup.apiary.extensions.events.metastore.kafka.messaging;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import static com.expediagroup.apiary.extensions.events.metastore.kafka.messaging.KafkaProducerProperty.BOOTSTRAP_SERVERS;
+import static com.expediagroup.apiary.extensions.events.metastore.kafka.messaging.KafkaProducerProperty.CLIENT_ID;
+import static com.expediagroup.apiary.extensions.events.metastore.kafka.messaging.KafkaProducerProperty.TRANSACTIONAL_ID;
+
+import java.util.Properties;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.kafka.clients.producer.Callback;
+import org.apache.kafka.clients.producer.KafkaProducer;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.common.errors.TimeoutException;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Captor;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+
+@RunWith(MockitoJUnitRunner.class)
+public class KafkaSnapshotSenderTest {
+
+  private @Captor ArgumentCaptor<ProducerRecord<byte[], byte[]>> producerRecordCaptor;
+  private @Captor ArgumentCaptor<Callback> callbackCaptor;
+  private @Mock KafkaProducer<byte[], byte[]> producer;
+
+  @Test
+  public void send() {
+    byte[] snapshot = { 1, 2, 3 };
+    new KafkaSnapshotSender("snapshots", producer).send("database.table", snapshot);
+    verify(producer).send(producerRecordCaptor.capture(), any(Callback.class));
+    ProducerRecord<byte[], byte[]> record = producerRecordCaptor.getValue();
+    assertThat(record.topic()).isEqualTo("snapshots");
+    assertThat(record.partition()).isNull();
+    assertThat(new String(record.key(), UTF_8)).isEqualTo("database.table");
+    assertThat(record.value()).isSameAs(snapshot);
+  }
+
+  @Test
+  public void sendTombstone() {
+    new KafkaSnapshotSender("snapshots", producer).send("database.table", null);
+    verify(producer).send(producerRecordCaptor.capture(), any(Callback.class));
+    assertThat(producerRecordCaptor.getValue().value()).isNull();
+  }
+
+  @Test
+  public void failedSendDoesNotThrow() {
+    new KafkaSnapshotSender("snapshots", producer).send("database.table", new byte[0]);
+    verify(producer).send(any(ProducerRecord.class), callbackCaptor.capture());
+    callbackCaptor.getValue().onCompletion(null, new TimeoutException("timeout"));
+  }
+
+  @Test
+  public void producerErrorDoesNotThrow() {
+    when(producer.send(any(ProducerRecord.class), any(Callback.class))).thenThrow(new TimeoutException("timeout"));
+    new KafkaSnapshotSender("snapshots", producer).send("database.table", new byte[0]);
+  }
+
+  @Test
+  public void clientIdIsSuffixed() {
+    Configuration conf = new Configuration();
+    conf.set(BOOTSTRAP_SERVERS.key(), "broker");
+    conf.set(CLIENT_ID.key(), "client");
+    Properties props = KafkaSnapshotSender.kafkaProperties(conf);
+    assertThat(props.get("client.id")).isEqualTo("client-snapshot");
+    assertThat(props.get("bootstrap.servers")).isEqualTo("broker");
+  }
+
+  @Test
+  public void transactionalIdIsNotShared() {
+    Configuration conf = new Configuration();
+    conf.set(BOOTSTRAP_SERVERS.key(), "broker");
+    conf.set(CLIENT_ID.key(), "client");
+    conf.set(TRANSACTIONAL_ID.key(), "events");
+    Properties props = KafkaSnapshotSender.kafkaProperties(conf);
+    assertThat(props).doesNotContainKeys("transactional.id", "enable.idempotence");
+  }
+
+}
@@ -0,0 +1,53 @@
+/**
+ * Copyright (C) 2018-2021 Expedia, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.expediagroup.apiary.extensions.events.metastore.kafka.messaging;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import org.junit.Test;
+
+public class QualifiedTableNameTest {
+
+  @Test
+  public void typical() {
+    QualifiedTableName qualifiedTableName = QualifiedTableName.of("database", "table");
+    assertThat(qualifiedTableName.name()).isEqualTo("database.table");
+    assertThat(qualifiedTableName.bytes()).isEqualTo("database.table".getBytes(UTF_8));
+  }
+
+  @Test
+  public void cached() {
+    assertThat(QualifiedTableName.of("database", "table")).isSameAs(QualifiedTableName.of("database", "table"));
+  }
+
+  @Test
+  public void differentTables() {
+    assertThat(QualifiedTableName.of("database", "table1").name()).isEqualTo("database.table1");
+    assertThat(QualifiedTableName.of("database", "table2").name()).isEqualTo("database.table2");
+    assertThat(QualifiedTableName.of("other", "table1").name()).isEqualTo("other.table1");
+  }
+
+  @Test
+  public void startsOverWhenFull() {
+    for (int i = 0; i <= QualifiedTableName.MAX_CACHED_NAMES; i++) {
+      assertThat(QualifiedTableName.of("database", "table_" + i).name()).isEqualTo("database.table_" + i);
+    }
+    assertThat(QualifiedTableName.of("database", "table").name()).isEqualTo("database.table");
+  }
+
+}
@@ -0,0 +1,80 @@
+/**
+ * Copyright (C) 2018-2021 Expedia, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.expediagroup.apiary.extensions.events.metastore.kafka.messaging;
+
+import static org.mockito.Mockito.after;
+import static org.mockito.Mockito.doNothing;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+import java.util.concurrent.ExecutionException;
+
+import org.apache.kafka.common.errors.TimeoutException;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+
+@RunWith(MockitoJUnitRunner.class)
+public class RetryingFailedMessageHandlerTest {
+
+  private static final TimeoutException EXCEPTION = new TimeoutException("expired");
+
+  private @Mock KafkaMessage kafkaMessage;
+  private @Mock KafkaMessageSender sender;
+
+  @Test
+  public void retriesUntilAcknowledged() throws Exception {
+    doThrow(new ExecutionException(EXCEPTION)).doNothing().when(sender).sendAndWait(kafkaMessage);
+    RetryingFailedMessageHandler handler = new RetryingFailedMessageHandler(3, 1L, 10);
+
+    handler.handle(kafkaMessage, EXCEPTION, sender);
+
+    verify(sender, after(500).times(2)).sendAndWait(kafkaMessage);
+  }
+
+  @Test
+  public void givesUpAfterMaxRetries() throws Exception {
+    doThrow(new ExecutionException(EXCEPTION)).when(sender).sendAndWait(kafkaMessage);
+    RetryingFailedMessageHandler handler = new RetryingFailedMessageHandler(3, 1L, 10);
+
+    handler.handle(kafkaMessage, EXCEPTION, sender);
+
+    verify(sender, after(500).times(3)).sendAndWait(kafkaMessage);
+  }
+
+  @Test
+  public void queuedMessagesAreAllRetried() throws Exception {
+    KafkaMessage otherMessage = KafkaMessage.builder().database("db").table("tbl").payload(new byte[0]).build();
+    doNothing().when(sender).sendAndWait(kafkaMessage);
+    doNothing().when(sender).sendAndWait(otherMessage);
+    RetryingFailedMessageHandler handler = new RetryingFailedMessageHandler(1, 1L, 10);
+
+    handler.handle(kafkaMessage, EXCEPTION, sender);
+    handler.handle(otherMessage, EXCEPTION, sender);
+
+    verify(sender, timeout(5000)).sendAndWait(kafkaMessage);
+    verify(sender, timeout(5000)).sendAndWait(otherMessage);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void invalidRetries() {
+    new RetryingFailedMessageHandler(0, 1L, 10);
+  }
+
+}
@@ -0,0 +1,237 @@
+/**
+ * Copyright (C) 2018-2021 Expedia, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.expediagroup.apiary.extensions.events.metastore.kafka.messaging;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.expediagroup.apiary.extensions.events.metastore.event.EventType;
+
+public class SpillJournalTest {
+
+  private static final int SEGMENT_BYTES = 256;
+
+  public @Rule TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+  private Path directory;
+  private SpillJournal journal;
+
+  @Before
+  public void init() throws IOException {
+    directory = temporaryFolder.getRoot().toPath().resolve("spill");
+    journal = new SpillJournal(directory, SEGMENT_BYTES);
+  }
+
+  @Test
+  public void emptyJournal() {
+    assertThat(journal.isEmpty()).isTrue();
+    assertThat(journal.oldestChunk()).isNull();
+  }
+
+  @Test
+  public void readsMessagesInOrder() throws IOException {
+    journal.append(message("table", 1L, "payload1"));
+    journal.append(message("table", 2L, "payload2"));
+    assertThat(journal.isEmpty()).isFalse();
+
+    List<KafkaMessage> messages = read(journal.oldestChunk());
+    assertThat(messages).hasSize(2);
+    assertThat(messages.get(0).getDatabase()).isEqualTo("database");
+    assertThat(messages.get(0).getTable()).isEqualTo("table");
+    assertThat(messages.get(0).getTimestamp()).isEqualTo(1L);
+    assertThat(new String(messages.get(0).getPayload(), UTF_8)).isEqualTo("payload1");
+    assertThat(new String(messages.get(1).getPayload(), UTF_8)).isEqualTo("payload2");
+    assertThat(messages.get(0).getEventType()).isNull();
+    assertThat(messages.get(0).getPartitionValues()).isNull();
+  }
+
+  @Test
+  public void keepsEventTypeAndPartitionValues() throws IOException {
+    journal
+        .append(KafkaMessage
+            .builder()
+            .database("database")
+            .table("table")
+            .payload(new byte[] { 1 })
+            .eventType(EventType.ON_ADD_PARTITION)
+            .partitionValues(Arrays.asList("2021-01-01", "1"))
+            .build());
+
+    List<KafkaMessage> messages = read(journal.oldestChunk());
+    assertThat(messages.get(0).getEventType()).isEqualTo(EventType.ON_ADD_PARTITION);
+    assertThat(messages.get(0).getPartitionValues()).containsExactly("2021-01-01", "1");
+    assertThat(messages.get(0).getPayload()).containsExactly(1);
+  }
+
+  @Test
+  public void rollsSegments() throws IOException {
+    for (int i = 0; i < 20; i++) {
+      journal.append(message("table", i, "payload" + i));
+    }
+    List<KafkaMessage> messages = new ArrayList<>();
+    int segments = 0;
+    SpillJournal.Chunk chunk;
+    while ((chunk = journal.oldestChunk()) != null) {
+      SpillJournal.read(chunk, messages::add);
+      journal.replayed(chunk);
+      segments++;
+    }
+    assertThat(segments).isGreaterThan(1);
+    assertThat(messages).hasSize(20);
+    for (int i = 0; i < 20; i++) {
+      assertThat(messages.get(i).getTimestamp()).isEqualTo(i);
+    }
+    assertThat(journal.isEmpty()).isTrue();
+  }
+
+  @Test
+  public void messageLargerThanSegment() throws IOException {
+    StringBuilder payload = new StringBuilder();
+    for (int i = 0; i < SEGMENT_BYTES * 2; i++) {
+      payload.append('x');
+    }
+    journal.append(message("table", 1L, payload.toString()));
+
+    List<KafkaMessage> messages = read(journal.oldestChunk());
+    assertThat(messages).hasSize(1);
+    assertThat(new String(messages.get(0).getPayload(), UTF_8)).isEqualTo(payload.toString());
+  }
+
+  @Test
+  public void recoversSegmentsOfPreviousJournal() throws IOException {
+    journal.append(message("table1", 1L, "payload1"));
+    journal.append(message("table2", 2L, "payload2"));
+
+    SpillJournal recovered = new SpillJournal(directory, SEGMENT_BYTES);
+    assertThat(recovered.isEmpty()).isFalse();
+    List<KafkaMessage> messages = read(recovered.oldestChunk());
+    assertThat(messages).hasSize(2);
+    assertThat(messages.get(0).getTable()).isEqualTo("table1");
+    assertThat(messages.get(1).getTable()).isEqualTo("table2");
+
+    recovered.append(message("table3", 3L, "payload3"));
+    recovered.replayed(recovered.oldestChunk());
+    messages = read(recovered.oldestChunk());
+    assertThat(messages).hasSize(1);
+    assertThat(messages.get(0).getTable()).isEqualTo("table3");
+  }
+
+  @Test
+  public void stopsAtCorruptedRecord() throws IOException {
+    journal.append(message("table", 1L, "payload1"));
+    journal.append(message("table", 2L, "payload2"));
+    SpillJournal.Chunk chunk = journal.oldestChunk();
+    try (RandomAccessFile file = new RandomAccessFile(chunk.getSegment().toFile(), "rw")) {
+      int recordLength = Integer.BYTES + Integer.BYTES + Long.BYTES + Short.BYTES + 8 + Short.BYTES + 5
+          + Integer.BYTES + 8 + Short.BYTES + Short.BYTES;
+      // last byte of the second payload
+      file.seek(2 * recordLength - Short.BYTES - Short.BYTES - 1);
+      file.write('X');
+    }
+
+    List<KafkaMessage> messages = read(chunk);
+    assertThat(messages).hasSize(1);
+    assertThat(messages.get(0).getTimestamp()).isEqualTo(1L);
+  }
+
+  @Test
+  public void replaysActiveSegmentInPlace() throws IOException {
+    journal.append(message("table", 1L, "payload1"));
+    SpillJournal.Chunk chunk = journal.oldestChunk();
+    assertThat(chunk.isActive()).isTrue();
+    assertThat(read(chunk)).extracting(KafkaMessage::getTimestamp).containsExactly(1L);
+    journal.replayed(chunk);
+    assertThat(journal.isEmpty()).isTrue();
+    assertThat(journal.oldestChunk()).isNull();
+
+    journal.append(message("table", 2L, "payload2"));
+    SpillJournal.Chunk next = journal.oldestChunk();
+    assertThat(next.getSegment()).isEqualTo(chunk.getSegment());
+    assertThat(read(next)).extracting(KafkaMessage::getTimestamp).containsExactly(2L);
+    journal.replayed(next);
+    assertThat(journal.isEmpty()).isTrue();
+    assertThat(segmentFiles()).containsExactly(chunk.getSegment());
+  }
+
+  @Test
+  public void activeSegmentSealedWhileReplayed() throws IOException {
+    journal.append(message("table", 0L, "payload0"));
+    SpillJournal.Chunk chunk = journal.oldestChunk();
+    for (int i = 1; i < 10; i++) {
+      journal.append(message("table", i, "payload" + i));
+    }
+    assertThat(segmentFiles().size()).isGreaterThan(1);
+    journal.replayed(chunk);
+
+    List<KafkaMessage> messages = new ArrayList<>();
+    SpillJournal.Chunk next;
+    while ((next = journal.oldestChunk()) != null) {
+      SpillJournal.read(next, messages::add);
+      journal.replayed(next);
+    }
+    assertThat(messages).extracting(KafkaMessage::getTimestamp).containsExactly(1L, 2L, 3L, 4L, 5L, 6L, 7L, 8L, 9L);
+  }
+
+  @Test
+  public void deletesReplayedSegmentOnSeal() throws IOException {
+    journal.append(message("table", 1L, "payload1"));
+    Path first = journal.oldestChunk().getSegment();
+    while (segmentFiles().contains(first)) {
+      journal.replayed(journal.oldestChunk());
+      journal.append(message("table", 2L, "payload2"));
+    }
+    assertThat(segmentFiles()).hasSize(1);
+  }
+
+  private List<Path> segmentFiles() throws IOException {
+    try (Stream<Path> files = Files.list(directory)) {
+      return files.sorted().collect(Collectors.toList());
+    }
+  }
+
+  private static List<KafkaMessage> read(SpillJournal.Chunk chunk) throws IOException {
+    List<KafkaMessage> messages = new ArrayList<>();
+    SpillJournal.read(chunk, messages::add);
+    return messages;
+  }
+
+  private static KafkaMessage message(String table, long timestamp, String payload) {
+    return KafkaMessage
+        .builder()
+        .database("database")
+        .table(table)
+        .timestamp(timestamp)
+        .payload(payload.getBytes(UTF_8))
+        .build();
+  }
+
+}
@@ -18,6 +18,7 @@ package com.expediagroup.apiary.extensions.events.metastore.kafka.metrics;
 import static org.assertj.core.api.Assertions.assertThat;
 
 import org.apache.hadoop.hive.common.metrics.common.MetricsFactory;
+import org.apache.hadoop.hive.common.metrics.metrics2.CodahaleMetrics;
 import org.apache.hadoop.hive.conf.HiveConf;
 import org.junit.Before;
 import org.junit.Test;
@@ -38,6 +39,33 @@ public class HiveMetricsHelperTest {
     assertThat(HiveMetricsHelper.incrementCounter("name")).get().isEqualTo(1L);
   }
 
+  @Test
+  public void updateHistogram() throws Exception {
+    conf.setVar(HiveConf.ConfVars.HIVE_METRICS_CLASS, "org.apache.hadoop.hive.common.metrics.metrics2.CodahaleMetrics");
+    MetricsFactory.init(conf);
+    HiveMetricsHelper.updateHistogram("histogram", 10L);
+    assertThat(HiveMetricsHelper.updateHistogram("histogram", 20L)).get().isEqualTo(2L);
+  }
+
+  @Test
+  public void updateHistogramNullMetricsClass() {
+    assertThat(HiveMetricsHelper.updateHistogram("histogram", 10L)).isNotPresent();
+  }
+
+  @Test
+  public void addGauge() throws Exception {
+    conf.setVar(HiveConf.ConfVars.HIVE_METRICS_CLASS, "org.apache.hadoop.hive.common.metrics.metrics2.CodahaleMetrics");
+    MetricsFactory.init(conf);
+    assertThat(HiveMetricsHelper.addGauge("gauge", () -> 5)).isTrue();
+    CodahaleMetrics metrics = (CodahaleMetrics) MetricsFactory.getInstance();
+    assertThat(metrics.getMetricRegistry().getGauges().get("gauge").getValue()).isEqualTo(5);
+  }
+
+  @Test
+  public void addGaugeNullMetricsClass() {
+    assertThat(HiveMetricsHelper.addGauge("gauge", () -> 5)).isFalse();
+  }
+
   @Test
   public void nullMetricsClass() {
     assertThat(HiveMetricsHelper.incrementCounter("name")).isNotPresent();
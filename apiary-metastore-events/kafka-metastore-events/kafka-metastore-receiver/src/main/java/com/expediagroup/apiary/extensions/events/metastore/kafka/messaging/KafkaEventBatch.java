@@ -0,0 +1,82 @@
+/**
+ * Copyright (C) 2018-2021 Expedia, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.expediagroup.apiary.extensions.events.metastore.kafka.messaging;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.OffsetAndMetadata;
+import org.apache.kafka.common.TopicPartition;
+
+import com.expediagroup.apiary.extensions.events.metastore.event.ApiaryListenerEvent;
+
+/**
+ * The events of a poll of the events topic, in the order of their records in each Kafka partition, along with the
+ * offsets to commit once they have been processed.
+ */
+public class KafkaEventBatch {
+
+  private final List<ApiaryListenerEvent> events;
+  private final List<TopicPartition> partitions;
+  private final long[] recordOffsets;
+  private final Map<TopicPartition, OffsetAndMetadata> offsets;
+
+  /**
+   * @param events The events of the records, in the same order.
+   */
+  KafkaEventBatch(List<ApiaryListenerEvent> events, List<ConsumerRecord<byte[], byte[]>> records) {
+    this.events = Collections.unmodifiableList(events);
+    partitions = new ArrayList<>(records.size());
+    recordOffsets = new long[records.size()];
+    Map<TopicPartition, OffsetAndMetadata> offsets = new HashMap<>();
+    for (int i = 0; i < records.size(); i++) {
+      ConsumerRecord<byte[], byte[]> record = records.get(i);
+      TopicPartition partition = new TopicPartition(record.topic(), record.partition());
+      partitions.add(partition);
+      recordOffsets[i] = record.offset();
+      offsets.put(partition, new OffsetAndMetadata(record.offset() + 1));
+    }
+    this.offsets = Collections.unmodifiableMap(offsets);
+  }
+
+  public List<ApiaryListenerEvent> getEvents() {
+    return events;
+  }
+
+  /**
+   * @return The offset following the last record of the batch in each Kafka partition.
+   */
+  public Map<TopicPartition, OffsetAndMetadata> getOffsets() {
+    return offsets;
+  }
+
+  public int size() {
+    return events.size();
+  }
+
+  TopicPartition partition(int index) {
+    return partitions.get(index);
+  }
+
+  long offset(int index) {
+    return recordOffsets[index];
+  }
+
+}
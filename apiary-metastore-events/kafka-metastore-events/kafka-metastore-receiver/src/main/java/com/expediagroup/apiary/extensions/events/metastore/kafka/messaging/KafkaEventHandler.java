@@ -0,0 +1,40 @@
+/**
+ * Copyright (C) 2018-2021 Expedia, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.expediagroup.apiary.extensions.events.metastore.kafka.messaging;
+
+import com.expediagroup.apiary.extensions.events.metastore.event.ApiaryListenerEvent;
+
+/**
+ * Processes the events of a Kafka partition for a {@link PartitionedEventProcessor}. Events of a partition are handled
+ * one at a time and in order by the worker thread of the partition.
+ */
+@FunctionalInterface
+public interface KafkaEventHandler {
+
+  /**
+   * @param acknowledgment To call once the event has been processed, possibly later and from another thread. The
+   *          offset of an event is only committed once it and all the events before it in its partition have been
+   *          acknowledged.
+   * @throws Exception to stop the processor, the event is not acknowledged.
+   */
+  void handle(ApiaryListenerEvent event, Acknowledgment acknowledgment) throws Exception;
+
+  @FunctionalInterface
+  interface Acknowledgment {
+    void acknowledge();
+  }
+
+}
@@ -16,49 +16,175 @@
 package com.expediagroup.apiary.extensions.events.metastore.kafka.messaging;
 
 import static org.apache.kafka.clients.consumer.ConsumerConfig.BOOTSTRAP_SERVERS_CONFIG;
+import static org.apache.kafka.clients.consumer.ConsumerConfig.ENABLE_AUTO_COMMIT_CONFIG;
 import static org.apache.kafka.clients.consumer.ConsumerConfig.GROUP_ID_CONFIG;
 
 import static com.expediagroup.apiary.extensions.events.metastore.common.Preconditions.checkNotEmpty;
 
 import java.io.Closeable;
 import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
 import java.util.Properties;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
+import org.apache.kafka.clients.consumer.ConsumerRebalanceListener;
 import org.apache.kafka.clients.consumer.ConsumerRecord;
 import org.apache.kafka.clients.consumer.KafkaConsumer;
+import org.apache.kafka.clients.consumer.OffsetAndMetadata;
+import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.common.errors.WakeupException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import com.google.common.annotations.VisibleForTesting;
 
+import com.expediagroup.apiary.extensions.events.metastore.common.MetaStoreEventsException;
 import com.expediagroup.apiary.extensions.events.metastore.event.ApiaryListenerEvent;
 import com.expediagroup.apiary.extensions.events.metastore.io.MetaStoreEventSerDe;
 import com.expediagroup.apiary.extensions.events.metastore.io.jackson.JsonMetaStoreEventSerDe;
 
+/**
+ * Reads events from the events topic, either one at a time as an {@link Iterator} or a poll at a time with
+ * {@link #readBatch()}.
+ * <p>
+ * Batches are deserialized by a pool of {@code deserializationThreads} threads, each decoding a contiguous slice of the
+ * records, and keep the order of the records of each Kafka partition, hence of each table. Their offsets are committed
+ * by {@link #commit(KafkaEventBatch)} once the caller has processed them, which requires {@code enable.auto.commit} to
+ * be {@code false}: the consumer would otherwise commit the offsets of a batch on the next poll, processed or not, so
+ * batches cannot be read from a reader committing automatically.
+ * </p>
+ * <p>
+ * {@link #next()} and {@link #readBatch()} wait until there are events, {@link #read(Duration)} and
+ * {@link #readBatch(Duration)} return nothing if there is none within the timeout so the caller can do periodic work in
+ * between. A blocked read can be interrupted from another thread with {@link #wakeup()}.
+ * </p>
+ * <p>
+ * The offsets of the events returned one at a time, by {@link #next()} or {@link #read(Duration)}, are committed
+ * when their partition is revoked and when the reader is closed. The records polled but not returned yet are left to be
+ * read again.
+ * </p>
+ */
 public class KafkaMessageReader implements Iterator<ApiaryListenerEvent>, Closeable {
 
+  private static final Logger log = LoggerFactory.getLogger(KafkaMessageReader.class);
+
   private static final Duration POLL_TIMEOUT = Duration.ofMinutes(5);
+  private static final Duration CLOSE_TIMEOUT = Duration.ofSeconds(30);
 
-  private KafkaConsumer<Long, byte[]> consumer;
+  private KafkaConsumer<byte[], byte[]> consumer;
   private MetaStoreEventSerDe eventSerDe;
-  private Iterator<ConsumerRecord<Long, byte[]>> records;
+  private Iterator<ConsumerRecord<byte[], byte[]>> records;
+  private final Map<TopicPartition, OffsetAndMetadata> readOffsets = new HashMap<>();
+  private final Duration pollTimeout;
+  private final int deserializationThreads;
+  private final ExecutorService deserializers;
+  private final boolean autoCommit;
+  private final List<ConsumerRebalanceListener> rebalanceListeners = new ArrayList<>();
+
+  private KafkaMessageReader(
+      String topicName,
+      MetaStoreEventSerDe eventSerDe,
+      Properties consumerProperties,
+      Duration pollTimeout,
+      int deserializationThreads) {
+    this(topicName, eventSerDe, new KafkaConsumer(consumerProperties), pollTimeout, deserializationThreads,
+        !"false".equalsIgnoreCase(String.valueOf(consumerProperties.getOrDefault(ENABLE_AUTO_COMMIT_CONFIG, true))));
+  }
+
+  @VisibleForTesting
+  KafkaMessageReader(String topicName, MetaStoreEventSerDe eventSerDe, KafkaConsumer<byte[], byte[]> consumer) {
+    this(topicName, eventSerDe, consumer, 1);
+  }
+
+  @VisibleForTesting
+  KafkaMessageReader(
+      String topicName,
+      MetaStoreEventSerDe eventSerDe,
+      KafkaConsumer<byte[], byte[]> consumer,
+      int deserializationThreads) {
+    this(topicName, eventSerDe, consumer, POLL_TIMEOUT, deserializationThreads);
+  }
 
-  private KafkaMessageReader(String topicName, MetaStoreEventSerDe eventSerDe, Properties consumerProperties) {
-    this(topicName, eventSerDe, new KafkaConsumer(consumerProperties));
+  @VisibleForTesting
+  KafkaMessageReader(
+      String topicName,
+      MetaStoreEventSerDe eventSerDe,
+      KafkaConsumer<byte[], byte[]> consumer,
+      Duration pollTimeout,
+      int deserializationThreads) {
+    this(topicName, eventSerDe, consumer, pollTimeout, deserializationThreads, false);
   }
 
   @VisibleForTesting
-  KafkaMessageReader(String topicName, MetaStoreEventSerDe eventSerDe, KafkaConsumer<Long, byte[]> consumer) {
+  KafkaMessageReader(
+      String topicName,
+      MetaStoreEventSerDe eventSerDe,
+      KafkaConsumer<byte[], byte[]> consumer,
+      Duration pollTimeout,
+      int deserializationThreads,
+      boolean autoCommit) {
+    if (deserializationThreads < 1) {
+      throw new IllegalArgumentException("Number of deserialization threads must be greater than zero: "
+          + deserializationThreads);
+    }
     this.eventSerDe = eventSerDe;
     this.consumer = consumer;
-    this.consumer.subscribe(Collections.singletonList(topicName));
+    this.pollTimeout = pollTimeout;
+    this.deserializationThreads = deserializationThreads;
+    this.autoCommit = autoCommit;
+    if (deserializationThreads == 1) {
+      // the calling thread decodes the records
+      deserializers = null;
+    } else {
+      deserializers = Executors.newFixedThreadPool(deserializationThreads, runnable -> {
+        Thread thread = new Thread(runnable, "kafka-receiver-deserializer");
+        thread.setDaemon(true);
+        return thread;
+      });
+    }
+    this.consumer.subscribe(Collections.singletonList(topicName), new CommitReadOffsetsOnRevocation());
   }
 
+  /**
+   * Waits until there is an event.
+   *
+   * @throws WakeupException if {@link #wakeup()} is called while waiting.
+   */
   @Override
   public ApiaryListenerEvent next() {
     readRecordsIfNeeded();
-    ConsumerRecord<Long, byte[]> next = records.next();
-    return eventSerDe.unmarshal(next.value());
+    return nextEvent();
+  }
+
+  /**
+   * @return The next event, or nothing if there is none within {@code timeout}.
+   * @throws WakeupException if {@link #wakeup()} is called while waiting.
+   */
+  public Optional<ApiaryListenerEvent> read(Duration timeout) {
+    if (records == null || !records.hasNext()) {
+      records = consumer.poll(timeout).iterator();
+      if (!records.hasNext()) {
+        return Optional.empty();
+      }
+    }
+    return Optional.of(nextEvent());
+  }
+
+  private ApiaryListenerEvent nextEvent() {
+    ConsumerRecord<byte[], byte[]> next = records.next();
+    ApiaryListenerEvent event = eventSerDe.unmarshal(next.value());
+    readOffsets.put(new TopicPartition(next.topic(), next.partition()), new OffsetAndMetadata(next.offset() + 1));
+    return event;
   }
 
   @Override
@@ -71,17 +197,235 @@ public class KafkaMessageReader implements Iterator<ApiaryListenerEvent>, Closea
     throw new UnsupportedOperationException("Cannot remove message from Kafka topic");
   }
 
+  /**
+   * Returns the events of the records left from the last poll, or of the next poll returning records. The offsets of
+   * the batch are not committed until it is passed to {@link #commit(KafkaEventBatch)}.
+   *
+   * @throws IllegalStateException if the reader commits offsets automatically.
+   * @throws WakeupException if {@link #wakeup()} is called while waiting.
+   */
+  public KafkaEventBatch readBatch() {
+    KafkaEventBatch batch = readBatch(pollTimeout);
+    while (batch.size() == 0) {
+      batch = readBatch(pollTimeout);
+    }
+    return batch;
+  }
+
+  /**
+   * @return The events of the records left from the last poll, or of a single poll waiting up to {@code timeout},
+   *         which may be none. If a record cannot be deserialized the consumer is moved back to the first record of
+   *         the batch before the error is thrown, so the whole batch is read again by the next call.
+   * @throws IllegalStateException if the reader commits offsets automatically.
+   * @throws WakeupException if {@link #wakeup()} is called while waiting.
+   */
+  public KafkaEventBatch readBatch(Duration timeout) {
+    if (autoCommit) {
+      throw new IllegalStateException("Batches can only be read by a reader built with "
+          + ENABLE_AUTO_COMMIT_CONFIG + "=false, the consumer would commit them before they are processed");
+    }
+    List<ConsumerRecord<byte[], byte[]>> batch = new ArrayList<>();
+    if (records != null) {
+      records.forEachRemaining(batch::add);
+    }
+    if (batch.isEmpty()) {
+      consumer.poll(timeout).forEach(batch::add);
+    }
+    records = null;
+    try {
+      return new KafkaEventBatch(unmarshal(batch), batch);
+    } catch (RuntimeException e) {
+      // the position is past the batch, committing a later batch would otherwise skip it
+      seekToFirst(batch.iterator());
+      throw e;
+    }
+  }
+
+  /**
+   * Synchronously commits the offsets of a batch returned by {@link #readBatch()}, once all its events have been
+   * processed.
+   */
+  public void commit(KafkaEventBatch batch) {
+    commit(batch.getOffsets());
+  }
+
+  void commit(Map<TopicPartition, OffsetAndMetadata> offsets) {
+    consumer.commitSync(offsets);
+  }
+
+  void pause(Collection<TopicPartition> partitions) {
+    consumer.pause(partitions);
+  }
+
+  void resume(Collection<TopicPartition> partitions) {
+    consumer.resume(partitions);
+  }
+
+  boolean isAutoCommit() {
+    return autoCommit;
+  }
+
+  /**
+   * Registers a listener called on the reading thread when partitions are revoked or assigned, after the offsets of the
+   * events read from the revoked partitions have been committed.
+   */
+  void addRebalanceListener(ConsumerRebalanceListener listener) {
+    rebalanceListeners.add(listener);
+  }
+
+  /**
+   * Makes a read blocked in another thread throw a {@link WakeupException}, or the next read if none is blocked. This
+   * is the only method which can be called from another thread than the one reading.
+   */
+  public void wakeup() {
+    consumer.wakeup();
+  }
+
+  private List<ApiaryListenerEvent> unmarshal(List<ConsumerRecord<byte[], byte[]>> batch) {
+    int slices = Math.min(deserializationThreads, batch.size());
+    if (slices <= 1) {
+      return unmarshal(batch, 0, batch.size());
+    }
+    List<Future<List<ApiaryListenerEvent>>> futures = new ArrayList<>(slices);
+    int sliceSize = (batch.size() + slices - 1) / slices;
+    for (int from = 0; from < batch.size(); from += sliceSize) {
+      int start = from;
+      int end = Math.min(from + sliceSize, batch.size());
+      futures.add(deserializers.submit(() -> unmarshal(batch, start, end)));
+    }
+    List<ApiaryListenerEvent> events = new ArrayList<>(batch.size());
+    try {
+      for (Future<List<ApiaryListenerEvent>> future : futures) {
+        events.addAll(future.get());
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new MetaStoreEventsException("Interrupted while deserializing events", e);
+    } catch (ExecutionException e) {
+      if (e.getCause() instanceof RuntimeException) {
+        throw (RuntimeException) e.getCause();
+      }
+      throw new MetaStoreEventsException("Unable to deserialize events", e.getCause());
+    }
+    return events;
+  }
+
+  private List<ApiaryListenerEvent> unmarshal(List<ConsumerRecord<byte[], byte[]>> batch, int start, int end) {
+    List<ApiaryListenerEvent> events = new ArrayList<>(end - start);
+    for (int i = start; i < end; i++) {
+      events.add(eventSerDe.unmarshal(batch.get(i).value()));
+    }
+    return events;
+  }
+
+  /**
+   * Commits the offsets of the events returned by {@link #next()} or {@link #read(Duration)}, then closes the consumer
+   * waiting up to 30 seconds for it to leave its group.
+   */
   @Override
   public void close() {
+    commitReadOffsets(CLOSE_TIMEOUT);
+    shutdown();
     consumer.close();
   }
 
+  /**
+   * Same as {@link #close()} waiting up to {@code timeout} for the commit and for the consumer to leave its group.
+   */
+  public void close(Duration timeout) {
+    long deadline = System.nanoTime() + timeout.toNanos();
+    commitReadOffsets(timeout);
+    shutdown();
+    consumer.close(Duration.ofNanos(Math.max(0L, deadline - System.nanoTime())));
+  }
+
+  private void commitReadOffsets(Duration timeout) {
+    rewindUnreadRecords();
+    if (readOffsets.isEmpty()) {
+      return;
+    }
+    // a copy, readOffsets is cleared once they are committed
+    Map<TopicPartition, OffsetAndMetadata> offsets = new HashMap<>(readOffsets);
+    try {
+      try {
+        consumer.commitSync(offsets, timeout);
+      } catch (WakeupException e) {
+        // wakeup() was called after the last read
+        consumer.commitSync(offsets, timeout);
+      }
+      readOffsets.clear();
+    } catch (RuntimeException e) {
+      log.warn("Unable to commit the offsets of the events read, they will be read again", e);
+    }
+  }
+
+  /**
+   * Moves the consumer back to the first record not returned yet in each partition, so it is not committed by the
+   * consumer on close when auto commit is enabled.
+   */
+  private void rewindUnreadRecords() {
+    if (records == null) {
+      return;
+    }
+    seekToFirst(records);
+    records = null;
+  }
+
+  /**
+   * Moves the consumer back to the first of the records in each of their partitions.
+   */
+  private void seekToFirst(Iterator<ConsumerRecord<byte[], byte[]>> records) {
+    Map<TopicPartition, Long> positions = new HashMap<>();
+    records.forEachRemaining(
+        record -> positions.putIfAbsent(new TopicPartition(record.topic(), record.partition()), record.offset()));
+    positions.forEach(consumer::seek);
+  }
+
+  private void shutdown() {
+    if (deserializers != null) {
+      deserializers.shutdownNow();
+    }
+  }
+
   private void readRecordsIfNeeded() {
     while (records == null || !records.hasNext()) {
-      records = consumer.poll(POLL_TIMEOUT).iterator();
+      records = consumer.poll(pollTimeout).iterator();
     }
   }
 
+  private class CommitReadOffsetsOnRevocation implements ConsumerRebalanceListener {
+
+    @Override
+    public void onPartitionsRevoked(Collection<TopicPartition> partitions) {
+      // records are only polled once all the records of the previous poll have been returned
+      Map<TopicPartition, OffsetAndMetadata> offsets = new HashMap<>();
+      for (TopicPartition partition : partitions) {
+        OffsetAndMetadata offset = readOffsets.remove(partition);
+        if (offset != null) {
+          offsets.put(partition, offset);
+        }
+      }
+      if (!offsets.isEmpty()) {
+        try {
+          consumer.commitSync(offsets);
+        } catch (RuntimeException e) {
+          log.warn("Unable to commit the offsets of the events read from revoked partitions {}", partitions, e);
+        }
+      }
+      for (ConsumerRebalanceListener listener : rebalanceListeners) {
+        listener.onPartitionsRevoked(partitions);
+      }
+    }
+
+    @Override
+    public void onPartitionsAssigned(Collection<TopicPartition> partitions) {
+      for (ConsumerRebalanceListener listener : rebalanceListeners) {
+        listener.onPartitionsAssigned(partitions);
+      }
+    }
+
+  }
+
   public static final class KafkaMessageReaderBuilder {
 
     private String bootstrapServers;
@@ -89,6 +433,8 @@ public class KafkaMessageReader implements Iterator<ApiaryListenerEvent>, Closea
     private String groupId = "apiary-kafka-metastore-receiver-";
     private MetaStoreEventSerDe metaStoreEventSerDe = new JsonMetaStoreEventSerDe();
     private Properties consumerProperties = new Properties();
+    private int deserializationThreads = 1;
+    private Duration pollTimeout = POLL_TIMEOUT;
 
     private KafkaMessageReaderBuilder(String bootstrapServers, String topicName, String applicationName) {
       this.bootstrapServers = bootstrapServers;
@@ -114,14 +460,33 @@ public class KafkaMessageReader implements Iterator<ApiaryListenerEvent>, Closea
       return this;
     }
 
+    /**
+     * Sets the number of threads deserializing the records of a {@link KafkaMessageReader#readBatch() batch}, one by
+     * default.
+     */
+    public KafkaMessageReaderBuilder withDeserializationThreads(int deserializationThreads) {
+      this.deserializationThreads = deserializationThreads;
+      return this;
+    }
+
+    /**
+     * Sets how long a poll of {@link KafkaMessageReader#next()} or {@link KafkaMessageReader#readBatch()} waits for
+     * records before polling again, five minutes by default.
+     */
+    public KafkaMessageReaderBuilder withPollTimeout(Duration pollTimeout) {
+      this.pollTimeout = pollTimeout;
+      return this;
+    }
+
     public KafkaMessageReader build() {
       Properties props = new Properties();
       props.put(BOOTSTRAP_SERVERS_CONFIG, bootstrapServers);
       props.put(GROUP_ID_CONFIG, groupId);
-      props.put("key.deserializer", "org.apache.kafka.common.serialization.LongDeserializer");
+      // keys were timestamps before they became qualified table names, both are read as bytes
+      props.put("key.deserializer", "org.apache.kafka.common.serialization.ByteArrayDeserializer");
       props.put("value.deserializer", "org.apache.kafka.common.serialization.ByteArrayDeserializer");
       consumerProperties.forEach((key, value) -> props.merge(key, value, (v1, v2) -> v1));
-      return new KafkaMessageReader(topicName, metaStoreEventSerDe, props);
+      return new KafkaMessageReader(topicName, metaStoreEventSerDe, props, pollTimeout, deserializationThreads);
     }
   }
 }
@@ -0,0 +1,155 @@
+/**
+ * Copyright (C) 2018-2021 Expedia, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.expediagroup.apiary.extensions.events.metastore.kafka.messaging;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import static org.apache.kafka.clients.consumer.ConsumerConfig.AUTO_OFFSET_RESET_CONFIG;
+import static org.apache.kafka.clients.consumer.ConsumerConfig.BOOTSTRAP_SERVERS_CONFIG;
+import static org.apache.kafka.clients.consumer.ConsumerConfig.ENABLE_AUTO_COMMIT_CONFIG;
+
+import static com.expediagroup.apiary.extensions.events.metastore.common.Preconditions.checkNotEmpty;
+
+import java.io.Closeable;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.stream.Collectors;
+
+import org.apache.hadoop.hive.metastore.api.Table;
+import org.apache.kafka.clients.consumer.Consumer;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.KafkaConsumer;
+import org.apache.kafka.common.TopicPartition;
+
+import com.google.common.annotations.VisibleForTesting;
+
+import com.expediagroup.apiary.extensions.events.metastore.event.TableSnapshot;
+import com.expediagroup.apiary.extensions.events.metastore.io.jackson.JsonTableSnapshotSerDe;
+
+/**
+ * Reads the latest state of the tables, and of their partitions if the listener publishes them, from the
+ * log-compacted snapshot topic. New consumers can load it to bootstrap instead of replaying the history of the events
+ * topic, and then read the events published after the time of the snapshot.
+ * <p>
+ * The topic is read from the beginning to the end offsets it had when {@link #read()} was called, no offsets are
+ * committed.
+ * </p>
+ */
+public class KafkaSnapshotReader implements Closeable {
+
+  private static final Duration POLL_TIMEOUT = Duration.ofSeconds(1);
+
+  private final String topicName;
+  private final JsonTableSnapshotSerDe serDe;
+  private final Consumer<byte[], byte[]> consumer;
+
+  private KafkaSnapshotReader(String topicName, Properties consumerProperties) {
+    this(topicName, new JsonTableSnapshotSerDe(), new KafkaConsumer<>(consumerProperties));
+  }
+
+  @VisibleForTesting
+  KafkaSnapshotReader(String topicName, JsonTableSnapshotSerDe serDe, Consumer<byte[], byte[]> consumer) {
+    this.topicName = topicName;
+    this.serDe = serDe;
+    this.consumer = consumer;
+  }
+
+  /**
+   * @return The snapshots by qualified name: {@code <database>.<table>} for tables and
+   *         {@code <database>.<table>/<partition name>} for partitions. Partitions of tables that have no snapshot
+   *         because the table has been dropped, or that belong to a dropped table of the same name because their table
+   *         was created at another time than the table of the snapshot, are left out.
+   */
+  public Map<String, TableSnapshot> read() {
+    List<TopicPartition> partitions = consumer
+        .partitionsFor(topicName)
+        .stream()
+        .map(info -> new TopicPartition(info.topic(), info.partition()))
+        .collect(Collectors.toList());
+    consumer.assign(partitions);
+    consumer.seekToBeginning(partitions);
+    Map<TopicPartition, Long> endOffsets = new HashMap<>(consumer.endOffsets(partitions));
+    endOffsets.entrySet().removeIf(end -> consumer.position(end.getKey()) >= end.getValue());
+
+    Map<String, TableSnapshot> snapshots = new HashMap<>();
+    while (!endOffsets.isEmpty()) {
+      for (ConsumerRecord<byte[], byte[]> record : consumer.poll(POLL_TIMEOUT)) {
+        String key = new String(record.key(), UTF_8);
+        if (record.value() == null) {
+          snapshots.remove(key);
+        } else {
+          snapshots.put(key, serDe.unmarshal(record.value()));
+        }
+      }
+      endOffsets.entrySet().removeIf(end -> consumer.position(end.getKey()) >= end.getValue());
+    }
+    snapshots.entrySet().removeIf(snapshot -> isOrphanedPartition(snapshot.getValue(), snapshots));
+    return snapshots;
+  }
+
+  private static boolean isOrphanedPartition(TableSnapshot snapshot, Map<String, TableSnapshot> snapshots) {
+    if (snapshot.getPartition() == null) {
+      return false;
+    }
+    Table table = snapshot.getTable();
+    TableSnapshot tableSnapshot = snapshots.get(table.getDbName() + "." + table.getTableName());
+    // a table dropped and created again with the same name keeps the partition snapshots of the dropped one
+    return tableSnapshot == null || tableSnapshot.getTable().getCreateTime() != table.getCreateTime();
+  }
+
+  @Override
+  public void close() {
+    consumer.close();
+  }
+
+  public static final class KafkaSnapshotReaderBuilder {
+
+    private final String bootstrapServers;
+    private final String topicName;
+    private Properties consumerProperties = new Properties();
+
+    private KafkaSnapshotReaderBuilder(String bootstrapServers, String topicName) {
+      this.bootstrapServers = bootstrapServers;
+      this.topicName = topicName;
+    }
+
+    public static KafkaSnapshotReaderBuilder builder(String bootstrapServers, String topicName) {
+      return new KafkaSnapshotReaderBuilder(
+          checkNotEmpty(bootstrapServers, "Bootstrap servers is not set"),
+          checkNotEmpty(topicName, "Topic name is not set"));
+    }
+
+    public KafkaSnapshotReaderBuilder withConsumerProperties(Properties consumerProperties) {
+      this.consumerProperties = consumerProperties;
+      return this;
+    }
+
+    public KafkaSnapshotReader build() {
+      Properties props = new Properties();
+      props.put(BOOTSTRAP_SERVERS_CONFIG, bootstrapServers);
+      // partitions are assigned and read from the beginning every time, there is no group to commit to
+      props.put(ENABLE_AUTO_COMMIT_CONFIG, "false");
+      props.put(AUTO_OFFSET_RESET_CONFIG, "earliest");
+      props.put("key.deserializer", "org.apache.kafka.common.serialization.ByteArrayDeserializer");
+      props.put("value.deserializer", "org.apache.kafka.common.serialization.ByteArrayDeserializer");
+      consumerProperties.forEach((key, value) -> props.merge(key, value, (v1, v2) -> v1));
+      return new KafkaSnapshotReader(topicName, props);
+    }
+  }
+}
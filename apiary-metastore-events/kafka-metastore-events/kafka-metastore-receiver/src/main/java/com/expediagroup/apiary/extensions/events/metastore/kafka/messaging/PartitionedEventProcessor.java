@@ -0,0 +1,341 @@
+/**
+ * Copyright (C) 2018-2021 Expedia, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.expediagroup.apiary.extensions.events.metastore.kafka.messaging;
+
+import static org.apache.kafka.clients.consumer.ConsumerConfig.ENABLE_AUTO_COMMIT_CONFIG;
+
+import java.io.Closeable;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.apache.kafka.clients.consumer.ConsumerRebalanceListener;
+import org.apache.kafka.clients.consumer.OffsetAndMetadata;
+import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.common.errors.WakeupException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.annotations.VisibleForTesting;
+
+import com.expediagroup.apiary.extensions.events.metastore.common.MetaStoreEventsException;
+import com.expediagroup.apiary.extensions.events.metastore.event.ApiaryListenerEvent;
+
+/**
+ * Reads events with a {@link KafkaMessageReader} and hands the events of each Kafka partition to a worker thread of
+ * its own, so events are processed on several cores while the events of a table stay in order.
+ * <p>
+ * The offset of each partition is committed up to the last event of the contiguous prefix of acknowledged events, an
+ * event acknowledged before the ones preceding it is only committed once they are acknowledged too. A partition is
+ * paused once {@code maxPendingEvents} of its events are waiting to be acknowledged, and resumed once half of them have
+ * been.
+ * </p>
+ * <p>
+ * Events are delivered at least once: events which had not been acknowledged when the processor stopped, or when
+ * their partition was revoked, are delivered again. When a partition is revoked, the event being handled is left to
+ * complete within the shutdown timeout, the acknowledged events are committed and the events still queued are dropped,
+ * the partition starts afresh from its committed offset if it is assigned again. The reader must be built with
+ * {@code enable.auto.commit} set to {@code false}.
+ * </p>
+ */
+public class PartitionedEventProcessor implements Closeable {
+  private static final Logger log = LoggerFactory.getLogger(PartitionedEventProcessor.class);
+
+  private static final Duration POLL_TIMEOUT = Duration.ofMillis(100);
+  private static final Duration DEFAULT_SHUTDOWN_TIMEOUT = Duration.ofSeconds(30);
+
+  private final KafkaMessageReader reader;
+  private final KafkaEventHandler handler;
+  private final int maxPendingEvents;
+  private final Duration shutdownTimeout;
+  private final Map<TopicPartition, PartitionWorker> workers = new HashMap<>();
+  private final Set<TopicPartition> paused = new HashSet<>();
+  private final AtomicReference<Exception> failure = new AtomicReference<>();
+  private volatile boolean running = true;
+
+  public PartitionedEventProcessor(KafkaMessageReader reader, KafkaEventHandler handler, int maxPendingEvents) {
+    this(reader, handler, maxPendingEvents, DEFAULT_SHUTDOWN_TIMEOUT);
+  }
+
+  /**
+   * @param shutdownTimeout How long to wait for the events being handled when the processor stops or partitions are
+   *          revoked.
+   * @throws IllegalArgumentException if the reader commits offsets automatically.
+   */
+  public PartitionedEventProcessor(
+      KafkaMessageReader reader,
+      KafkaEventHandler handler,
+      int maxPendingEvents,
+      Duration shutdownTimeout) {
+    if (maxPendingEvents < 1) {
+      throw new IllegalArgumentException("Maximum number of pending events must be greater than zero: "
+          + maxPendingEvents);
+    }
+    if (reader.isAutoCommit()) {
+      throw new IllegalArgumentException("The reader must be built with " + ENABLE_AUTO_COMMIT_CONFIG + "=false");
+    }
+    this.reader = reader;
+    this.handler = handler;
+    this.maxPendingEvents = maxPendingEvents;
+    this.shutdownTimeout = shutdownTimeout;
+    reader.addRebalanceListener(new CommitAcknowledgedEventsOnRevocation());
+  }
+
+  /**
+   * Reads and dispatches events on the calling thread until {@link #close()} is called, then commits the acknowledged
+   * events and closes the reader.
+   *
+   * @throws MetaStoreEventsException if the handler failed to process an event.
+   */
+  public void run() {
+    try {
+      while (running) {
+        KafkaEventBatch batch = reader.readBatch(POLL_TIMEOUT);
+        dispatch(batch);
+        Exception cause = failure.get();
+        if (cause != null) {
+          throw new MetaStoreEventsException("Unable to process event", cause);
+        }
+        applyBackPressure();
+        commit();
+      }
+    } catch (WakeupException e) {
+      if (running) {
+        throw e;
+      }
+    } finally {
+      running = false;
+      shutdown();
+    }
+  }
+
+  /**
+   * Stops the processor, {@link #run()} returns once the events being handled have completed or the shutdown timeout
+   * has elapsed.
+   */
+  @Override
+  public void close() {
+    running = false;
+    reader.wakeup();
+  }
+
+  private void dispatch(KafkaEventBatch batch) {
+    for (int i = 0; i < batch.size(); i++) {
+      TopicPartition partition = batch.partition(i);
+      PartitionWorker worker = workers.get(partition);
+      if (worker == null) {
+        worker = new PartitionWorker(partition);
+        workers.put(partition, worker);
+      }
+      worker.submit(batch.getEvents().get(i), batch.offset(i));
+    }
+  }
+
+  private void applyBackPressure() {
+    List<TopicPartition> pause = new ArrayList<>();
+    List<TopicPartition> resume = new ArrayList<>();
+    for (Map.Entry<TopicPartition, PartitionWorker> entry : workers.entrySet()) {
+      int pendingEvents = entry.getValue().pendingEvents();
+      if (pendingEvents >= maxPendingEvents) {
+        if (paused.add(entry.getKey())) {
+          pause.add(entry.getKey());
+        }
+      } else if (pendingEvents <= maxPendingEvents / 2 && paused.remove(entry.getKey())) {
+        resume.add(entry.getKey());
+      }
+    }
+    if (!pause.isEmpty()) {
+      log.debug("Pausing partitions {}", pause);
+      reader.pause(pause);
+    }
+    if (!resume.isEmpty()) {
+      log.debug("Resuming partitions {}", resume);
+      reader.resume(resume);
+    }
+  }
+
+  private void commit() {
+    commit(workers.values());
+  }
+
+  private void commit(Collection<PartitionWorker> workers) {
+    Map<TopicPartition, OffsetAndMetadata> offsets = new HashMap<>();
+    for (PartitionWorker worker : workers) {
+      OffsetAndMetadata offset = worker.acknowledgedOffset();
+      if (offset != null) {
+        offsets.put(worker.partition, offset);
+      }
+    }
+    if (!offsets.isEmpty()) {
+      reader.commit(offsets);
+    }
+  }
+
+  /**
+   * Waits for the events being handled by the workers, without interrupting them, up to the shutdown timeout.
+   */
+  private void stop(Collection<PartitionWorker> workers) {
+    for (PartitionWorker worker : workers) {
+      worker.executor.shutdown();
+    }
+    try {
+      long deadline = System.nanoTime() + shutdownTimeout.toNanos();
+      for (PartitionWorker worker : workers) {
+        worker.executor.awaitTermination(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  private void shutdown() {
+    stop(workers.values());
+    try {
+      commit();
+    } catch (WakeupException e) {
+      // close() was called after the last poll
+      commit();
+    } catch (Exception e) {
+      log.warn("Unable to commit the acknowledged events, they will be delivered again", e);
+    } finally {
+      for (PartitionWorker worker : workers.values()) {
+        worker.executor.shutdownNow();
+      }
+      workers.clear();
+      reader.close();
+    }
+  }
+
+  @VisibleForTesting
+  int pendingEvents(TopicPartition partition) {
+    PartitionWorker worker = workers.get(partition);
+    return worker == null ? 0 : worker.pendingEvents();
+  }
+
+  /**
+   * Called on the thread running the processor, while the reader polls.
+   */
+  private final class CommitAcknowledgedEventsOnRevocation implements ConsumerRebalanceListener {
+
+    @Override
+    public void onPartitionsRevoked(Collection<TopicPartition> partitions) {
+      List<PartitionWorker> revokedWorkers = new ArrayList<>();
+      for (TopicPartition partition : partitions) {
+        paused.remove(partition);
+        PartitionWorker worker = workers.remove(partition);
+        if (worker != null) {
+          worker.revoked = true;
+          revokedWorkers.add(worker);
+        }
+      }
+      if (revokedWorkers.isEmpty()) {
+        return;
+      }
+      stop(revokedWorkers);
+      try {
+        commit(revokedWorkers);
+      } catch (Exception e) {
+        log.warn("Unable to commit the acknowledged events of revoked partitions {}, they will be delivered again",
+            partitions, e);
+      }
+      log.info("Partitions {} have been revoked, their unacknowledged events are left to their next consumer",
+          partitions);
+    }
+
+    @Override
+    public void onPartitionsAssigned(Collection<TopicPartition> partitions) {}
+
+  }
+
+  private final class PartitionWorker {
+
+    private final TopicPartition partition;
+    private final ExecutorService executor;
+    private final Deque<PendingEvent> pendingEvents = new ArrayDeque<>();
+    private volatile boolean revoked;
+
+    private PartitionWorker(TopicPartition partition) {
+      this.partition = partition;
+      executor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "kafka-receiver-worker-" + partition);
+        thread.setDaemon(true);
+        return thread;
+      });
+    }
+
+    private void submit(ApiaryListenerEvent event, long offset) {
+      PendingEvent pendingEvent = new PendingEvent(offset);
+      synchronized (this) {
+        pendingEvents.add(pendingEvent);
+      }
+      executor.execute(() -> {
+        // events queued when the processor stops or the partition is revoked are left to be delivered again
+        if (!running || revoked || failure.get() != null) {
+          return;
+        }
+        try {
+          handler.handle(event, pendingEvent::acknowledge);
+        } catch (Exception e) {
+          failure.compareAndSet(null, e);
+        }
+      });
+    }
+
+    private synchronized int pendingEvents() {
+      return pendingEvents.size();
+    }
+
+    /**
+     * @return The offset following the acknowledged events at the head of the partition, or {@code null} if no event
+     *         has been acknowledged since the last call.
+     */
+    private synchronized OffsetAndMetadata acknowledgedOffset() {
+      long lastOffset = -1;
+      while (!pendingEvents.isEmpty() && pendingEvents.peekFirst().acknowledged) {
+        lastOffset = pendingEvents.pollFirst().offset;
+      }
+      return lastOffset < 0 ? null : new OffsetAndMetadata(lastOffset + 1);
+    }
+
+  }
+
+  private static final class PendingEvent {
+
+    private final long offset;
+    private volatile boolean acknowledged;
+
+    private PendingEvent(long offset) {
+      this.offset = offset;
+    }
+
+    private void acknowledge() {
+      acknowledged = true;
+    }
+
+  }
+
+}
@@ -16,7 +16,13 @@
 package com.expediagroup.apiary.extensions.events.metastore.kafka.messaging;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.entry;
+import static org.assertj.core.api.Assertions.fail;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
@@ -24,16 +30,25 @@ import static org.mockito.Mockito.when;
 import static com.expediagroup.apiary.extensions.events.metastore.kafka.messaging.KafkaMessageReader.KafkaMessageReaderBuilder;
 
 import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
 
+import org.apache.kafka.clients.consumer.ConsumerRebalanceListener;
 import org.apache.kafka.clients.consumer.ConsumerRecord;
 import org.apache.kafka.clients.consumer.ConsumerRecords;
 import org.apache.kafka.clients.consumer.KafkaConsumer;
+import org.apache.kafka.clients.consumer.OffsetAndMetadata;
 import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.common.errors.WakeupException;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
 import org.mockito.Mock;
 import org.mockito.junit.MockitoJUnitRunner;
 
@@ -54,17 +69,17 @@ public class KafkaMessageReaderTest {
   private static final String TOPIC_NAME = "topic";
 
   private @Mock MetaStoreEventSerDe serDe;
-  private @Mock KafkaConsumer<Long, byte[]> consumer;
-  private @Mock ConsumerRecord<Long, byte[]> message;
+  private @Mock KafkaConsumer<byte[], byte[]> consumer;
+  private @Mock ConsumerRecord<byte[], byte[]> message;
   private @Mock ApiaryListenerEvent event;
 
-  private ConsumerRecords<Long, byte[]> messages;
+  private ConsumerRecords<byte[], byte[]> messages;
   private KafkaMessageReader reader;
 
   @Before
   public void init() {
-    List<ConsumerRecord<Long, byte[]>> messageList = ImmutableList.of(message);
-    Map<TopicPartition, List<ConsumerRecord<Long, byte[]>>> messageMap = ImmutableMap
+    List<ConsumerRecord<byte[], byte[]>> messageList = ImmutableList.of(message);
+    Map<TopicPartition, List<ConsumerRecord<byte[], byte[]>>> messageMap = ImmutableMap
         .of(new TopicPartition(TOPIC_NAME, PARTITION), messageList);
     messages = new ConsumerRecords<>(messageMap);
     when(consumer.poll(any(Duration.class))).thenReturn(messages);
@@ -88,6 +103,234 @@ public class KafkaMessageReaderTest {
     verify(serDe).unmarshal(MESSAGE_CONTENT);
   }
 
+  @Test
+  public void readReturnsNextEvent() {
+    assertThat(reader.read(Duration.ofMillis(10))).isEqualTo(Optional.of(event));
+    verify(consumer).poll(Duration.ofMillis(10));
+  }
+
+  @Test
+  public void readReturnsNothingWithinTimeout() {
+    when(consumer.poll(any(Duration.class))).thenReturn(ConsumerRecords.empty());
+    assertThat(reader.read(Duration.ofMillis(10))).isEqualTo(Optional.empty());
+    verify(consumer, times(1)).poll(Duration.ofMillis(10));
+    verify(serDe, never()).unmarshal(any(byte[].class));
+  }
+
+  @Test
+  public void readBatchReturnsNothingWithinTimeout() {
+    when(consumer.poll(any(Duration.class))).thenReturn(ConsumerRecords.empty());
+    assertThat(reader.readBatch(Duration.ofMillis(10)).size()).isEqualTo(0);
+    verify(consumer, times(1)).poll(Duration.ofMillis(10));
+  }
+
+  @Test
+  public void nextUsesPollTimeout() {
+    reader = new KafkaMessageReader(TOPIC_NAME, serDe, consumer, Duration.ofSeconds(1), 1);
+    reader.next();
+    verify(consumer).poll(Duration.ofSeconds(1));
+  }
+
+  @Test(expected = WakeupException.class)
+  public void nextThrowsOnWakeup() {
+    when(consumer.poll(any(Duration.class))).thenThrow(new WakeupException());
+    reader.wakeup();
+    verify(consumer).wakeup();
+    reader.next();
+  }
+
+  @Test
+  public void closeCommitsEventsReadAndRewindsUnreadRecords() {
+    givenRecords(2);
+
+    reader.next();
+    reader.close();
+
+    TopicPartition partition = new TopicPartition(TOPIC_NAME, PARTITION);
+    InOrder inOrder = inOrder(consumer);
+    inOrder.verify(consumer).seek(partition, 1L);
+    inOrder.verify(consumer).commitSync(Collections.singletonMap(partition, new OffsetAndMetadata(1L)),
+        Duration.ofSeconds(30));
+    inOrder.verify(consumer).close();
+  }
+
+  @Test
+  public void closeWithTimeout() {
+    givenRecords(1);
+
+    reader.next();
+    reader.close(Duration.ofSeconds(5));
+
+    verify(consumer).commitSync(
+        Collections.singletonMap(new TopicPartition(TOPIC_NAME, PARTITION), new OffsetAndMetadata(1L)),
+        Duration.ofSeconds(5));
+    verify(consumer).close(any(Duration.class));
+  }
+
+  @Test
+  public void closeDoesNotCommitBatches() {
+    givenRecords(1);
+
+    reader.readBatch();
+    reader.close();
+
+    verify(consumer, never()).commitSync(any(Map.class), any(Duration.class));
+    verify(consumer).close();
+  }
+
+  @Test
+  public void revokedPartitionsCommitEventsRead() {
+    ArgumentCaptor<ConsumerRebalanceListener> listener = ArgumentCaptor.forClass(ConsumerRebalanceListener.class);
+    verify(consumer).subscribe(anyCollection(), listener.capture());
+    givenRecords(1);
+    reader.next();
+
+    TopicPartition partition = new TopicPartition(TOPIC_NAME, PARTITION);
+    listener.getValue().onPartitionsRevoked(Collections.singletonList(partition));
+    reader.close();
+
+    verify(consumer, times(1)).commitSync(Collections.singletonMap(partition, new OffsetAndMetadata(1L)));
+    verify(consumer, never()).commitSync(any(Map.class), any(Duration.class));
+  }
+
+  @Test
+  public void revokedPartitionsAreForwardedToRebalanceListeners() {
+    ArgumentCaptor<ConsumerRebalanceListener> listener = ArgumentCaptor.forClass(ConsumerRebalanceListener.class);
+    verify(consumer).subscribe(anyCollection(), listener.capture());
+    ConsumerRebalanceListener rebalanceListener = mock(ConsumerRebalanceListener.class);
+    reader.addRebalanceListener(rebalanceListener);
+
+    List<TopicPartition> partitions = Collections.singletonList(new TopicPartition(TOPIC_NAME, PARTITION));
+    listener.getValue().onPartitionsRevoked(partitions);
+    listener.getValue().onPartitionsAssigned(partitions);
+
+    verify(rebalanceListener).onPartitionsRevoked(partitions);
+    verify(rebalanceListener).onPartitionsAssigned(partitions);
+  }
+
+  @Test
+  public void readBatch() {
+    when(message.topic()).thenReturn(TOPIC_NAME);
+    when(message.partition()).thenReturn(PARTITION);
+    when(message.offset()).thenReturn(41L);
+    KafkaEventBatch batch = reader.readBatch();
+    assertThat(batch.getEvents()).containsExactly(event);
+    assertThat(batch.getOffsets())
+        .containsOnly(entry(new TopicPartition(TOPIC_NAME, PARTITION), new OffsetAndMetadata(42L)));
+  }
+
+  @Test
+  public void readBatchDeserializesInParallelAndKeepsOrder() {
+    Map<TopicPartition, List<ConsumerRecord<byte[], byte[]>>> recordMap = new LinkedHashMap<>();
+    List<ApiaryListenerEvent> expected = new ArrayList<>();
+    for (int partition = 0; partition < 2; partition++) {
+      List<ConsumerRecord<byte[], byte[]>> partitionRecords = new ArrayList<>();
+      for (int offset = 0; offset < 5; offset++) {
+        byte[] value = (partition + ":" + offset).getBytes();
+        ApiaryListenerEvent partitionEvent = mock(ApiaryListenerEvent.class);
+        when(serDe.unmarshal(value)).thenReturn(partitionEvent);
+        partitionRecords.add(new ConsumerRecord<>(TOPIC_NAME, partition, offset, null, value));
+        expected.add(partitionEvent);
+      }
+      recordMap.put(new TopicPartition(TOPIC_NAME, partition), partitionRecords);
+    }
+    when(consumer.poll(any(Duration.class))).thenReturn(new ConsumerRecords<>(recordMap));
+    reader = new KafkaMessageReader(TOPIC_NAME, serDe, consumer, 3);
+
+    KafkaEventBatch batch = reader.readBatch();
+
+    assertThat(batch.getEvents()).containsExactlyElementsOf(expected);
+    assertThat(batch.getOffsets())
+        .containsOnly(entry(new TopicPartition(TOPIC_NAME, 0), new OffsetAndMetadata(5L)),
+            entry(new TopicPartition(TOPIC_NAME, 1), new OffsetAndMetadata(5L)));
+    reader.close();
+  }
+
+  @Test(expected = SerDeException.class)
+  public void readBatchRethrowsParallelDeserializationErrors() {
+    when(serDe.unmarshal(any(byte[].class))).thenThrow(SerDeException.class);
+    List<ConsumerRecord<byte[], byte[]>> partitionRecords = new ArrayList<>();
+    partitionRecords.add(new ConsumerRecord<>(TOPIC_NAME, PARTITION, 0L, null, MESSAGE_CONTENT));
+    partitionRecords.add(new ConsumerRecord<>(TOPIC_NAME, PARTITION, 1L, null, MESSAGE_CONTENT));
+    when(consumer.poll(any(Duration.class)))
+        .thenReturn(
+            new ConsumerRecords<>(ImmutableMap.of(new TopicPartition(TOPIC_NAME, PARTITION), partitionRecords)));
+    new KafkaMessageReader(TOPIC_NAME, serDe, consumer, 2).readBatch();
+  }
+
+  @Test
+  public void readBatchReadsFailedBatchAgain() {
+    TopicPartition topicPartition = new TopicPartition(TOPIC_NAME, PARTITION);
+    List<ConsumerRecord<byte[], byte[]>> partitionRecords = new ArrayList<>();
+    List<ApiaryListenerEvent> expected = new ArrayList<>();
+    for (int offset = 10; offset < 13; offset++) {
+      byte[] value = ("record " + offset).getBytes();
+      ApiaryListenerEvent recordEvent = mock(ApiaryListenerEvent.class);
+      if (offset == 11) {
+        when(serDe.unmarshal(value)).thenThrow(SerDeException.class).thenReturn(recordEvent);
+      } else {
+        when(serDe.unmarshal(value)).thenReturn(recordEvent);
+      }
+      partitionRecords.add(new ConsumerRecord<>(TOPIC_NAME, PARTITION, offset, null, value));
+      expected.add(recordEvent);
+    }
+    ConsumerRecords<byte[], byte[]> polled = new ConsumerRecords<>(ImmutableMap.of(topicPartition, partitionRecords));
+    when(consumer.poll(any(Duration.class))).thenReturn(polled);
+    reader = new KafkaMessageReader(TOPIC_NAME, serDe, consumer, 2);
+
+    try {
+      reader.readBatch();
+      fail("Expected SerDeException");
+    } catch (SerDeException e) {
+      verify(consumer).seek(topicPartition, 10L);
+    }
+    KafkaEventBatch batch = reader.readBatch();
+
+    assertThat(batch.getEvents()).containsExactlyElementsOf(expected);
+    assertThat(batch.getOffsets()).containsOnly(entry(topicPartition, new OffsetAndMetadata(13L)));
+    reader.close();
+  }
+
+  @Test
+  public void readBatchReturnsRecordsLeftByNext() {
+    ConsumerRecord<byte[], byte[]> second = new ConsumerRecord<>(TOPIC_NAME, PARTITION, 1L, null, "second".getBytes());
+    ApiaryListenerEvent secondEvent = mock(ApiaryListenerEvent.class);
+    when(serDe.unmarshal(second.value())).thenReturn(secondEvent);
+    when(consumer.poll(any(Duration.class)))
+        .thenReturn(new ConsumerRecords<>(
+            ImmutableMap.of(new TopicPartition(TOPIC_NAME, PARTITION), ImmutableList.of(message, second))));
+
+    assertThat(reader.next()).isSameAs(event);
+    assertThat(reader.readBatch().getEvents()).containsExactly(secondEvent);
+    verify(consumer, times(1)).poll(any(Duration.class));
+  }
+
+  @Test
+  public void commit() {
+    when(message.topic()).thenReturn(TOPIC_NAME);
+    when(message.partition()).thenReturn(PARTITION);
+    when(message.offset()).thenReturn(41L);
+    KafkaEventBatch batch = reader.readBatch();
+    reader.commit(batch);
+    verify(consumer).commitSync(batch.getOffsets());
+  }
+
+  @Test(expected = IllegalStateException.class)
+  public void readBatchWithAutoCommit() {
+    new KafkaMessageReader(TOPIC_NAME, serDe, consumer, Duration.ofSeconds(1), 1, true).readBatch();
+  }
+
+  @Test
+  public void nextWithAutoCommit() {
+    reader = new KafkaMessageReader(TOPIC_NAME, serDe, consumer, Duration.ofSeconds(1), 1, true);
+    assertThat(reader.next()).isSameAs(event);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void invalidDeserializationThreads() {
+    new KafkaMessageReader(TOPIC_NAME, serDe, consumer, 0);
+  }
+
   @Test(expected = UnsupportedOperationException.class)
   public void remove() {
     reader.remove();
@@ -110,6 +353,16 @@ public class KafkaMessageReaderTest {
     reader.next();
   }
 
+  private void givenRecords(int count) {
+    List<ConsumerRecord<byte[], byte[]>> partitionRecords = new ArrayList<>();
+    for (int offset = 0; offset < count; offset++) {
+      partitionRecords.add(new ConsumerRecord<>(TOPIC_NAME, PARTITION, offset, null, MESSAGE_CONTENT));
+    }
+    when(consumer.poll(any(Duration.class)))
+        .thenReturn(
+            new ConsumerRecords<>(ImmutableMap.of(new TopicPartition(TOPIC_NAME, PARTITION), partitionRecords)));
+  }
+
   @Test(expected = IllegalArgumentException.class)
   public void nullBootstrapServers() {
     KafkaMessageReaderBuilder.builder(null, TOPIC_NAME, APPLICATION_NAME)
@@ -0,0 +1,151 @@
+/**
+ * Copyright (C) 2018-2021 Expedia, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.expediagroup.apiary.extensions.events.metastore.kafka.messaging;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.when;
+
+import static com.expediagroup.apiary.extensions.events.metastore.kafka.messaging.KafkaSnapshotReader.KafkaSnapshotReaderBuilder;
+
+import java.util.AbstractMap.SimpleEntry;
+import java.util.Collections;
+import java.util.Map;
+
+import org.apache.hadoop.hive.metastore.api.Partition;
+import org.apache.hadoop.hive.metastore.api.Table;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.MockConsumer;
+import org.apache.kafka.clients.consumer.OffsetResetStrategy;
+import org.apache.kafka.common.PartitionInfo;
+import org.apache.kafka.common.TopicPartition;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+
+import com.expediagroup.apiary.extensions.events.metastore.event.TableSnapshot;
+import com.expediagroup.apiary.extensions.events.metastore.io.jackson.JsonTableSnapshotSerDe;
+
+@RunWith(MockitoJUnitRunner.class)
+public class KafkaSnapshotReaderTest {
+
+  private static final String TOPIC_NAME = "snapshots";
+  private static final TopicPartition PARTITION = new TopicPartition(TOPIC_NAME, 0);
+
+  private @Mock JsonTableSnapshotSerDe serDe;
+
+  private final MockConsumer<byte[], byte[]> consumer = new MockConsumer<>(OffsetResetStrategy.EARLIEST);
+  private KafkaSnapshotReader reader;
+  private long offset;
+
+  @Before
+  public void init() {
+    PartitionInfo partitionInfo = new PartitionInfo(TOPIC_NAME, 0, null, null, null);
+    consumer.updatePartitions(TOPIC_NAME, Collections.singletonList(partitionInfo));
+    consumer.updateBeginningOffsets(Collections.singletonMap(PARTITION, 0L));
+    reader = new KafkaSnapshotReader(TOPIC_NAME, serDe, consumer);
+  }
+
+  @Test
+  public void emptyTopic() {
+    consumer.updateEndOffsets(Collections.singletonMap(PARTITION, 0L));
+    assertThat(reader.read()).isEmpty();
+  }
+
+  @Test
+  public void latestSnapshotWins() {
+    TableSnapshot first = new TableSnapshot(table("tbl"));
+    TableSnapshot second = new TableSnapshot(table("tbl"));
+    records(record("db.tbl", first), record("db.tbl", second));
+    assertThat(reader.read()).containsOnlyKeys("db.tbl").containsEntry("db.tbl", second);
+  }
+
+  @Test
+  public void tombstoneRemovesSnapshot() {
+    TableSnapshot other = new TableSnapshot(table("other"));
+    records(record("db.tbl", new TableSnapshot(table("tbl"))), record("db.tbl", null), record("db.other", other));
+    assertThat(reader.read()).containsOnlyKeys("db.other");
+  }
+
+  @Test
+  public void partitionsOfDroppedTablesAreLeftOut() {
+    Table table = table("tbl");
+    TableSnapshot tableSnapshot = new TableSnapshot(table);
+    TableSnapshot partitionSnapshot = new TableSnapshot(table, new Partition());
+    TableSnapshot orphan = new TableSnapshot(table("dropped"), new Partition());
+    records(record("db.tbl", tableSnapshot), record("db.tbl/dt=1", partitionSnapshot),
+        record("db.dropped/dt=1", orphan));
+    assertThat(reader.read()).containsOnlyKeys("db.tbl", "db.tbl/dt=1");
+  }
+
+  @Test
+  public void partitionsOfTablesDroppedAndCreatedAgainAreLeftOut() {
+    Table dropped = table("tbl");
+    dropped.setCreateTime(1);
+    Table created = table("tbl");
+    created.setCreateTime(2);
+    TableSnapshot current = new TableSnapshot(created, new Partition());
+    records(record("db.tbl/dt=1", new TableSnapshot(dropped, new Partition())), record("db.tbl", null),
+        record("db.tbl", new TableSnapshot(created)), record("db.tbl/dt=2", current));
+    assertThat(reader.read()).containsOnlyKeys("db.tbl", "db.tbl/dt=2");
+  }
+
+  @Test
+  public void close() {
+    reader.close();
+    assertThat(consumer.closed()).isTrue();
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void emptyBootstrapServers() {
+    KafkaSnapshotReaderBuilder.builder("", TOPIC_NAME).build();
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void emptyTopicName() {
+    KafkaSnapshotReaderBuilder.builder("bootstrap_servers", "").build();
+  }
+
+  @SafeVarargs
+  private final void records(Map.Entry<String, TableSnapshot>... records) {
+    consumer.updateEndOffsets(Collections.singletonMap(PARTITION, (long) records.length));
+    consumer.schedulePollTask(() -> {
+      for (Map.Entry<String, TableSnapshot> record : records) {
+        byte[] value = null;
+        if (record.getValue() != null) {
+          value = (record.getKey() + "@" + offset).getBytes(UTF_8);
+          when(serDe.unmarshal(value)).thenReturn(record.getValue());
+        }
+        consumer.addRecord(new ConsumerRecord<>(TOPIC_NAME, 0, offset++, record.getKey().getBytes(UTF_8), value));
+      }
+    });
+  }
+
+  private static Map.Entry<String, TableSnapshot> record(String key, TableSnapshot snapshot) {
+    return new SimpleEntry<>(key, snapshot);
+  }
+
+  private static Table table(String name) {
+    Table table = new Table();
+    table.setDbName("db");
+    table.setTableName(name);
+    return table;
+  }
+
+}
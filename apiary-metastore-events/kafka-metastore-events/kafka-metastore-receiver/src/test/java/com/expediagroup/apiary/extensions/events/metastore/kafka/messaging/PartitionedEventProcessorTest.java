@@ -0,0 +1,228 @@
+/**
+ * Copyright (C) 2018-2021 Expedia, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.expediagroup.apiary.extensions.events.metastore.kafka.messaging;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.apache.kafka.clients.consumer.ConsumerRebalanceListener;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.OffsetAndMetadata;
+import org.apache.kafka.common.TopicPartition;
+import org.junit.After;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+
+import com.expediagroup.apiary.extensions.events.metastore.common.MetaStoreEventsException;
+import com.expediagroup.apiary.extensions.events.metastore.event.ApiaryListenerEvent;
+import com.expediagroup.apiary.extensions.events.metastore.kafka.messaging.KafkaEventHandler.Acknowledgment;
+
+@RunWith(MockitoJUnitRunner.class)
+public class PartitionedEventProcessorTest {
+
+  private static final String TOPIC_NAME = "topic";
+  private static final TopicPartition PARTITION = new TopicPartition(TOPIC_NAME, 0);
+  private static final long TIMEOUT = 5000L;
+  private static final KafkaEventBatch EMPTY = new KafkaEventBatch(Collections.emptyList(), Collections.emptyList());
+
+  private @Mock KafkaMessageReader reader;
+  private @Mock ApiaryListenerEvent event0;
+  private @Mock ApiaryListenerEvent event1;
+  private @Mock ApiaryListenerEvent event2;
+
+  private final Map<ApiaryListenerEvent, Acknowledgment> acknowledgments = new ConcurrentHashMap<>();
+  private PartitionedEventProcessor processor;
+  private Thread runner;
+
+  @After
+  public void stop() throws InterruptedException {
+    if (runner != null) {
+      processor.close();
+      runner.join(TIMEOUT);
+    }
+  }
+
+  @Test
+  public void commitsContiguousAcknowledgedEvents() {
+    givenEvents(event0, event1, event2);
+    start(3, (event, acknowledgment) -> {
+      if (event == event1) {
+        acknowledgments.put(event, acknowledgment);
+      } else {
+        acknowledgment.acknowledge();
+      }
+    });
+
+    verify(reader, timeout(TIMEOUT)).commit(offset(1L));
+    acknowledgment(event1).acknowledge();
+    verify(reader, timeout(TIMEOUT)).commit(offset(3L));
+  }
+
+  @Test
+  public void pausesPartitionFallingBehind() {
+    givenEvents(event0, event1);
+    start(2, acknowledgments::put);
+
+    verify(reader, timeout(TIMEOUT)).pause(Collections.singletonList(PARTITION));
+    acknowledgment(event0).acknowledge();
+    acknowledgment(event1).acknowledge();
+    verify(reader, timeout(TIMEOUT)).resume(Collections.singletonList(PARTITION));
+    verify(reader, timeout(TIMEOUT)).commit(offset(2L));
+  }
+
+  @Test
+  public void closeCommitsAcknowledgedEventsAndClosesReader() throws InterruptedException {
+    givenEvents(event0, event1);
+    start(2, acknowledgments::put);
+    acknowledgment(event0).acknowledge();
+
+    processor.close();
+    runner.join(TIMEOUT);
+
+    verify(reader).commit(offset(1L));
+    verify(reader).close();
+  }
+
+  @Test
+  public void handlerFailureStopsProcessor() {
+    givenEvents(event0);
+    processor = new PartitionedEventProcessor(reader, (event, acknowledgment) -> {
+      throw new IllegalStateException("failed");
+    }, 1);
+
+    assertThatThrownBy(processor::run)
+        .isInstanceOf(MetaStoreEventsException.class)
+        .hasCauseInstanceOf(IllegalStateException.class);
+    verify(reader).close();
+  }
+
+  @Test
+  public void revokedPartitionCommitsAcknowledgedEventsAndStartsAfresh() {
+    AtomicBoolean revoked = new AtomicBoolean();
+    when(reader.readBatch(any(Duration.class)))
+        .thenReturn(batch(0, event0, event1))
+        .thenAnswer(invocation -> {
+          acknowledgment(event0).acknowledge();
+          acknowledgment(event1);
+          revoked.set(true);
+          rebalanceListener().onPartitionsRevoked(Collections.singletonList(PARTITION));
+          // the partition is assigned again and event1 is delivered again
+          return batch(1, event1);
+        })
+        .thenReturn(EMPTY);
+    start(3, (event, acknowledgment) -> {
+      if (revoked.get()) {
+        acknowledgment.acknowledge();
+      } else {
+        acknowledgments.put(event, acknowledgment);
+      }
+    });
+
+    verify(reader, timeout(TIMEOUT)).commit(offset(1L));
+    verify(reader, timeout(TIMEOUT)).commit(offset(2L));
+  }
+
+  @Test
+  public void revokedPartitionWaitsForEventBeingHandled() {
+    CountDownLatch handling = new CountDownLatch(1);
+    when(reader.readBatch(any(Duration.class)))
+        .thenReturn(batch(0, event0, event1))
+        .thenAnswer(invocation -> {
+          handling.await(TIMEOUT, TimeUnit.MILLISECONDS);
+          rebalanceListener().onPartitionsRevoked(Collections.singletonList(PARTITION));
+          return EMPTY;
+        })
+        .thenReturn(EMPTY);
+    List<ApiaryListenerEvent> handled = Collections.synchronizedList(new ArrayList<>());
+    start(3, (event, acknowledgment) -> {
+      handling.countDown();
+      // throws if the worker is interrupted
+      Thread.sleep(100L);
+      handled.add(event);
+      acknowledgment.acknowledge();
+    });
+
+    verify(reader, timeout(TIMEOUT)).commit(offset(1L));
+    assertThat(handled).containsExactly(event0);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void invalidMaxPendingEvents() {
+    new PartitionedEventProcessor(reader, (event, acknowledgment) -> {}, 0);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void readerCommittingAutomatically() {
+    when(reader.isAutoCommit()).thenReturn(true);
+    new PartitionedEventProcessor(reader, (event, acknowledgment) -> {}, 1);
+  }
+
+  private void givenEvents(ApiaryListenerEvent... events) {
+    when(reader.readBatch(any(Duration.class))).thenReturn(batch(0, events), EMPTY);
+  }
+
+  private static KafkaEventBatch batch(long firstOffset, ApiaryListenerEvent... events) {
+    List<ApiaryListenerEvent> eventList = new ArrayList<>();
+    List<ConsumerRecord<byte[], byte[]>> records = new ArrayList<>();
+    for (int i = 0; i < events.length; i++) {
+      eventList.add(events[i]);
+      records.add(new ConsumerRecord<>(TOPIC_NAME, PARTITION.partition(), firstOffset + i, null, null));
+    }
+    return new KafkaEventBatch(eventList, records);
+  }
+
+  private void start(int maxPendingEvents, KafkaEventHandler handler) {
+    processor = new PartitionedEventProcessor(reader, handler, maxPendingEvents);
+    runner = new Thread(processor::run);
+    runner.start();
+  }
+
+  private ConsumerRebalanceListener rebalanceListener() {
+    ArgumentCaptor<ConsumerRebalanceListener> listener = ArgumentCaptor.forClass(ConsumerRebalanceListener.class);
+    verify(reader).addRebalanceListener(listener.capture());
+    return listener.getValue();
+  }
+
+  private Acknowledgment acknowledgment(ApiaryListenerEvent event) {
+    long deadline = System.currentTimeMillis() + TIMEOUT;
+    while (!acknowledgments.containsKey(event) && System.currentTimeMillis() < deadline) {
+      Thread.yield();
+    }
+    return acknowledgments.get(event);
+  }
+
+  private static Map<TopicPartition, OffsetAndMetadata> offset(long offset) {
+    return Collections.singletonMap(PARTITION, new OffsetAndMetadata(offset));
+  }
+
+}
@@ -0,0 +1,250 @@
+/**
+ * Copyright (C) 2018-2021 Expedia, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.expediagroup.apiary.extensions.events.metastore.listener;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.hadoop.hive.metastore.api.Partition;
+import org.apache.hadoop.hive.metastore.api.Table;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Holds ALTER_TABLE and ALTER_PARTITION events for a time window so that repeated alterations of the same table or
+ * partition, typically from statistics gathering jobs, are published as a single event.
+ * <p>
+ * An event is held for {@code windowMillis} after the first alteration of its table or partition. Further alterations
+ * in the window replace its new state and keep its first old state, so the published event goes from the state before
+ * the window to the state at the end of it. Renames are never held. Any other event of a table must be preceded by a
+ * call to {@link #flush(String)} so the held events are published first and the order of the events of the table is
+ * preserved. {@link #close()} publishes all the held events.
+ * </p>
+ * <p>
+ * Held events of a table are removed and published under a lock of the table, so a flush waits for an event of the
+ * table expiring on the background thread and the events published after the flush cannot overtake it. The held events
+ * of a table are flushed in the order of the first alteration of their table or partition in the window, not of the
+ * latest one: a partition altered again after another partition is still published before it.
+ * </p>
+ */
+class AlterEventCoalescer {
+
+  private static final Logger log = LoggerFactory.getLogger(AlterEventCoalescer.class);
+
+  private static final int TABLE_LOCKS = 64;
+
+  interface EventSink {
+    void publish(EventType eventType, Table table, Table oldTable, Partition partition, Partition oldPartition);
+  }
+
+  private final long windowMillis;
+  private final EventSink sink;
+  private final ScheduledExecutorService scheduler;
+  /** Held events by qualified table name, then by partition values, {@code null} for the table itself. */
+  private final Map<String, Map<List<String>, HeldEvent>> heldEvents = new HashMap<>();
+  /** Striped by qualified table name, taken before the lock of {@link #heldEvents}. */
+  private final Object[] tableLocks = new Object[TABLE_LOCKS];
+  private final AtomicLong coalescedEvents = new AtomicLong();
+  private boolean closed;
+
+  AlterEventCoalescer(long windowMillis, EventSink sink) {
+    if (windowMillis <= 0) {
+      throw new IllegalArgumentException("Coalescing window must be greater than zero: " + windowMillis);
+    }
+    this.windowMillis = windowMillis;
+    this.sink = sink;
+    for (int i = 0; i < tableLocks.length; i++) {
+      tableLocks[i] = new Object();
+    }
+    scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+      Thread thread = new Thread(runnable, "apiary-sns-alter-coalescer");
+      thread.setDaemon(true);
+      return thread;
+    });
+  }
+
+  /**
+   * @return {@code true} if the event is held, {@code false} if it must be published right away, in which case the
+   *         held events of the tables involved have been published.
+   */
+  boolean alterTable(Table table, Table oldTable) {
+    String qualifiedTableName = qualifiedTableName(table);
+    String oldQualifiedTableName = qualifiedTableName(oldTable);
+    if (!qualifiedTableName.equals(oldQualifiedTableName)) {
+      flush(oldQualifiedTableName);
+      flush(qualifiedTableName);
+      return false;
+    }
+    return hold(EventType.ALTER_TABLE, qualifiedTableName, null, table, oldTable, null, null);
+  }
+
+  /**
+   * @return {@code true} if the event is held, {@code false} if it must be published right away, in which case the
+   *         held events of the table have been published.
+   */
+  boolean alterPartition(Table table, Partition partition, Partition oldPartition) {
+    String qualifiedTableName = qualifiedTableName(table);
+    if (!Objects.equals(partition.getValues(), oldPartition.getValues())) {
+      flush(qualifiedTableName);
+      return false;
+    }
+    return hold(EventType.ALTER_PARTITION, qualifiedTableName, partition.getValues(), table, null, partition,
+        oldPartition);
+  }
+
+  private boolean hold(
+      EventType eventType,
+      String qualifiedTableName,
+      List<String> partitionValues,
+      Table table,
+      Table oldTable,
+      Partition partition,
+      Partition oldPartition) {
+    synchronized (heldEvents) {
+      if (closed) {
+        return false;
+      }
+      Map<List<String>, HeldEvent> tableEvents = heldEvents
+          .computeIfAbsent(qualifiedTableName, name -> new LinkedHashMap<>());
+      HeldEvent heldEvent = tableEvents.get(partitionValues);
+      if (heldEvent != null) {
+        heldEvent.table = table;
+        heldEvent.partition = partition;
+        coalescedEvents.incrementAndGet();
+        return true;
+      }
+      HeldEvent newEvent = new HeldEvent(eventType, table, oldTable, partition, oldPartition);
+      tableEvents.put(partitionValues, newEvent);
+      scheduler.schedule(() -> expire(qualifiedTableName, partitionValues, newEvent), windowMillis,
+          TimeUnit.MILLISECONDS);
+      return true;
+    }
+  }
+
+  private void expire(String qualifiedTableName, List<String> partitionValues, HeldEvent heldEvent) {
+    synchronized (tableLock(qualifiedTableName)) {
+      synchronized (heldEvents) {
+        Map<List<String>, HeldEvent> tableEvents = heldEvents.get(qualifiedTableName);
+        // the event may have been flushed, and another one held since
+        if (tableEvents == null || !tableEvents.remove(partitionValues, heldEvent)) {
+          return;
+        }
+        if (tableEvents.isEmpty()) {
+          heldEvents.remove(qualifiedTableName);
+        }
+      }
+      try {
+        heldEvent.publish(sink);
+      } catch (RuntimeException e) {
+        log.error("Unable to publish {} event of table {}", heldEvent.eventType, qualifiedTableName, e);
+      }
+    }
+  }
+
+  /**
+   * Publishes the held events of a table on the calling thread, after the event of the table being published by the
+   * background thread if any.
+   */
+  void flush(String qualifiedTableName) {
+    synchronized (tableLock(qualifiedTableName)) {
+      Map<List<String>, HeldEvent> tableEvents;
+      synchronized (heldEvents) {
+        tableEvents = heldEvents.remove(qualifiedTableName);
+      }
+      if (tableEvents != null) {
+        for (HeldEvent heldEvent : tableEvents.values()) {
+          heldEvent.publish(sink);
+        }
+      }
+    }
+  }
+
+  /**
+   * Publishes all the held events, the events received afterwards are not held.
+   */
+  void close() {
+    Map<String, Map<List<String>, HeldEvent>> remainingEvents;
+    synchronized (heldEvents) {
+      closed = true;
+      remainingEvents = new HashMap<>(heldEvents);
+      heldEvents.clear();
+    }
+    scheduler.shutdownNow();
+    log.info("Publishing {} held ALTER events", remainingEvents.values().stream().mapToInt(Map::size).sum());
+    for (Map.Entry<String, Map<List<String>, HeldEvent>> tableEvents : remainingEvents.entrySet()) {
+      synchronized (tableLock(tableEvents.getKey())) {
+        for (HeldEvent heldEvent : tableEvents.getValue().values()) {
+          try {
+            heldEvent.publish(sink);
+          } catch (RuntimeException e) {
+            log.error("Unable to publish held {} event", heldEvent.eventType, e);
+          }
+        }
+      }
+    }
+  }
+
+  private Object tableLock(String qualifiedTableName) {
+    return tableLocks[(qualifiedTableName.hashCode() & Integer.MAX_VALUE) % tableLocks.length];
+  }
+
+  /**
+   * @return The number of events merged into an already held event.
+   */
+  long getCoalescedEvents() {
+    return coalescedEvents.get();
+  }
+
+  int size() {
+    synchronized (heldEvents) {
+      return heldEvents.values().stream().mapToInt(Map::size).sum();
+    }
+  }
+
+  private static String qualifiedTableName(Table table) {
+    return table.getDbName() + "." + table.getTableName();
+  }
+
+  private static final class HeldEvent {
+
+    private final EventType eventType;
+    private final Table oldTable;
+    private final Partition oldPartition;
+    private Table table;
+    private Partition partition;
+
+    private HeldEvent(EventType eventType, Table table, Table oldTable, Partition partition, Partition oldPartition) {
+      this.eventType = eventType;
+      this.table = table;
+      this.oldTable = oldTable;
+      this.partition = partition;
+      this.oldPartition = oldPartition;
+    }
+
+    private void publish(EventSink sink) {
+      sink.publish(eventType, table, oldTable, partition, oldPartition);
+    }
+
+  }
+
+}
@@ -15,14 +15,22 @@
  */
 package com.expediagroup.apiary.extensions.events.metastore.listener;
 
-import java.util.HashMap;
+import static com.expediagroup.apiary.extensions.events.metastore.listener.EnvironmentUtils.booleanVariable;
+import static com.expediagroup.apiary.extensions.events.metastore.listener.EnvironmentUtils.enumVariable;
+import static com.expediagroup.apiary.extensions.events.metastore.listener.EnvironmentUtils.intVariable;
+import static com.expediagroup.apiary.extensions.events.metastore.listener.EnvironmentUtils.longVariable;
+import static com.expediagroup.apiary.extensions.events.metastore.listener.EnvironmentUtils.stringVariable;
+
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Iterator;
-import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.Map.Entry;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
 
 import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.hive.metastore.MetaStoreEventListener;
@@ -37,16 +45,14 @@ import org.apache.hadoop.hive.metastore.events.CreateTableEvent;
 import org.apache.hadoop.hive.metastore.events.DropPartitionEvent;
 import org.apache.hadoop.hive.metastore.events.DropTableEvent;
 import org.apache.hadoop.hive.metastore.events.InsertEvent;
-import org.json.JSONArray;
-import org.json.JSONObject;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.amazonaws.services.s3.AmazonS3ClientBuilder;
 import com.amazonaws.services.sns.AmazonSNS;
 import com.amazonaws.services.sns.AmazonSNSClientBuilder;
 import com.amazonaws.services.sns.model.MessageAttributeValue;
 import com.amazonaws.services.sns.model.PublishRequest;
-import com.amazonaws.services.sns.model.PublishResult;
 
 /**
  * <p>
@@ -58,29 +64,105 @@ public class ApiarySnsListener extends MetaStoreEventListener {
 
   private static final Logger log = LoggerFactory.getLogger(ApiarySnsListener.class);
   static final String PROTOCOL_VERSION = "1.0";
-  private static final String TOPIC_ARN = System.getenv("SNS_ARN");
+  static final String AGGREGATED_PROTOCOL_VERSION = "2.0";
+  private static final String FIFO_TOPIC_SUFFIX = ".fifo";
+
+  private final String topicArn = System.getenv("SNS_ARN");
+  private final boolean fifoTopic = topicArn != null && topicArn.endsWith(FIFO_TOPIC_SUFFIX);
 
   private final String tableParamFilter = System.getenv("TABLE_PARAM_FILTER");
-  private Pattern tableParamFilterPattern;
+  private TableParamFilter compiledTableParamFilter;
+  private final boolean aggregatePartitionEvents = booleanVariable("AGGREGATE_PARTITION_EVENTS", false);
+  private final boolean claimCheckEnabled = stringVariable("CLAIM_CHECK_LOCATION", null) != null;
+  private final MessageAttributesCache messageAttributesCache = new MessageAttributesCache(
+      intVariable("MESSAGE_ATTRIBUTES_CACHE_SIZE", 1000));
 
-  private final AmazonSNS snsClient;
+  private final SnsPublisher publisher;
+  private final AlterEventCoalescer alterEventCoalescer;
 
   public ApiarySnsListener(Configuration config) {
     this(config, AmazonSNSClientBuilder.defaultClient());
+    Runtime.getRuntime().addShutdownHook(new Thread(this::close, "apiary-sns-listener-shutdown"));
   }
 
   ApiarySnsListener(Configuration config, AmazonSNS snsClient) {
+    this(config, createPublisher(snsClient));
+  }
+
+  ApiarySnsListener(Configuration config, SnsPublisher publisher) {
     super(config);
-    this.snsClient = snsClient;
+    this.publisher = publisher;
 
     if (tableParamFilter != null) {
-      tableParamFilterPattern = Pattern.compile(tableParamFilter);
+      compiledTableParamFilter = TableParamFilter.compile(tableParamFilter);
       log.info(String.format("Environment Variable TABLE_PARAM_FILTER is set as [%s]", tableParamFilter));
     }
 
+    long alterCoalesceWindowMillis = longVariable("ALTER_COALESCE_WINDOW_MS", 0L);
+    if (alterCoalesceWindowMillis > 0) {
+      alterEventCoalescer = new AlterEventCoalescer(alterCoalesceWindowMillis, this::publishHeldEvent);
+      log.info("ALTER events will be coalesced over {}ms windows", alterCoalesceWindowMillis);
+    } else {
+      alterEventCoalescer = null;
+    }
+
     log.debug("ApiarySnsListener created");
   }
 
+  private static SnsPublisher createPublisher(AmazonSNS snsClient) {
+    SnsPublisher publisher = new SynchronousSnsPublisher(snsClient, intVariable("SNS_BATCH_MAX_RETRIES", 3),
+        longVariable("SNS_BATCH_RETRY_BACKOFF_MS", 100L));
+    String claimCheckLocation = stringVariable("CLAIM_CHECK_LOCATION", null);
+    if (claimCheckLocation != null) {
+      // a higher threshold would let through messages SNS rejects
+      int thresholdBytes = Math.min(intVariable("CLAIM_CHECK_THRESHOLD_BYTES", SynchronousSnsPublisher.MAX_SIZE_BYTES),
+          SynchronousSnsPublisher.MAX_SIZE_BYTES);
+      publisher = new ClaimCheckSnsPublisher(publisher, createPayloadStore(claimCheckLocation), thresholdBytes);
+      log.info("Messages over the claim check threshold will be stored in {}", claimCheckLocation);
+    }
+    MessageCompression compression = enumVariable("MESSAGE_COMPRESSION", MessageCompression.class,
+        MessageCompression.NONE);
+    if (compression != MessageCompression.NONE) {
+      publisher = new CompressingSnsPublisher(publisher, compression);
+      log.info("Messages will be compressed with {}", compression);
+    }
+    if (!booleanVariable("ASYNC_PUBLISH_ENABLED", false)) {
+      return publisher;
+    }
+    return new AsynchronousSnsPublisher(publisher, intVariable("ASYNC_PUBLISH_THREADS", 1),
+        intVariable("ASYNC_PUBLISH_QUEUE_CAPACITY", 10000),
+        enumVariable("ASYNC_PUBLISH_BACK_PRESSURE_POLICY", BackPressurePolicy.class, BackPressurePolicy.BLOCK),
+        longVariable("ASYNC_PUBLISH_SHUTDOWN_TIMEOUT_SECONDS", 30L), TimeUnit.SECONDS);
+  }
+
+  /**
+   * Publishes the held ALTER events, then waits for the queued messages to be sent.
+   */
+  void close() {
+    if (alterEventCoalescer != null) {
+      alterEventCoalescer.close();
+    }
+    publisher.close();
+  }
+
+  /**
+   * @param location {@code s3://bucket/prefix} or {@code file:///directory}.
+   */
+  static PayloadStore createPayloadStore(String location) {
+    URI uri = URI.create(location);
+    if ("s3".equals(uri.getScheme())) {
+      String keyPrefix = uri.getPath() == null ? "" : uri.getPath().replaceFirst("^/", "");
+      if (!keyPrefix.isEmpty() && !keyPrefix.endsWith("/")) {
+        keyPrefix += "/";
+      }
+      return new S3PayloadStore(AmazonS3ClientBuilder.defaultClient(), uri.getHost(), keyPrefix);
+    }
+    if ("file".equals(uri.getScheme())) {
+      return new FileSystemPayloadStore(Paths.get(uri));
+    }
+    throw new IllegalArgumentException("Unsupported CLAIM_CHECK_LOCATION, expected s3:// or file:// URI: " + location);
+  }
+
   @Override
   public void onCreateTable(CreateTableEvent event) throws MetaException {
     if (event.getStatus() == false) {
@@ -102,6 +184,9 @@ public class ApiarySnsListener extends MetaStoreEventListener {
     if (event.getStatus() == false) {
       return;
     }
+    if (alterEventCoalescer != null && alterEventCoalescer.alterTable(event.getNewTable(), event.getOldTable())) {
+      return;
+    }
     publishEvent(EventType.ALTER_TABLE, event.getNewTable(), event.getOldTable(), null, null);
   }
 
@@ -110,11 +195,7 @@ public class ApiarySnsListener extends MetaStoreEventListener {
     if (event.getStatus() == false) {
       return;
     }
-    Iterator<Partition> partitions = event.getPartitionIterator();
-    while (partitions.hasNext()) {
-      // TODO: do we want to have a separate event for each partition or one event with all of them?
-      publishEvent(EventType.ADD_PARTITION, event.getTable(), null, partitions.next(), null);
-    }
+    publishPartitionEvents(EventType.ADD_PARTITION, event.getTable(), event.getPartitionIterator());
   }
 
   @Override
@@ -122,11 +203,7 @@ public class ApiarySnsListener extends MetaStoreEventListener {
     if (event.getStatus() == false) {
       return;
     }
-    Iterator<Partition> partitions = event.getPartitionIterator();
-    while (partitions.hasNext()) {
-      // TODO: do we want to have a separate event for each partition or one event with all of them?
-      publishEvent(EventType.DROP_PARTITION, event.getTable(), null, partitions.next(), null);
-    }
+    publishPartitionEvents(EventType.DROP_PARTITION, event.getTable(), event.getPartitionIterator());
   }
 
   @Override
@@ -143,6 +220,10 @@ public class ApiarySnsListener extends MetaStoreEventListener {
     if (event.getStatus() == false) {
       return;
     }
+    if (alterEventCoalescer != null
+        && alterEventCoalescer.alterPartition(event.getTable(), event.getNewPartition(), event.getOldPartition())) {
+      return;
+    }
     publishEvent(EventType.ALTER_PARTITION, event.getTable(), null, event.getNewPartition(), event.getOldPartition());
   }
 
@@ -153,42 +234,148 @@ public class ApiarySnsListener extends MetaStoreEventListener {
       Partition partition,
       Partition oldpartition)
     throws MetaException {
-    JSONObject json = createBaseMessage(eventType, table.getDbName(), table.getTableName());
+    sendMessages(table.getDbName(), table.getTableName(),
+        Collections.singletonList(createEventRequest(eventType, table, oldtable, partition, oldpartition)));
+  }
 
-    json.put("tableLocation", table.getSd().getLocation());
+  private void publishHeldEvent(
+      EventType eventType,
+      Table table,
+      Table oldtable,
+      Partition partition,
+      Partition oldpartition) {
+    publisher
+        .publish(table.getDbName() + "." + table.getTableName(),
+            Collections.singletonList(createEventRequest(eventType, table, oldtable, partition, oldpartition)));
+  }
 
-    if (tableParamFilterPattern != null) {
-      Map<String, String> filteredParams = getFilteredParams(table.getParameters());
-      JSONObject tableParameters = new JSONObject();
-      filteredParams.forEach(tableParameters::put);
-      json.put("tableParameters", tableParameters);
+  /**
+   * Publishes one message per partition, the messages are sent together in as few SNS requests as possible. If
+   * AGGREGATE_PARTITION_EVENTS is set the partitions are grouped into as few messages as possible instead.
+   */
+  private void publishPartitionEvents(EventType eventType, Table table, Iterator<Partition> partitions) {
+    List<PublishRequest> requests = new ArrayList<>();
+    if (aggregatePartitionEvents) {
+      createAggregatedEventRequests(eventType, table, partitions, requests);
+    } else {
+      while (partitions.hasNext()) {
+        requests.add(createEventRequest(eventType, table, null, partitions.next(), null));
+      }
+    }
+    if (!requests.isEmpty()) {
+      sendMessages(table.getDbName(), table.getTableName(), requests);
     }
+  }
+
+  /**
+   * Creates messages of the {@value #AGGREGATED_PROTOCOL_VERSION} protocol in which a "partitions" array holds the
+   * values and location of each partition. A new message is started whenever the next partition would take the
+   * current one over the SNS size limit. A partition over the limit on its own gets a message of its own, which is only
+   * delivered if the claim check stores it.
+   */
+  private void createAggregatedEventRequests(
+      EventType eventType,
+      Table table,
+      Iterator<Partition> partitions,
+      List<PublishRequest> requests) {
+    JsonMessageWriter writer = JsonMessageWriter.start();
+    writeBaseMessage(writer, AGGREGATED_PROTOCOL_VERSION, eventType, table.getDbName(), table.getTableName());
+    writeTableFields(writer, table);
+    writePartitionKeys(writer, table);
+    writer.startArray("partitions");
+    int prefixLength = writer.position();
+    String messageSuffix = "]}";
+
+    Map<String, MessageAttributeValue> messageAttributes = getMessageAttributes(eventType, table.getDbName(),
+        table.getTableName());
+    int partitionsBudget = SynchronousSnsPublisher.MAX_SIZE_BYTES
+        - SynchronousSnsPublisher.sizeOf(messageAttributes)
+        - writer.utf8Length(0, prefixLength)
+        - messageSuffix.length();
+
+    // the buffer holds the prefix followed by the partitions of the current message, partitionsEnd is where the last
+    // complete partition ends
+    int partitionsEnd = prefixLength;
+    int partitionsSize = 0;
+    while (partitions.hasNext()) {
+      Partition partition = partitions.next();
+      writer
+          .startObject()
+          .writeStringArray("values", partition.getValues())
+          .writeString("location", partition.getSd().getLocation())
+          .endObject();
+      int partitionEntryStart = partitionsSize > 0 ? partitionsEnd + 1 : partitionsEnd;
+      int partitionEntryEnd = writer.position();
+      int partitionEntrySize = writer.utf8Length(partitionEntryStart, partitionEntryEnd);
+      if (partitionEntrySize > partitionsBudget && !claimCheckEnabled) {
+        log.error("Partition {} of table {}.{} does not fit in an SNS message, its {} event will be rejected by SNS"
+            + " unless CLAIM_CHECK_LOCATION is set", partition.getValues(), table.getDbName(), table.getTableName(),
+            eventType);
+      }
+      if (partitionsSize > 0 && partitionsSize + 1 + partitionEntrySize > partitionsBudget) {
+        requests.add(createPublishRequest(writer.substring(partitionsEnd, messageSuffix), messageAttributes));
+        // drops the partitions already sent along with the separator in front of the new one
+        writer.delete(prefixLength, partitionEntryStart);
+        partitionEntryEnd -= partitionEntryStart - prefixLength;
+        partitionsSize = 0;
+      }
+      partitionsSize += partitionEntrySize + (partitionsSize > 0 ? 1 : 0);
+      partitionsEnd = partitionEntryEnd;
+    }
+    if (partitionsSize > 0) {
+      requests.add(createPublishRequest(writer.substring(partitionsEnd, messageSuffix), messageAttributes));
+    }
+  }
+
+  private PublishRequest createEventRequest(
+      EventType eventType,
+      Table table,
+      Table oldtable,
+      Partition partition,
+      Partition oldpartition) {
+    JsonMessageWriter writer = JsonMessageWriter.start();
+    writeBaseMessage(writer, PROTOCOL_VERSION, eventType, table.getDbName(), table.getTableName());
+
+    writeTableFields(writer, table);
 
     if (oldtable != null) {
-      json.put("oldTableName", oldtable.getTableName());
-      json.put("oldTableLocation", oldtable.getSd().getLocation());
+      writer.writeString("oldTableName", oldtable.getTableName());
+      writer.writeString("oldTableLocation", oldtable.getSd().getLocation());
     }
 
     if (partition != null) {
-      LinkedHashMap<String, String> partitionKeysMap = new LinkedHashMap<>();
-      for (FieldSchema fieldSchema : table.getPartitionKeys()) {
-        partitionKeysMap.put(fieldSchema.getName(), fieldSchema.getType());
-      }
-
-      JSONObject partitionKeys = new JSONObject(partitionKeysMap);
-      json.put("partitionKeys", partitionKeys);
-      JSONArray partitionValuesArray = new JSONArray(partition.getValues());
-      json.put("partitionValues", partitionValuesArray);
-      json.put("partitionLocation", partition.getSd().getLocation());
+      writePartitionKeys(writer, table);
+      writer.writeStringArray("partitionValues", partition.getValues());
+      writer.writeString("partitionLocation", partition.getSd().getLocation());
     }
 
     if (oldpartition != null) {
-      JSONArray partitionValuesArray = new JSONArray(oldpartition.getValues());
-      json.put("oldPartitionValues", partitionValuesArray);
-      json.put("oldPartitionLocation", oldpartition.getSd().getLocation());
+      writer.writeStringArray("oldPartitionValues", oldpartition.getValues());
+      writer.writeString("oldPartitionLocation", oldpartition.getSd().getLocation());
     }
 
-    sendMessage(json, getMessageAttributes(eventType, table.getDbName(), table.getTableName()));
+    writer.endObject();
+    return createPublishRequest(writer.message(),
+        getMessageAttributes(eventType, table.getDbName(), table.getTableName()));
+  }
+
+  private void writeTableFields(JsonMessageWriter writer, Table table) {
+    writer.writeString("tableLocation", table.getSd().getLocation());
+
+    if (compiledTableParamFilter != null) {
+      Map<String, String> filteredParams = getFilteredParams(table.getParameters());
+      writer.startObject("tableParameters");
+      filteredParams.forEach(writer::writeString);
+      writer.endObject();
+    }
+  }
+
+  private void writePartitionKeys(JsonMessageWriter writer, Table table) {
+    writer.startObject("partitionKeys");
+    for (FieldSchema fieldSchema : table.getPartitionKeys()) {
+      writer.writeNullableString(fieldSchema.getName(), fieldSchema.getType());
+    }
+    writer.endObject();
   }
 
   private void publishInsertEvent(
@@ -198,77 +385,66 @@ public class ApiarySnsListener extends MetaStoreEventListener {
       Map<String, String> partitionKeyValues,
       List<String> files,
       List<String> fileChecksums) {
-    JSONObject json = createBaseMessage(eventType, dbName, tableName);
+    JsonMessageWriter writer = JsonMessageWriter.start();
+    writeBaseMessage(writer, PROTOCOL_VERSION, eventType, dbName, tableName);
 
-    JSONArray filesArray = new JSONArray(files);
-    json.put("files", filesArray);
-    JSONArray fileChecksumsArray = new JSONArray(fileChecksums);
-    json.put("fileChecksums", fileChecksumsArray);
-    JSONObject partitionKeyValuesObject = new JSONObject(partitionKeyValues);
-    json.put("partitionKeyValues", partitionKeyValuesObject);
+    writer.writeStringArray("files", files);
+    writer.writeStringArray("fileChecksums", fileChecksums);
+    writer.writeStringMap("partitionKeyValues", partitionKeyValues);
+    writer.endObject();
 
-    sendMessage(json, getMessageAttributes(eventType, dbName, tableName));
+    sendMessages(dbName, tableName, Collections
+        .singletonList(createPublishRequest(writer.message(), getMessageAttributes(eventType, dbName, tableName))));
   }
 
   private Map<String, MessageAttributeValue> getMessageAttributes(
       EventType eventType,
       String dbName,
       String tableName) {
-    Map<String, MessageAttributeValue> map = new HashMap<>();
-    map
-        .put(MessageAttributeKey.EVENT_TYPE.toString(),
-            new MessageAttributeValue()
-                .withStringValue(eventType.toString())
-                .withDataType(MessageAttributeDataType.STRING.toString()));
-    map
-        .put(MessageAttributeKey.DB_NAME.toString(),
-            new MessageAttributeValue()
-                .withStringValue(dbName)
-                .withDataType(MessageAttributeDataType.STRING.toString()));
-    map
-        .put(MessageAttributeKey.TABLE_NAME.toString(),
-            new MessageAttributeValue()
-                .withStringValue(tableName)
-                .withDataType(MessageAttributeDataType.STRING.toString()));
-    map
-        .put(MessageAttributeKey.QUALIFIED_TABLE_NAME.toString(),
-            new MessageAttributeValue()
-                .withStringValue(dbName + "." + tableName)
-                .withDataType(MessageAttributeDataType.STRING.toString()));
-
-    return map;
+    return messageAttributesCache.get(eventType, dbName, tableName);
   }
 
-  private JSONObject createBaseMessage(EventType eventType, String dbName, String tableName) {
-    JSONObject json = new JSONObject();
-    json.put("protocolVersion", PROTOCOL_VERSION);
-    json.put("eventType", eventType.toString());
-    json.put("dbName", dbName);
-    json.put("tableName", tableName);
-    return json;
+  private void writeBaseMessage(
+      JsonMessageWriter writer,
+      String protocolVersion,
+      EventType eventType,
+      String dbName,
+      String tableName) {
+    writer.startObject();
+    writer.writeString("protocolVersion", protocolVersion);
+    writer.writeString("eventType", eventType.toString());
+    writer.writeString("dbName", dbName);
+    writer.writeString("tableName", tableName);
   }
 
-  private void sendMessage(JSONObject json, Map<String, MessageAttributeValue> messageAttributes) {
-    String msg = json.toString();
-    PublishRequest publishRequest = new PublishRequest(TOPIC_ARN, msg);
+  /**
+   * On FIFO topics the messages of a table share a message group, so they are delivered in order while different
+   * tables are processed in parallel. The deduplication id is drawn once per request and kept by its retries, so SNS
+   * discards a retried publish but never an identical message of another event, e.g. the second CREATE_TABLE of a
+   * table created, dropped and created again.
+   */
+  private PublishRequest createPublishRequest(String message, Map<String, MessageAttributeValue> messageAttributes) {
+    PublishRequest publishRequest = new PublishRequest(topicArn, message);
     publishRequest.setMessageAttributes(messageAttributes);
-    log.debug(String.format("Sending Message: {} to {}", msg, TOPIC_ARN));
-    PublishResult publishResult = snsClient.publish(publishRequest);
-    // TODO: check on size of message and truncation etc (this can come later if/when we add more)
-    log.info("Published SNS Message - " + publishResult.getMessageId());
+    if (fifoTopic) {
+      publishRequest
+          .setMessageGroupId(
+              messageAttributes.get(MessageAttributeKey.QUALIFIED_TABLE_NAME.toString()).getStringValue());
+      publishRequest.setMessageDeduplicationId(UUID.randomUUID().toString());
+    }
+    return publishRequest;
   }
 
-  private Map<String, String> getFilteredParams(Map<String, String> tableParameters) {
-    Map<String, String> filteredParams = new HashMap<>();
-    if (tableParamFilterPattern != null && tableParameters != null) {
-      for (Entry<String, String> entry : tableParameters.entrySet()) {
-        Matcher matcher = tableParamFilterPattern.matcher(entry.getKey());
-        if (matcher.matches()) {
-          filteredParams.put(entry.getKey(), entry.getValue());
-        }
-      }
+  private void sendMessages(String dbName, String tableName, List<PublishRequest> publishRequests) {
+    String qualifiedTableName = dbName + "." + tableName;
+    if (alterEventCoalescer != null) {
+      alterEventCoalescer.flush(qualifiedTableName);
     }
-    return filteredParams;
+    publisher.publish(qualifiedTableName, publishRequests);
+  }
+
+  private Map<String, String> getFilteredParams(Map<String, String> tableParameters) {
+    return compiledTableParamFilter.filter(tableParameters);
   }
 
 }
@@ -0,0 +1,200 @@
+/**
+ * Copyright (C) 2018-2021 Expedia, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.expediagroup.apiary.extensions.events.metastore.listener;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.amazonaws.services.sns.model.MessageAttributeValue;
+import com.amazonaws.services.sns.model.PublishRequest;
+
+/**
+ * Takes SNS publishing off the metastore threads: messages are put on a bounded in-memory queue and sent by a
+ * dedicated pool of sender threads.
+ * <p>
+ * The pool is split into single-threaded lanes and all the messages of a table always go through the same lane, so
+ * the order of the events of each table is preserved. {@link #close()} stops accepting new messages and waits for the
+ * queued ones to be sent.
+ * </p>
+ * <p>
+ * With {@link BackPressurePolicy#DROP_OLDEST} the messages of a full queue are lost: consumers never see those events
+ * of the table, so each drop is logged as an error naming the table and its event types for it to be replayed.
+ * </p>
+ */
+class AsynchronousSnsPublisher implements SnsPublisher {
+
+  private static final Logger log = LoggerFactory.getLogger(AsynchronousSnsPublisher.class);
+
+  private final SnsPublisher delegate;
+  private final List<ThreadPoolExecutor> lanes;
+  private final long shutdownTimeoutMillis;
+  private final AtomicLong droppedMessages = new AtomicLong();
+
+  AsynchronousSnsPublisher(
+      SnsPublisher delegate,
+      int threads,
+      int queueCapacity,
+      BackPressurePolicy backPressurePolicy,
+      long shutdownTimeout,
+      TimeUnit shutdownTimeoutUnit) {
+    if (threads < 1) {
+      throw new IllegalArgumentException("Number of sender threads must be greater than zero: " + threads);
+    }
+    if (queueCapacity < threads) {
+      throw new IllegalArgumentException(String
+          .format("Queue capacity (%d) must be at least the number of sender threads (%d)", queueCapacity, threads));
+    }
+    this.delegate = delegate;
+    shutdownTimeoutMillis = shutdownTimeoutUnit.toMillis(shutdownTimeout);
+    RejectedExecutionHandler rejectedExecutionHandler = rejectedExecutionHandler(backPressurePolicy);
+    lanes = new ArrayList<>(threads);
+    for (int i = 0; i < threads; i++) {
+      String threadName = "apiary-sns-publisher-" + i;
+      lanes
+          .add(new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS,
+              new ArrayBlockingQueue<>(queueCapacity / threads), runnable -> {
+                Thread thread = new Thread(runnable, threadName);
+                thread.setDaemon(true);
+                return thread;
+              }, rejectedExecutionHandler));
+    }
+    log
+        .info("Asynchronous SNS publishing enabled with {} sender threads, queue capacity {}, back-pressure policy {}",
+            threads, queueCapacity, backPressurePolicy);
+    if (backPressurePolicy == BackPressurePolicy.DROP_OLDEST) {
+      log.warn("Events queued for SNS will be lost whenever the queue is full");
+    }
+  }
+
+  @Override
+  public void publish(String qualifiedTableName, List<PublishRequest> requests) {
+    lane(qualifiedTableName).execute(new PublishTask(qualifiedTableName, requests));
+  }
+
+  private ThreadPoolExecutor lane(String qualifiedTableName) {
+    return lanes.get(Math.abs(qualifiedTableName.hashCode() % lanes.size()));
+  }
+
+  private RejectedExecutionHandler rejectedExecutionHandler(BackPressurePolicy backPressurePolicy) {
+    switch (backPressurePolicy) {
+    case BLOCK:
+      return (runnable, executor) -> {
+        if (executor.isShutdown()) {
+          throw new RejectedExecutionException("SNS publisher has been closed");
+        }
+        try {
+          executor.getQueue().put(runnable);
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+          throw new RejectedExecutionException("Interrupted while waiting for space in the SNS publishing queue", e);
+        }
+      };
+    case DROP_OLDEST:
+      return (runnable, executor) -> {
+        if (executor.isShutdown()) {
+          throw new RejectedExecutionException("SNS publisher has been closed");
+        }
+        PublishTask dropped = (PublishTask) executor.getQueue().poll();
+        if (dropped != null) {
+          log.error("SNS publishing queue is full, dropped the oldest {} event(s) {} of table {} ({} dropped so far)",
+              dropped.requests.size(), eventTypes(dropped.requests), dropped.qualifiedTableName,
+              droppedMessages.addAndGet(dropped.requests.size()));
+        }
+        executor.execute(runnable);
+      };
+    case FAIL_FAST:
+      return (runnable, executor) -> {
+        throw new RejectedExecutionException("SNS publishing queue is full");
+      };
+    default:
+      throw new IllegalArgumentException("Unsupported back-pressure policy: " + backPressurePolicy);
+    }
+  }
+
+  long getDroppedMessages() {
+    return droppedMessages.get();
+  }
+
+  /**
+   * @return The distinct event types of the messages, in order.
+   */
+  static Set<String> eventTypes(List<PublishRequest> requests) {
+    Set<String> eventTypes = new LinkedHashSet<>();
+    for (PublishRequest request : requests) {
+      MessageAttributeValue eventType = request.getMessageAttributes().get(MessageAttributeKey.EVENT_TYPE.toString());
+      if (eventType != null) {
+        eventTypes.add(eventType.getStringValue());
+      }
+    }
+    return eventTypes;
+  }
+
+  @Override
+  public void close() {
+    lanes.forEach(ThreadPoolExecutor::shutdown);
+    long deadline = System.currentTimeMillis() + shutdownTimeoutMillis;
+    try {
+      for (ThreadPoolExecutor lane : lanes) {
+        long remaining = Math.max(0L, deadline - System.currentTimeMillis());
+        if (!lane.awaitTermination(remaining, TimeUnit.MILLISECONDS)) {
+          log.warn("Timed out flushing SNS publishing queue, {} messages will not be sent", lane.shutdownNow().size());
+        }
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      int pending = 0;
+      for (ThreadPoolExecutor lane : lanes) {
+        pending += lane.shutdownNow().size();
+      }
+      log.warn("Interrupted while flushing SNS publishing queue, {} messages will not be sent", pending);
+    } finally {
+      delegate.close();
+    }
+  }
+
+  private final class PublishTask implements Runnable {
+
+    private final String qualifiedTableName;
+    private final List<PublishRequest> requests;
+
+    private PublishTask(String qualifiedTableName, List<PublishRequest> requests) {
+      this.qualifiedTableName = qualifiedTableName;
+      this.requests = requests;
+    }
+
+    @Override
+    public void run() {
+      try {
+        delegate.publish(qualifiedTableName, requests);
+      } catch (Exception e) {
+        log.error("Unable to publish SNS message for table {}", qualifiedTableName, e);
+      }
+    }
+
+  }
+
+}
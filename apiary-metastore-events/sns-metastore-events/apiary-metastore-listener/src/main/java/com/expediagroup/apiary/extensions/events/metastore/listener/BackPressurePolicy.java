@@ -0,0 +1,33 @@
+/**
+ * Copyright (C) 2018-2021 Expedia, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.expediagroup.apiary.extensions.events.metastore.listener;
+
+/**
+ * What the {@link AsynchronousSnsPublisher} does when its queue is full.
+ */
+public enum BackPressurePolicy {
+
+  /** The metastore thread waits until there is space in the queue. */
+  BLOCK,
+  /**
+   * The oldest queued messages are discarded to make room for the new ones. Their events are lost for the consumers,
+   * each drop is logged as an error with the table and event types.
+   */
+  DROP_OLDEST,
+  /** The new message is rejected and the metastore call fails with a {@code RejectedExecutionException}. */
+  FAIL_FAST
+
+}
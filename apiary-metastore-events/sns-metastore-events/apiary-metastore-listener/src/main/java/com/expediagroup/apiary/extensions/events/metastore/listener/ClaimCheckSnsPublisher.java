@@ -0,0 +1,116 @@
+/**
+ * Copyright (C) 2018-2021 Expedia, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.expediagroup.apiary.extensions.events.metastore.listener;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.zip.GZIPOutputStream;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.amazonaws.SdkClientException;
+import com.amazonaws.services.sns.model.MessageAttributeValue;
+import com.amazonaws.services.sns.model.PublishRequest;
+
+/**
+ * Keeps large messages out of SNS: messages over a size threshold are compressed and written to a
+ * {@link PayloadStore}, and a small message pointing to the stored payload is published instead.
+ * <p>
+ * The pointer message has the same attributes as the original one and carries its event type, database and table
+ * along with the {@value #PAYLOAD_LOCATION} and {@value #PAYLOAD_ENCODING} of the payload.
+ * </p>
+ */
+class ClaimCheckSnsPublisher implements SnsPublisher {
+
+  private static final Logger log = LoggerFactory.getLogger(ClaimCheckSnsPublisher.class);
+
+  static final String PAYLOAD_LOCATION = "payloadLocation";
+  static final String PAYLOAD_ENCODING = "payloadEncoding";
+  static final String GZIP_ENCODING = "gzip";
+
+  private final SnsPublisher delegate;
+  private final PayloadStore payloadStore;
+  private final int thresholdBytes;
+
+  ClaimCheckSnsPublisher(SnsPublisher delegate, PayloadStore payloadStore, int thresholdBytes) {
+    this.delegate = delegate;
+    this.payloadStore = payloadStore;
+    this.thresholdBytes = thresholdBytes;
+  }
+
+  @Override
+  public void publish(String qualifiedTableName, List<PublishRequest> requests) {
+    List<PublishRequest> checkedRequests = new ArrayList<>(requests.size());
+    for (PublishRequest request : requests) {
+      if (SynchronousSnsPublisher.sizeOf(request) > thresholdBytes) {
+        checkedRequests.add(claimCheck(qualifiedTableName, request));
+      } else {
+        checkedRequests.add(request);
+      }
+    }
+    delegate.publish(qualifiedTableName, checkedRequests);
+  }
+
+  private PublishRequest claimCheck(String qualifiedTableName, PublishRequest request) {
+    String key = qualifiedTableName + "/" + UUID.randomUUID() + ".json.gz";
+    String location;
+    try {
+      location = payloadStore.put(key, gzip(request.getMessage()));
+    } catch (IOException e) {
+      throw new SdkClientException("Unable to store message payload of table " + qualifiedTableName, e);
+    }
+    log.debug("Stored message payload of table {} in {}", qualifiedTableName, location);
+    Map<String, MessageAttributeValue> messageAttributes = request.getMessageAttributes();
+    String message = JsonMessageWriter
+        .start()
+        .startObject()
+        .writeString("protocolVersion", ApiarySnsListener.PROTOCOL_VERSION)
+        .writeString("eventType", stringValue(messageAttributes, MessageAttributeKey.EVENT_TYPE))
+        .writeString("dbName", stringValue(messageAttributes, MessageAttributeKey.DB_NAME))
+        .writeString("tableName", stringValue(messageAttributes, MessageAttributeKey.TABLE_NAME))
+        .writeString(PAYLOAD_LOCATION, location)
+        .writeString(PAYLOAD_ENCODING, GZIP_ENCODING)
+        .endObject()
+        .message();
+    return request.clone().withMessage(message);
+  }
+
+  private static String stringValue(Map<String, MessageAttributeValue> messageAttributes, MessageAttributeKey key) {
+    MessageAttributeValue value = messageAttributes.get(key.toString());
+    return value == null ? null : value.getStringValue();
+  }
+
+  private static byte[] gzip(String message) throws IOException {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    try (OutputStream out = new GZIPOutputStream(bytes)) {
+      out.write(message.getBytes(StandardCharsets.UTF_8));
+    }
+    return bytes.toByteArray();
+  }
+
+  @Override
+  public void close() {
+    delegate.close();
+  }
+
+}
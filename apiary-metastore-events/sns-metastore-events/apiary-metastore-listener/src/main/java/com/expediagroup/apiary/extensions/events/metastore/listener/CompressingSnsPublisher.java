@@ -0,0 +1,90 @@
+/**
+ * Copyright (C) 2018-2021 Expedia, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.expediagroup.apiary.extensions.events.metastore.listener;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.zip.GZIPOutputStream;
+
+import com.amazonaws.services.sns.model.PublishRequest;
+
+/**
+ * Publishes messages in a compressed envelope: a four byte header made of the magic bytes {@code AE}, the envelope
+ * version and the {@link MessageCompression} identifier, followed by the compressed JSON, all encoded in Base64 since
+ * SNS messages are text. Every version 1 envelope therefore starts with {@value #ENVELOPE_PREFIX}.
+ * <p>
+ * Receivers that do not know the envelope fail to parse it as JSON rather than misreading it. Messages that do not get
+ * smaller once compressed are published unchanged.
+ * </p>
+ */
+class CompressingSnsPublisher implements SnsPublisher {
+
+  static final String ENVELOPE_PREFIX = "QUUB";
+  static final byte[] MAGIC = { 'A', 'E' };
+  static final byte VERSION = 1;
+
+  private final SnsPublisher delegate;
+  private final MessageCompression compression;
+
+  CompressingSnsPublisher(SnsPublisher delegate, MessageCompression compression) {
+    if (compression == MessageCompression.NONE) {
+      throw new IllegalArgumentException("Compression " + compression + " does not need a " + getClass().getName());
+    }
+    this.delegate = delegate;
+    this.compression = compression;
+  }
+
+  @Override
+  public void publish(String qualifiedTableName, List<PublishRequest> requests) {
+    List<PublishRequest> compressedRequests = new ArrayList<>(requests.size());
+    for (PublishRequest request : requests) {
+      String message = request.getMessage();
+      String compressedMessage = compress(message);
+      // the envelope is ASCII, its length in characters is its size in bytes
+      if (compressedMessage.length() < message.length()) {
+        compressedRequests.add(request.clone().withMessage(compressedMessage));
+      } else {
+        compressedRequests.add(request);
+      }
+    }
+    delegate.publish(qualifiedTableName, compressedRequests);
+  }
+
+  String compress(String message) {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream(message.length() / 4 + 32);
+    bytes.write(MAGIC, 0, MAGIC.length);
+    bytes.write(VERSION);
+    bytes.write(compression.id());
+    try (OutputStream out = new GZIPOutputStream(bytes)) {
+      out.write(message.getBytes(StandardCharsets.UTF_8));
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+    return Base64.getEncoder().encodeToString(bytes.toByteArray());
+  }
+
+  @Override
+  public void close() {
+    delegate.close();
+  }
+
+}
@@ -0,0 +1,73 @@
+/**
+ * Copyright (C) 2018-2021 Expedia, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.expediagroup.apiary.extensions.events.metastore.listener;
+
+import java.util.Locale;
+
+final class EnvironmentUtils {
+
+  private EnvironmentUtils() {}
+
+  static String stringVariable(String name, String defaultValue) {
+    String value = System.getenv(name);
+    return value == null ? defaultValue : value;
+  }
+
+  static boolean booleanVariable(String name, boolean defaultValue) {
+    String value = System.getenv(name);
+    return value == null ? defaultValue : Boolean.parseBoolean(value.trim());
+  }
+
+  static int intVariable(String name, int defaultValue) {
+    String value = System.getenv(name);
+    if (value == null) {
+      return defaultValue;
+    }
+    try {
+      return Integer.parseInt(value.trim());
+    } catch (NumberFormatException e) {
+      throw new IllegalArgumentException(
+          String.format("Environment Variable %s must be an integer: [%s]", name, value), e);
+    }
+  }
+
+  static long longVariable(String name, long defaultValue) {
+    String value = System.getenv(name);
+    if (value == null) {
+      return defaultValue;
+    }
+    try {
+      return Long.parseLong(value.trim());
+    } catch (NumberFormatException e) {
+      throw new IllegalArgumentException(
+          String.format("Environment Variable %s must be a long: [%s]", name, value), e);
+    }
+  }
+
+  static <E extends Enum<E>> E enumVariable(String name, Class<E> enumType, E defaultValue) {
+    String value = System.getenv(name);
+    if (value == null) {
+      return defaultValue;
+    }
+    try {
+      return Enum.valueOf(enumType, value.trim().toUpperCase(Locale.ROOT));
+    } catch (IllegalArgumentException e) {
+      throw new IllegalArgumentException(
+          String.format("Environment Variable %s has an unsupported value: [%s]", name, value), e);
+    }
+  }
+
+}
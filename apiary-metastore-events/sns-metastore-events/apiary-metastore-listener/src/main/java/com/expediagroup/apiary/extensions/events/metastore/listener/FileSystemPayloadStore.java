@@ -0,0 +1,42 @@
+/**
+ * Copyright (C) 2018-2021 Expedia, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.expediagroup.apiary.extensions.events.metastore.listener;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Stores payloads as files under a directory, meant for tests and local setups where the listener and the receivers
+ * share a file system.
+ */
+class FileSystemPayloadStore implements PayloadStore {
+
+  private final Path directory;
+
+  FileSystemPayloadStore(Path directory) {
+    this.directory = directory;
+  }
+
+  @Override
+  public String put(String key, byte[] payload) throws IOException {
+    Path file = directory.resolve(key);
+    Files.createDirectories(file.getParent());
+    Files.write(file, payload);
+    return file.toUri().toString();
+  }
+
+}
@@ -0,0 +1,325 @@
+/**
+ * Copyright (C) 2018-2021 Expedia, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.expediagroup.apiary.extensions.events.metastore.listener;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.SerializableString;
+import com.fasterxml.jackson.core.io.CharacterEscapes;
+import com.fasterxml.jackson.core.io.SerializedString;
+
+/**
+ * Streams the JSON of SNS messages with a Jackson {@link JsonGenerator} into a buffer owned by the current thread, so
+ * no intermediate tree is built and the buffer is reused from one message to the next.
+ * <p>
+ * The output is byte for byte the same as the one of the {@code org.json} library previously used by the listener:
+ * control characters are escaped as lower case {@code \}{@code u00xx} sequences and {@code </} as {@code <\/}.
+ * </p>
+ */
+final class JsonMessageWriter {
+
+  /** Buffers grown above this size by a large message are not kept for the next one. */
+  private static final int MAX_RETAINED_CAPACITY = 512 * 1024;
+
+  private static final JsonFactory JSON_FACTORY = new JsonFactory();
+  private static final CharacterEscapes CHARACTER_ESCAPES = new LegacyCharacterEscapes();
+  private static final ThreadLocal<JsonMessageWriter> WRITERS = ThreadLocal.withInitial(JsonMessageWriter::new);
+
+  private final StringBuilderWriter buffer = new StringBuilderWriter();
+  private JsonGenerator generator;
+  /** Position up to which the buffer has been checked for {@code </} sequences. */
+  private int checked;
+
+  private JsonMessageWriter() {}
+
+  /**
+   * @return The writer of the current thread, ready to write a new message.
+   */
+  static JsonMessageWriter start() {
+    JsonMessageWriter writer = WRITERS.get();
+    writer.reset();
+    return writer;
+  }
+
+  private void reset() {
+    if (generator != null) {
+      try {
+        // returns the generator buffers for reuse, anything it writes is discarded below
+        generator.close();
+      } catch (IOException e) {
+        throw new UncheckedIOException(e);
+      }
+    }
+    if (buffer.builder.capacity() > MAX_RETAINED_CAPACITY) {
+      buffer.builder = new StringBuilder();
+    } else {
+      buffer.builder.setLength(0);
+    }
+    checked = 0;
+    try {
+      generator = JSON_FACTORY.createGenerator(buffer);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+    generator.setCharacterEscapes(CHARACTER_ESCAPES);
+  }
+
+  JsonMessageWriter startObject() {
+    try {
+      generator.writeStartObject();
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+    return this;
+  }
+
+  JsonMessageWriter startObject(String fieldName) {
+    try {
+      generator.writeObjectFieldStart(fieldName);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+    return this;
+  }
+
+  JsonMessageWriter endObject() {
+    try {
+      generator.writeEndObject();
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+    return this;
+  }
+
+  JsonMessageWriter startArray(String fieldName) {
+    try {
+      generator.writeArrayFieldStart(fieldName);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+    return this;
+  }
+
+  JsonMessageWriter endArray() {
+    try {
+      generator.writeEndArray();
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+    return this;
+  }
+
+  /**
+   * Writes a string field, the field is omitted if the value is {@code null}.
+   */
+  JsonMessageWriter writeString(String fieldName, String value) {
+    if (value != null) {
+      try {
+        generator.writeStringField(fieldName, value);
+      } catch (IOException e) {
+        throw new UncheckedIOException(e);
+      }
+    }
+    return this;
+  }
+
+  /**
+   * Writes a string field, a {@code null} value is written as {@code null}.
+   */
+  JsonMessageWriter writeNullableString(String fieldName, String value) {
+    try {
+      generator.writeFieldName(fieldName);
+      generator.writeString(value);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+    return this;
+  }
+
+  /**
+   * Writes an array of strings, a {@code null} list is written as an empty array.
+   */
+  JsonMessageWriter writeStringArray(String fieldName, List<String> values) {
+    try {
+      generator.writeArrayFieldStart(fieldName);
+      if (values != null) {
+        for (String value : values) {
+          generator.writeString(value);
+        }
+      }
+      generator.writeEndArray();
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+    return this;
+  }
+
+  /**
+   * Writes an object with the entries of the map in iteration order, {@code null} values are written as {@code null}
+   * and a {@code null} map as an empty object.
+   */
+  JsonMessageWriter writeStringMap(String fieldName, Map<String, String> values) {
+    try {
+      generator.writeObjectFieldStart(fieldName);
+      if (values != null) {
+        for (Entry<String, String> entry : values.entrySet()) {
+          generator.writeFieldName(entry.getKey());
+          generator.writeString(entry.getValue());
+        }
+      }
+      generator.writeEndObject();
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+    return this;
+  }
+
+  /**
+   * @return The number of characters written so far.
+   */
+  int position() {
+    flush();
+    return buffer.builder.length();
+  }
+
+  /**
+   * @return The number of bytes taken by the characters between {@code start} and {@code end} once encoded in UTF-8.
+   */
+  int utf8Length(int start, int end) {
+    StringBuilder builder = buffer.builder;
+    int length = 0;
+    for (int i = start; i < end; i++) {
+      char c = builder.charAt(i);
+      if (c < 0x80) {
+        length++;
+      } else if (c < 0x800) {
+        length += 2;
+      } else if (Character.isHighSurrogate(c) && i + 1 < end && Character.isLowSurrogate(builder.charAt(i + 1))) {
+        length += 4;
+        i++;
+      } else {
+        length += 3;
+      }
+    }
+    return length;
+  }
+
+  /**
+   * Removes the characters between {@code start} and {@code end} from the buffer. The generator is not aware of it so
+   * this must only be used to drop complete values.
+   */
+  void delete(int start, int end) {
+    flush();
+    buffer.builder.delete(start, end);
+    checked = Math.min(checked, buffer.builder.length());
+  }
+
+  /**
+   * @return The first {@code end} characters of the buffer followed by {@code suffix}.
+   */
+  String substring(int end, String suffix) {
+    flush();
+    return new StringBuilder(end + suffix.length()).append(buffer.builder, 0, end).append(suffix).toString();
+  }
+
+  /**
+   * @return The whole message.
+   */
+  String message() {
+    flush();
+    return buffer.builder.toString();
+  }
+
+  private void flush() {
+    try {
+      generator.flush();
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+    // '<' can only appear inside strings so every "</" in the output comes from a string and must be escaped
+    StringBuilder builder = buffer.builder;
+    for (int i = Math.max(checked - 1, 0); i < builder.length() - 1; i++) {
+      if (builder.charAt(i) == '<' && builder.charAt(i + 1) == '/') {
+        builder.insert(i + 1, '\\');
+        i++;
+      }
+    }
+    checked = builder.length();
+  }
+
+  private static final class StringBuilderWriter extends Writer {
+
+    private StringBuilder builder = new StringBuilder();
+
+    @Override
+    public void write(char[] chars, int offset, int length) {
+      builder.append(chars, offset, length);
+    }
+
+    @Override
+    public void write(String string, int offset, int length) {
+      builder.append(string, offset, offset + length);
+    }
+
+    @Override
+    public void write(int c) {
+      builder.append((char) c);
+    }
+
+    @Override
+    public void flush() {}
+
+    @Override
+    public void close() {}
+
+  }
+
+  private static final class LegacyCharacterEscapes extends CharacterEscapes {
+
+    private static final long serialVersionUID = 1L;
+
+    private final int[] asciiEscapes = CharacterEscapes.standardAsciiEscapesForJSON();
+    private final SerializableString[] controlCharacterEscapes = new SerializableString[0x20];
+
+    private LegacyCharacterEscapes() {
+      for (int c = 0; c < 0x20; c++) {
+        if (asciiEscapes[c] == CharacterEscapes.ESCAPE_STANDARD) {
+          asciiEscapes[c] = CharacterEscapes.ESCAPE_CUSTOM;
+          controlCharacterEscapes[c] = new SerializedString(String.format("\\u%04x", c));
+        }
+      }
+    }
+
+    @Override
+    public int[] getEscapeCodesForAscii() {
+      return asciiEscapes;
+    }
+
+    @Override
+    public SerializableString getEscapeSequence(int ch) {
+      return ch < controlCharacterEscapes.length ? controlCharacterEscapes[ch] : null;
+    }
+
+  }
+
+}
@@ -0,0 +1,187 @@
+/**
+ * Copyright (C) 2018-2021 Expedia, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.expediagroup.apiary.extensions.events.metastore.listener;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.hadoop.hive.common.metrics.common.Metrics;
+import org.apache.hadoop.hive.common.metrics.common.MetricsFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.amazonaws.services.sns.model.MessageAttributeValue;
+
+/**
+ * Keeps the SNS message attributes of the most recently used tables so they are not rebuilt for every message.
+ * <p>
+ * Cached maps are unmodifiable and shared between messages. Least recently used entries are evicted once the cache
+ * holds {@code maximumSize} entries, a size of zero disables caching. Hits, misses and evictions are exposed as Hive
+ * metastore gauges when metrics are enabled.
+ * </p>
+ */
+class MessageAttributesCache {
+
+  private static final Logger log = LoggerFactory.getLogger(MessageAttributesCache.class);
+
+  static final String HITS_METRIC = "sns_listener_message_attributes_cache_hits";
+  static final String MISSES_METRIC = "sns_listener_message_attributes_cache_misses";
+  static final String EVICTIONS_METRIC = "sns_listener_message_attributes_cache_evictions";
+
+  private final int maximumSize;
+  private final Map<Key, Map<String, MessageAttributeValue>> cache;
+  private final AtomicLong hits = new AtomicLong();
+  private final AtomicLong misses = new AtomicLong();
+  private final AtomicLong evictions = new AtomicLong();
+
+  MessageAttributesCache(int maximumSize) {
+    if (maximumSize < 0) {
+      throw new IllegalArgumentException("Message attributes cache size must not be negative: " + maximumSize);
+    }
+    this.maximumSize = maximumSize;
+    cache = new LinkedHashMap<Key, Map<String, MessageAttributeValue>>(16, 0.75f, true) {
+      private static final long serialVersionUID = 1L;
+
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<Key, Map<String, MessageAttributeValue>> eldest) {
+        if (size() > MessageAttributesCache.this.maximumSize) {
+          evictions.incrementAndGet();
+          return true;
+        }
+        return false;
+      }
+    };
+    registerGauges();
+  }
+
+  private void registerGauges() {
+    try {
+      Metrics metrics = MetricsFactory.getInstance();
+      if (metrics != null) {
+        metrics.addGauge(HITS_METRIC, hits::get);
+        metrics.addGauge(MISSES_METRIC, misses::get);
+        metrics.addGauge(EVICTIONS_METRIC, evictions::get);
+      }
+    } catch (Exception e) {
+      log.warn("Unable to register message attributes cache metrics", e);
+    }
+  }
+
+  Map<String, MessageAttributeValue> get(EventType eventType, String dbName, String tableName) {
+    if (maximumSize == 0) {
+      return create(eventType, dbName, tableName);
+    }
+    Key key = new Key(eventType, dbName, tableName);
+    Map<String, MessageAttributeValue> messageAttributes;
+    synchronized (cache) {
+      messageAttributes = cache.get(key);
+    }
+    if (messageAttributes != null) {
+      hits.incrementAndGet();
+      return messageAttributes;
+    }
+    misses.incrementAndGet();
+    // concurrent misses on the same key build equal maps, whichever is put last is kept
+    messageAttributes = create(eventType, dbName, tableName);
+    synchronized (cache) {
+      cache.put(key, messageAttributes);
+    }
+    return messageAttributes;
+  }
+
+  private static Map<String, MessageAttributeValue> create(EventType eventType, String dbName, String tableName) {
+    Map<String, MessageAttributeValue> map = new HashMap<>();
+    map
+        .put(MessageAttributeKey.EVENT_TYPE.toString(),
+            new MessageAttributeValue()
+                .withStringValue(eventType.toString())
+                .withDataType(MessageAttributeDataType.STRING.toString()));
+    map
+        .put(MessageAttributeKey.DB_NAME.toString(),
+            new MessageAttributeValue()
+                .withStringValue(dbName)
+                .withDataType(MessageAttributeDataType.STRING.toString()));
+    map
+        .put(MessageAttributeKey.TABLE_NAME.toString(),
+            new MessageAttributeValue()
+                .withStringValue(tableName)
+                .withDataType(MessageAttributeDataType.STRING.toString()));
+    map
+        .put(MessageAttributeKey.QUALIFIED_TABLE_NAME.toString(),
+            new MessageAttributeValue()
+                .withStringValue(dbName + "." + tableName)
+                .withDataType(MessageAttributeDataType.STRING.toString()));
+    return Collections.unmodifiableMap(map);
+  }
+
+  int size() {
+    synchronized (cache) {
+      return cache.size();
+    }
+  }
+
+  long getHits() {
+    return hits.get();
+  }
+
+  long getMisses() {
+    return misses.get();
+  }
+
+  long getEvictions() {
+    return evictions.get();
+  }
+
+  private static final class Key {
+
+    private final EventType eventType;
+    private final String dbName;
+    private final String tableName;
+    private final int hashCode;
+
+    private Key(EventType eventType, String dbName, String tableName) {
+      this.eventType = eventType;
+      this.dbName = dbName;
+      this.tableName = tableName;
+      hashCode = Objects.hash(eventType, dbName, tableName);
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+      if (this == obj) {
+        return true;
+      }
+      if (!(obj instanceof Key)) {
+        return false;
+      }
+      Key other = (Key) obj;
+      return eventType == other.eventType
+          && Objects.equals(dbName, other.dbName)
+          && Objects.equals(tableName, other.tableName);
+    }
+
+    @Override
+    public int hashCode() {
+      return hashCode;
+    }
+
+  }
+
+}
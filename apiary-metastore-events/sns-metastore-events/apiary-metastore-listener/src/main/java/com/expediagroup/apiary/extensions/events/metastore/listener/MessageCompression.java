@@ -0,0 +1,39 @@
+/**
+ * Copyright (C) 2018-2021 Expedia, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.expediagroup.apiary.extensions.events.metastore.listener;
+
+/**
+ * How the {@link CompressingSnsPublisher} compresses messages. The identifier is written in the header of compressed
+ * messages and must not change.
+ */
+public enum MessageCompression {
+
+  /** Messages are published as plain JSON. */
+  NONE(0),
+  /** Messages are compressed with gzip. */
+  GZIP(1);
+
+  private final byte id;
+
+  MessageCompression(int id) {
+    this.id = (byte) id;
+  }
+
+  byte id() {
+    return id;
+  }
+
+}
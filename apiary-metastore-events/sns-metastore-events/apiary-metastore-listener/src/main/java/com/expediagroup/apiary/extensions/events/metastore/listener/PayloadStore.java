@@ -0,0 +1,30 @@
+/**
+ * Copyright (C) 2018-2021 Expedia, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.expediagroup.apiary.extensions.events.metastore.listener;
+
+import java.io.IOException;
+
+/**
+ * Stores message payloads too large to be published to SNS, see {@link ClaimCheckSnsPublisher}.
+ */
+interface PayloadStore {
+
+  /**
+   * @return The location of the stored payload, as a URI.
+   */
+  String put(String key, byte[] payload) throws IOException;
+
+}
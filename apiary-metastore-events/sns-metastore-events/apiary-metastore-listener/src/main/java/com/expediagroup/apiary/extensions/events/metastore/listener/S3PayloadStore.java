@@ -0,0 +1,49 @@
+/**
+ * Copyright (C) 2018-2021 Expedia, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.expediagroup.apiary.extensions.events.metastore.listener;
+
+import java.io.ByteArrayInputStream;
+
+import com.amazonaws.services.s3.AmazonS3;
+import com.amazonaws.services.s3.model.ObjectMetadata;
+
+/**
+ * Stores payloads in an S3 bucket, under an optional key prefix.
+ */
+class S3PayloadStore implements PayloadStore {
+
+  private final AmazonS3 s3Client;
+  private final String bucket;
+  private final String keyPrefix;
+
+  S3PayloadStore(AmazonS3 s3Client, String bucket, String keyPrefix) {
+    this.s3Client = s3Client;
+    this.bucket = bucket;
+    this.keyPrefix = keyPrefix;
+  }
+
+  @Override
+  public String put(String key, byte[] payload) {
+    ObjectMetadata metadata = new ObjectMetadata();
+    metadata.setContentLength(payload.length);
+    metadata.setContentType("application/json");
+    metadata.setContentEncoding("gzip");
+    String objectKey = keyPrefix + key;
+    s3Client.putObject(bucket, objectKey, new ByteArrayInputStream(payload), metadata);
+    return "s3://" + bucket + "/" + objectKey;
+  }
+
+}
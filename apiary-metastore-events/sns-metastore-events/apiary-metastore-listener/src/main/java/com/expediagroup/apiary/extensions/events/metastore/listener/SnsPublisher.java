@@ -0,0 +1,36 @@
+/**
+ * Copyright (C) 2018-2021 Expedia, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.expediagroup.apiary.extensions.events.metastore.listener;
+
+import java.io.Closeable;
+import java.util.List;
+
+import com.amazonaws.services.sns.model.PublishRequest;
+
+/**
+ * Delivers the messages produced by the {@link ApiarySnsListener} to SNS.
+ * <p>
+ * All the requests passed in a single call belong to the same table and must be delivered in the given order.
+ * </p>
+ */
+interface SnsPublisher extends Closeable {
+
+  void publish(String qualifiedTableName, List<PublishRequest> requests);
+
+  @Override
+  void close();
+
+}
@@ -0,0 +1,179 @@
+/**
+ * Copyright (C) 2018-2021 Expedia, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.expediagroup.apiary.extensions.events.metastore.listener;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.amazonaws.SdkClientException;
+import com.amazonaws.services.sns.AmazonSNS;
+import com.amazonaws.services.sns.model.BatchResultErrorEntry;
+import com.amazonaws.services.sns.model.MessageAttributeValue;
+import com.amazonaws.services.sns.model.PublishBatchRequest;
+import com.amazonaws.services.sns.model.PublishBatchRequestEntry;
+import com.amazonaws.services.sns.model.PublishBatchResult;
+import com.amazonaws.services.sns.model.PublishBatchResultEntry;
+import com.amazonaws.services.sns.model.PublishRequest;
+import com.amazonaws.services.sns.model.PublishResult;
+
+/**
+ * Publishes messages on the calling thread.
+ * <p>
+ * A single message is sent with a plain SNS Publish request. Several messages, such as the ones produced for each
+ * partition of an ADD_PARTITION event, are grouped into PublishBatch requests of up to {@value #MAX_BATCH_ENTRIES}
+ * entries and {@value #MAX_SIZE_BYTES} bytes. Entries that fail on the SNS side are retried with an exponential
+ * back-off; entries rejected because of the request itself are not.
+ * </p>
+ */
+class SynchronousSnsPublisher implements SnsPublisher {
+
+  private static final Logger log = LoggerFactory.getLogger(SynchronousSnsPublisher.class);
+
+  static final int MAX_BATCH_ENTRIES = 10;
+  /** Limit for the size of a single message as well as of a whole batch. */
+  static final int MAX_SIZE_BYTES = 256 * 1024;
+
+  private final AmazonSNS snsClient;
+  private final int maxRetries;
+  private final long retryBackoffMillis;
+
+  SynchronousSnsPublisher(AmazonSNS snsClient, int maxRetries, long retryBackoffMillis) {
+    this.snsClient = snsClient;
+    this.maxRetries = maxRetries;
+    this.retryBackoffMillis = retryBackoffMillis;
+  }
+
+  @Override
+  public void publish(String qualifiedTableName, List<PublishRequest> requests) {
+    List<PublishRequest> batch = new ArrayList<>(MAX_BATCH_ENTRIES);
+    int batchSize = 0;
+    for (PublishRequest request : requests) {
+      int requestSize = sizeOf(request);
+      if (batch.size() == MAX_BATCH_ENTRIES || (!batch.isEmpty() && batchSize + requestSize > MAX_SIZE_BYTES)) {
+        publishAll(batch);
+        batch = new ArrayList<>(MAX_BATCH_ENTRIES);
+        batchSize = 0;
+      }
+      batch.add(request);
+      batchSize += requestSize;
+    }
+    if (!batch.isEmpty()) {
+      publishAll(batch);
+    }
+  }
+
+  private void publishAll(List<PublishRequest> batch) {
+    if (batch.size() == 1) {
+      publish(batch.get(0));
+    } else {
+      publishBatch(batch);
+    }
+  }
+
+  private void publish(PublishRequest request) {
+    log.debug("Sending Message: {} to {}", request.getMessage(), request.getTopicArn());
+    PublishResult publishResult = snsClient.publish(request);
+    log.info("Published SNS Message - " + publishResult.getMessageId());
+  }
+
+  private void publishBatch(List<PublishRequest> requests) {
+    String topicArn = requests.get(0).getTopicArn();
+    Map<String, PublishBatchRequestEntry> pending = new LinkedHashMap<>();
+    for (int i = 0; i < requests.size(); i++) {
+      pending.put(Integer.toString(i), entry(Integer.toString(i), requests.get(i)));
+    }
+    List<String> failures = new ArrayList<>();
+    for (int attempt = 0; !pending.isEmpty() && attempt <= maxRetries; attempt++) {
+      if (attempt > 0) {
+        backOff(attempt);
+      }
+      log.debug("Sending batch of {} messages to {}", pending.size(), topicArn);
+      PublishBatchResult publishBatchResult = snsClient
+          .publishBatch(new PublishBatchRequest()
+              .withTopicArn(topicArn)
+              .withPublishBatchRequestEntries(new ArrayList<>(pending.values())));
+      for (PublishBatchResultEntry successful : publishBatchResult.getSuccessful()) {
+        pending.remove(successful.getId());
+        log.info("Published SNS Message - " + successful.getMessageId());
+      }
+      for (BatchResultErrorEntry failed : publishBatchResult.getFailed()) {
+        if (Boolean.TRUE.equals(failed.getSenderFault())) {
+          pending.remove(failed.getId());
+          failures.add(failed.getCode() + ": " + failed.getMessage());
+        } else {
+          log.warn("SNS batch entry failed with {}: {}", failed.getCode(), failed.getMessage());
+        }
+      }
+    }
+    if (!pending.isEmpty()) {
+      failures.add(pending.size() + " entries still failing after " + maxRetries + " retries");
+    }
+    if (!failures.isEmpty()) {
+      throw new SdkClientException(
+          String.format("Unable to publish batch of %d messages to %s: %s", requests.size(), topicArn, failures));
+    }
+  }
+
+  private void backOff(int attempt) {
+    try {
+      Thread.sleep(retryBackoffMillis << Math.min(attempt - 1, 10));
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new SdkClientException("Interrupted while retrying SNS batch", e);
+    }
+  }
+
+  private static PublishBatchRequestEntry entry(String id, PublishRequest request) {
+    return new PublishBatchRequestEntry()
+        .withId(id)
+        .withMessage(request.getMessage())
+        .withMessageAttributes(request.getMessageAttributes())
+        .withMessageGroupId(request.getMessageGroupId())
+        .withMessageDeduplicationId(request.getMessageDeduplicationId());
+  }
+
+  /**
+   * SNS counts the message body and the name, type and value of every message attribute towards the size limits.
+   */
+  static int sizeOf(PublishRequest request) {
+    return utf8Length(request.getMessage()) + sizeOf(request.getMessageAttributes());
+  }
+
+  static int sizeOf(Map<String, MessageAttributeValue> messageAttributes) {
+    int size = 0;
+    for (Entry<String, MessageAttributeValue> attribute : messageAttributes.entrySet()) {
+      size += utf8Length(attribute.getKey())
+          + utf8Length(attribute.getValue().getDataType())
+          + utf8Length(attribute.getValue().getStringValue());
+    }
+    return size;
+  }
+
+  static int utf8Length(String value) {
+    return value == null ? 0 : value.getBytes(StandardCharsets.UTF_8).length;
+  }
+
+  @Override
+  public void close() {}
+
+}
@@ -0,0 +1,163 @@
+/**
+ * Copyright (C) 2018-2021 Expedia, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.expediagroup.apiary.extensions.events.metastore.listener;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Predicate;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+/**
+ * Selects the table parameters whose key fully matches the TABLE_PARAM_FILTER regular expression.
+ * <p>
+ * Expressions made of literal keys and key prefixes such as {@code my_var.*} or {@code numRows|totalSize} are matched
+ * with string comparisons. Any other expression is evaluated with the regular expression, and the outcome is cached
+ * per parameter key since the same keys come up on every event of a table.
+ * </p>
+ */
+class TableParamFilter {
+
+  static final int DEFAULT_MAX_CACHED_KEYS = 10_000;
+
+  private static final String METACHARACTERS = "\\^$.|?*+()[]{}";
+
+  private final String expression;
+  private final Predicate<String> keyMatcher;
+
+  private TableParamFilter(String expression, Predicate<String> keyMatcher) {
+    this.expression = expression;
+    this.keyMatcher = keyMatcher;
+  }
+
+  /**
+   * @throws PatternSyntaxException If the expression is not a valid regular expression.
+   */
+  static TableParamFilter compile(String expression) {
+    return compile(expression, DEFAULT_MAX_CACHED_KEYS);
+  }
+
+  static TableParamFilter compile(String expression, int maxCachedKeys) {
+    Pattern pattern = Pattern.compile(expression);
+    Predicate<String> keyMatcher = literalMatcher(expression);
+    if (keyMatcher == null) {
+      keyMatcher = new CachingRegexMatcher(pattern, maxCachedKeys);
+    }
+    return new TableParamFilter(expression, keyMatcher);
+  }
+
+  boolean matches(String key) {
+    return keyMatcher.test(key);
+  }
+
+  Map<String, String> filter(Map<String, String> tableParameters) {
+    Map<String, String> filteredParams = new HashMap<>();
+    if (tableParameters != null) {
+      for (Entry<String, String> entry : tableParameters.entrySet()) {
+        if (keyMatcher.test(entry.getKey())) {
+          filteredParams.put(entry.getKey(), entry.getValue());
+        }
+      }
+    }
+    return filteredParams;
+  }
+
+  /**
+   * @return A matcher using string comparisons if every alternative of the expression is either a literal or a
+   *         literal followed by {@code .*}, {@code null} otherwise.
+   */
+  private static Predicate<String> literalMatcher(String expression) {
+    Set<String> literals = new HashSet<>();
+    List<String> prefixes = new ArrayList<>();
+    StringBuilder alternative = new StringBuilder();
+    for (int i = 0; i <= expression.length(); i++) {
+      char c = i < expression.length() ? expression.charAt(i) : '|';
+      if (c == '|') {
+        literals.add(alternative.toString());
+        alternative.setLength(0);
+      } else if (c == '.' && i + 1 < expression.length() && expression.charAt(i + 1) == '*'
+          && (i + 2 == expression.length() || expression.charAt(i + 2) == '|')) {
+        prefixes.add(alternative.toString());
+        alternative.setLength(0);
+        i += 2;
+      } else if (c == '\\' && i + 1 < expression.length() && !Character.isLetterOrDigit(expression.charAt(i + 1))) {
+        alternative.append(expression.charAt(++i));
+      } else if (METACHARACTERS.indexOf(c) >= 0) {
+        return null;
+      } else {
+        alternative.append(c);
+      }
+    }
+    if (prefixes.isEmpty() && literals.size() == 1) {
+      String literal = literals.iterator().next();
+      return literal::equals;
+    }
+    if (literals.isEmpty() && prefixes.size() == 1) {
+      String prefix = prefixes.get(0);
+      return key -> key.startsWith(prefix);
+    }
+    return key -> {
+      if (literals.contains(key)) {
+        return true;
+      }
+      for (String prefix : prefixes) {
+        if (key.startsWith(prefix)) {
+          return true;
+        }
+      }
+      return false;
+    };
+  }
+
+  @Override
+  public String toString() {
+    return expression;
+  }
+
+  private static final class CachingRegexMatcher implements Predicate<String> {
+
+    private final Pattern pattern;
+    private final int maxCachedKeys;
+    private final Map<String, Boolean> matchedKeys = new ConcurrentHashMap<>();
+
+    private CachingRegexMatcher(Pattern pattern, int maxCachedKeys) {
+      this.pattern = pattern;
+      this.maxCachedKeys = maxCachedKeys;
+    }
+
+    @Override
+    public boolean test(String key) {
+      Boolean matches = matchedKeys.get(key);
+      if (matches == null) {
+        matches = pattern.matcher(key).matches();
+        if (matchedKeys.size() >= maxCachedKeys) {
+          // keys are cheap to recompute, start over rather than tracking usage
+          matchedKeys.clear();
+        }
+        matchedKeys.put(key, matches);
+      }
+      return matches;
+    }
+
+  }
+
+}
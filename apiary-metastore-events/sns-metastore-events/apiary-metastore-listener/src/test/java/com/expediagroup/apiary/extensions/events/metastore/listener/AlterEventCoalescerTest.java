@@ -0,0 +1,219 @@
+/**
+ * Copyright (C) 2018-2021 Expedia, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.expediagroup.apiary.extensions.events.metastore.listener;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.junit.Assert.assertThat;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.hadoop.hive.metastore.api.Partition;
+import org.apache.hadoop.hive.metastore.api.StorageDescriptor;
+import org.apache.hadoop.hive.metastore.api.Table;
+import org.junit.After;
+import org.junit.Test;
+
+public class AlterEventCoalescerTest {
+
+  private static final long LONG_WINDOW_MILLIS = TimeUnit.HOURS.toMillis(1);
+
+  private final List<Object[]> published = new ArrayList<>();
+  private AlterEventCoalescer coalescer;
+
+  @After
+  public void teardown() {
+    if (coalescer != null) {
+      coalescer.close();
+    }
+  }
+
+  @Test
+  public void partitionAlterationsAreCoalesced() {
+    coalescer = new AlterEventCoalescer(LONG_WINDOW_MILLIS, this::record);
+    Table table = table("some_table", "s3://table");
+    Partition first = partition("s3://location_1");
+    Partition second = partition("s3://location_2");
+    Partition third = partition("s3://location_3");
+
+    assertThat(coalescer.alterPartition(table, second, first), is(true));
+    assertThat(coalescer.alterPartition(table, third, second), is(true));
+    assertThat(published.size(), is(0));
+    assertThat(coalescer.size(), is(1));
+    assertThat(coalescer.getCoalescedEvents(), is(1L));
+
+    coalescer.flush("some_db.some_table");
+
+    assertThat(published.size(), is(1));
+    assertThat(published.get(0)[0], is((Object) EventType.ALTER_PARTITION));
+    assertThat(published.get(0)[3], is(sameInstance((Object) third)));
+    assertThat(published.get(0)[4], is(sameInstance((Object) first)));
+    assertThat(coalescer.size(), is(0));
+  }
+
+  @Test
+  public void tableAlterationsAreCoalesced() {
+    coalescer = new AlterEventCoalescer(LONG_WINDOW_MILLIS, this::record);
+    Table first = table("some_table", "s3://location_1");
+    Table second = table("some_table", "s3://location_2");
+    Table third = table("some_table", "s3://location_3");
+
+    coalescer.alterTable(second, first);
+    coalescer.alterTable(third, second);
+    coalescer.close();
+
+    assertThat(published.size(), is(1));
+    assertThat(published.get(0)[0], is((Object) EventType.ALTER_TABLE));
+    assertThat(published.get(0)[1], is(sameInstance((Object) third)));
+    assertThat(published.get(0)[2], is(sameInstance((Object) first)));
+    assertThat(published.get(0)[3], is(nullValue()));
+  }
+
+  @Test
+  public void differentPartitionsAreHeldSeparately() {
+    coalescer = new AlterEventCoalescer(LONG_WINDOW_MILLIS, this::record);
+    Table table = table("some_table", "s3://table");
+    Partition partition = partition("s3://location_1");
+    Partition otherPartition = new Partition(Arrays.asList("2"), "some_db", "some_table", 0, 0,
+        storageDescriptor("s3://other"), null);
+
+    coalescer.alterPartition(table, partition, partition);
+    coalescer.alterPartition(table, otherPartition, otherPartition);
+    coalescer.alterTable(table, table);
+
+    assertThat(coalescer.size(), is(3));
+    coalescer.flush("some_db.some_table");
+    assertThat(published.size(), is(3));
+    assertThat(published.get(0)[3], is(sameInstance((Object) partition)));
+    assertThat(published.get(1)[3], is(sameInstance((Object) otherPartition)));
+    assertThat(published.get(2)[0], is((Object) EventType.ALTER_TABLE));
+  }
+
+  @Test
+  public void renamesAreNotHeld() {
+    coalescer = new AlterEventCoalescer(LONG_WINDOW_MILLIS, this::record);
+    Table table = table("some_table", "s3://table");
+    Partition partition = partition("s3://location_1");
+    Partition renamedPartition = new Partition(Arrays.asList("2"), "some_db", "some_table", 0, 0,
+        storageDescriptor("s3://location_1"), null);
+
+    coalescer.alterPartition(table, partition, partition);
+    assertThat(coalescer.alterPartition(table, renamedPartition, partition), is(false));
+    assertThat(published.size(), is(1));
+
+    coalescer.alterTable(table, table);
+    assertThat(coalescer.alterTable(table("new_table", "s3://table"), table), is(false));
+    assertThat(published.size(), is(2));
+    assertThat(coalescer.size(), is(0));
+  }
+
+  @Test
+  public void heldEventIsPublishedAtTheEndOfTheWindow() throws InterruptedException {
+    coalescer = new AlterEventCoalescer(50L, this::record);
+    Table table = table("some_table", "s3://table");
+
+    coalescer.alterTable(table, table);
+
+    long deadline = System.currentTimeMillis() + 5000L;
+    while (publishedCount() == 0 && System.currentTimeMillis() < deadline) {
+      Thread.sleep(10L);
+    }
+    assertThat(publishedCount(), is(1));
+    assertThat(coalescer.size(), is(0));
+  }
+
+  @Test
+  public void flushWaitsForExpiringEventOfTheTable() throws InterruptedException {
+    CountDownLatch publishing = new CountDownLatch(1);
+    CountDownLatch release = new CountDownLatch(1);
+    coalescer = new AlterEventCoalescer(10L, (eventType, table, oldTable, partition, oldPartition) -> {
+      publishing.countDown();
+      try {
+        release.await(5, TimeUnit.SECONDS);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+      record(eventType, table, oldTable, partition, oldPartition);
+    });
+    Table table = table("some_table", "s3://table");
+    coalescer.alterTable(table, table);
+    assertThat(publishing.await(5, TimeUnit.SECONDS), is(true));
+
+    Thread dropTable = new Thread(() -> {
+      coalescer.flush("some_db.some_table");
+      record(EventType.DROP_TABLE, table, null, null, null);
+    });
+    dropTable.start();
+    dropTable.join(100L);
+    assertThat(publishedCount(), is(0));
+    release.countDown();
+    dropTable.join(5000L);
+
+    assertThat(publishedCount(), is(2));
+    assertThat(published.get(0)[0], is((Object) EventType.ALTER_TABLE));
+    assertThat(published.get(1)[0], is((Object) EventType.DROP_TABLE));
+  }
+
+  @Test
+  public void eventsAreNotHeldOnceClosed() {
+    coalescer = new AlterEventCoalescer(LONG_WINDOW_MILLIS, this::record);
+    coalescer.close();
+
+    Table table = table("some_table", "s3://table");
+    assertThat(coalescer.alterTable(table, table), is(false));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void invalidWindow() {
+    new AlterEventCoalescer(0L, this::record);
+  }
+
+  private void record(EventType eventType, Table table, Table oldTable, Partition partition, Partition oldPartition) {
+    synchronized (published) {
+      published.add(new Object[] { eventType, table, oldTable, partition, oldPartition });
+    }
+  }
+
+  private int publishedCount() {
+    synchronized (published) {
+      return published.size();
+    }
+  }
+
+  private static Table table(String tableName, String location) {
+    Table table = new Table();
+    table.setDbName("some_db");
+    table.setTableName(tableName);
+    table.setSd(storageDescriptor(location));
+    return table;
+  }
+
+  private static Partition partition(String location) {
+    return new Partition(Arrays.asList("1"), "some_db", "some_table", 0, 0, storageDescriptor(location), null);
+  }
+
+  private static StorageDescriptor storageDescriptor(String location) {
+    StorageDescriptor storageDescriptor = new StorageDescriptor();
+    storageDescriptor.setLocation(location);
+    return storageDescriptor;
+  }
+
+}
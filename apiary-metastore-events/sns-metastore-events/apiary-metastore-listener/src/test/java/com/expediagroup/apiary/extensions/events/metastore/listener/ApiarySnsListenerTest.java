@@ -15,15 +15,31 @@
  */
 package com.expediagroup.apiary.extensions.events.metastore.listener;
 
+import static org.hamcrest.CoreMatchers.containsString;
 import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.not;
+import static org.hamcrest.CoreMatchers.notNullValue;
+import static org.hamcrest.CoreMatchers.nullValue;
 import static org.junit.Assert.assertThat;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
+import static com.expediagroup.apiary.extensions.events.metastore.listener.ApiarySnsListener.AGGREGATED_PROTOCOL_VERSION;
 import static com.expediagroup.apiary.extensions.events.metastore.listener.ApiarySnsListener.PROTOCOL_VERSION;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
@@ -31,6 +47,7 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.regex.PatternSyntaxException;
+import java.util.zip.GZIPInputStream;
 
 import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.hive.metastore.api.FieldSchema;
@@ -50,6 +67,7 @@ import org.junit.Before;
 import org.junit.Rule;
 import org.junit.Test;
 import org.junit.contrib.java.lang.system.EnvironmentVariables;
+import org.junit.rules.TemporaryFolder;
 import org.junit.runner.RunWith;
 import org.mockito.ArgumentCaptor;
 import org.mockito.Captor;
@@ -58,6 +76,10 @@ import org.mockito.junit.MockitoJUnitRunner;
 
 import com.amazonaws.services.sns.AmazonSNS;
 import com.amazonaws.services.sns.model.MessageAttributeValue;
+import com.amazonaws.services.sns.model.PublishBatchRequest;
+import com.amazonaws.services.sns.model.PublishBatchRequestEntry;
+import com.amazonaws.services.sns.model.PublishBatchResult;
+import com.amazonaws.services.sns.model.PublishBatchResultEntry;
 import com.amazonaws.services.sns.model.PublishRequest;
 import com.amazonaws.services.sns.model.PublishResult;
 import com.google.common.collect.ImmutableList;
@@ -69,6 +91,8 @@ public class ApiarySnsListenerTest {
 
   @Rule
   public final EnvironmentVariables environmentVariables = new EnvironmentVariables();
+  @Rule
+  public final TemporaryFolder temporaryFolder = new TemporaryFolder();
 
   @Mock
   private AmazonSNS snsClient;
@@ -144,6 +168,53 @@ public class ApiarySnsListenerTest {
     verifyMessageAttributes(publishRequest, EventType.CREATE_TABLE.toString(), "some_db", "some_table");
   }
 
+  @Test
+  public void standardTopicHasNoMessageGroup() throws MetaException {
+    CreateTableEvent event = mock(CreateTableEvent.class);
+    when(event.getStatus()).thenReturn(true);
+    when(event.getTable()).thenReturn(table);
+
+    snsListener.onCreateTable(event);
+    verify(snsClient).publish(requestCaptor.capture());
+    PublishRequest publishRequest = requestCaptor.getValue();
+    assertThat(publishRequest.getTopicArn(), is("arn:test-arn"));
+    assertThat(publishRequest.getMessageGroupId(), is(nullValue()));
+    assertThat(publishRequest.getMessageDeduplicationId(), is(nullValue()));
+  }
+
+  @Test
+  public void fifoTopic() throws MetaException {
+    environmentVariables.set("SNS_ARN", "arn:test-arn.fifo");
+    ApiarySnsListener snsListener = new ApiarySnsListener(configuration, snsClient);
+    CreateTableEvent event = mock(CreateTableEvent.class);
+    when(event.getStatus()).thenReturn(true);
+    when(event.getTable()).thenReturn(table);
+
+    snsListener.onCreateTable(event);
+    verify(snsClient).publish(requestCaptor.capture());
+    PublishRequest publishRequest = requestCaptor.getValue();
+    assertThat(publishRequest.getTopicArn(), is("arn:test-arn.fifo"));
+    assertThat(publishRequest.getMessageGroupId(), is("some_db.some_table"));
+    assertThat(publishRequest.getMessageDeduplicationId(), is(notNullValue()));
+  }
+
+  @Test
+  public void fifoTopicDoesNotDeduplicateIdenticalEvents() throws MetaException {
+    environmentVariables.set("SNS_ARN", "arn:test-arn.fifo");
+    ApiarySnsListener snsListener = new ApiarySnsListener(configuration, snsClient);
+    CreateTableEvent event = mock(CreateTableEvent.class);
+    when(event.getStatus()).thenReturn(true);
+    when(event.getTable()).thenReturn(table);
+
+    snsListener.onCreateTable(event);
+    snsListener.onCreateTable(event);
+    verify(snsClient, times(2)).publish(requestCaptor.capture());
+    List<PublishRequest> publishRequests = requestCaptor.getAllValues();
+    assertThat(publishRequests.get(1).getMessage(), is(publishRequests.get(0).getMessage()));
+    assertThat(publishRequests.get(1).getMessageDeduplicationId(),
+        is(not(publishRequests.get(0).getMessageDeduplicationId())));
+  }
+
   @Test
   public void onCreateTableWithEmptyTableParams() throws MetaException {
     table.setParameters(Maps.newHashMap());
@@ -242,6 +313,33 @@ public class ApiarySnsListenerTest {
     new ApiarySnsListener(configuration, snsClient);
   }
 
+  @Test
+  public void asyncPublishing() throws MetaException {
+    environmentVariables.set("ASYNC_PUBLISH_ENABLED", "true");
+    ApiarySnsListener snsListener = new ApiarySnsListener(configuration, snsClient);
+
+    CreateTableEvent event = mock(CreateTableEvent.class);
+    when(event.getStatus()).thenReturn(true);
+    when(event.getTable()).thenReturn(table);
+
+    snsListener.onCreateTable(event);
+    verify(snsClient, timeout(5000)).publish(requestCaptor.capture());
+    PublishRequest publishRequest = requestCaptor.getValue();
+    assertThat(publishRequest.getMessage(), is("{\"protocolVersion\":\""
+        + PROTOCOL_VERSION
+        + "\",\"eventType\":\""
+        + EventType.CREATE_TABLE.toString()
+        + "\",\"dbName\":\"some_db\",\"tableName\":\"some_table\",\"tableLocation\":\"s3://table_location\",\"tableParameters\":{\"MY_VAR_TWO\":\"5\",\"MY_VAR_ONE\":\"true\"}}"));
+    verifyMessageAttributes(publishRequest, EventType.CREATE_TABLE.toString(), "some_db", "some_table");
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void asyncPublishingInvalidBackPressurePolicy() {
+    environmentVariables.set("ASYNC_PUBLISH_ENABLED", "true");
+    environmentVariables.set("ASYNC_PUBLISH_BACK_PRESSURE_POLICY", "wait");
+    new ApiarySnsListener(configuration, snsClient);
+  }
+
   @Test
   public void onInsert() throws MetaException {
     InsertEvent event = mock(InsertEvent.class);
@@ -298,6 +396,162 @@ public class ApiarySnsListenerTest {
     verifyMessageAttributes(publishRequest, EventType.ADD_PARTITION.toString(), "some_db", "some_table");
   }
 
+  @Test
+  public void onAddPartitionPublishesBatches() throws MetaException {
+    when(snsClient.publishBatch(any(PublishBatchRequest.class))).thenAnswer(invocation -> {
+      PublishBatchRequest request = invocation.getArgument(0);
+      PublishBatchResult result = new PublishBatchResult();
+      for (PublishBatchRequestEntry entry : request.getPublishBatchRequestEntries()) {
+        result.withSuccessful(new PublishBatchResultEntry().withId(entry.getId()).withMessageId("id"));
+      }
+      return result;
+    });
+    AddPartitionEvent event = mock(AddPartitionEvent.class);
+    when(event.getStatus()).thenReturn(true);
+    when(event.getTable()).thenReturn(table);
+
+    List<Partition> partitions = new ArrayList<>();
+    for (int i = 0; i < 12; i++) {
+      partitions
+          .add(new Partition(ImmutableList.of("value_" + i, "1000", "value_2"), DB_NAME, TABLE_NAME, 0, 0,
+              createStorageDescriptor(partitionKeys, PARTITION_LOCATION + i), ImmutableMap.of()));
+    }
+    when(event.getPartitionIterator()).thenReturn(partitions.iterator());
+
+    snsListener.onAddPartition(event);
+    ArgumentCaptor<PublishBatchRequest> batchCaptor = ArgumentCaptor.forClass(PublishBatchRequest.class);
+    verify(snsClient, times(2)).publishBatch(batchCaptor.capture());
+    verify(snsClient, never()).publish(any(PublishRequest.class));
+    List<PublishBatchRequest> batches = batchCaptor.getAllValues();
+    assertThat(batches.get(0).getPublishBatchRequestEntries().size(), is(10));
+    assertThat(batches.get(1).getPublishBatchRequestEntries().size(), is(2));
+
+    PublishBatchRequestEntry last = batches.get(1).getPublishBatchRequestEntries().get(1);
+    assertThat(last.getMessage(), is("{\"protocolVersion\":\""
+        + PROTOCOL_VERSION
+        + "\",\"eventType\":\""
+        + EventType.ADD_PARTITION.toString()
+        + "\",\"dbName\":\"some_db\",\"tableName\":\"some_table\",\"tableLocation\":\"s3://table_location\",\"tableParameters\":{\"MY_VAR_TWO\":\"5\",\"MY_VAR_ONE\":\"true\"},"
+        + "\"partitionKeys\":{\"column_1\":\"string\",\"column_2\":\"int\",\"column_3\":\"string\"},\"partitionValues\":[\"value_11\",\"1000\",\"value_2\"],\"partitionLocation\":\"s3://table_location/partition_location=211\"}"));
+    assertThat(last.getMessageAttributes().get(MessageAttributeKey.QUALIFIED_TABLE_NAME.toString()).getStringValue(),
+        is("some_db.some_table"));
+  }
+
+  @Test
+  public void onAddPartitionAggregated() throws MetaException {
+    environmentVariables.set("AGGREGATE_PARTITION_EVENTS", "true");
+    ApiarySnsListener snsListener = new ApiarySnsListener(configuration, snsClient);
+    AddPartitionEvent event = mock(AddPartitionEvent.class);
+    when(event.getStatus()).thenReturn(true);
+    when(event.getTable()).thenReturn(table);
+
+    List<Partition> partitions = new ArrayList<>();
+    partitions
+        .add(new Partition(PARTITION_VALUES, DB_NAME, TABLE_NAME, 0, 0,
+            createStorageDescriptor(partitionKeys, PARTITION_LOCATION), ImmutableMap.of()));
+    partitions
+        .add(new Partition(NEW_PARTITION_VALUES, DB_NAME, TABLE_NAME, 0, 0,
+            createStorageDescriptor(partitionKeys, OLD_PARTITION_LOCATION), ImmutableMap.of()));
+    when(event.getPartitionIterator()).thenReturn(partitions.iterator());
+
+    snsListener.onAddPartition(event);
+    verify(snsClient).publish(requestCaptor.capture());
+    PublishRequest publishRequest = requestCaptor.getValue();
+
+    assertThat(publishRequest.getMessage(), is("{\"protocolVersion\":\""
+        + AGGREGATED_PROTOCOL_VERSION
+        + "\",\"eventType\":\""
+        + EventType.ADD_PARTITION.toString()
+        + "\",\"dbName\":\"some_db\",\"tableName\":\"some_table\",\"tableLocation\":\"s3://table_location\",\"tableParameters\":{\"MY_VAR_TWO\":\"5\",\"MY_VAR_ONE\":\"true\"},"
+        + "\"partitionKeys\":{\"column_1\":\"string\",\"column_2\":\"int\",\"column_3\":\"string\"},"
+        + "\"partitions\":[{\"values\":[\"value_1\",\"1000\",\"value_2\"],\"location\":\"s3://table_location/partition_location=2\"},"
+        + "{\"values\":[\"value_3\",\"2000\",\"value_4\"],\"location\":\"s3://table_location/partition_location=1\"}]}"));
+    verifyMessageAttributes(publishRequest, EventType.ADD_PARTITION.toString(), "some_db", "some_table");
+  }
+
+  @Test
+  public void onDropPartitionAggregatedIsChunked() throws MetaException {
+    environmentVariables.set("AGGREGATE_PARTITION_EVENTS", "true");
+    ApiarySnsListener snsListener = new ApiarySnsListener(configuration, snsClient);
+    DropPartitionEvent event = mock(DropPartitionEvent.class);
+    when(event.getStatus()).thenReturn(true);
+    when(event.getTable()).thenReturn(table);
+
+    StringBuilder longLocation = new StringBuilder(PARTITION_LOCATION);
+    for (int i = 0; i < 1000; i++) {
+      longLocation.append("/sub_dir");
+    }
+    List<Partition> partitions = new ArrayList<>();
+    for (int i = 0; i < 100; i++) {
+      partitions
+          .add(new Partition(ImmutableList.of("value_" + i, "1000", "value_2"), DB_NAME, TABLE_NAME, 0, 0,
+              createStorageDescriptor(partitionKeys, longLocation.toString()), ImmutableMap.of()));
+    }
+    when(event.getPartitionIterator()).thenReturn(partitions.iterator());
+
+    snsListener.onDropPartition(event);
+    // Each message is close to the size limit so they can't be batched together
+    verify(snsClient, times(4)).publish(requestCaptor.capture());
+    int partitionCount = 0;
+    for (PublishRequest publishRequest : requestCaptor.getAllValues()) {
+      assertThat(SynchronousSnsPublisher.sizeOf(publishRequest) <= SynchronousSnsPublisher.MAX_SIZE_BYTES, is(true));
+      partitionCount += publishRequest.getMessage().split("\\{\"values\"", -1).length - 1;
+      verifyMessageAttributes(publishRequest, EventType.DROP_PARTITION.toString(), "some_db", "some_table");
+    }
+    assertThat(partitionCount, is(100));
+  }
+
+  @Test
+  public void onAddPartitionAggregatedClaimChecksOversizedPartition() throws MetaException, IOException {
+    environmentVariables.set("AGGREGATE_PARTITION_EVENTS", "true");
+    environmentVariables.set("CLAIM_CHECK_LOCATION", temporaryFolder.getRoot().toURI().toString());
+    when(snsClient.publishBatch(any(PublishBatchRequest.class))).thenAnswer(invocation -> {
+      PublishBatchRequest request = invocation.getArgument(0);
+      PublishBatchResult result = new PublishBatchResult();
+      for (PublishBatchRequestEntry entry : request.getPublishBatchRequestEntries()) {
+        result.withSuccessful(new PublishBatchResultEntry().withId(entry.getId()).withMessageId("id"));
+      }
+      return result;
+    });
+    ApiarySnsListener snsListener = new ApiarySnsListener(configuration, snsClient);
+    AddPartitionEvent event = mock(AddPartitionEvent.class);
+    when(event.getStatus()).thenReturn(true);
+    when(event.getTable()).thenReturn(table);
+
+    StringBuilder oversizedLocation = new StringBuilder(PARTITION_LOCATION);
+    while (oversizedLocation.length() <= SynchronousSnsPublisher.MAX_SIZE_BYTES) {
+      oversizedLocation.append("/sub_dir");
+    }
+    List<Partition> partitions = new ArrayList<>();
+    partitions
+        .add(new Partition(PARTITION_VALUES, DB_NAME, TABLE_NAME, 0, 0,
+            createStorageDescriptor(partitionKeys, PARTITION_LOCATION), ImmutableMap.of()));
+    partitions
+        .add(new Partition(ImmutableList.of("oversized", "1000", "value_2"), DB_NAME, TABLE_NAME, 0, 0,
+            createStorageDescriptor(partitionKeys, oversizedLocation.toString()), ImmutableMap.of()));
+    partitions
+        .add(new Partition(NEW_PARTITION_VALUES, DB_NAME, TABLE_NAME, 0, 0,
+            createStorageDescriptor(partitionKeys, OLD_PARTITION_LOCATION), ImmutableMap.of()));
+    when(event.getPartitionIterator()).thenReturn(partitions.iterator());
+
+    snsListener.onAddPartition(event);
+    ArgumentCaptor<PublishBatchRequest> batchCaptor = ArgumentCaptor.forClass(PublishBatchRequest.class);
+    verify(snsClient).publishBatch(batchCaptor.capture());
+    List<PublishBatchRequestEntry> entries = batchCaptor.getValue().getPublishBatchRequestEntries();
+    assertThat(entries.size(), is(3));
+    assertThat(entries.get(0).getMessage(), containsString("\"partitions\":[{\"values\":[\"value_1\""));
+    assertThat(entries.get(0).getMessage(), not(containsString("oversized")));
+    assertThat(entries.get(2).getMessage(), containsString("\"partitions\":[{\"values\":[\"value_3\""));
+    assertThat(entries.get(2).getMessage(), not(containsString("oversized")));
+
+    String pointer = entries.get(1).getMessage();
+    assertThat(pointer, containsString("\"payloadEncoding\":\"gzip\""));
+    String payloadLocation = pointer.replaceFirst(".*\"payloadLocation\":\"([^\"]*)\".*", "$1");
+    String payload = gunzip(Files.readAllBytes(Paths.get(URI.create(payloadLocation))));
+    assertThat(payload, containsString("\"partitions\":[{\"values\":[\"oversized\",\"1000\",\"value_2\"]"));
+    assertThat(payload, containsString(oversizedLocation.toString()));
+  }
+
   @Test
   public void onDropPartition() throws MetaException {
     DropPartitionEvent event = mock(DropPartitionEvent.class);
@@ -418,6 +672,66 @@ public class ApiarySnsListenerTest {
     verifyMessageAttributes(publishRequest, EventType.ALTER_TABLE.toString(), "some_db", "new_some_table");
   }
 
+  @Test
+  public void alterPartitionEventsAreCoalesced() throws MetaException {
+    environmentVariables.set("ALTER_COALESCE_WINDOW_MS", "3600000");
+    ApiarySnsListener snsListener = new ApiarySnsListener(configuration, snsClient);
+    Partition firstPartition = new Partition(PARTITION_VALUES, DB_NAME, TABLE_NAME, 0, 0,
+        createStorageDescriptor(partitionKeys, OLD_PARTITION_LOCATION), ImmutableMap.of());
+    Partition secondPartition = new Partition(PARTITION_VALUES, DB_NAME, TABLE_NAME, 0, 0,
+        createStorageDescriptor(partitionKeys, "s3://table_location/partition_location=intermediate"),
+        ImmutableMap.of());
+    Partition thirdPartition = new Partition(PARTITION_VALUES, DB_NAME, TABLE_NAME, 0, 0,
+        createStorageDescriptor(partitionKeys, PARTITION_LOCATION), ImmutableMap.of());
+
+    AlterPartitionEvent firstEvent = mock(AlterPartitionEvent.class);
+    when(firstEvent.getStatus()).thenReturn(true);
+    when(firstEvent.getTable()).thenReturn(table);
+    when(firstEvent.getOldPartition()).thenReturn(firstPartition);
+    when(firstEvent.getNewPartition()).thenReturn(secondPartition);
+    AlterPartitionEvent secondEvent = mock(AlterPartitionEvent.class);
+    when(secondEvent.getStatus()).thenReturn(true);
+    when(secondEvent.getTable()).thenReturn(table);
+    when(secondEvent.getOldPartition()).thenReturn(secondPartition);
+    when(secondEvent.getNewPartition()).thenReturn(thirdPartition);
+
+    snsListener.onAlterPartition(firstEvent);
+    snsListener.onAlterPartition(secondEvent);
+    verify(snsClient, never()).publish(any(PublishRequest.class));
+
+    // any other event of the table publishes the held events first
+    DropTableEvent dropTableEvent = mock(DropTableEvent.class);
+    when(dropTableEvent.getStatus()).thenReturn(true);
+    when(dropTableEvent.getTable()).thenReturn(table);
+    snsListener.onDropTable(dropTableEvent);
+
+    verify(snsClient, times(2)).publish(requestCaptor.capture());
+    List<PublishRequest> publishRequests = requestCaptor.getAllValues();
+    assertThat(publishRequests.get(0).getMessage(), is("{\"protocolVersion\":\""
+        + PROTOCOL_VERSION
+        + "\",\"eventType\":\""
+        + EventType.ALTER_PARTITION.toString()
+        + "\",\"dbName\":\"some_db\",\"tableName\":\"some_table\",\"tableLocation\":\"s3://table_location\",\"tableParameters\":{\"MY_VAR_TWO\":\"5\",\"MY_VAR_ONE\":\"true\"},\"partitionKeys\":{\"column_1\":\"string\",\"column_2\":\"int\",\"column_3\":\"string\"},\"partitionValues\":[\"value_1\",\"1000\",\"value_2\"],\"partitionLocation\":\"s3://table_location/partition_location=2\",\"oldPartitionValues\":[\"value_1\",\"1000\",\"value_2\"],\"oldPartitionLocation\":\"s3://table_location/partition_location=1\"}"));
+    verifyMessageAttributes(publishRequests.get(1), EventType.DROP_TABLE.toString(), "some_db", "some_table");
+  }
+
+  @Test
+  public void heldAlterTableEventIsPublishedOnClose() throws MetaException {
+    environmentVariables.set("ALTER_COALESCE_WINDOW_MS", "3600000");
+    ApiarySnsListener snsListener = new ApiarySnsListener(configuration, snsClient);
+    AlterTableEvent event = mock(AlterTableEvent.class);
+    when(event.getStatus()).thenReturn(true);
+    when(event.getOldTable()).thenReturn(table);
+    when(event.getNewTable()).thenReturn(table);
+
+    snsListener.onAlterTable(event);
+    verify(snsClient, never()).publish(any(PublishRequest.class));
+
+    snsListener.close();
+    verify(snsClient).publish(requestCaptor.capture());
+    verifyMessageAttributes(requestCaptor.getValue(), EventType.ALTER_TABLE.toString(), "some_db", "some_table");
+  }
+
   private void verifyMessageAttributes(
       PublishRequest publishRequest,
       String eventType,
@@ -446,5 +760,18 @@ public class ApiarySnsListenerTest {
     return new StorageDescriptor(partitionKeys, tableLocation, "ORC", "ORC", false, 2, new SerDeInfo(),
         Collections.emptyList(), Collections.emptyList(), Collections.emptyMap());
   }
+
+  private static String gunzip(byte[] bytes) throws IOException {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    try (InputStream in = new GZIPInputStream(new ByteArrayInputStream(bytes))) {
+      byte[] buffer = new byte[4096];
+      int read;
+      while ((read = in.read(buffer)) != -1) {
+        out.write(buffer, 0, read);
+      }
+    }
+    return new String(out.toByteArray(), StandardCharsets.UTF_8);
+  }
+
   // TODO: test for setting ARN via environment variable
 }
@@ -0,0 +1,184 @@
+/**
+ * Copyright (C) 2018-2021 Expedia, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.expediagroup.apiary.extensions.events.metastore.listener;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.InOrder;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+
+import com.amazonaws.services.sns.model.MessageAttributeValue;
+import com.amazonaws.services.sns.model.PublishRequest;
+
+@RunWith(MockitoJUnitRunner.class)
+public class AsynchronousSnsPublisherTest {
+
+  private static final String TABLE = "db.table";
+
+  private final CountDownLatch senderBlocked = new CountDownLatch(1);
+  private final CountDownLatch releaseSender = new CountDownLatch(1);
+
+  @Mock
+  private SnsPublisher delegate;
+
+  private AsynchronousSnsPublisher publisher;
+
+  @After
+  public void teardown() {
+    releaseSender.countDown();
+    if (publisher != null) {
+      publisher.close();
+    }
+  }
+
+  @Test
+  public void publishesInOrderAndFlushesOnClose() {
+    publisher = new AsynchronousSnsPublisher(delegate, 2, 10, BackPressurePolicy.BLOCK, 10, TimeUnit.SECONDS);
+    List<PublishRequest> first = request("first");
+    List<PublishRequest> second = request("second");
+
+    publisher.publish(TABLE, first);
+    publisher.publish(TABLE, second);
+    publisher.close();
+
+    InOrder inOrder = inOrder(delegate);
+    inOrder.verify(delegate).publish(TABLE, first);
+    inOrder.verify(delegate).publish(TABLE, second);
+    inOrder.verify(delegate).close();
+  }
+
+  @Test
+  public void failedDeliveryDoesNotStopSender() {
+    publisher = new AsynchronousSnsPublisher(delegate, 1, 10, BackPressurePolicy.BLOCK, 10, TimeUnit.SECONDS);
+    List<PublishRequest> first = request("first");
+    List<PublishRequest> second = request("second");
+    doAnswer(invocation -> {
+      throw new IllegalStateException("SNS is down");
+    }).when(delegate).publish(TABLE, first);
+
+    publisher.publish(TABLE, first);
+    publisher.publish(TABLE, second);
+    publisher.close();
+
+    verify(delegate).publish(TABLE, second);
+  }
+
+  @Test(expected = RejectedExecutionException.class)
+  public void failFast() throws InterruptedException {
+    publisher = new AsynchronousSnsPublisher(delegate, 1, 1, BackPressurePolicy.FAIL_FAST, 10, TimeUnit.SECONDS);
+    blockSender();
+
+    publisher.publish(TABLE, request("queued"));
+    publisher.publish(TABLE, request("rejected"));
+  }
+
+  @Test
+  public void dropOldest() throws InterruptedException {
+    publisher = new AsynchronousSnsPublisher(delegate, 1, 1, BackPressurePolicy.DROP_OLDEST, 10, TimeUnit.SECONDS);
+    blockSender();
+    List<PublishRequest> dropped = request("dropped");
+    List<PublishRequest> kept = request("kept");
+
+    publisher.publish(TABLE, dropped);
+    publisher.publish(TABLE, kept);
+    releaseSender.countDown();
+    publisher.close();
+
+    assertThat(publisher.getDroppedMessages(), is(1L));
+    verify(delegate, never()).publish(TABLE, dropped);
+    verify(delegate).publish(TABLE, kept);
+  }
+
+  @Test
+  public void dropOldestCountsMessages() throws InterruptedException {
+    publisher = new AsynchronousSnsPublisher(delegate, 1, 1, BackPressurePolicy.DROP_OLDEST, 10, TimeUnit.SECONDS);
+    blockSender();
+    List<PublishRequest> dropped = Arrays.asList(request("first", "ADD_PARTITION"), request("second", "ADD_PARTITION"));
+
+    publisher.publish(TABLE, dropped);
+    publisher.publish(TABLE, request("kept"));
+    releaseSender.countDown();
+    publisher.close();
+
+    assertThat(publisher.getDroppedMessages(), is(2L));
+    verify(delegate, never()).publish(TABLE, dropped);
+  }
+
+  @Test
+  public void eventTypes() {
+    List<PublishRequest> requests = Arrays
+        .asList(request("first", "ALTER_TABLE"), request("second", "ADD_PARTITION"), request("third", "ALTER_TABLE"),
+            new PublishRequest("arn:test-arn", "no attributes"));
+
+    assertThat(new ArrayList<>(AsynchronousSnsPublisher.eventTypes(requests)),
+        is(Arrays.asList("ALTER_TABLE", "ADD_PARTITION")));
+  }
+
+  @Test(expected = RejectedExecutionException.class)
+  public void rejectsMessagesAfterClose() {
+    publisher = new AsynchronousSnsPublisher(delegate, 1, 1, BackPressurePolicy.BLOCK, 10, TimeUnit.SECONDS);
+    publisher.close();
+
+    publisher.publish(TABLE, request("rejected"));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void queueCapacitySmallerThanThreads() {
+    new AsynchronousSnsPublisher(delegate, 2, 1, BackPressurePolicy.BLOCK, 10, TimeUnit.SECONDS);
+  }
+
+  private void blockSender() throws InterruptedException {
+    doAnswer(invocation -> {
+      senderBlocked.countDown();
+      releaseSender.await();
+      return null;
+    }).when(delegate).publish(eq("blocker"), anyList());
+    publisher.publish("blocker", request("blocker"));
+    senderBlocked.await();
+  }
+
+  private static List<PublishRequest> request(String message) {
+    return Collections.singletonList(new PublishRequest("arn:test-arn", message));
+  }
+
+  private static PublishRequest request(String message, String eventType) {
+    PublishRequest request = new PublishRequest("arn:test-arn", message);
+    request
+        .addMessageAttributesEntry(MessageAttributeKey.EVENT_TYPE.toString(),
+            new MessageAttributeValue().withDataType("String").withStringValue(eventType));
+    return request;
+  }
+
+}
@@ -0,0 +1,150 @@
+/**
+ * Copyright (C) 2018-2021 Expedia, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.expediagroup.apiary.extensions.events.metastore.listener;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.junit.Assert.assertThat;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.verify;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Captor;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+
+import com.amazonaws.services.sns.model.MessageAttributeValue;
+import com.amazonaws.services.sns.model.PublishRequest;
+
+@RunWith(MockitoJUnitRunner.class)
+public class ClaimCheckSnsPublisherTest {
+
+  private static final String TABLE = "db.table";
+
+  @Rule
+  public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+  @Mock
+  private SnsPublisher delegate;
+  @Captor
+  private ArgumentCaptor<List<PublishRequest>> requestsCaptor;
+
+  private ClaimCheckSnsPublisher publisher;
+
+  @Before
+  public void setup() {
+    PayloadStore payloadStore = new FileSystemPayloadStore(temporaryFolder.getRoot().toPath());
+    publisher = new ClaimCheckSnsPublisher(delegate, payloadStore, 200);
+  }
+
+  @Test
+  public void smallMessagesArePublished() {
+    PublishRequest request = request("{\"eventType\":\"CREATE_TABLE\"}");
+
+    publisher.publish(TABLE, Arrays.asList(request));
+
+    verify(delegate).publish(eq(TABLE), requestsCaptor.capture());
+    assertThat(requestsCaptor.getValue().get(0), is(sameInstance(request)));
+  }
+
+  @Test
+  public void largeMessagesAreStored() throws IOException {
+    StringBuilder message = new StringBuilder("{\"eventType\":\"INSERT\",\"files\":[");
+    for (int i = 0; i < 100; i++) {
+      message.append("\"file:/a/").append(i).append(".txt\",");
+    }
+    message.append("\"file:/a/last.txt\"]}");
+    PublishRequest small = request("{}");
+    PublishRequest large = request(message.toString())
+        .withMessageGroupId(TABLE)
+        .withMessageDeduplicationId("dedup");
+
+    publisher.publish(TABLE, Arrays.asList(small, large));
+
+    verify(delegate).publish(eq(TABLE), requestsCaptor.capture());
+    List<PublishRequest> requests = requestsCaptor.getValue();
+    assertThat(requests.size(), is(2));
+    assertThat(requests.get(0), is(sameInstance(small)));
+    PublishRequest pointer = requests.get(1);
+    assertThat(pointer.getTopicArn(), is(large.getTopicArn()));
+    assertThat(pointer.getMessageAttributes(), is(large.getMessageAttributes()));
+    assertThat(pointer.getMessageGroupId(), is(TABLE));
+    assertThat(pointer.getMessageDeduplicationId(), is("dedup"));
+
+    String location = pointer.getMessage().replaceAll(".*\"payloadLocation\":\"([^\"]*)\".*", "$1");
+    assertThat(pointer.getMessage(), is("{\"protocolVersion\":\"1.0\",\"eventType\":\"INSERT\",\"dbName\":\"db\","
+        + "\"tableName\":\"table\",\"payloadLocation\":\"" + location + "\",\"payloadEncoding\":\"gzip\"}"));
+    assertThat(location.startsWith(temporaryFolder.getRoot().toPath().toUri() + "db.table/"), is(true));
+    assertThat(gunzip(Files.readAllBytes(Paths.get(URI.create(location)))), is(message.toString()));
+  }
+
+  @Test
+  public void createFileSystemPayloadStore() throws IOException {
+    PayloadStore payloadStore = ApiarySnsListener.createPayloadStore(temporaryFolder.getRoot().toURI().toString());
+
+    String location = payloadStore.put("db.table/key", new byte[] { 1, 2 });
+
+    assertThat(Files.readAllBytes(Paths.get(URI.create(location))), is(new byte[] { 1, 2 }));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void unsupportedPayloadStore() {
+    ApiarySnsListener.createPayloadStore("hdfs://namenode/payloads");
+  }
+
+  private static PublishRequest request(String message) {
+    PublishRequest request = new PublishRequest("arn:test-arn", message);
+    request
+        .addMessageAttributesEntry("eventType",
+            new MessageAttributeValue().withDataType("String").withStringValue("INSERT"));
+    request
+        .addMessageAttributesEntry("dbName", new MessageAttributeValue().withDataType("String").withStringValue("db"));
+    request
+        .addMessageAttributesEntry("tableName",
+            new MessageAttributeValue().withDataType("String").withStringValue("table"));
+    return request;
+  }
+
+  private static String gunzip(byte[] bytes) throws IOException {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    try (InputStream in = new GZIPInputStream(new ByteArrayInputStream(bytes))) {
+      byte[] buffer = new byte[4096];
+      int read;
+      while ((read = in.read(buffer)) != -1) {
+        out.write(buffer, 0, read);
+      }
+    }
+    return new String(out.toByteArray(), StandardCharsets.UTF_8);
+  }
+
+}
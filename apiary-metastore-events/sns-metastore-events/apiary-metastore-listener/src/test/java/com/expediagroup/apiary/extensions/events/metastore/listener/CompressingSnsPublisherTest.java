@@ -0,0 +1,134 @@
+/**
+ * Copyright (C) 2018-2021 Expedia, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.expediagroup.apiary.extensions.events.metastore.listener;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.junit.Assert.assertThat;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.verify;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Captor;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+
+import com.amazonaws.services.sns.model.MessageAttributeValue;
+import com.amazonaws.services.sns.model.PublishRequest;
+
+@RunWith(MockitoJUnitRunner.class)
+public class CompressingSnsPublisherTest {
+
+  private static final String TABLE = "db.table";
+
+  @Mock
+  private SnsPublisher delegate;
+  @Captor
+  private ArgumentCaptor<List<PublishRequest>> requestsCaptor;
+
+  private CompressingSnsPublisher publisher;
+
+  @Before
+  public void setup() {
+    publisher = new CompressingSnsPublisher(delegate, MessageCompression.GZIP);
+  }
+
+  @Test
+  public void messageIsCompressed() throws IOException {
+    String message = largeMessage();
+    PublishRequest request = request(message);
+
+    publisher.publish(TABLE, Arrays.asList(request));
+
+    verify(delegate).publish(eq(TABLE), requestsCaptor.capture());
+    PublishRequest compressed = requestsCaptor.getValue().get(0);
+    assertThat(compressed.getMessage().startsWith(CompressingSnsPublisher.ENVELOPE_PREFIX), is(true));
+    assertThat(compressed.getMessage().length() < message.length(), is(true));
+    assertThat(compressed.getTopicArn(), is("arn:test-arn"));
+    assertThat(compressed.getMessageAttributes(), is(request.getMessageAttributes()));
+
+    byte[] envelope = Base64.getDecoder().decode(compressed.getMessage());
+    assertThat(envelope[0], is((byte) 'A'));
+    assertThat(envelope[1], is((byte) 'E'));
+    assertThat(envelope[2], is(CompressingSnsPublisher.VERSION));
+    assertThat(envelope[3], is((byte) 1));
+    assertThat(gunzip(Arrays.copyOfRange(envelope, 4, envelope.length)), is(message));
+  }
+
+  @Test
+  public void messageNotSmallerOnceCompressedIsUnchanged() {
+    PublishRequest request = request("{\"a\":1}");
+
+    publisher.publish(TABLE, Arrays.asList(request));
+
+    verify(delegate).publish(eq(TABLE), requestsCaptor.capture());
+    assertThat(requestsCaptor.getValue().get(0), is(sameInstance(request)));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void noCompression() {
+    new CompressingSnsPublisher(delegate, MessageCompression.NONE);
+  }
+
+  @Test
+  public void close() {
+    publisher.close();
+
+    verify(delegate).close();
+  }
+
+  private static String largeMessage() {
+    StringBuilder message = new StringBuilder("{\"protocolVersion\":\"1.0\",\"partitionKeys\":{");
+    for (int i = 0; i < 100; i++) {
+      message.append("\"column_").append(i).append("\":\"string\",");
+    }
+    return message.append("\"last\":\"string\"}}").toString();
+  }
+
+  private static String gunzip(byte[] bytes) throws IOException {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    try (InputStream in = new GZIPInputStream(new ByteArrayInputStream(bytes))) {
+      byte[] buffer = new byte[1024];
+      int read;
+      while ((read = in.read(buffer)) != -1) {
+        out.write(buffer, 0, read);
+      }
+    }
+    return new String(out.toByteArray(), StandardCharsets.UTF_8);
+  }
+
+  private static PublishRequest request(String message) {
+    PublishRequest request = new PublishRequest("arn:test-arn", message);
+    request
+        .addMessageAttributesEntry("eventType",
+            new MessageAttributeValue().withDataType("String").withStringValue("CREATE_TABLE"));
+    return request;
+  }
+
+}
@@ -0,0 +1,95 @@
+/**
+ * Copyright (C) 2018-2021 Expedia, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.expediagroup.apiary.extensions.events.metastore.listener;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.junit.Test;
+
+public class JsonMessageWriterTest {
+
+  private static final String SPECIAL_CHARACTERS = "quote\" backslash\\ slash/ </script> tab\t newline\n return\r "
+      + "backspace\b formfeed\f nul\u0000 unit separator\u001f delete\u007f accentséè euro€ "
+      + "surrogates😀 line separator ";
+
+  @Test
+  public void sameOutputAsOrgJson() {
+    List<String> values = Arrays.asList("a", null, SPECIAL_CHARACTERS);
+    Map<String, String> map = new LinkedHashMap<>();
+    map.put("key", "value");
+    map.put("null", null);
+    map.put(SPECIAL_CHARACTERS, SPECIAL_CHARACTERS);
+
+    JSONObject json = new JSONObject();
+    json.put("string", SPECIAL_CHARACTERS);
+    json.put("skipped", null);
+    json.put("array", new JSONArray(values));
+    json.put("emptyArray", new JSONArray((List<String>) null));
+    json.put("map", new JSONObject(map));
+
+    String message = JsonMessageWriter
+        .start()
+        .startObject()
+        .writeString("string", SPECIAL_CHARACTERS)
+        .writeString("skipped", null)
+        .writeStringArray("array", values)
+        .writeStringArray("emptyArray", null)
+        .writeStringMap("map", map)
+        .endObject()
+        .message();
+
+    assertThat(message, is(json.toString()));
+  }
+
+  @Test
+  public void bufferIsReused() {
+    JsonMessageWriter first = JsonMessageWriter.start();
+    first.startObject().writeString("key", "first value").endObject();
+    assertThat(first.message(), is("{\"key\":\"first value\"}"));
+
+    JsonMessageWriter second = JsonMessageWriter.start();
+    second.startObject().writeString("key", "second").endObject();
+    assertThat(second.message(), is("{\"key\":\"second\"}"));
+    assertThat(second == first, is(true));
+  }
+
+  @Test
+  public void deleteAndSubstring() {
+    JsonMessageWriter writer = JsonMessageWriter.start().startObject().startArray("values");
+    int start = writer.position();
+    writer.startObject().writeString("value", "<€/").endObject();
+    int firstEnd = writer.position();
+    writer.startObject().writeString("value", "second").endObject();
+
+    assertThat(writer.substring(firstEnd, "]}"), is("{\"values\":[{\"value\":\"<€/\"}]}"));
+    assertThat(writer.utf8Length(start, firstEnd),
+        is("{\"value\":\"<€/\"}".getBytes(StandardCharsets.UTF_8).length));
+
+    writer.delete(start, firstEnd + 1);
+    writer.endArray().endObject();
+    assertThat(writer.message(), is("{\"values\":[{\"value\":\"second\"}]}"));
+  }
+
+}
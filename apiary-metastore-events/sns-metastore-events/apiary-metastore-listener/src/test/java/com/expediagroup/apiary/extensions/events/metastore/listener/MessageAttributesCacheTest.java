@@ -0,0 +1,105 @@
+/**
+ * Copyright (C) 2018-2021 Expedia, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.expediagroup.apiary.extensions.events.metastore.listener;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.not;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.junit.Assert.assertThat;
+
+import java.util.Map;
+
+import org.junit.Test;
+
+import com.amazonaws.services.sns.model.MessageAttributeValue;
+
+public class MessageAttributesCacheTest {
+
+  @Test
+  public void attributes() {
+    Map<String, MessageAttributeValue> attributes = new MessageAttributesCache(10)
+        .get(EventType.ADD_PARTITION, "db", "table");
+
+    assertThat(attributes.size(), is(4));
+    assertThat(attributes.get("eventType").getStringValue(), is("ADD_PARTITION"));
+    assertThat(attributes.get("dbName").getStringValue(), is("db"));
+    assertThat(attributes.get("tableName").getStringValue(), is("table"));
+    assertThat(attributes.get("qualifiedTableName").getStringValue(), is("db.table"));
+    assertThat(attributes.get("qualifiedTableName").getDataType(), is("String"));
+  }
+
+  @Test
+  public void hit() {
+    MessageAttributesCache cache = new MessageAttributesCache(10);
+
+    Map<String, MessageAttributeValue> first = cache.get(EventType.ADD_PARTITION, "db", "table");
+    Map<String, MessageAttributeValue> second = cache.get(EventType.ADD_PARTITION, "db", "table");
+
+    assertThat(second, is(sameInstance(first)));
+    assertThat(cache.getHits(), is(1L));
+    assertThat(cache.getMisses(), is(1L));
+  }
+
+  @Test
+  public void keyedByEventTypeAndTable() {
+    MessageAttributesCache cache = new MessageAttributesCache(10);
+
+    Map<String, MessageAttributeValue> attributes = cache.get(EventType.ADD_PARTITION, "db", "table");
+
+    assertThat(cache.get(EventType.DROP_PARTITION, "db", "table"), is(not(sameInstance(attributes))));
+    assertThat(cache.get(EventType.ADD_PARTITION, "db", "other_table"), is(not(sameInstance(attributes))));
+    assertThat(cache.get(EventType.ADD_PARTITION, "other_db", "table"), is(not(sameInstance(attributes))));
+    assertThat(cache.getMisses(), is(4L));
+    assertThat(cache.size(), is(4));
+  }
+
+  @Test
+  public void evictsLeastRecentlyUsed() {
+    MessageAttributesCache cache = new MessageAttributesCache(2);
+    Map<String, MessageAttributeValue> first = cache.get(EventType.ADD_PARTITION, "db", "first");
+    Map<String, MessageAttributeValue> second = cache.get(EventType.ADD_PARTITION, "db", "second");
+    cache.get(EventType.ADD_PARTITION, "db", "first");
+
+    cache.get(EventType.ADD_PARTITION, "db", "third");
+
+    assertThat(cache.size(), is(2));
+    assertThat(cache.getEvictions(), is(1L));
+    assertThat(cache.get(EventType.ADD_PARTITION, "db", "first"), is(sameInstance(first)));
+    assertThat(cache.get(EventType.ADD_PARTITION, "db", "second"), is(not(sameInstance(second))));
+  }
+
+  @Test
+  public void disabled() {
+    MessageAttributesCache cache = new MessageAttributesCache(0);
+
+    Map<String, MessageAttributeValue> first = cache.get(EventType.ADD_PARTITION, "db", "table");
+    Map<String, MessageAttributeValue> second = cache.get(EventType.ADD_PARTITION, "db", "table");
+
+    assertThat(second, is(not(sameInstance(first))));
+    assertThat(cache.size(), is(0));
+  }
+
+  @Test(expected = UnsupportedOperationException.class)
+  public void attributesAreUnmodifiable() {
+    new MessageAttributesCache(10).get(EventType.ADD_PARTITION, "db", "table").remove("eventType");
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void negativeSize() {
+    new MessageAttributesCache(-1);
+  }
+
+}
@@ -0,0 +1,144 @@
+/**
+ * Copyright (C) 2018-2021 Expedia, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.expediagroup.apiary.extensions.events.metastore.listener;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.hadoop.hive.metastore.api.FieldSchema;
+import org.apache.hadoop.hive.metastore.api.Partition;
+import org.apache.hadoop.hive.metastore.api.StorageDescriptor;
+import org.apache.hadoop.hive.metastore.api.Table;
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Compares the {@code org.json} object trees the listener used to build its messages with the streaming
+ * {@link JsonMessageWriter}, for an ADD_PARTITION message of a table with many partition keys and parameters.
+ * <p>
+ * Run from the IDE or with {@code mvn test-compile exec:java -Dexec.classpathScope=test
+ * -Dexec.mainClass=com.expediagroup.apiary.extensions.events.metastore.listener.MessageSerializationBenchmark}; add
+ * {@code -prof gc} to the JMH options to compare allocation rates.
+ * </p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MessageSerializationBenchmark {
+
+  @Param({ "10", "200", "500" })
+  private int size;
+
+  private Table table;
+  private Partition partition;
+
+  @Setup
+  public void setup() {
+    List<FieldSchema> partitionKeys = new ArrayList<>();
+    List<String> partitionValues = new ArrayList<>();
+    Map<String, String> parameters = new HashMap<>();
+    for (int i = 0; i < size; i++) {
+      partitionKeys.add(new FieldSchema("partition_key_" + i, "string", null));
+      partitionValues.add("partition_value_" + i);
+      parameters.put("table.parameter." + i, "value " + i);
+    }
+    table = new Table();
+    table.setDbName("some_db");
+    table.setTableName("some_table");
+    table.setPartitionKeys(partitionKeys);
+    table.setParameters(parameters);
+    table.setSd(storageDescriptor("s3://table_location"));
+    partition = new Partition();
+    partition.setValues(partitionValues);
+    partition.setSd(storageDescriptor("s3://table_location/partition_location"));
+  }
+
+  @Benchmark
+  public String orgJson() {
+    JSONObject json = new JSONObject();
+    json.put("protocolVersion", ApiarySnsListener.PROTOCOL_VERSION);
+    json.put("eventType", EventType.ADD_PARTITION.toString());
+    json.put("dbName", table.getDbName());
+    json.put("tableName", table.getTableName());
+    json.put("tableLocation", table.getSd().getLocation());
+    JSONObject tableParameters = new JSONObject();
+    table.getParameters().forEach(tableParameters::put);
+    json.put("tableParameters", tableParameters);
+    LinkedHashMap<String, String> partitionKeysMap = new LinkedHashMap<>();
+    for (FieldSchema fieldSchema : table.getPartitionKeys()) {
+      partitionKeysMap.put(fieldSchema.getName(), fieldSchema.getType());
+    }
+    json.put("partitionKeys", new JSONObject(partitionKeysMap));
+    json.put("partitionValues", new JSONArray(partition.getValues()));
+    json.put("partitionLocation", partition.getSd().getLocation());
+    return json.toString();
+  }
+
+  @Benchmark
+  public String jsonMessageWriter() {
+    JsonMessageWriter writer = JsonMessageWriter.start();
+    writer.startObject();
+    writer.writeString("protocolVersion", ApiarySnsListener.PROTOCOL_VERSION);
+    writer.writeString("eventType", EventType.ADD_PARTITION.toString());
+    writer.writeString("dbName", table.getDbName());
+    writer.writeString("tableName", table.getTableName());
+    writer.writeString("tableLocation", table.getSd().getLocation());
+    writer.startObject("tableParameters");
+    table.getParameters().forEach(writer::writeString);
+    writer.endObject();
+    writer.startObject("partitionKeys");
+    for (FieldSchema fieldSchema : table.getPartitionKeys()) {
+      writer.writeNullableString(fieldSchema.getName(), fieldSchema.getType());
+    }
+    writer.endObject();
+    writer.writeStringArray("partitionValues", partition.getValues());
+    writer.writeString("partitionLocation", partition.getSd().getLocation());
+    writer.endObject();
+    return writer.message();
+  }
+
+  private static StorageDescriptor storageDescriptor(String location) {
+    StorageDescriptor sd = new StorageDescriptor();
+    sd.setLocation(location);
+    return sd;
+  }
+
+  public static void main(String[] args) throws RunnerException {
+    new Runner(new OptionsBuilder().include(MessageSerializationBenchmark.class.getSimpleName()).build()).run();
+  }
+
+}
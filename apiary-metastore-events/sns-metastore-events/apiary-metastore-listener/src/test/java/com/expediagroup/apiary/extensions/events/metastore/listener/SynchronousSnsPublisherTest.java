@@ -0,0 +1,206 @@
+/**
+ * Copyright (C) 2018-2021 Expedia, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.expediagroup.apiary.extensions.events.metastore.listener;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Captor;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+
+import com.amazonaws.SdkClientException;
+import com.amazonaws.services.sns.AmazonSNS;
+import com.amazonaws.services.sns.model.BatchResultErrorEntry;
+import com.amazonaws.services.sns.model.MessageAttributeValue;
+import com.amazonaws.services.sns.model.PublishBatchRequest;
+import com.amazonaws.services.sns.model.PublishBatchRequestEntry;
+import com.amazonaws.services.sns.model.PublishBatchResult;
+import com.amazonaws.services.sns.model.PublishBatchResultEntry;
+import com.amazonaws.services.sns.model.PublishRequest;
+import com.amazonaws.services.sns.model.PublishResult;
+
+@RunWith(MockitoJUnitRunner.class)
+public class SynchronousSnsPublisherTest {
+
+  private static final String TOPIC_ARN = "arn:test-arn";
+  private static final String TABLE = "db.table";
+
+  @Mock
+  private AmazonSNS snsClient;
+  @Captor
+  private ArgumentCaptor<PublishBatchRequest> batchCaptor;
+
+  private SynchronousSnsPublisher publisher;
+
+  @Before
+  public void setup() {
+    publisher = new SynchronousSnsPublisher(snsClient, 2, 1L);
+  }
+
+  @Test
+  public void singleMessageIsNotBatched() {
+    when(snsClient.publish(any(PublishRequest.class))).thenReturn(new PublishResult().withMessageId("id"));
+    PublishRequest request = request("message");
+
+    publisher.publish(TABLE, Collections.singletonList(request));
+
+    verify(snsClient).publish(request);
+    verify(snsClient, never()).publishBatch(any(PublishBatchRequest.class));
+  }
+
+  @Test
+  public void batchesByNumberOfEntries() {
+    when(snsClient.publishBatch(any(PublishBatchRequest.class)))
+        .thenAnswer(invocation -> succeedAll(invocation.getArgument(0)));
+
+    publisher.publish(TABLE, requests(23, "message"));
+
+    verify(snsClient, times(3)).publishBatch(batchCaptor.capture());
+    List<PublishBatchRequest> batches = batchCaptor.getAllValues();
+    assertThat(batches.get(0).getPublishBatchRequestEntries().size(), is(10));
+    assertThat(batches.get(1).getPublishBatchRequestEntries().size(), is(10));
+    assertThat(batches.get(2).getPublishBatchRequestEntries().size(), is(3));
+    PublishBatchRequestEntry entry = batches.get(0).getPublishBatchRequestEntries().get(0);
+    assertThat(batches.get(0).getTopicArn(), is(TOPIC_ARN));
+    assertThat(entry.getMessage(), is("message"));
+    assertThat(entry.getMessageAttributes().get("eventType").getStringValue(), is("ADD_PARTITION"));
+  }
+
+  @Test
+  public void batchesBySize() {
+    when(snsClient.publishBatch(any(PublishBatchRequest.class)))
+        .thenAnswer(invocation -> succeedAll(invocation.getArgument(0)));
+    StringBuilder message = new StringBuilder();
+    for (int i = 0; i < 100 * 1024; i++) {
+      message.append('x');
+    }
+
+    when(snsClient.publish(any(PublishRequest.class))).thenReturn(new PublishResult().withMessageId("id"));
+
+    publisher.publish(TABLE, requests(5, message.toString()));
+
+    verify(snsClient, times(2)).publishBatch(batchCaptor.capture());
+    List<PublishBatchRequest> batches = batchCaptor.getAllValues();
+    assertThat(batches.get(0).getPublishBatchRequestEntries().size(), is(2));
+    assertThat(batches.get(1).getPublishBatchRequestEntries().size(), is(2));
+    // the remaining message is sent on its own
+    verify(snsClient).publish(any(PublishRequest.class));
+  }
+
+  @Test
+  public void batchEntriesKeepFifoFields() {
+    when(snsClient.publishBatch(any(PublishBatchRequest.class)))
+        .thenAnswer(invocation -> succeedAll(invocation.getArgument(0)));
+    List<PublishRequest> requests = requests(2, "message");
+    for (int i = 0; i < requests.size(); i++) {
+      requests.get(i).withMessageGroupId(TABLE).withMessageDeduplicationId("dedup" + i);
+    }
+
+    publisher.publish(TABLE, requests);
+
+    verify(snsClient).publishBatch(batchCaptor.capture());
+    List<PublishBatchRequestEntry> entries = batchCaptor.getValue().getPublishBatchRequestEntries();
+    assertThat(entries.get(0).getMessageGroupId(), is(TABLE));
+    assertThat(entries.get(0).getMessageDeduplicationId(), is("dedup0"));
+    assertThat(entries.get(1).getMessageGroupId(), is(TABLE));
+    assertThat(entries.get(1).getMessageDeduplicationId(), is("dedup1"));
+  }
+
+  @Test
+  public void retriesFailedEntries() {
+    when(snsClient.publishBatch(any(PublishBatchRequest.class)))
+        .thenReturn(new PublishBatchResult()
+            .withSuccessful(new PublishBatchResultEntry().withId("0").withMessageId("m0"))
+            .withFailed(new BatchResultErrorEntry().withId("1").withCode("InternalError").withSenderFault(false)))
+        .thenReturn(new PublishBatchResult()
+            .withSuccessful(new PublishBatchResultEntry().withId("1").withMessageId("m1")));
+
+    publisher.publish(TABLE, requests(2, "message"));
+
+    verify(snsClient, times(2)).publishBatch(batchCaptor.capture());
+    PublishBatchRequest retry = batchCaptor.getAllValues().get(1);
+    assertThat(retry.getPublishBatchRequestEntries().size(), is(1));
+    assertThat(retry.getPublishBatchRequestEntries().get(0).getId(), is("1"));
+  }
+
+  @Test
+  public void givesUpAfterMaxRetries() {
+    when(snsClient.publishBatch(any(PublishBatchRequest.class)))
+        .thenReturn(new PublishBatchResult()
+            .withSuccessful(new PublishBatchResultEntry().withId("0").withMessageId("m0"))
+            .withFailed(new BatchResultErrorEntry().withId("1").withCode("InternalError").withSenderFault(false)));
+    try {
+      publisher.publish(TABLE, requests(2, "message"));
+      fail("Expected SdkClientException");
+    } catch (SdkClientException e) {
+      verify(snsClient, times(3)).publishBatch(any(PublishBatchRequest.class));
+    }
+  }
+
+  @Test
+  public void senderFaultIsNotRetried() {
+    when(snsClient.publishBatch(any(PublishBatchRequest.class)))
+        .thenReturn(new PublishBatchResult()
+            .withSuccessful(new PublishBatchResultEntry().withId("0").withMessageId("m0"))
+            .withFailed(new BatchResultErrorEntry().withId("1").withCode("InvalidParameter").withSenderFault(true)));
+    try {
+      publisher.publish(TABLE, requests(2, "message"));
+      fail("Expected SdkClientException");
+    } catch (SdkClientException e) {
+      verify(snsClient, times(1)).publishBatch(any(PublishBatchRequest.class));
+    }
+  }
+
+  private static PublishBatchResult succeedAll(PublishBatchRequest request) {
+    PublishBatchResult result = new PublishBatchResult();
+    for (PublishBatchRequestEntry entry : request.getPublishBatchRequestEntries()) {
+      result.withSuccessful(new PublishBatchResultEntry().withId(entry.getId()).withMessageId("m" + entry.getId()));
+    }
+    return result;
+  }
+
+  private static List<PublishRequest> requests(int count, String message) {
+    List<PublishRequest> requests = new ArrayList<>();
+    for (int i = 0; i < count; i++) {
+      requests.add(request(message));
+    }
+    return requests;
+  }
+
+  private static PublishRequest request(String message) {
+    PublishRequest request = new PublishRequest(TOPIC_ARN, message);
+    request
+        .addMessageAttributesEntry("eventType",
+            new MessageAttributeValue().withDataType("String").withStringValue("ADD_PARTITION"));
+    return request;
+  }
+
+}
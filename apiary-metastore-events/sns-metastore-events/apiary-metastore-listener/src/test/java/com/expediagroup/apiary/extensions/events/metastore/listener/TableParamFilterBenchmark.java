@@ -0,0 +1,97 @@
+/**
+ * Copyright (C) 2018-2021 Expedia, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.expediagroup.apiary.extensions.events.metastore.listener;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Compares matching every table parameter key against the TABLE_PARAM_FILTER regular expression, as the listener used
+ * to do, with {@link TableParamFilter} for tables with many parameters such as the statistics written by Spark.
+ * <p>
+ * {@code my_var.*} is matched as a prefix and {@code (?i)my_var_.*} goes through the regular expression with cached
+ * results.
+ * </p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TableParamFilterBenchmark {
+
+  @Param({ "my_var.*", "(?i)my_var_.*" })
+  private String expression;
+
+  @Param({ "20", "500" })
+  private int size;
+
+  private Pattern pattern;
+  private TableParamFilter filter;
+  private Map<String, String> parameters;
+
+  @Setup
+  public void setup() {
+    pattern = Pattern.compile(expression);
+    filter = TableParamFilter.compile(expression);
+    parameters = new HashMap<>();
+    for (int i = 0; i < size; i++) {
+      parameters.put("spark.sql.statistics.colStats.column_" + i + ".distinctCount", Integer.toString(i));
+    }
+    parameters.put("my_var_one", "1");
+    parameters.put("my_var_two", "2");
+  }
+
+  @Benchmark
+  public Map<String, String> regex() {
+    Map<String, String> filteredParams = new HashMap<>();
+    for (Entry<String, String> entry : parameters.entrySet()) {
+      if (pattern.matcher(entry.getKey()).matches()) {
+        filteredParams.put(entry.getKey(), entry.getValue());
+      }
+    }
+    return filteredParams;
+  }
+
+  @Benchmark
+  public Map<String, String> tableParamFilter() {
+    return filter.filter(parameters);
+  }
+
+  public static void main(String[] args) throws RunnerException {
+    new Runner(new OptionsBuilder().include(TableParamFilterBenchmark.class.getSimpleName()).build()).run();
+  }
+
+}
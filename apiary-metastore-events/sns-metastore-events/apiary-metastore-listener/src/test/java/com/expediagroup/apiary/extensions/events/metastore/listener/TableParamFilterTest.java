@@ -0,0 +1,86 @@
+/**
+ * Copyright (C) 2018-2021 Expedia, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.expediagroup.apiary.extensions.events.metastore.listener;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+import org.junit.Test;
+
+public class TableParamFilterTest {
+
+  private static final List<String> KEYS = Arrays
+      .asList("", "a", "ab", "abc", "b", "ba", "a.b", "axb", "a|b", "a.*", "my_var_one", "MY_VAR_TWO",
+          "spark.sql.statistics.numRows", "spark.sql.sources.schema.part.0", "numRows", "totalSize", "(a)");
+
+  @Test
+  public void sameResultAsRegex() {
+    List<String> expressions = Arrays
+        .asList("", "a", "a.*", ".*", "a|b", "a.*|b", "a|b.*|", "a\\.b", "a\\|b", "a\\.\\*", "a.b", "a.*b", "ab?",
+            "MY_VAR.*", "(?i)my_var.*", "spark\\.sql\\..*", "numRows|totalSize", "[ab]", "\\(a\\)", "\\Qa.*\\E",
+            "\\w+", "  ");
+    for (String expression : expressions) {
+      TableParamFilter filter = TableParamFilter.compile(expression);
+      Pattern pattern = Pattern.compile(expression);
+      for (String key : KEYS) {
+        assertThat(expression + " / " + key, filter.matches(key), is(pattern.matcher(key).matches()));
+        // second lookup goes through the cache for regular expressions
+        assertThat(expression + " / " + key, filter.matches(key), is(pattern.matcher(key).matches()));
+      }
+    }
+  }
+
+  @Test
+  public void filter() {
+    Map<String, String> parameters = new HashMap<>();
+    parameters.put("my_var_one", "1");
+    parameters.put("my_var_two", "2");
+    parameters.put("other", "3");
+
+    Map<String, String> filtered = TableParamFilter.compile("my_var.*").filter(parameters);
+
+    assertThat(filtered.size(), is(2));
+    assertThat(filtered.get("my_var_one"), is("1"));
+    assertThat(filtered.get("my_var_two"), is("2"));
+  }
+
+  @Test
+  public void filterNullParameters() {
+    assertThat(TableParamFilter.compile("my_var.*").filter(null).isEmpty(), is(true));
+  }
+
+  @Test
+  public void boundedRegexCache() {
+    TableParamFilter filter = TableParamFilter.compile("key_[0-9]+", 2);
+    for (int i = 0; i < 10; i++) {
+      assertThat(filter.matches("key_" + i), is(true));
+      assertThat(filter.matches("other_" + i), is(false));
+    }
+  }
+
+  @Test(expected = PatternSyntaxException.class)
+  public void invalidExpression() {
+    TableParamFilter.compile("[");
+  }
+
+}
@@ -15,6 +15,7 @@
  */
 package com.expediagroup.apiary.extensions.events.receiver.common.event;
 
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 
@@ -28,6 +29,7 @@ public class DropPartitionEvent extends ListenerEvent {
   private Map<String, String> partitionKeys;
   private List<String> partitionValues;
   private String partitionLocation;
+  private List<PartitionInfo> partitions;
 
   DropPartitionEvent() {}
 
@@ -60,4 +62,19 @@ public class DropPartitionEvent extends ListenerEvent {
   public String getPartitionLocation() {
     return partitionLocation;
   }
+
+  /**
+   * @return All the partitions of the event: the content of the {@code partitions} array for messages of the aggregated
+   *         protocol (version 2.0), a single partition made of {@code partitionValues} and {@code partitionLocation}
+   *         otherwise.
+   */
+  public List<PartitionInfo> getPartitions() {
+    if (partitions != null) {
+      return partitions;
+    }
+    if (partitionValues == null) {
+      return Collections.emptyList();
+    }
+    return Collections.singletonList(new PartitionInfo(partitionValues, partitionLocation));
+  }
 }
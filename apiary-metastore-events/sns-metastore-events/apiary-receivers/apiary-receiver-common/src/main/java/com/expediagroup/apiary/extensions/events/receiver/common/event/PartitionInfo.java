@@ -0,0 +1,51 @@
+/**
+ * Copyright (C) 2018-2021 Expedia, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.expediagroup.apiary.extensions.events.receiver.common.event;
+
+import java.io.Serializable;
+import java.util.List;
+
+import org.apache.commons.lang3.builder.ReflectionToStringBuilder;
+
+/**
+ * Values and location of one of the partitions of an {@link AddPartitionEvent} or a {@link DropPartitionEvent}.
+ */
+public class PartitionInfo implements Serializable {
+  private static final long serialVersionUID = 1L;
+
+  private List<String> values;
+  private String location;
+
+  PartitionInfo() {}
+
+  PartitionInfo(List<String> values, String location) {
+    this.values = values;
+    this.location = location;
+  }
+
+  public List<String> getValues() {
+    return values;
+  }
+
+  public String getLocation() {
+    return location;
+  }
+
+  @Override
+  public String toString() {
+    return ReflectionToStringBuilder.toString(this);
+  }
+}
@@ -0,0 +1,104 @@
+/**
+ * Copyright (C) 2018-2021 Expedia, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.expediagroup.apiary.extensions.events.receiver.common.messaging;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.GZIPInputStream;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import com.expediagroup.apiary.extensions.events.receiver.common.error.SerDeException;
+import com.expediagroup.apiary.extensions.events.receiver.common.event.ListenerEvent;
+
+/**
+ * Resolves the messages the listener published in place of payloads too large for SNS: the payload is fetched from
+ * its {@code payloadLocation}, inflated and handed to the delegate deserializer. Other messages are passed through.
+ */
+public class ClaimCheckMetaStoreEventDeserializer implements MetaStoreEventDeserializer {
+  private static final Logger log = LoggerFactory.getLogger(ClaimCheckMetaStoreEventDeserializer.class);
+
+  static final String PAYLOAD_LOCATION = "payloadLocation";
+  static final String PAYLOAD_ENCODING = "payloadEncoding";
+  static final String GZIP_ENCODING = "gzip";
+
+  private final MetaStoreEventDeserializer delegateSerDe;
+  private final ObjectMapper mapper;
+  private final PayloadStore payloadStore;
+
+  public ClaimCheckMetaStoreEventDeserializer(
+      MetaStoreEventDeserializer delegateSerDe,
+      ObjectMapper mapper,
+      PayloadStore payloadStore) {
+    this.delegateSerDe = delegateSerDe;
+    this.mapper = mapper;
+    this.payloadStore = payloadStore;
+  }
+
+  @Override
+  public <T extends ListenerEvent> T unmarshal(String payload) throws SerDeException {
+    // cheap check to avoid parsing every message twice, compressed envelopes are never pointers
+    if (payload.startsWith(CompressedMetaStoreEventDeserializer.ENVELOPE_PREFIX)
+        || !payload.contains(PAYLOAD_LOCATION)) {
+      return delegateSerDe.unmarshal(payload);
+    }
+    JsonNode location;
+    JsonNode encoding;
+    try {
+      JsonNode message = mapper.readTree(payload);
+      location = message.get(PAYLOAD_LOCATION);
+      encoding = message.get(PAYLOAD_ENCODING);
+    } catch (IOException e) {
+      throw new SerDeException("Unable to unmarshal event from payload", e);
+    }
+    if (location == null || !location.isTextual()) {
+      return delegateSerDe.unmarshal(payload);
+    }
+    log.debug("Fetching payload from {}", location.asText());
+    try {
+      byte[] storedPayload = payloadStore.get(location.asText());
+      return delegateSerDe.unmarshal(decode(storedPayload, encoding == null ? null : encoding.asText()));
+    } catch (IOException e) {
+      throw new SerDeException("Unable to read payload from " + location.asText(), e);
+    }
+  }
+
+  private static String decode(byte[] storedPayload, String encoding) throws IOException {
+    if (encoding == null) {
+      return new String(storedPayload, StandardCharsets.UTF_8);
+    }
+    if (!GZIP_ENCODING.equals(encoding)) {
+      throw new IOException("Unsupported payload encoding: " + encoding);
+    }
+    ByteArrayOutputStream out = new ByteArrayOutputStream(storedPayload.length * 4);
+    try (InputStream in = new GZIPInputStream(new ByteArrayInputStream(storedPayload))) {
+      byte[] buffer = new byte[8192];
+      int read;
+      while ((read = in.read(buffer)) != -1) {
+        out.write(buffer, 0, read);
+      }
+    }
+    return new String(out.toByteArray(), StandardCharsets.UTF_8);
+  }
+
+}
@@ -0,0 +1,84 @@
+/**
+ * Copyright (C) 2018-2021 Expedia, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.expediagroup.apiary.extensions.events.receiver.common.messaging;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.zip.GZIPInputStream;
+
+import com.expediagroup.apiary.extensions.events.receiver.common.error.SerDeException;
+import com.expediagroup.apiary.extensions.events.receiver.common.event.ListenerEvent;
+
+/**
+ * Inflates the compressed envelopes published by a listener configured with {@code MESSAGE_COMPRESSION} and hands the
+ * JSON message to the delegate deserializer. Other messages are passed through.
+ * <p>
+ * An envelope is the Base64 encoding of the magic bytes {@code AE}, the envelope version, the compression identifier
+ * and the compressed message.
+ * </p>
+ */
+public class CompressedMetaStoreEventDeserializer implements MetaStoreEventDeserializer {
+
+  static final String ENVELOPE_PREFIX = "QUUB";
+  static final int HEADER_LENGTH = 4;
+  static final byte GZIP = 1;
+
+  private final MetaStoreEventDeserializer delegateSerDe;
+
+  public CompressedMetaStoreEventDeserializer(MetaStoreEventDeserializer delegateSerDe) {
+    this.delegateSerDe = delegateSerDe;
+  }
+
+  @Override
+  public <T extends ListenerEvent> T unmarshal(String payload) throws SerDeException {
+    if (!payload.startsWith(ENVELOPE_PREFIX)) {
+      return delegateSerDe.unmarshal(payload);
+    }
+    return delegateSerDe.unmarshal(inflate(payload));
+  }
+
+  private static String inflate(String payload) throws SerDeException {
+    byte[] envelope;
+    try {
+      envelope = Base64.getDecoder().decode(payload);
+    } catch (IllegalArgumentException e) {
+      throw new SerDeException("Unable to decode compressed payload", e);
+    }
+    if (envelope.length < HEADER_LENGTH) {
+      throw new SerDeException("Compressed payload is truncated");
+    }
+    if (envelope[HEADER_LENGTH - 1] != GZIP) {
+      throw new SerDeException("Unsupported payload compression: " + envelope[HEADER_LENGTH - 1]);
+    }
+    ByteArrayOutputStream out = new ByteArrayOutputStream(envelope.length * 4);
+    try (InputStream in = new GZIPInputStream(
+        new ByteArrayInputStream(envelope, HEADER_LENGTH, envelope.length - HEADER_LENGTH))) {
+      byte[] buffer = new byte[8192];
+      int read;
+      while ((read = in.read(buffer)) != -1) {
+        out.write(buffer, 0, read);
+      }
+    } catch (IOException e) {
+      throw new SerDeException("Unable to inflate compressed payload", e);
+    }
+    return new String(out.toByteArray(), StandardCharsets.UTF_8);
+  }
+
+}
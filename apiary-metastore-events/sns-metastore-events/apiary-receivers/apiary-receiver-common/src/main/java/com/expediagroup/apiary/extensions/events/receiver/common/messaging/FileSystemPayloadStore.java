@@ -0,0 +1,37 @@
+/**
+ * Copyright (C) 2018-2021 Expedia, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.expediagroup.apiary.extensions.events.receiver.common.messaging;
+
+import java.io.IOException;
+import java.net.URI;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+
+/**
+ * Reads payloads from {@code file://} locations.
+ */
+public class FileSystemPayloadStore implements PayloadStore {
+
+  @Override
+  public byte[] get(String location) throws IOException {
+    URI uri = URI.create(location);
+    if (!"file".equals(uri.getScheme())) {
+      throw new IOException("Unsupported payload location: " + location);
+    }
+    return Files.readAllBytes(Paths.get(uri));
+  }
+
+}
@@ -15,10 +15,15 @@
  */
 package com.expediagroup.apiary.extensions.events.receiver.common.messaging;
 
+import java.util.EnumMap;
+import java.util.Map;
+
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.fasterxml.jackson.core.JsonParser;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
 
 import com.expediagroup.apiary.extensions.events.receiver.common.error.SerDeException;
 import com.expediagroup.apiary.extensions.events.receiver.common.event.EventType;
@@ -28,53 +33,27 @@ public class JsonMetaStoreEventDeserializer implements MetaStoreEventDeserialize
   private static final Logger log = LoggerFactory.getLogger(JsonMetaStoreEventDeserializer.class);
 
   private final ObjectMapper mapper;
+  private final Map<EventType, ObjectReader> readers = new EnumMap<>(EventType.class);
 
   public JsonMetaStoreEventDeserializer(ObjectMapper mapper) {
     this.mapper = mapper;
+    for (EventType eventType : EventType.values()) {
+      readers.put(eventType, mapper.readerFor(eventType.eventClass()));
+    }
   }
 
   @Override
   public <T extends ListenerEvent> T unmarshal(String payload) throws SerDeException {
     try {
       log.debug("Marshalled event is: {}", payload);
-
-      // As we don't know the type in advance we can only deserialize the event twice:
-      // 1. Create a dummy object just to find out the type
-      T genericEvent = mapper.readerFor(HelperSerializableListenerEvent.class).readValue(payload);
-      log.debug("Unmarshal event of type: {}", genericEvent.getEventType());
-      // 2. Deserialize the actual object
-      T event = mapper.readerFor(genericEvent.getEventType().eventClass()).readValue(payload);
+      T event;
+      try (JsonParser parser = mapper.getFactory().createParser(payload)) {
+        event = PolymorphicEventReader.read(parser, eventType -> readers.get(EventType.valueOf(eventType)));
+      }
       log.debug("Unmarshalled event is: {}", event);
       return event;
     } catch (Exception e) {
       throw new SerDeException("Unable to unmarshal event from payload", e);
     }
   }
-
-  static class HelperSerializableListenerEvent extends ListenerEvent {
-    private static final long serialVersionUID = 1L;
-
-    private EventType eventType;
-
-    HelperSerializableListenerEvent() {}
-
-    @Override
-    public EventType getEventType() {
-      return eventType;
-    }
-
-    public void setEventType(EventType eventType) {
-      this.eventType = eventType;
-    }
-
-    @Override
-    public String getDbName() {
-      return null;
-    }
-
-    @Override
-    public String getTableName() {
-      return null;
-    }
-  }
 }
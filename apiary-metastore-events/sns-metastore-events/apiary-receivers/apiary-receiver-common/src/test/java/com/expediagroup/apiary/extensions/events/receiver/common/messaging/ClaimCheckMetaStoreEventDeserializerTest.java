@@ -0,0 +1,117 @@
+/**
+ * Copyright (C) 2018-2021 Expedia, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.expediagroup.apiary.extensions.events.receiver.common.messaging;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyZeroInteractions;
+import static org.mockito.Mockito.when;
+
+import static com.fasterxml.jackson.databind.DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.util.zip.GZIPOutputStream;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import com.expediagroup.apiary.extensions.events.receiver.common.error.SerDeException;
+import com.expediagroup.apiary.extensions.events.receiver.common.event.InsertTableEvent;
+import com.expediagroup.apiary.extensions.events.receiver.common.event.ListenerEvent;
+
+@RunWith(MockitoJUnitRunner.class)
+public class ClaimCheckMetaStoreEventDeserializerTest {
+  private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper().configure(FAIL_ON_UNKNOWN_PROPERTIES, false);
+  private static final String INSERT_EVENT = "{\"protocolVersion\":\"1.0\",\"eventType\":\"INSERT\","
+      + "\"dbName\":\"some_db\",\"tableName\":\"some_table\",\"files\":[\"file:/a/b.txt\",\"file:/a/c.txt\"],"
+      + "\"fileChecksums\":[\"123\",\"456\"],\"partitionKeyValues\":{\"load_date\":\"2013-03-24\"}}";
+
+  @Rule
+  public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+  private @Mock MetaStoreEventDeserializer delegateSerDe;
+  private @Mock PayloadStore payloadStore;
+  private @Mock ListenerEvent event;
+
+  @Test
+  public void regularMessage() {
+    when(delegateSerDe.unmarshal(INSERT_EVENT)).thenReturn(event);
+    ClaimCheckMetaStoreEventDeserializer deserializer = new ClaimCheckMetaStoreEventDeserializer(delegateSerDe,
+        OBJECT_MAPPER, payloadStore);
+
+    ListenerEvent result = deserializer.unmarshal(INSERT_EVENT);
+
+    assertThat(result).isSameAs(event);
+    verifyZeroInteractions(payloadStore);
+  }
+
+  @Test
+  public void storedPayload() throws IOException {
+    File payloadFile = temporaryFolder.newFile("payload.json.gz");
+    try (OutputStream out = new GZIPOutputStream(Files.newOutputStream(payloadFile.toPath()))) {
+      out.write(INSERT_EVENT.getBytes(UTF_8));
+    }
+    ClaimCheckMetaStoreEventDeserializer deserializer = new ClaimCheckMetaStoreEventDeserializer(
+        new JsonMetaStoreEventDeserializer(OBJECT_MAPPER), OBJECT_MAPPER, new FileSystemPayloadStore());
+
+    InsertTableEvent result = deserializer.unmarshal(pointer(payloadFile.toURI().toString()));
+
+    assertThat(result.getDbName()).isEqualTo("some_db");
+    assertThat(result.getTableName()).isEqualTo("some_table");
+    assertThat(result.getFiles()).containsExactly("file:/a/b.txt", "file:/a/c.txt");
+    assertThat(result.getFileChecksums()).containsExactly("123", "456");
+  }
+
+  @Test(expected = SerDeException.class)
+  public void unreadablePayload() throws IOException {
+    when(payloadStore.get(anyString())).thenThrow(new IOException("not found"));
+    ClaimCheckMetaStoreEventDeserializer deserializer = new ClaimCheckMetaStoreEventDeserializer(delegateSerDe,
+        OBJECT_MAPPER, payloadStore);
+
+    deserializer.unmarshal(pointer("s3://bucket/missing.json.gz"));
+  }
+
+  @Test
+  public void payloadLocationInTableParameter() {
+    String message = "{\"protocolVersion\":\"1.0\",\"eventType\":\"CREATE_TABLE\",\"dbName\":\"some_db\","
+        + "\"tableName\":\"some_table\",\"tableParameters\":{\"payloadLocation\":\"s3://bucket/key\"}}";
+    when(delegateSerDe.unmarshal(message)).thenReturn(event);
+    ClaimCheckMetaStoreEventDeserializer deserializer = new ClaimCheckMetaStoreEventDeserializer(delegateSerDe,
+        OBJECT_MAPPER, payloadStore);
+
+    assertThat((ListenerEvent) deserializer.unmarshal(message)).isSameAs(event);
+    verify(delegateSerDe).unmarshal(message);
+    verifyZeroInteractions(payloadStore);
+  }
+
+  private static String pointer(String location) {
+    return "{\"protocolVersion\":\"1.0\",\"eventType\":\"INSERT\",\"dbName\":\"some_db\",\"tableName\":\"some_table\","
+        + "\"payloadLocation\":\"" + location + "\",\"payloadEncoding\":\"gzip\"}";
+  }
+
+}
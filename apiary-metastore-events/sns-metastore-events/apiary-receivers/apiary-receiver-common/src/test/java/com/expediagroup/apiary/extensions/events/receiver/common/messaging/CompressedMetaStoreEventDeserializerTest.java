@@ -0,0 +1,121 @@
+/**
+ * Copyright (C) 2018-2021 Expedia, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.expediagroup.apiary.extensions.events.receiver.common.messaging;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.verifyZeroInteractions;
+import static org.mockito.Mockito.when;
+
+import static com.fasterxml.jackson.databind.DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Base64;
+import java.util.zip.GZIPOutputStream;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import com.expediagroup.apiary.extensions.events.receiver.common.error.SerDeException;
+import com.expediagroup.apiary.extensions.events.receiver.common.event.InsertTableEvent;
+import com.expediagroup.apiary.extensions.events.receiver.common.event.ListenerEvent;
+
+@RunWith(MockitoJUnitRunner.class)
+public class CompressedMetaStoreEventDeserializerTest {
+  private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper().configure(FAIL_ON_UNKNOWN_PROPERTIES, false);
+  private static final String INSERT_EVENT = "{\"protocolVersion\":\"1.0\",\"eventType\":\"INSERT\","
+      + "\"dbName\":\"some_db\",\"tableName\":\"some_table\",\"files\":[\"file:/a/b.txt\",\"file:/a/c.txt\"],"
+      + "\"fileChecksums\":[\"123\",\"456\"],\"partitionKeyValues\":{\"load_date\":\"2013-03-24\"}}";
+
+  private @Mock MetaStoreEventDeserializer delegateSerDe;
+  private @Mock ListenerEvent event;
+
+  @Test
+  public void regularMessage() {
+    when(delegateSerDe.unmarshal(INSERT_EVENT)).thenReturn(event);
+    CompressedMetaStoreEventDeserializer deserializer = new CompressedMetaStoreEventDeserializer(delegateSerDe);
+
+    ListenerEvent result = deserializer.unmarshal(INSERT_EVENT);
+
+    assertThat(result).isSameAs(event);
+  }
+
+  @Test
+  public void compressedMessage() throws IOException {
+    CompressedMetaStoreEventDeserializer deserializer = new CompressedMetaStoreEventDeserializer(
+        new JsonMetaStoreEventDeserializer(OBJECT_MAPPER));
+
+    InsertTableEvent result = deserializer.unmarshal(envelope(1, INSERT_EVENT));
+
+    assertThat(result.getDbName()).isEqualTo("some_db");
+    assertThat(result.getTableName()).isEqualTo("some_table");
+    assertThat(result.getFiles()).containsExactly("file:/a/b.txt", "file:/a/c.txt");
+    assertThat(result.getFileChecksums()).containsExactly("123", "456");
+  }
+
+  @Test
+  public void compressedStoredPayload() throws IOException {
+    when(delegateSerDe.unmarshal(INSERT_EVENT)).thenReturn(event);
+    ClaimCheckMetaStoreEventDeserializer deserializer = new ClaimCheckMetaStoreEventDeserializer(
+        new CompressedMetaStoreEventDeserializer(delegateSerDe), OBJECT_MAPPER, location -> {
+          ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+          try (OutputStream out = new GZIPOutputStream(bytes)) {
+            out.write(envelope(1, INSERT_EVENT).getBytes(UTF_8));
+          }
+          return bytes.toByteArray();
+        });
+
+    ListenerEvent result = deserializer.unmarshal("{\"protocolVersion\":\"1.0\",\"eventType\":\"INSERT\","
+        + "\"payloadLocation\":\"s3://bucket/key.json.gz\",\"payloadEncoding\":\"gzip\"}");
+
+    assertThat(result).isSameAs(event);
+  }
+
+  @Test(expected = SerDeException.class)
+  public void unsupportedCompression() throws IOException {
+    CompressedMetaStoreEventDeserializer deserializer = new CompressedMetaStoreEventDeserializer(delegateSerDe);
+
+    try {
+      deserializer.unmarshal(envelope(9, INSERT_EVENT));
+    } finally {
+      verifyZeroInteractions(delegateSerDe);
+    }
+  }
+
+  @Test(expected = SerDeException.class)
+  public void corruptedPayload() {
+    CompressedMetaStoreEventDeserializer deserializer = new CompressedMetaStoreEventDeserializer(delegateSerDe);
+
+    deserializer.unmarshal(CompressedMetaStoreEventDeserializer.ENVELOPE_PREFIX + "AQAAAA==");
+  }
+
+  private static String envelope(int compression, String message) throws IOException {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    bytes.write(new byte[] { 'A', 'E', 1, (byte) compression });
+    try (OutputStream out = new GZIPOutputStream(bytes)) {
+      out.write(message.getBytes(UTF_8));
+    }
+    return Base64.getEncoder().encodeToString(bytes.toByteArray());
+  }
+
+}
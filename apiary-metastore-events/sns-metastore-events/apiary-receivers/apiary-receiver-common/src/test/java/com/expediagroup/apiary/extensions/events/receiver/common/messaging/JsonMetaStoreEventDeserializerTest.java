@@ -40,6 +40,7 @@ import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.Maps;
 
+import com.expediagroup.apiary.extensions.events.receiver.common.error.SerDeException;
 import com.expediagroup.apiary.extensions.events.receiver.common.event.AddPartitionEvent;
 import com.expediagroup.apiary.extensions.events.receiver.common.event.AlterPartitionEvent;
 import com.expediagroup.apiary.extensions.events.receiver.common.event.AlterTableEvent;
@@ -49,6 +50,7 @@ import com.expediagroup.apiary.extensions.events.receiver.common.event.DropTable
 import com.expediagroup.apiary.extensions.events.receiver.common.event.EventType;
 import com.expediagroup.apiary.extensions.events.receiver.common.event.InsertTableEvent;
 import com.expediagroup.apiary.extensions.events.receiver.common.event.ListenerEvent;
+import com.expediagroup.apiary.extensions.events.receiver.common.event.PartitionInfo;
 
 @RunWith(MockitoJUnitRunner.class)
 public class JsonMetaStoreEventDeserializerTest {
@@ -75,6 +77,8 @@ public class JsonMetaStoreEventDeserializerTest {
   private final JsonMetaStoreEventDeserializer metaStoreEventDeserializer = new JsonMetaStoreEventDeserializer(OBJECT_MAPPER);
 
   private String addPartitionEvent;
+  private String addPartitionAggregatedEvent;
+  private String dropPartitionAggregatedEvent;
   private String alterPartitionEvent;
   private String createTableEvent;
   private String dropPartitionEvent;
@@ -91,6 +95,10 @@ public class JsonMetaStoreEventDeserializerTest {
     insertEvent = new String(Files.readAllBytes(dataFolder.getFile("insert_table.json").toPath()), UTF_8);
     alterTableEvent = new String(Files.readAllBytes(dataFolder.getFile("alter_table.json").toPath()), UTF_8);
     dropTableEvent = new String(Files.readAllBytes(dataFolder.getFile("drop_table.json").toPath()), UTF_8);
+    addPartitionAggregatedEvent = new String(
+        Files.readAllBytes(dataFolder.getFile("add_partition_aggregated.json").toPath()), UTF_8);
+    dropPartitionAggregatedEvent = new String(
+        Files.readAllBytes(dataFolder.getFile("drop_partition_aggregated.json").toPath()), UTF_8);
   }
 
   @Test
@@ -107,6 +115,26 @@ public class JsonMetaStoreEventDeserializerTest {
     assertThat(addPartitionEvent.getPartitionValues()).isEqualTo(PARTITION_VALUES);
     assertThat(addPartitionEvent.getPartitionLocation()).isEqualTo(PARTITION_LOCATION);
     assertThat(addPartitionEvent.getTableParameters()).isEqualTo(TABLE_PARAM_MAP);
+    assertThat(addPartitionEvent.getPartitions()).hasSize(1);
+    assertThat(addPartitionEvent.getPartitions().get(0).getValues()).isEqualTo(PARTITION_VALUES);
+    assertThat(addPartitionEvent.getPartitions().get(0).getLocation()).isEqualTo(PARTITION_LOCATION);
+  }
+
+  @Test
+  public void addPartitionAggregatedEvent() throws Exception {
+    ListenerEvent processedEvent = metaStoreEventDeserializer.unmarshal(addPartitionAggregatedEvent);
+    AddPartitionEvent addPartitionEvent = (AddPartitionEvent) processedEvent;
+
+    assertThat(addPartitionEvent.getDbName()).isEqualTo(TEST_DB);
+    assertThat(addPartitionEvent.getTableName()).isEqualTo(TEST_TABLE);
+    assertThat(addPartitionEvent.getTableLocation()).isEqualTo(TEST_TABLE_LOCATION);
+    assertThat(addPartitionEvent.getProtocolVersion()).isEqualTo("2.0");
+    assertThat(addPartitionEvent.getEventType()).isEqualTo(EventType.ADD_PARTITION);
+    assertThat(addPartitionEvent.getPartitionKeys()).isEqualTo(PARTITION_KEYS_MAP);
+    assertThat(addPartitionEvent.getPartitionValues()).isNull();
+    assertThat(addPartitionEvent.getPartitionLocation()).isNull();
+    assertThat(addPartitionEvent.getTableParameters()).isEqualTo(TABLE_PARAM_MAP);
+    assertAggregatedPartitions(addPartitionEvent.getPartitions());
   }
 
   @Test
@@ -143,6 +171,27 @@ public class JsonMetaStoreEventDeserializerTest {
     assertThat(dropPartitionEvent.getTableParameters()).isEqualTo(TABLE_PARAM_MAP);
   }
 
+  @Test
+  public void dropPartitionAggregatedEvent() throws Exception {
+    ListenerEvent processedEvent = metaStoreEventDeserializer.unmarshal(dropPartitionAggregatedEvent);
+    DropPartitionEvent dropPartitionEvent = (DropPartitionEvent) processedEvent;
+
+    assertThat(dropPartitionEvent.getDbName()).isEqualTo(TEST_DB);
+    assertThat(dropPartitionEvent.getTableName()).isEqualTo(TEST_TABLE);
+    assertThat(dropPartitionEvent.getProtocolVersion()).isEqualTo("2.0");
+    assertThat(dropPartitionEvent.getEventType()).isEqualTo(EventType.DROP_PARTITION);
+    assertThat(dropPartitionEvent.getPartitionKeys()).isEqualTo(PARTITION_KEYS_MAP);
+    assertAggregatedPartitions(dropPartitionEvent.getPartitions());
+  }
+
+  private void assertAggregatedPartitions(List<PartitionInfo> partitions) {
+    assertThat(partitions).hasSize(2);
+    assertThat(partitions.get(0).getValues()).isEqualTo(PARTITION_VALUES);
+    assertThat(partitions.get(0).getLocation()).isEqualTo(PARTITION_LOCATION);
+    assertThat(partitions.get(1).getValues()).isEqualTo(OLD_PARTITION_VALUES);
+    assertThat(partitions.get(1).getLocation()).isEqualTo(OLD_PARTITION_LOCATION);
+  }
+
   @Test
   public void createTableEvent() throws Exception {
     ListenerEvent processedEvent = metaStoreEventDeserializer.unmarshal(createTableEvent);
@@ -202,4 +251,23 @@ public class JsonMetaStoreEventDeserializerTest {
     assertThat(dropTableEvent.getEventType()).isEqualTo(EventType.DROP_TABLE);
     assertThat(dropTableEvent.getTableParameters()).isEqualTo(Maps.newHashMap());
   }
+
+  @Test
+  public void eventTypeAfterOtherProperties() throws Exception {
+    ListenerEvent processedEvent = metaStoreEventDeserializer.unmarshal("{\"protocolVersion\":\"1.0\","
+        + "\"dbName\":\"some_db\",\"tableParameters\":{\"param_1\":\"val_1\"},\"eventType\":\"DROP_TABLE\","
+        + "\"tableName\":\"some_table\"}");
+    DropTableEvent dropTableEvent = (DropTableEvent) processedEvent;
+
+    assertThat(dropTableEvent.getDbName()).isEqualTo(TEST_DB);
+    assertThat(dropTableEvent.getTableName()).isEqualTo(TEST_TABLE);
+    assertThat(dropTableEvent.getProtocolVersion()).isEqualTo("1.0");
+    assertThat(dropTableEvent.getEventType()).isEqualTo(EventType.DROP_TABLE);
+    assertThat(dropTableEvent.getTableParameters()).isEqualTo(ImmutableMap.of("param_1", "val_1"));
+  }
+
+  @Test(expected = SerDeException.class)
+  public void missingEventType() throws Exception {
+    metaStoreEventDeserializer.unmarshal("{\"protocolVersion\":\"1.0\",\"dbName\":\"some_db\"}");
+  }
 }
@@ -0,0 +1,62 @@
+/**
+ * Copyright (C) 2018-2021 Expedia, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.expediagroup.apiary.extensions.events.receiver.sqs.messaging;
+
+import java.io.IOException;
+import java.net.URI;
+import java.util.function.Supplier;
+
+import com.amazonaws.services.s3.AmazonS3;
+import com.amazonaws.services.s3.AmazonS3ClientBuilder;
+import com.amazonaws.services.s3.model.S3Object;
+import com.amazonaws.util.IOUtils;
+import com.google.common.base.Suppliers;
+
+import com.expediagroup.apiary.extensions.events.receiver.common.messaging.PayloadStore;
+
+/**
+ * Reads payloads from {@code s3://bucket/key} locations. The default S3 client is only created when the first payload
+ * is read.
+ */
+public class S3PayloadStore implements PayloadStore {
+
+  private final Supplier<AmazonS3> s3Client;
+
+  public S3PayloadStore() {
+    this(Suppliers.memoize(AmazonS3ClientBuilder::defaultClient));
+  }
+
+  public S3PayloadStore(AmazonS3 s3Client) {
+    this(() -> s3Client);
+  }
+
+  private S3PayloadStore(Supplier<AmazonS3> s3Client) {
+    this.s3Client = s3Client;
+  }
+
+  @Override
+  public byte[] get(String location) throws IOException {
+    URI uri = URI.create(location);
+    if (!"s3".equals(uri.getScheme())) {
+      throw new IOException("Unsupported payload location: " + location);
+    }
+    String key = uri.getPath().substring(1);
+    try (S3Object object = s3Client.get().getObject(uri.getHost(), key)) {
+      return IOUtils.toByteArray(object.getObjectContent());
+    }
+  }
+
+}
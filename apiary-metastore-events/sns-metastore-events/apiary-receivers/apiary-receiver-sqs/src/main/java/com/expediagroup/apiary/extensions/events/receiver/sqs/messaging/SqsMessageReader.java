@@ -32,11 +32,14 @@ import com.fasterxml.jackson.databind.ObjectMapper;
 
 import com.expediagroup.apiary.extensions.events.receiver.common.error.SerDeException;
 import com.expediagroup.apiary.extensions.events.receiver.common.event.ListenerEvent;
+import com.expediagroup.apiary.extensions.events.receiver.common.messaging.ClaimCheckMetaStoreEventDeserializer;
+import com.expediagroup.apiary.extensions.events.receiver.common.messaging.CompressedMetaStoreEventDeserializer;
 import com.expediagroup.apiary.extensions.events.receiver.common.messaging.JsonMetaStoreEventDeserializer;
 import com.expediagroup.apiary.extensions.events.receiver.common.messaging.MessageDeserializer;
 import com.expediagroup.apiary.extensions.events.receiver.common.messaging.MessageEvent;
 import com.expediagroup.apiary.extensions.events.receiver.common.messaging.MessageProperty;
 import com.expediagroup.apiary.extensions.events.receiver.common.messaging.MessageReader;
+import com.expediagroup.apiary.extensions.events.receiver.common.messaging.PayloadStore;
 
 public class SqsMessageReader implements MessageReader {
   private static final Integer DEFAULT_POLLING_WAIT_TIME_SECONDS = 10;
@@ -116,6 +119,7 @@ public class SqsMessageReader implements MessageReader {
     private Integer maxMessages;
     private AmazonSQS consumer;
     private MessageDeserializer messageDeserializer;
+    private PayloadStore payloadStore;
 
     public Builder(String queueUrl) {
       this.queueUrl = queueUrl;
@@ -131,6 +135,15 @@ public class SqsMessageReader implements MessageReader {
       return this;
     }
 
+    /**
+     * Store from which the default message deserializer fetches payloads too large to be sent through SNS, defaults
+     * to an {@link S3PayloadStore}. Not used if a message deserializer is set.
+     */
+    public Builder withPayloadStore(PayloadStore payloadStore) {
+      this.payloadStore = payloadStore;
+      return this;
+    }
+
     public Builder withWaitTimeSeconds(Integer waitTimeSeconds) {
       this.waitTimeSeconds = waitTimeSeconds;
       return this;
@@ -163,7 +176,10 @@ public class SqsMessageReader implements MessageReader {
     private MessageDeserializer defaultMessageDeserializer() {
       ObjectMapper mapper = new ObjectMapper()
           .configure(FAIL_ON_UNKNOWN_PROPERTIES, false);
-      JsonMetaStoreEventDeserializer delegateSerDe = new JsonMetaStoreEventDeserializer(mapper);
+      CompressedMetaStoreEventDeserializer jsonSerDe = new CompressedMetaStoreEventDeserializer(
+          new JsonMetaStoreEventDeserializer(mapper));
+      ClaimCheckMetaStoreEventDeserializer delegateSerDe = new ClaimCheckMetaStoreEventDeserializer(jsonSerDe, mapper,
+          payloadStore == null ? new S3PayloadStore() : payloadStore);
       return new DefaultSqsMessageDeserializer(delegateSerDe, mapper);
     }
   }